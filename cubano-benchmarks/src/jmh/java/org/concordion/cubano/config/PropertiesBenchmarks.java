@@ -0,0 +1,60 @@
+package org.concordion.cubano.config;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Looking up configuration, done by page objects and tests throughout a run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PropertiesBenchmarks {
+    private static final int PROPERTIES = 500;
+
+    private CaselessProperties caseless;
+    private DefaultPropertyLoader loader;
+
+    @Setup
+    public void loadProperties() {
+        caseless = new CaselessProperties();
+
+        for (int i = 0; i < PROPERTIES; i++) {
+            caseless.put("section" + (i % 20) + ".Property" + i, "value " + i);
+        }
+
+        caseless.put("environment", "SIT");
+
+        for (int i = 0; i < 20; i++) {
+            caseless.put("SIT.webdriver.capability." + i, "value " + i);
+            caseless.put("webdriver.capability." + i, "default " + i);
+        }
+
+        Properties properties = caseless;
+        loader = new DefaultPropertyLoader(properties);
+    }
+
+    @Benchmark
+    public String caselessGetProperty() {
+        return caseless.getProperty("SECTION7.property247");
+    }
+
+    @Benchmark
+    public String loaderGetProperty() {
+        return loader.getProperty("webdriver.capability.7");
+    }
+
+    @Benchmark
+    public Map<String, String> loaderGetPropertiesStartingWith() {
+        return loader.getPropertiesStartingWith("webdriver.capability.");
+    }
+}
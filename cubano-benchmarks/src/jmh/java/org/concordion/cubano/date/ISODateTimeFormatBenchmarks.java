@@ -0,0 +1,29 @@
+package org.concordion.cubano.date;
+
+import java.text.ParseException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parsing the date formats that appear in service responses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ISODateTimeFormatBenchmarks {
+    @Param({ "2021-06-15T13:45:30", "2021-06-15T13:45:30.123", "2021-06-15T01:45:30Z", "2021-06-15T01:45:30.123Z" })
+    private String date;
+
+    @Benchmark
+    public LocalDateTime parse() throws ParseException {
+        return ISODateTimeFormat.parse(date);
+    }
+}
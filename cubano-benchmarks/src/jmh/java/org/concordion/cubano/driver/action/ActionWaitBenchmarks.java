@@ -0,0 +1,53 @@
+package org.concordion.cubano.driver.action;
+
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openqa.selenium.support.ui.Sleeper;
+
+/**
+ * The overhead of polling with ActionWait, using a sleeper that returns immediately so only the wait's own work is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ActionWaitBenchmarks {
+    private static final Sleeper NO_DELAY = duration -> { };
+    private static final int ATTEMPTS = 5;
+
+    private final Clock clock = Clock.systemDefaultZone();
+    private int attempt;
+
+    @Benchmark
+    public Boolean untilWithMaxAttempts() {
+        attempt = 0;
+
+        return new ActionWait(clock, NO_DELAY)
+                .withMaxAttempts(ATTEMPTS)
+                .withPollingIntervals(TimeUnit.MILLISECONDS, 100)
+                .until(() -> ++attempt == ATTEMPTS);
+    }
+
+    @Benchmark
+    public Boolean untilWithTimeout() {
+        attempt = 0;
+
+        return new ActionWait(clock, NO_DELAY)
+                .withTimeout(TimeUnit.SECONDS, 10)
+                .withPollingIntervals(TimeUnit.MILLISECONDS, 100, 250, 500)
+                .ignoring(IllegalStateException.class)
+                .until(() -> {
+                    if (++attempt < ATTEMPTS) {
+                        throw new IllegalStateException("not ready");
+                    }
+
+                    return true;
+                });
+    }
+}
@@ -0,0 +1,130 @@
+package org.concordion.cubano.driver.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Building request URLs, and sending requests to an in-process server so that the cost of HttpEasy itself can be seen without a
+ * network in the way.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HttpEasyBenchmarks {
+    private static final byte[] CUSTOMER = "{\"id\":42,\"name\":\"Fred\",\"addresses\":[{\"city\":\"Wellington\"}]}".getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer server;
+    private HttpEasyClient client;
+    private RequestTemplate orders;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/customer/", this::respond);
+        server.start();
+
+        client = HttpEasyClient.builder()
+                .baseUrl("http://localhost:" + server.getAddress().getPort() + "/api")
+                .reuseConnections(true)
+                .logRequest(false)
+                .build();
+
+        orders = client.template("customer/{id}/orders/{order}");
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+
+            while (in.read(buffer) != -1) {
+                // Drain the request body so the connection can be reused
+            }
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, CUSTOMER.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(CUSTOMER);
+        }
+    }
+
+    /**
+     * getURL and replaceParameters, reached through getHostKey as both are private.
+     */
+    @Benchmark
+    public String buildUrl() throws IOException {
+        return client.request()
+                .path("customer/{id}/orders/{order}")
+                .urlParameters(42, "2021-0001")
+                .queryParam("expand", "lines")
+                .queryParam("status", "open & pending")
+                .getHostKey();
+    }
+
+    @Benchmark
+    public String buildUrlFromTemplate() throws IOException {
+        return orders.bind(42, "2021-0001")
+                .queryParam("expand", "lines")
+                .queryParam("status", "open & pending")
+                .getHostKey();
+    }
+
+    @Benchmark
+    public String get() throws IOException {
+        return client.request().path("customer/{id}").urlParameters(42).get().asString();
+    }
+
+    @Benchmark
+    public String postForm() throws IOException {
+        return client.request()
+                .path("customer/{id}")
+                .urlParameters(42)
+                .field("name", "Fred Bloggs")
+                .field("city", "Wellington")
+                .post()
+                .asString();
+    }
+
+    @Benchmark
+    public String postJson() throws IOException {
+        return client.request()
+                .path("customer/{id}")
+                .urlParameters(42)
+                .json(new Customer("Fred Bloggs", "Wellington"))
+                .post()
+                .asString();
+    }
+
+    public static class Customer {
+        private final String name;
+        private final String city;
+
+        Customer(String name, String city) {
+            this.name = name;
+            this.city = city;
+        }
+    }
+}
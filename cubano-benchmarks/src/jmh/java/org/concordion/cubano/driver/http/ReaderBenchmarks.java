@@ -0,0 +1,117 @@
+package org.concordion.cubano.driver.http;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xml.sax.SAXException;
+
+import com.google.gson.JsonElement;
+
+/**
+ * Searching JSON and XML responses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReaderBenchmarks {
+    private static final int ITEMS = 100;
+
+    private String json;
+    private String xml;
+    private JsonReader jsonReader;
+    private XmlReader xmlReader;
+
+    @Setup
+    public void createResponses() throws ParserConfigurationException, SAXException, IOException {
+        StringBuilder jsonItems = new StringBuilder();
+        StringBuilder xmlItems = new StringBuilder();
+
+        for (int i = 0; i < ITEMS; i++) {
+            if (i > 0) {
+                jsonItems.append(',');
+            }
+
+            jsonItems.append("{\"id\":").append(i).append(",\"name\":\"item ").append(i).append("\",\"price\":").append(i * 1.5).append('}');
+            xmlItems.append("<item id=\"").append(i).append("\"><name>item ").append(i).append("</name><price>").append(i * 1.5).append("</price></item>");
+        }
+
+        json = "{\"order\":{\"customer\":{\"name\":\"Fred\"},\"items\":[" + jsonItems + "]}}";
+        xml = "<order><customer><name>Fred</name></customer><items>" + xmlItems + "</items></order>";
+
+        jsonReader = new JsonReader(json);
+        xmlReader = new XmlReader(xml);
+    }
+
+    @Benchmark
+    public JsonElement jsonPath() {
+        return jsonReader.jsonPath("order.customer.name");
+    }
+
+    @Benchmark
+    public JsonElement jsonPathWildcard() {
+        return jsonReader.jsonPath("order.items[*].name");
+    }
+
+    @Benchmark
+    public JsonElement jsonParseAndPath() {
+        return new JsonReader(json).jsonPath("order.customer.name");
+    }
+
+    /**
+     * How {@link JsonReader#fromJson(Class)} binds a response, through a tree of {@link JsonElement}s.
+     */
+    @Benchmark
+    public Response jsonBindThroughTree() throws IOException {
+        return new JsonReader(json).fromJson(Response.class);
+    }
+
+    /**
+     * How {@link HttpEasyReader#as(Class)} binds a response, straight from the stream.
+     */
+    @Benchmark
+    public Response jsonBindFromStream() {
+        return JsonReader.getGson().fromJson(new StringReader(json), Response.class);
+    }
+
+    @Benchmark
+    public XmlReader xmlParse() throws ParserConfigurationException, SAXException, IOException {
+        return new XmlReader(xml);
+    }
+
+    @Benchmark
+    public Object xmlEvaluate() throws XPathExpressionException {
+        return xmlReader.evaluate("/order/items/item[@id='50']/name", XPathConstants.STRING);
+    }
+
+    public static class Response {
+        private Order order;
+    }
+
+    public static class Order {
+        private Customer customer;
+        private List<Item> items;
+    }
+
+    public static class Customer {
+        private String name;
+    }
+
+    public static class Item {
+        private int id;
+        private String name;
+        private double price;
+    }
+}
@@ -0,0 +1,52 @@
+package org.concordion.cubano.driver.http.dataWriter;
+
+import java.io.IOException;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.concordion.cubano.driver.http.transport.ConnectionOptions;
+import org.concordion.cubano.driver.http.transport.HttpConnection;
+import org.concordion.cubano.driver.http.transport.HttpTransports;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.google.common.net.MediaType;
+
+/**
+ * Encoding a form, the connection is opened but never connected so only the encoding and headers are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FormUrlEncodedDataWriterBenchmarks {
+    @Param({ "5", "50" })
+    private int fieldCount;
+
+    private HttpConnection connection;
+    private List<Field> fields;
+
+    @Setup
+    public void createForm() throws IOException {
+        connection = HttpTransports.urlConnection().openConnection(new URL("http://localhost/form"),
+                new ConnectionOptions(Proxy.NO_PROXY, false, false, 1000, 1000));
+        fields = new ArrayList<>();
+
+        for (int i = 0; i < fieldCount; i++) {
+            fields.add(new Field("field" + i, "value " + i + " & some/reserved=characters", MediaType.PLAIN_TEXT_UTF_8, null));
+        }
+    }
+
+    @Benchmark
+    public DataWriter encode() throws IOException {
+        return new FormUrlEncodedDataWriter(connection, "page=1&size=20", fields);
+    }
+}
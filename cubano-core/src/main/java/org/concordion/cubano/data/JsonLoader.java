@@ -15,7 +15,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 
@@ -26,6 +25,10 @@ import com.google.gson.JsonElement;
  */
 public class JsonLoader {
     private static final Logger LOGGER = LoggerFactory.getLogger(JsonLoader.class);
+    private static final Gson GSON = JsonReader.getGson().newBuilder()
+            .registerTypeAdapter(XMLGregorianCalendar.class, new XMLGregorianCalendarConverter.Deserializer())
+            .registerTypeAdapter(XMLGregorianCalendar.class, new XMLGregorianCalendarConverter.Serializer())
+            .create();
 
     private JsonLoader() {
     }
@@ -59,12 +62,7 @@ public class JsonLoader {
         LOGGER.debug("Loading JSON file {}", jsonFile);
         JsonReader json = new JsonReader(FileReader.readFile(jsonFile));
 
-        Gson builder = new GsonBuilder()
-                .registerTypeAdapter(XMLGregorianCalendar.class, new XMLGregorianCalendarConverter.Deserializer())
-                .registerTypeAdapter(XMLGregorianCalendar.class, new XMLGregorianCalendarConverter.Serializer())
-                .create();
-
-        T result = json.fromJson(builder, returnType);
+        T result = json.fromJson(GSON, returnType);
 
         validateAllDataLoaded(json.asJson(), result, "");
 
@@ -86,8 +86,18 @@ public class ActionWait {
     private int warningsMade;
 
     public ActionWait() {
-        clock = Clock.systemDefaultZone();
-        sleeper = Sleeper.SYSTEM_SLEEPER;
+        this(Clock.systemDefaultZone(), Sleeper.SYSTEM_SLEEPER);
+    }
+
+    /**
+     * Constructor for tests and benchmarks that need to control time.
+     *
+     * @param clock   Clock used to check the timeout
+     * @param sleeper Used to pause between attempts
+     */
+    ActionWait(Clock clock, Sleeper sleeper) {
+        this.clock = clock;
+        this.sleeper = sleeper;
     }
 
     /**
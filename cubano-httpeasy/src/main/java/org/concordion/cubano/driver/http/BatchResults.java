@@ -0,0 +1,177 @@
+package org.concordion.cubano.driver.http;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Outcome of running a {@link HttpEasyBatch}, the results are in the order the requests were added to the batch.
+ *
+ * @param <T> Type returned by the batch's response handler
+ */
+public class BatchResults<T> {
+    private final List<Result<T>> results;
+    private final long elapsedNanos;
+    private final boolean aborted;
+    private final long[] latencies;
+
+    BatchResults(List<Result<T>> results, long elapsedNanos, boolean aborted) {
+        this.results = Collections.unmodifiableList(new ArrayList<>(results));
+        this.elapsedNanos = elapsedNanos;
+        this.aborted = aborted;
+        this.latencies = results.stream().filter(r -> !r.isSkipped()).mapToLong(r -> r.latencyNanos).sorted().toArray();
+    }
+
+    /**
+     * @return All results, in the order the requests were added to the batch
+     */
+    public List<Result<T>> getResults() {
+        return results;
+    }
+
+    /**
+     * @return The values returned by the response handler for successful requests, null for requests that failed or were skipped
+     */
+    public List<T> getValues() {
+        return results.stream().map(Result::getValue).collect(Collectors.toList());
+    }
+
+    /**
+     * @return Results of the requests that failed or were skipped
+     */
+    public List<Result<T>> getFailures() {
+        return results.stream().filter(r -> !r.isSuccess()).collect(Collectors.toList());
+    }
+
+    /**
+     * @return true if every request succeeded
+     */
+    public boolean isSuccess() {
+        return getFailedCount() == 0 && getSkippedCount() == 0;
+    }
+
+    /**
+     * @return true if the batch stopped early because a request failed and {@link HttpEasyBatch#abortOnFailure(boolean)} was set
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    public int getSucceededCount() {
+        return (int) results.stream().filter(Result::isSuccess).count();
+    }
+
+    public int getFailedCount() {
+        return (int) results.stream().filter(r -> !r.isSuccess() && !r.isSkipped()).count();
+    }
+
+    public int getSkippedCount() {
+        return (int) results.stream().filter(Result::isSkipped).count();
+    }
+
+    /**
+     * @return Wall clock time taken to run the batch
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * @return Requests sent per second, including those that failed
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : latencies.length * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    /**
+     * @return Mean time taken by a request, in milliseconds
+     */
+    public double getMeanLatencyMillis() {
+        return latencies.length == 0 ? 0 : Arrays.stream(latencies).average().getAsDouble() / 1_000_000.0;
+    }
+
+    /**
+     * @param percentile Percentile between 0 and 100, eg 95
+     * @return Time within which the given percentage of requests completed, in milliseconds
+     */
+    public double getLatencyMillis(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+
+        if (latencies.length == 0) {
+            return 0;
+        }
+
+        int index = (int) Math.ceil(percentile / 100.0 * latencies.length) - 1;
+
+        return latencies[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d requests in %dms (%.1f/s): %d succeeded, %d failed, %d skipped, latency mean %.1fms, p50 %.1fms, p95 %.1fms, max %.1fms",
+                results.size(), getElapsedMillis(), getThroughput(), getSucceededCount(), getFailedCount(), getSkippedCount(),
+                getMeanLatencyMillis(), getLatencyMillis(50), getLatencyMillis(95), getLatencyMillis(100));
+    }
+
+    /**
+     * Outcome of a single request in the batch.
+     *
+     * @param <T> Type returned by the batch's response handler
+     */
+    public static class Result<T> {
+        private final int index;
+        private final T value;
+        private final Throwable failure;
+        private final boolean skipped;
+        private final long latencyNanos;
+
+        Result(int index, T value, Throwable failure, boolean skipped, long latencyNanos) {
+            this.index = index;
+            this.value = value;
+            this.failure = failure;
+            this.skipped = skipped;
+            this.latencyNanos = latencyNanos;
+        }
+
+        /**
+         * @return Position of the request in the batch, starting from 0
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public boolean isSuccess() {
+            return failure == null && !skipped;
+        }
+
+        /**
+         * @return true if the request was never sent because the batch was aborted
+         */
+        public boolean isSkipped() {
+            return skipped;
+        }
+
+        /**
+         * @return Value returned by the response handler, or null if the request did not succeed
+         */
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * @return Reason the request failed, or null if it succeeded
+         */
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        public double getLatencyMillis() {
+            return latencyNanos / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package org.concordion.cubano.driver.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.concordion.cubano.driver.http.logging.LogManager;
+
+/**
+ * Decodes a gzip or deflate encoded response body and logs the encoded and decoded sizes once it has been read.
+ * <p>
+ * The decoder is only created on the first read so that responses without a body, eg HEAD requests or a 304, can still be
+ * read even though they carry a Content-Encoding header.
+ * </p>
+ */
+class DecodingInputStream extends InputStream {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final CountingInputStream encoded;
+    private final String encoding;
+    private final LogManager logger;
+    private InputStream decoded = null;
+    private long decodedBytes = 0;
+    private boolean complete = false;
+
+    private DecodingInputStream(InputStream encoded, String encoding, LogManager logger) {
+        this.encoded = new CountingInputStream(encoded);
+        this.encoding = encoding;
+        this.logger = logger;
+    }
+
+    /**
+     * Wrap the stream in a decoder if the content encoding is one that is supported.
+     *
+     * @param stream          Response body
+     * @param contentEncoding Value of the Content-Encoding header, may be null
+     * @param logger          Logger to write the encoded and decoded sizes to, may be null
+     * @return The decoded stream, or the original stream if it is not encoded
+     */
+    static InputStream decode(InputStream stream, String contentEncoding, LogManager logger) {
+        if (stream == null || contentEncoding == null) {
+            return stream;
+        }
+
+        String encoding = contentEncoding.trim().toLowerCase(Locale.ROOT);
+
+        switch (encoding) {
+        case "gzip":
+        case "x-gzip":
+        case "deflate":
+            return new DecodingInputStream(stream, encoding, logger);
+
+        default:
+            return stream;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int count = read(single, 0, 1);
+
+        return count == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (decoded == null && !openDecoder()) {
+            completed();
+            return -1;
+        }
+
+        int count = decoded.read(b, off, len);
+
+        if (count == -1) {
+            completed();
+        } else {
+            decodedBytes += count;
+        }
+
+        return count;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return decoded == null ? 0 : decoded.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (decoded != null) {
+            decoded.close();
+        } else {
+            encoded.close();
+        }
+    }
+
+    /**
+     * @return false if there is no body to decode
+     */
+    private boolean openDecoder() throws IOException {
+        PushbackInputStream source = new PushbackInputStream(encoded, 2);
+        byte[] header = new byte[2];
+        int count = source.read(header);
+
+        if (count <= 0) {
+            return false;
+        }
+
+        source.unread(header, 0, count);
+
+        if (encoding.equals("deflate")) {
+            // Deflate should be wrapped in a zlib header but some servers send the raw deflate stream
+            boolean zlib = count == 2 && (header[0] & 0x0F) == 8 && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+            decoded = new InflaterInputStream(source, new Inflater(!zlib), BUFFER_SIZE);
+        } else {
+            decoded = new GZIPInputStream(source, BUFFER_SIZE);
+        }
+
+        return true;
+    }
+
+    private void completed() {
+        if (complete) {
+            return;
+        }
+
+        complete = true;
+
+        if (logger != null) {
+            logger.info("Response body {0} encoded, received {1} bytes, decoded to {2} bytes", encoding, encoded.count, decodedBytes);
+        }
+    }
+
+    /**
+     * Counts the bytes received over the wire.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+
+            if (value != -1) {
+                count++;
+            }
+
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+
+            if (read > 0) {
+                count += read;
+            }
+
+            return read;
+        }
+    }
+}
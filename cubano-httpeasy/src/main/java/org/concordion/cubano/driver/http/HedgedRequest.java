@@ -0,0 +1,216 @@
+package org.concordion.cubano.driver.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.concordion.cubano.driver.http.concurrent.HedgingPolicy;
+import org.concordion.cubano.driver.http.logging.LogManager;
+import org.concordion.cubano.driver.http.transport.HttpConnection;
+
+/**
+ * Sends an idempotent request and, if it has not responded within the policy's delay, an identical copy of it. The first to
+ * respond is returned and the other is disconnected.
+ * <p>
+ * Each attempt runs on its own copy of the request so that their connections and log entries are kept apart, only the winning
+ * attempt's log entries are written.
+ * </p>
+ */
+final class HedgedRequest {
+    private final HttpEasy request;
+    private final String method;
+    private final HedgingPolicy policy;
+    private final String host;
+
+    private final CompletableFuture<Attempt> winner = new CompletableFuture<>();
+    private final List<Attempt> attempts = new CopyOnWriteArrayList<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private long started;
+
+    HedgedRequest(HttpEasy request, String method, HedgingPolicy policy, String host) {
+        this.request = request;
+        this.method = method;
+        this.policy = policy;
+        this.host = host;
+    }
+
+    HttpEasyReader send() throws IOException {
+        long delay = policy.getDelayMillis(host);
+
+        started = System.nanoTime();
+        start(false);
+
+        try {
+            try {
+                return finish(winner.get(delay, TimeUnit.MILLISECONDS), delay);
+            } catch (TimeoutException e) {
+                policy.recordHedge();
+                start(true);
+            }
+
+            return finish(winner.get(), delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelAll(null);
+            throw new InterruptedIOException("Interrupted waiting for " + method + " response");
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private void start(boolean hedge) throws IOException {
+        Attempt attempt = new Attempt(request.copy(), hedge);
+
+        attempts.add(attempt);
+        pending.incrementAndGet();
+
+        try {
+            policy.getExecutor().execute(attempt::run);
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            attempts.remove(attempt);
+
+            if (!hedge) {
+                throw new IOException("Unable to send " + method + " request", e);
+            }
+        }
+    }
+
+    private HttpEasyReader finish(Attempt attempt, long delay) throws IOException {
+        cancelAll(attempt);
+
+        // The time the caller waited, a winning hedge's own time leaves out the delay before it was sent
+        policy.recordLatency(host, attempt.finishedAt - started);
+
+        LogManager logManager = attempt.copy.getLogManager();
+
+        if (attempt.hedge) {
+            policy.recordHedgeWin();
+            logManager.info("Response received from hedge request sent after {0}ms", delay);
+        }
+
+        logManager.writeDeferred();
+        request.completedBy(attempt.copy);
+
+        if (attempt.failure != null) {
+            throw unwrap(attempt.failure);
+        }
+
+        return attempt.reader;
+    }
+
+    private void cancelAll(Attempt except) {
+        for (Attempt attempt : attempts) {
+            if (attempt != except) {
+                attempt.cancel();
+            }
+        }
+    }
+
+    private void completed(Attempt attempt) {
+        if (attempt.failure == null || attempt.failure instanceof HttpResponseException) {
+            // A response, even an error response, ends the race
+            if (!winner.complete(attempt)) {
+                attempt.discard();
+            }
+        } else if (pending.get() == 0 && !winner.isDone()) {
+            if (attempt.copy.getLogManager() != null) {
+                attempt.copy.getLogManager().writeDeferred();
+            }
+
+            winner.completeExceptionally(attempt.failure);
+        } else {
+            attempt.discard();
+        }
+    }
+
+    private static IOException unwrap(Throwable cause) {
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+
+        return new IOException(cause);
+    }
+
+    /**
+     * One of the requests in the race.
+     */
+    private class Attempt {
+        private final HttpEasy copy;
+        private final boolean hedge;
+        private volatile HttpConnection connection = null;
+        private volatile boolean cancelled = false;
+        private final AtomicBoolean disconnected = new AtomicBoolean(false);
+        private HttpEasyReader reader = null;
+        private Throwable failure = null;
+        private long finishedAt = 0;
+
+        Attempt(HttpEasy copy, boolean hedge) {
+            this.copy = copy;
+            this.hedge = hedge;
+        }
+
+        void run() {
+            try {
+                connection = copy.connectDeferred(method);
+
+                if (cancelled) {
+                    disconnect();
+                    return;
+                }
+
+                reader = new HttpEasyReader(connection, copy);
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                finishedAt = System.nanoTime();
+                pending.decrementAndGet();
+            }
+
+            if (cancelled) {
+                discard();
+            } else {
+                completed(this);
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            disconnect();
+        }
+
+        void discard() {
+            disconnect();
+
+            LogManager logManager = copy.getLogManager();
+
+            if (logManager != null) {
+                logManager.discardDeferred();
+            }
+        }
+
+        private void disconnect() {
+            HttpConnection current = connection;
+
+            if (current != null && disconnected.compareAndSet(false, true)) {
+                current.disconnect();
+            }
+        }
+    }
+}
@@ -9,15 +9,17 @@ package org.concordion.cubano.driver.http;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.Proxy;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidParameterException;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
@@ -26,18 +28,36 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
-import javax.net.ssl.HttpsURLConnection;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
 
+import org.concordion.cubano.driver.http.cache.Cassette;
+import org.concordion.cubano.driver.http.cache.HttpResponseCache;
+import org.concordion.cubano.driver.http.concurrent.HedgingPolicy;
+import org.concordion.cubano.driver.http.concurrent.RateLimiter;
 import org.concordion.cubano.driver.http.dataWriter.DataWriter;
 import org.concordion.cubano.driver.http.dataWriter.Field;
 import org.concordion.cubano.driver.http.dataWriter.FormDataWriter;
 import org.concordion.cubano.driver.http.dataWriter.FormUrlEncodedDataWriter;
+import org.concordion.cubano.driver.http.dataWriter.ObjectDataWriter;
+import org.concordion.cubano.driver.http.dataWriter.ObjectDataWriter.Serializer;
+import org.concordion.cubano.driver.http.dataWriter.ObjectDataWriter.Streaming;
 import org.concordion.cubano.driver.http.dataWriter.RawDataWriter;
 import org.concordion.cubano.driver.http.logging.LogManager;
+import org.concordion.cubano.driver.http.metrics.Phase;
+import org.concordion.cubano.driver.http.metrics.RequestMetrics;
+import org.concordion.cubano.driver.http.metrics.RequestTimings;
+import org.concordion.cubano.driver.http.transport.ConnectionOptions;
+import org.concordion.cubano.driver.http.transport.HttpConnection;
+import org.concordion.cubano.driver.http.transport.HttpTransport;
 
 import com.google.common.base.Strings;
 import com.google.common.net.MediaType;
+import com.google.gson.Gson;
 
 /**
  * Fluent wrapper around {@link HttpURLConnection} with full support for HTTP messages such as GET, POST, HEAD, etc
@@ -144,6 +164,27 @@ import com.google.common.net.MediaType;
  * }
  * </pre>
  * <p>
+ * <b>Further Features</b>
+ * </p>
+ * <p>
+ * Each of these is described, with an example, by the class or method that provides it:
+ * </p>
+ * <ul>
+ * <li>{@link RequestTemplate} - parse the URL and headers of a frequently called endpoint once</li>
+ * <li>{@link HttpEasyClient} - settings for a thread or tenant that differ from the defaults</li>
+ * <li>{@link org.concordion.cubano.driver.http.transport.HttpTransports HttpTransports} - send requests with the HTTP/2 capable java.net.http.HttpClient on Java 11 or later</li>
+ * <li>{@link #getAsync()} and the other asynchronous variants - send requests on a shared executor</li>
+ * <li>{@link #json(Object)} and {@link HttpEasyReader#as(Class)} - stream objects to and from the connection, see
+ * {@link Streaming}</li>
+ * <li>{@link #compressResponses(boolean)} and {@link #compressRequests(int)} - compress responses and request bodies</li>
+ * <li>{@link RangedDownload} - download large files as parallel, resumable byte ranges</li>
+ * <li>{@link HttpResponseCache} - cache GET responses in memory and on disk</li>
+ * <li>{@link Cassette} - record responses and replay them on later runs</li>
+ * <li>{@link HedgingPolicy} - cut the latency tail by sending a second request</li>
+ * <li>{@link RateLimiter} - limit the rate requests are sent to each host</li>
+ * <li>{@link RequestMetrics} - time each phase of a request and report them per endpoint</li>
+ * </ul>
+ * <p>
  * <b>Logging</b>
  * </p>
  * <p>
@@ -151,6 +192,8 @@ import com.google.common.net.MediaType;
  * </p>
  */
 public class HttpEasy {
+    private static final Pattern SCHEME_AND_HOST = Pattern.compile("^[^/]*//[^/]*");
+
     // These only apply per request - but are visible to package
     List<Integer> ignoreResponseCodes = new ArrayList<Integer>();
     List<Family> ignoreResponseFamily = new ArrayList<Family>();
@@ -168,6 +211,8 @@ public class HttpEasy {
     private Object rawData = null;
     private String rawFileName = null;
     private MediaType rawDataMediaType = null;
+    private Serializer rawDataSerializer = null;
+    private Streaming rawDataStreaming = Streaming.CHUNKED;
     private Map<String, Object> headers = new LinkedHashMap<String, Object>();
     private List<Field> fields = new ArrayList<Field>();
     private Integer timeout = null;
@@ -176,7 +221,19 @@ public class HttpEasy {
     private Optional<Boolean> logRequestDetails = Optional.empty();
     private Optional<Boolean> trustAllCertificates = Optional.empty();
     private Optional<Boolean> trustAllHosts = Optional.empty();
+    private Optional<HttpTransport> transport = Optional.empty();
+    private Optional<Boolean> reuseConnection = Optional.empty();
+    private Optional<Boolean> compressResponses = Optional.empty();
+    private Optional<Integer> compressRequests = Optional.empty();
+    private boolean useCache = true;
+    private HedgingPolicy hedging = null;
+    private boolean hedgingSet = false;
     private boolean includeEmptyValues = false;
+    private boolean deferLogging = false;
+    private RequestTimings timings = null;
+    private RequestTemplate template = null;
+    private final HttpEasyClient client;
+    private HttpEasyClient sending = null;
 
     /**
      * @return Default settings object
@@ -189,7 +246,59 @@ public class HttpEasy {
      * @return Request object
      */
     public static HttpEasy request() {
-        return new HttpEasy();
+        return new HttpEasy(null);
+    }
+
+    /**
+     * Parse a URL, and headers, once for an endpoint that is called many times, see {@link RequestTemplate}.
+     *
+     * @param url Full URL, or path to append to the default base URL, containing {...} parameters
+     * @return Template to create requests from
+     */
+    public static RequestTemplate template(String url) {
+        return RequestTemplate.create(null, url);
+    }
+
+    /**
+     * @param client Client whose settings the request is sent with, null to use {@link HttpEasyDefaults}
+     */
+    HttpEasy(HttpEasyClient client) {
+        this.client = client;
+    }
+
+    private HttpEasyClient client() {
+        if (client != null) {
+            return client;
+        }
+
+        return sending != null ? sending : HttpEasyDefaults.getClient();
+    }
+
+    /**
+     * Take a snapshot of the default settings as the request starts to be sent, so that a change to the defaults on another
+     * thread cannot leave the request with a mix of old and new settings.
+     */
+    private void beginSend() {
+        sending = client != null ? client : HttpEasyDefaults.getClient();
+    }
+
+    /**
+     * Take the URL and headers of the request from a template.
+     */
+    void prepared(RequestTemplate template, Object[] urlParameters) {
+        this.template = template;
+        this.urlParams = urlParameters;
+
+        if (template.getAuthUser() != null) {
+            authUser = Optional.of(template.getAuthUser());
+            authPassword = Optional.of(template.getAuthPassword());
+        }
+    }
+
+    private void checkUrlCanChange() {
+        if (template != null) {
+            throw new IllegalStateException("The URL of a request created from the template " + template + " cannot be changed");
+        }
     }
 
     /**
@@ -253,6 +362,7 @@ public class HttpEasy {
      * @return A self reference
      */
     public HttpEasy baseUrl(String url) {
+        checkUrlCanChange();
         this.baseUrl = Optional.of(url);
         return this;
     }
@@ -283,6 +393,86 @@ public class HttpEasy {
         return this;
     }
 
+    /**
+     * Send the current request using the supplied transport.
+     *
+     * @param transport Transport to use, see {@link org.concordion.cubano.driver.http.transport.HttpTransports}
+     * @return A self reference
+     * @see HttpEasyDefaults#transport(HttpTransport) to apply this setting globally
+     */
+    public HttpEasy transport(HttpTransport transport) {
+        this.transport = Optional.of(transport);
+        return this;
+    }
+
+    /**
+     * Once the response has been read leave the connection open so that it can be reused by a later request to the same host,
+     * saving the cost of a new TCP connection and TLS handshake.
+     *
+     * @param reuseConnection Set to true to keep the connection alive, the default is false
+     * @return A self reference
+     * @see HttpEasyDefaults#reuseConnections(boolean) to apply this setting globally
+     */
+    public HttpEasy reuseConnection(boolean reuseConnection) {
+        this.reuseConnection = Optional.of(reuseConnection);
+        return this;
+    }
+
+    /**
+     * Ask the server to compress the response, a compressed response is decoded transparently when read.
+     * <p>
+     * Responses to requests that did not ask for compression are never decoded, so a file downloaded from a server that sends
+     * a Content-Encoding anyway, eg a .gz file, is saved exactly as sent.
+     * </p>
+     *
+     * @param compressResponses Set to true to send an "Accept-Encoding: gzip, deflate" header, the default is false
+     * @return A self reference
+     * @see HttpEasyDefaults#compressResponses(boolean) to apply this setting globally
+     */
+    public HttpEasy compressResponses(boolean compressResponses) {
+        this.compressResponses = Optional.of(compressResponses);
+        return this;
+    }
+
+    /**
+     * Gzip the raw data or url encoded form request body if it is at least the given size, the server must accept gzip
+     * encoded requests.
+     *
+     * @param thresholdBytes Minimum body size in bytes to compress, -1 to never compress
+     * @return A self reference
+     * @see HttpEasyDefaults#compressRequests(int) to apply this setting globally
+     */
+    public HttpEasy compressRequests(int thresholdBytes) {
+        this.compressRequests = Optional.of(thresholdBytes);
+        return this;
+    }
+
+    /**
+     * Whether the current request may be answered from, and stored in, the response cache if one has been configured.
+     *
+     * @param useCache Set to false to always go to the server, the default is true
+     * @return A self reference
+     * @see HttpEasyDefaults#responseCache(HttpResponseCache) to configure the cache
+     */
+    public HttpEasy useCache(boolean useCache) {
+        this.useCache = useCache;
+        return this;
+    }
+
+    /**
+     * Send a second identical request if a {@link #get()} or {@link #head()} has not responded within the delay calculated by
+     * the policy, the first to respond is used. Only use for requests that are safe to repeat.
+     *
+     * @param policy Hedging policy, or null to disable hedging for this request
+     * @return A self reference
+     * @see HttpEasyDefaults#hedging(HedgingPolicy) to apply this setting globally
+     */
+    public HttpEasy hedging(HedgingPolicy policy) {
+        this.hedging = policy;
+        this.hedgingSet = true;
+        return this;
+    }
+
     /**
      * Set the path part of the URL for the end-point. baseUrl, path and query are helpers only and any of these can take full URL.
      *
@@ -290,6 +480,7 @@ public class HttpEasy {
      * @return A self reference
      */
     public HttpEasy path(String path) {
+        checkUrlCanChange();
         this.path = path;
         return this;
     }
@@ -301,6 +492,7 @@ public class HttpEasy {
      * @return A self reference
      */
     public HttpEasy query(String query) {
+        checkUrlCanChange();
         this.query = new StringBuilder(query);
         return this;
     }
@@ -354,6 +546,7 @@ public class HttpEasy {
      * @return A self reference
      */
     public HttpEasy parameterTokens(String startToken, String endToken) {
+        checkUrlCanChange();
         this.startToken = startToken;
         this.endToken = endToken;
 
@@ -555,6 +748,85 @@ public class HttpEasy {
         return this;
     }
 
+    /**
+     * Serialise the object to JSON, using the client's Gson, while it is being sent, see {@link HttpEasyDefaults#gson(Gson)}.
+     *
+     * @param body Object to send
+     * @return A self reference
+     */
+    public HttpEasy json(Object body) {
+        return json(body, Streaming.CHUNKED);
+    }
+
+    /**
+     * Serialise the object to JSON, using the client's Gson, see {@link HttpEasyDefaults#gson(Gson)}.
+     *
+     * @param body      Object to send
+     * @param streaming Whether the body is sent in chunks as it is serialised or serialised first so its length can be sent
+     * @return A self reference
+     */
+    public HttpEasy json(Object body, Streaming streaming) {
+        return object(body, MediaType.JSON_UTF_8, streaming, out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+
+            getGson().toJson(body, writer);
+            writer.flush();
+        });
+    }
+
+    /**
+     * Marshal the object to XML, using JAXB, while it is being sent.
+     *
+     * @param body Object to send, either annotated with @XmlRootElement or wrapped in a {@link JAXBElement}
+     * @return A self reference
+     */
+    public HttpEasy xml(Object body) {
+        return xml(body, Streaming.CHUNKED);
+    }
+
+    /**
+     * Marshal the object to XML using JAXB.
+     *
+     * @param body      Object to send, either annotated with @XmlRootElement or wrapped in a {@link JAXBElement}
+     * @param streaming Whether the body is sent in chunks as it is serialised or serialised first so its length can be sent
+     * @return A self reference
+     */
+    public HttpEasy xml(Object body, Streaming streaming) {
+        Class<?> type = body instanceof JAXBElement ? ((JAXBElement<?>) body).getDeclaredType() : body.getClass();
+
+        return object(body, MediaType.APPLICATION_XML_UTF_8, streaming, out -> marshal(body, type, out));
+    }
+
+    private static void marshal(Object body, Class<?> type, OutputStream out) throws IOException {
+        try {
+            JaxbCache.marshaller(type).marshal(body, out);
+        } catch (JAXBException e) {
+            throw new IOException("Unable to marshal " + type.getName() + " to XML: " + e.getMessage(), e);
+        }
+    }
+
+    private HttpEasy object(Object body, MediaType mediaType, Streaming streaming, Serializer serializer) {
+        if (rawData != null) {
+            throw new InvalidParameterException("Only a single data value can be added");
+        }
+
+        if (body == null) {
+            throw new InvalidParameterException("Body cannot be null");
+        }
+
+        if (this.dataContentType != DataContentType.AUTO_SELECT) {
+            throw new InvalidParameterException("Content type cannot be changed once set");
+        }
+
+        dataContentType = DataContentType.OBJECT;
+        rawDataMediaType = mediaType;
+        rawData = body;
+        rawDataSerializer = serializer;
+        rawDataStreaming = streaming;
+
+        return this;
+    }
+
     /**
      * Add a list of response codes to ignore that would otherwise case a exception to be thrown.
      * Example: doNotFailOn(HttpURLConnection.HTTP_CONFLICT)
@@ -598,7 +870,7 @@ public class HttpEasy {
      * @throws IOException for connection errors
      */
     public HttpEasyReader get() throws HttpResponseException, IOException {
-        return new HttpEasyReader(getConnectionMethod("GET"), this);
+        return sendIdempotent("GET");
     }
 
     /**
@@ -609,7 +881,19 @@ public class HttpEasy {
      * @throws IOException           for connection errors
      */
     public HttpEasyReader head() throws HttpResponseException, IOException {
-        return new HttpEasyReader(getConnectionMethod("HEAD"), this);
+        return sendIdempotent("HEAD");
+    }
+
+    private HttpEasyReader sendIdempotent(String requestMethod) throws HttpResponseException, IOException {
+        beginSend();
+
+        HedgingPolicy policy = hedgingSet ? hedging : client().getHedgingPolicy();
+
+        if (policy == null) {
+            return new HttpEasyReader(getConnectionMethod(requestMethod), this);
+        }
+
+        return new HedgedRequest(this, requestMethod, policy, getHostKey()).send();
     }
 
     /**
@@ -620,6 +904,8 @@ public class HttpEasy {
      * @throws IOException           for connection errors
      */
     public HttpEasyReader post() throws HttpResponseException, IOException {
+        beginSend();
+
         return new HttpEasyReader(getConnectionMethod("POST"), this);
     }
 
@@ -632,6 +918,8 @@ public class HttpEasy {
      */
 
     public HttpEasyReader put() throws HttpResponseException, IOException {
+        beginSend();
+
         return new HttpEasyReader(getConnectionMethod("PUT"), this);
     }
 
@@ -643,32 +931,269 @@ public class HttpEasy {
      * @throws IOException           for connection errors
      */
     public HttpEasyReader delete() throws HttpResponseException, IOException {
+        beginSend();
+
         return new HttpEasyReader(getConnectionMethod("DELETE"), this);
     }
 
+    /**
+     * Download a large file using several ranged GET requests in parallel, resuming any ranges that fail part way through, see
+     * {@link RangedDownload}. Falls back to a single GET if the server does not support ranges.
+     *
+     * @param saveDir  Location to place the file, the file name is gotten from the response headers
+     * @param download Settings for the download
+     * @return File object
+     * @throws IOException If unable to download or write the file, or it fails verification
+     */
+    public File downloadFile(String saveDir, RangedDownload download) throws IOException {
+        return download.download(this, saveDir);
+    }
+
+    /**
+     * Performs an HTTP GET on the asynchronous request executor.
+     * <p>
+     * Each HTTP method has an asynchronous variant that runs the request on the executor configured by
+     * {@link HttpEasyDefaults#asyncThreads(int)} and {@link HttpEasyDefaults#maxRequestsPerHost(int)}. The request must not be
+     * modified once it has been sent.
+     * </p>
+     *
+     * <pre>
+     * List&lt;CompletableFuture&lt;HttpEasyReader&gt;&gt; responses = new ArrayList&lt;&gt;();
+     *
+     * for (String id : ids) {
+     *     responses.add(HttpEasy.request().path("customer/{id}").urlParameters(id).getAsync());
+     * }
+     *
+     * CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).join();
+     * </pre>
+     *
+     * @return The request response wrapped by {@link HttpEasyReader}, completes exceptionally with {@link HttpResponseException}
+     *         if the request failed or IOException for connection errors
+     */
+    public CompletableFuture<HttpEasyReader> getAsync() {
+        return sendAsync("GET");
+    }
+
+    /**
+     * Performs an HTTP HEAD on the asynchronous request executor.
+     *
+     * @return The request response wrapped by {@link HttpEasyReader}, completes exceptionally with {@link HttpResponseException}
+     *         if the request failed or IOException for connection errors
+     */
+    public CompletableFuture<HttpEasyReader> headAsync() {
+        return sendAsync("HEAD");
+    }
+
+    /**
+     * Performs an HTTP POST on the asynchronous request executor.
+     *
+     * @return The request response wrapped by {@link HttpEasyReader}, completes exceptionally with {@link HttpResponseException}
+     *         if the request failed or IOException for connection errors
+     */
+    public CompletableFuture<HttpEasyReader> postAsync() {
+        return sendAsync("POST");
+    }
+
+    /**
+     * Performs an HTTP PUT on the asynchronous request executor.
+     *
+     * @return The request response wrapped by {@link HttpEasyReader}, completes exceptionally with {@link HttpResponseException}
+     *         if the request failed or IOException for connection errors
+     */
+    public CompletableFuture<HttpEasyReader> putAsync() {
+        return sendAsync("PUT");
+    }
+
+    /**
+     * Performs an HTTP DELETE on the asynchronous request executor.
+     *
+     * @return The request response wrapped by {@link HttpEasyReader}, completes exceptionally with {@link HttpResponseException}
+     *         if the request failed or IOException for connection errors
+     */
+    public CompletableFuture<HttpEasyReader> deleteAsync() {
+        return sendAsync("DELETE");
+    }
+
+    private CompletableFuture<HttpEasyReader> sendAsync(String requestMethod) {
+        CompletableFuture<HttpEasyReader> future = new CompletableFuture<>();
+        String host;
+
+        beginSend();
+
+        try {
+            host = getHostKey();
+        } catch (MalformedURLException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        deferLogging = true;
+
+        client().getAsyncExecutor().execute(host, () -> {
+            HttpEasyReader reader = null;
+            Throwable failure = null;
+
+            try {
+                reader = new HttpEasyReader(getConnectionMethod(requestMethod), this);
+            } catch (Throwable t) {
+                failure = t;
+            }
+
+            // Log before completing so callers waiting on the response see its log entries first
+            if (logManager != null) {
+                logManager.writeDeferred();
+            }
+
+            if (failure == null) {
+                future.complete(reader);
+            } else {
+                future.completeExceptionally(failure);
+            }
+        }, future::completeExceptionally);
+
+        return future;
+    }
+
     public LogManager getLogManager() {
         return logManager;
     }
 
-    private HttpURLConnection getConnectionMethod(String requestMethod) throws IOException {
-        int fifteenSeconds = 15 * 1000;
+    /**
+     * @return The host and port the request will be sent to, used to limit concurrent requests per host
+     * @throws MalformedURLException if the URL is invalid
+     */
+    String getHostKey() throws MalformedURLException {
+        return hostKey(getURL());
+    }
+
+    private static String hostKey(URL url) {
+        int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+
+        return url.getHost() + ":" + port;
+    }
+
+    /**
+     * Send the request on the calling thread, holding back its log entries until the caller writes or discards them.
+     */
+    HttpEasyReader sendDeferred(String requestMethod) throws HttpResponseException, IOException {
+        return new HttpEasyReader(connectDeferred(requestMethod), this);
+    }
+
+    /**
+     * Open the connection and send the request, holding back its log entries until the caller writes or discards them.
+     */
+    HttpConnection connectDeferred(String requestMethod) throws IOException {
+        beginSend();
+        deferLogging = true;
+
+        return getConnectionMethod(requestMethod);
+    }
+
+    /**
+     * @return A copy of this request that can be sent independently of it, the body and fields are shared so only suitable for
+     *         requests without a body
+     */
+    HttpEasy copy() {
+        // Copies are sent as part of this request so keep its settings
+        HttpEasy copy = new HttpEasy(client());
+
+        copy.ignoreResponseCodes = ignoreResponseCodes;
+        copy.ignoreResponseFamily = ignoreResponseFamily;
+        copy.authUser = authUser;
+        copy.authPassword = authPassword;
+        copy.baseUrl = baseUrl;
+        copy.path = path;
+        copy.query = query;
+        copy.startToken = startToken;
+        copy.endToken = endToken;
+        copy.urlParams = urlParams;
+        copy.dataContentType = dataContentType;
+        copy.rawData = rawData;
+        copy.rawFileName = rawFileName;
+        copy.rawDataMediaType = rawDataMediaType;
+        copy.rawDataSerializer = rawDataSerializer;
+        copy.rawDataStreaming = rawDataStreaming;
+        copy.headers = new LinkedHashMap<>(headers);
+        copy.fields = fields;
+        copy.timeout = timeout;
+        copy.logWriter = logWriter;
+        copy.logRequestDetails = logRequestDetails;
+        copy.trustAllCertificates = trustAllCertificates;
+        copy.trustAllHosts = trustAllHosts;
+        copy.transport = transport;
+        copy.reuseConnection = reuseConnection;
+        copy.compressResponses = compressResponses;
+        copy.compressRequests = compressRequests;
+        copy.useCache = useCache;
+        copy.hedging = hedging;
+        copy.hedgingSet = hedgingSet;
+        copy.includeEmptyValues = includeEmptyValues;
+        copy.template = template;
+
+        return copy;
+    }
+
+    /**
+     * @return A copy of this request for fetching all or part of a download, the response is neither compressed, cached nor
+     *         logged in detail so that the body is left untouched for the caller
+     */
+    HttpEasy downloadCopy() {
+        HttpEasy copy = copy();
+
+        copy.compressResponses = Optional.of(false);
+        copy.logRequestDetails = Optional.of(false);
+        copy.useCache = false;
+
+        return copy;
+    }
+
+    /**
+     * Take on the log of the copy that was sent in place of this request.
+     */
+    void completedBy(HttpEasy copy) {
+        this.logManager = copy.logManager;
+        this.timings = copy.timings;
+    }
+
+    /**
+     * @return Timings of the last time this request was sent
+     */
+    RequestTimings getTimings() {
+        return timings;
+    }
+
+    boolean isReuseConnection() {
+        return reuseConnection.orElse(client().isReuseConnections());
+    }
+
+    boolean isCompressResponses() {
+        return compressResponses.orElse(client().isCompressResponses());
+    }
+
+    Gson getGson() {
+        return client().getGson();
+    }
+
+    private HttpConnection getConnectionMethod(String requestMethod) throws IOException {
         DataWriter dataWriter = null;
         URL url = getURL();
-        HttpURLConnection connection = getConnection(url);
 
-        setHeaders(connection);
+        this.timings = new RequestTimings(client().getRequestMetrics(), RequestMetrics.endpoint(requestMethod, hostKey(url), pathTemplate()));
 
-        connection.setRequestMethod(requestMethod);
-        connection.setUseCaches(false);
+        HttpEasyClient settings = client();
 
-        if (timeout != null) {
-            connection.setConnectTimeout(timeout);
-            connection.setReadTimeout(timeout);
-        } else {
-            connection.setConnectTimeout(fifteenSeconds);
+        this.logManager = new LogManager(logWriter.orElse(settings.getLogWriter()), settings.isLogRequest(),
+                logRequestDetails.orElse(settings.isLogRequestDetails()), settings.getSensitiveParameters());
+
+        if (deferLogging) {
+            this.logManager.deferOutput();
         }
 
-        connection.setInstanceFollowRedirects(false);
+        HttpConnection connection = getConnection(url);
+
+        setHeaders(connection);
+
+        connection.setRequestMethod(requestMethod);
 
         if (requestMethod.equals("POST") || requestMethod.equals("PUT")) {
             dataWriter = getDataWriter(url, connection);
@@ -680,16 +1205,23 @@ public class HttpEasy {
             }
         }
 
-        this.logManager = new LogManager(logWriter.orElse(HttpEasyDefaults.getDefaultLogWriter()), logRequestDetails.orElse(HttpEasyDefaults.getLogRequestDetails()));
-
         try {
             logRequest(connection, requestMethod, url);
 
+            long started = System.nanoTime();
             connection.connect();
 
+            if (!connection.isConnectDeferred()) {
+                timings.record(Phase.CONNECT, System.nanoTime() - started);
+            }
+
             if (dataWriter != null) {
+                started = System.nanoTime();
                 dataWriter.write(logManager);
+                timings.record(Phase.WRITE, System.nanoTime() - started);
             }
+
+            timings.requestSent();
         } finally {
             if (this.logManager.isLogRequestDetails()) {
                 this.logManager.flushRequest();
@@ -701,6 +1233,47 @@ public class HttpEasy {
         return connection;
     }
 
+    private void acquirePermit(URL url) throws InterruptedIOException {
+        RateLimiter rateLimiter = client().getRateLimiter();
+
+        if (rateLimiter == null) {
+            return;
+        }
+
+        try {
+            long waited = rateLimiter.acquire(hostKey(url));
+
+            if (waited > 0) {
+                logManager.info("Rate limited, waited {0}ms to send request", TimeUnit.NANOSECONDS.toMillis(waited));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting to send request to " + url);
+        }
+    }
+
+    /**
+     * Pause requests to the host if the server responded that it is overloaded and said when to try again.
+     */
+    void responseReceived(HttpConnection connection) throws IOException {
+        RateLimiter rateLimiter = client().getRateLimiter();
+
+        if (rateLimiter == null) {
+            return;
+        }
+
+        int responseCode = connection.getResponseCode();
+
+        if (responseCode == 429 || responseCode == HttpURLConnection.HTTP_UNAVAILABLE) {
+            String host = hostKey(connection.getURL());
+            long paused = rateLimiter.retryAfter(host, connection.getHeaderField("Retry-After"));
+
+            if (paused > 0 && logManager != null) {
+                logManager.info("Server asked to retry after {0}ms, pausing requests to {1}", paused, host);
+            }
+        }
+    }
+
     private boolean skipEmptyParameter(String name, Object value) {
         if (name == null || name.isEmpty()) {
             return true;
@@ -719,8 +1292,8 @@ public class HttpEasy {
         return false;
     }
 
-    private void logRequest(HttpURLConnection connection, String requestMethod, URL url) {
-        String user = authUser.orElse(HttpEasyDefaults.getAuthUser());
+    private void logRequest(HttpConnection connection, String requestMethod, URL url) {
+        String user = authUser.orElse(client().getAuthUser());
         String authMsg = "";
 
         if (user != null && !user.isEmpty()) {
@@ -729,7 +1302,7 @@ public class HttpEasy {
 
         String logUrl = url.toString();
 
-        for (String key : HttpEasyDefaults.getSensitiveParameters()) {
+        for (String key : client().getSensitiveParameters()) {
             logUrl = logUrl.replaceFirst("(?i)(?<=\\?|&|^)" + key + "=.*?(?=$|&)", key + "=*****");
         }
 
@@ -738,7 +1311,7 @@ public class HttpEasy {
         if (logManager.isLogRequestDetails()) {
             logManager.getBuffer().write("Request Method: ").writeLine(connection.getRequestMethod());
             logManager.getBuffer().write("Request URI: ").writeLine(connection.getURL().toString());
-            logManager.getBuffer().write("Proxy: ").writeLine(HttpEasyDefaults.getProxy(url).toString());
+            logManager.getBuffer().write("Proxy: ").writeLine(client().getProxy(url).toString());
             if (!Strings.isNullOrEmpty(user)) {
                 logManager.getBuffer().write("Basic Authorization User: ").writeLine(user);
             }
@@ -746,7 +1319,7 @@ public class HttpEasy {
             if (query.length() > 0) {
                 logManager.getBuffer().writeLine("Query Params:");
                 for (String value : query.toString().split("&")) {
-                    for (String key : HttpEasyDefaults.getSensitiveParameters()) {
+                    for (String key : client().getSensitiveParameters()) {
                         value = value.replaceFirst("(?i)(?<=\\?|&|^)" + key + "=.*?(?=$|&)", key + "=*****");
                     }
                     logManager.getBuffer().writeIndentedLine(value);
@@ -774,8 +1347,9 @@ public class HttpEasy {
         }
     }
 
-    private DataWriter getDataWriter(URL url, HttpURLConnection connection) throws UnsupportedEncodingException {
+    private DataWriter getDataWriter(URL url, HttpConnection connection) throws IOException {
         DataWriter dataWriter = null;
+        int compressionThreshold = compressRequests.orElse(client().getCompressRequestsThreshold());
 
         if (dataContentType == DataContentType.AUTO_SELECT) {
             if (!fields.isEmpty()) {
@@ -790,7 +1364,11 @@ public class HttpEasy {
         // TODO Java formatter saves in this format (correctly), checkstyle expects case to be indented. How resolve the conflict?
         switch (dataContentType) {
         case RAW:
-            dataWriter = new RawDataWriter(connection, rawData, rawDataMediaType, rawFileName);
+            dataWriter = new RawDataWriter(connection, rawData, rawDataMediaType, rawFileName, compressionThreshold);
+            break;
+
+        case OBJECT:
+            dataWriter = new ObjectDataWriter(connection, rawDataSerializer, rawDataMediaType, rawDataStreaming, compressionThreshold);
             break;
 
         case FORM_DATA:
@@ -798,7 +1376,7 @@ public class HttpEasy {
             break;
 
         case X_WWW_FORM_URLENCODED:
-            dataWriter = new FormUrlEncodedDataWriter(connection, url.getQuery(), fields);
+            dataWriter = new FormUrlEncodedDataWriter(connection, url.getQuery(), fields, compressionThreshold);
             break;
 
         case AUTO_SELECT:
@@ -825,41 +1403,65 @@ public class HttpEasy {
         return false;
     }
 
-    private HttpURLConnection getConnection(URL url) throws IOException {
-        HttpURLConnection connection;
-        Proxy useProxy = HttpEasyDefaults.getProxy(url);
+    private HttpConnection getConnection(URL url) throws IOException {
+        int fifteenSeconds = 15 * 1000;
+        HttpEasyClient settings = client();
 
-        if (url.getProtocol().equalsIgnoreCase("https")) {
-            connection = (HttpsURLConnection) url.openConnection(useProxy);
+        long started = System.nanoTime();
+        Proxy proxy = settings.getProxy(url);
 
-            if (trustAllCertificates.orElse(HttpEasyDefaults.isTrustAllCertificates())) {
-                try {
-                    ((HttpsURLConnection) connection).setSSLSocketFactory(SSLUtilities.getTrustAllCertificatesSocketFactory());
-                } catch (KeyManagementException | NoSuchAlgorithmException e) {
-                    throw new IOException("Unable to trust all certificates", e);
-                }
-            }
+        if (timings != null) {
+            timings.record(Phase.PROXY_LOOKUP, System.nanoTime() - started);
+        }
 
-            if (trustAllHosts.orElse(HttpEasyDefaults.isTrustAllHosts())) {
-                ((HttpsURLConnection) connection).setHostnameVerifier(SSLUtilities.getTrustAllHostsVerifier());
-            }
-        } else {
-            connection = (HttpURLConnection) url.openConnection(useProxy);
+        ConnectionOptions options = new ConnectionOptions(
+                proxy,
+                trustAllCertificates.orElse(settings.isTrustAllCertificates()),
+                trustAllHosts.orElse(settings.isTrustAllHosts()),
+                timeout != null ? timeout : fifteenSeconds,
+                timeout != null ? timeout : 0,
+                settings.getSslContext());
+
+        HttpTransport selected = transport.orElse(settings.getTransport());
+
+        if (settings.getRateLimiter() != null) {
+            // Only requests that reach the server use up a permit, not those answered by the cache or a cassette
+            HttpTransport server = selected;
+            selected = (target, targetOptions) -> {
+                acquirePermit(target);
+                return server.openConnection(target, targetOptions);
+            };
         }
 
-        return connection;
+        HttpResponseCache cache = settings.getResponseCache();
+
+        if (cache != null && useCache) {
+            selected = cache.wrap(selected, settings.getSensitiveParameters());
+        }
+
+        Cassette cassette = settings.getCassette();
+
+        if (cassette != null) {
+            selected = cassette.wrap(selected, settings.getSensitiveParameters());
+        }
+
+        return selected.openConnection(url, options);
     }
 
     private URL getURL() throws MalformedURLException {
         String spec = "";
 
-        if (!containsProtol(path) && !containsProtol(query.toString())) {
-            spec = baseUrl.orElse(HttpEasyDefaults.getBaseUrl());
-        }
+        if (template != null) {
+            spec = template.expand(client().getBaseUrl(), urlParams, query);
+        } else {
+            if (!containsProtol(path) && !containsProtol(query.toString())) {
+                spec = baseUrl.orElse(client().getBaseUrl());
+            }
 
-        spec = appendSegmentToUrl(spec, path, "/");
-        spec = appendSegmentToUrl(spec, query.toString(), "?");
-        spec = replaceParameters(spec);
+            spec = appendSegmentToUrl(spec, path, "/");
+            spec = appendSegmentToUrl(spec, query.toString(), "?");
+            spec = replaceParameters(spec);
+        }
 
         URL url = new URL(spec);
 
@@ -879,7 +1481,29 @@ public class HttpEasy {
         return url;
     }
 
-    private boolean containsProtol(String url) {
+    /**
+     * @return The path of the request before the URL parameters are replaced, for grouping timings of the same endpoint
+     */
+    private String pathTemplate() {
+        if (template != null) {
+            return template.getPathTemplate(client().getBaseUrl());
+        }
+
+        String spec = containsProtol(path) ? "" : baseUrl.orElse(client().getBaseUrl());
+
+        spec = appendSegmentToUrl(spec, path, "/");
+        spec = SCHEME_AND_HOST.matcher(spec).replaceFirst("");
+
+        int queryStart = spec.indexOf('?');
+
+        if (queryStart >= 0) {
+            spec = spec.substring(0, queryStart);
+        }
+
+        return spec.startsWith("/") ? spec : "/" + spec;
+    }
+
+    static boolean containsProtol(String url) {
         if (url == null || url.isEmpty()) {
             return false;
         }
@@ -887,7 +1511,7 @@ public class HttpEasy {
         return url.contains("//");
     }
 
-    private String appendSegmentToUrl(String url, String segment, String join) {
+    static String appendSegmentToUrl(String url, String segment, String join) {
         if (url == null || url.isEmpty()) {
             return segment;
         }
@@ -929,18 +1553,28 @@ public class HttpEasy {
         return url;
     }
 
-    private void setHeaders(HttpURLConnection connection) throws UnsupportedEncodingException {
+    private void setHeaders(HttpConnection connection) throws UnsupportedEncodingException {
         setProxyAuthorizationHeader(connection);
         setAuthorizationHeader(connection);
 
+        if (isCompressResponses()) {
+            connection.setRequestProperty("Accept-Encoding", "gzip, deflate");
+        }
+
+        if (template != null) {
+            for (Map.Entry<String, String> header : template.getHeaders().entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+        }
+
         for (Map.Entry<String, Object> header : headers.entrySet()) {
             connection.setRequestProperty(header.getKey(), String.valueOf(header.getValue()));
         }
     }
 
     String getAuthorization() {
-        String user = authUser.orElse(HttpEasyDefaults.getAuthUser());
-        String password = authPassword.orElse(HttpEasyDefaults.getAuthPassword());
+        String user = authUser.orElse(client().getAuthUser());
+        String password = authPassword.orElse(client().getAuthPassword());
 
         if (user == null || user.isEmpty() || password == null || password.isEmpty()) {
             return null;
@@ -949,7 +1583,7 @@ public class HttpEasy {
         return user + ":" + password;
     }
 
-    private void setAuthorizationHeader(HttpURLConnection connection) {
+    private void setAuthorizationHeader(HttpConnection connection) {
         String authString = getAuthorization();
 
         if (authString != null) {
@@ -957,16 +1591,19 @@ public class HttpEasy {
         }
     }
 
-    private void setProxyAuthorizationHeader(HttpURLConnection connection) {
-        if (HttpEasyDefaults.getProxyUser() == null || HttpEasyDefaults.getProxyUser().isEmpty()) {
+    private void setProxyAuthorizationHeader(HttpConnection connection) {
+        String proxyUser = client().getProxyUser();
+        String proxyPassword = client().getProxyPassword();
+
+        if (proxyUser == null || proxyUser.isEmpty()) {
             return;
         }
 
-        if (HttpEasyDefaults.getProxyPassword() == null || HttpEasyDefaults.getProxyPassword().isEmpty()) {
+        if (proxyPassword == null || proxyPassword.isEmpty()) {
             return;
         }
 
-        String usernameAndPassword = HttpEasyDefaults.getProxyUser() + ":" + HttpEasyDefaults.getProxyPassword();
+        String usernameAndPassword = proxyUser + ":" + proxyPassword;
         // String proxyAuthString = "Basic " + Base64.encodeBase64String(usernameAndPassword.getBytes(StandardCharsets.UTF_8));
         String proxyAuthString = "Basic " + Base64.getEncoder().encodeToString(usernameAndPassword.getBytes(StandardCharsets.UTF_8));
         connection.setRequestProperty("Proxy-Authorization", proxyAuthString);
@@ -976,6 +1613,6 @@ public class HttpEasy {
      * Supported form types.
      */
     private enum DataContentType {
-        AUTO_SELECT, RAW, X_WWW_FORM_URLENCODED, FORM_DATA;
+        AUTO_SELECT, RAW, OBJECT, X_WWW_FORM_URLENCODED, FORM_DATA;
     }
 }
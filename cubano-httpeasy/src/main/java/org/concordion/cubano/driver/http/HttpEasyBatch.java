@@ -0,0 +1,342 @@
+package org.concordion.cubano.driver.http;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.concordion.cubano.driver.http.concurrent.HostLimitedExecutor;
+import org.concordion.cubano.driver.http.logging.LogManager;
+
+/**
+ * Runs many requests in parallel, limiting how many run at once overall and against any single host.
+ * <p>
+ * Failed requests are collected rather than stopping the batch unless {@link #abortOnFailure(boolean)} is set. Each request's log
+ * entries are written as a single block once it completes, and for batches larger than {@link #summariseOver(int)} only failed
+ * requests are logged in full along with a summary of the whole batch.
+ * </p>
+ *
+ * <pre>
+ * BatchResults&lt;String&gt; results = HttpEasyBatch.create()
+ *     .maxConcurrency(20)
+ *     .maxPerHost(10)
+ *     .post(customers.stream()
+ *         .map(c -&gt; HttpEasy.request().path("customer").data(c.toJson(), MediaType.JSON_UTF_8))
+ *         .collect(Collectors.toList()))
+ *     .execute(HttpEasyReader::asString);
+ *
+ * assertThat(results.getFailures(), is(empty()));
+ * </pre>
+ */
+public class HttpEasyBatch {
+    private static final AtomicInteger BATCH_NUMBER = new AtomicInteger();
+
+    private final List<Request> requests = new ArrayList<>();
+    private int maxConcurrency = 16;
+    private int maxPerHost = 6;
+    private boolean abortOnFailure = false;
+    private int summariseOver = 10;
+
+    /**
+     * Function applied to each response on the thread that sent the request, so the response body is read while other requests
+     * are still running and the connection is released for reuse.
+     *
+     * @param <T> Type returned
+     */
+    @FunctionalInterface
+    public interface ResponseHandler<T> {
+        T handle(HttpEasyReader reader) throws IOException;
+    }
+
+    private static class Request {
+        private final HttpEasy request;
+        private final String method;
+
+        Request(HttpEasy request, String method) {
+            this.request = request;
+            this.method = method;
+        }
+    }
+
+    /**
+     * @return A new empty batch
+     */
+    public static HttpEasyBatch create() {
+        return new HttpEasyBatch();
+    }
+
+    /**
+     * @param maxConcurrency Maximum number of requests that may run at the same time, the default is 16
+     * @return A self reference
+     */
+    public HttpEasyBatch maxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+
+        this.maxConcurrency = maxConcurrency;
+        return this;
+    }
+
+    /**
+     * @param maxPerHost Maximum number of requests to the same host that may run at the same time, the default is 6
+     * @return A self reference
+     */
+    public HttpEasyBatch maxPerHost(int maxPerHost) {
+        if (maxPerHost < 1) {
+            throw new IllegalArgumentException("maxPerHost must be at least 1");
+        }
+
+        this.maxPerHost = maxPerHost;
+        return this;
+    }
+
+    /**
+     * @param abortOnFailure Set to true to stop sending requests once one has failed, requests not yet sent are reported as
+     *                       skipped, the default is false
+     * @return A self reference
+     */
+    public HttpEasyBatch abortOnFailure(boolean abortOnFailure) {
+        this.abortOnFailure = abortOnFailure;
+        return this;
+    }
+
+    /**
+     * @param requestCount Batches with more than this number of requests only log failed requests and a summary, the default is 10
+     * @return A self reference
+     */
+    public HttpEasyBatch summariseOver(int requestCount) {
+        this.summariseOver = requestCount;
+        return this;
+    }
+
+    /**
+     * Add a request to the batch, the request must not be modified or sent elsewhere once added.
+     *
+     * @param request Request to send
+     * @param method  HTTP method, eg GET, POST
+     * @return A self reference
+     */
+    public HttpEasyBatch add(HttpEasy request, String method) {
+        requests.add(new Request(request, method));
+        return this;
+    }
+
+    /**
+     * Add requests to be sent as an HTTP GET.
+     *
+     * @param requests Requests to send
+     * @return A self reference
+     */
+    public HttpEasyBatch get(HttpEasy... requests) {
+        Arrays.stream(requests).forEach(r -> add(r, "GET"));
+        return this;
+    }
+
+    /**
+     * Add requests to be sent as an HTTP GET.
+     *
+     * @param requests Requests to send
+     * @return A self reference
+     */
+    public HttpEasyBatch get(Iterable<HttpEasy> requests) {
+        requests.forEach(r -> add(r, "GET"));
+        return this;
+    }
+
+    /**
+     * Add requests to be sent as an HTTP POST.
+     *
+     * @param requests Requests to send
+     * @return A self reference
+     */
+    public HttpEasyBatch post(HttpEasy... requests) {
+        Arrays.stream(requests).forEach(r -> add(r, "POST"));
+        return this;
+    }
+
+    /**
+     * Add requests to be sent as an HTTP POST.
+     *
+     * @param requests Requests to send
+     * @return A self reference
+     */
+    public HttpEasyBatch post(Iterable<HttpEasy> requests) {
+        requests.forEach(r -> add(r, "POST"));
+        return this;
+    }
+
+    /**
+     * Add requests to be sent as an HTTP PUT.
+     *
+     * @param requests Requests to send
+     * @return A self reference
+     */
+    public HttpEasyBatch put(HttpEasy... requests) {
+        Arrays.stream(requests).forEach(r -> add(r, "PUT"));
+        return this;
+    }
+
+    /**
+     * Add requests to be sent as an HTTP PUT.
+     *
+     * @param requests Requests to send
+     * @return A self reference
+     */
+    public HttpEasyBatch put(Iterable<HttpEasy> requests) {
+        requests.forEach(r -> add(r, "PUT"));
+        return this;
+    }
+
+    /**
+     * Add requests to be sent as an HTTP DELETE.
+     *
+     * @param requests Requests to send
+     * @return A self reference
+     */
+    public HttpEasyBatch delete(HttpEasy... requests) {
+        Arrays.stream(requests).forEach(r -> add(r, "DELETE"));
+        return this;
+    }
+
+    /**
+     * Add requests to be sent as an HTTP DELETE.
+     *
+     * @param requests Requests to send
+     * @return A self reference
+     */
+    public HttpEasyBatch delete(Iterable<HttpEasy> requests) {
+        requests.forEach(r -> add(r, "DELETE"));
+        return this;
+    }
+
+    /**
+     * @return Number of requests in the batch
+     */
+    public int size() {
+        return requests.size();
+    }
+
+    /**
+     * Send all the requests and wait for them to complete, the connections are left for the caller to read and release.
+     *
+     * @return The readers for each request, in the order they were added
+     * @throws InterruptedException if interrupted while waiting, requests not yet sent are abandoned
+     */
+    public BatchResults<HttpEasyReader> execute() throws InterruptedException {
+        return execute(reader -> reader);
+    }
+
+    /**
+     * Send all the requests and wait for them to complete.
+     *
+     * @param <T>     Type returned by the handler
+     * @param handler Applied to each response as soon as it is received, eg HttpEasyReader::asString
+     * @return The handler's results for each request, in the order they were added
+     * @throws InterruptedException if interrupted while waiting, requests not yet sent are abandoned
+     */
+    public <T> BatchResults<T> execute(ResponseHandler<T> handler) throws InterruptedException {
+        int count = requests.size();
+        boolean summarise = count > summariseOver;
+        List<BatchResults.Result<T>> results = new ArrayList<>(count);
+        CountDownLatch remaining = new CountDownLatch(count);
+        AtomicBoolean aborted = new AtomicBoolean(false);
+
+        for (int i = 0; i < count; i++) {
+            results.add(null);
+        }
+
+        String threadPrefix = "HttpEasyBatch-" + BATCH_NUMBER.incrementAndGet() + "-";
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxConcurrency, Math.max(1, count)), r -> {
+            Thread thread = new Thread(r, threadPrefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        HostLimitedExecutor hostLimited = new HostLimitedExecutor(executor, maxPerHost);
+        long started = System.nanoTime();
+
+        try {
+            for (int i = 0; i < count; i++) {
+                int index = i;
+                Request request = requests.get(i);
+                String host;
+
+                try {
+                    host = request.request.getHostKey();
+                } catch (IOException e) {
+                    results.set(index, new BatchResults.Result<>(index, null, e, false, 0));
+                    remaining.countDown();
+                    continue;
+                }
+
+                hostLimited.execute(host, () -> {
+                    try {
+                        results.set(index, send(index, request, handler, aborted, summarise));
+                    } finally {
+                        remaining.countDown();
+                    }
+                });
+            }
+
+            remaining.await();
+        } catch (InterruptedException e) {
+            aborted.set(true);
+            executor.shutdownNow();
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+
+        BatchResults<T> batchResults = new BatchResults<>(results, System.nanoTime() - started, aborted.get());
+
+        if (summarise) {
+            LogWriter logWriter = HttpEasyDefaults.getDefaultLogWriter();
+
+            if (logWriter != null && HttpEasyDefaults.getLogRequest()) {
+                logWriter.info("Batch of " + batchResults);
+            }
+        }
+
+        return batchResults;
+    }
+
+    private <T> BatchResults.Result<T> send(int index, Request request, ResponseHandler<T> handler, AtomicBoolean aborted, boolean summarise) {
+        if (aborted.get()) {
+            return new BatchResults.Result<>(index, null, new CancellationException("Batch aborted after an earlier request failed"), true, 0);
+        }
+
+        long started = System.nanoTime();
+        T value = null;
+        Throwable failure = null;
+
+        try {
+            value = handler.handle(request.request.sendDeferred(request.method));
+        } catch (Throwable t) {
+            failure = t;
+
+            if (abortOnFailure) {
+                aborted.set(true);
+            }
+        }
+
+        long latency = System.nanoTime() - started;
+        LogManager logManager = request.request.getLogManager();
+
+        if (logManager != null) {
+            if (summarise && failure == null) {
+                logManager.discardDeferred();
+            } else {
+                logManager.writeDeferred();
+            }
+        }
+
+        return new BatchResults.Result<>(index, value, failure, false, latency);
+    }
+}
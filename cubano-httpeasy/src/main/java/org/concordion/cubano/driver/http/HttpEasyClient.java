@@ -0,0 +1,715 @@
+package org.concordion.cubano.driver.http;
+
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import javax.net.ssl.SSLContext;
+
+import org.concordion.cubano.driver.http.cache.Cassette;
+import org.concordion.cubano.driver.http.cache.HttpResponseCache;
+import org.concordion.cubano.driver.http.cache.ProxyCache;
+import org.concordion.cubano.driver.http.concurrent.HedgingPolicy;
+import org.concordion.cubano.driver.http.concurrent.HostLimitedExecutor;
+import org.concordion.cubano.driver.http.concurrent.RateLimiter;
+import org.concordion.cubano.driver.http.logging.LoggerLogWriter;
+import org.concordion.cubano.driver.http.metrics.RequestMetrics;
+import org.concordion.cubano.driver.http.transport.HttpTransport;
+import org.concordion.cubano.driver.http.transport.HttpTransports;
+
+import com.github.markusbernhardt.proxy.ProxySearch;
+import com.github.markusbernhardt.proxy.util.Logger;
+import com.google.gson.Gson;
+
+/**
+ * An immutable set of settings, along with the proxy selector, SSL context and caches that go with them, that requests can be
+ * sent with.
+ * <p>
+ * Requests created by {@link HttpEasy#request()} use the client configured through {@link HttpEasyDefaults}. Where threads or
+ * tenants need different settings each can build its own client and create requests from that instead, the clients share no
+ * mutable state so there is no contention between them.
+ * </p>
+ *
+ * <pre>
+ * HttpEasyClient tenant = HttpEasyClient.builder()
+ *     .baseUrl("https://tenant-a.example.com")
+ *     .authorization("tenant-a", password)
+ *     .build();
+ *
+ * String customer = tenant.request().path("customer/{id}").urlParameters(id).get().asString();
+ * </pre>
+ */
+public final class HttpEasyClient {
+    private static final List<String> DEFAULT_NON_PROXY_HOSTS = splitHosts(HttpEasyDefaults.DEFAULT_PROXY_BYPASS_HOSTS);
+
+    private final String baseUrl;
+    private final boolean trustAllCertificates;
+    private final boolean trustAllHosts;
+    private final SSLContext sslContext;
+    private final List<String> sensitiveParameters;
+    private final HttpTransport transport;
+    private final boolean reuseConnections;
+    private final boolean compressResponses;
+    private final int compressRequestsThreshold;
+    private final HttpResponseCache responseCache;
+    private final Cassette cassette;
+    private final HedgingPolicy hedgingPolicy;
+    private final RateLimiter rateLimiter;
+    private final RequestMetrics requestMetrics;
+    private final Gson gson;
+    private final String authUser;
+    private final String authPassword;
+    private final ProxyConfiguration proxyConfiguration;
+    private final ProxySelector proxySelector;
+    private final Proxy proxy;
+    private final String proxyUser;
+    private final String proxyPassword;
+    private final boolean bypassProxy;
+    private final List<String> nonProxyHosts;
+    private final Pattern nonProxyHostsPattern;
+    private final long proxyCacheTtl;
+    private final ProxyCache proxyCache;
+    private final int asyncThreads;
+    private final int maxRequestsPerHost;
+    private final ExecutorService asyncExecutor;
+    private final AsyncRequests asyncRequests;
+    private final LogWriter logWriter;
+    private final boolean logRequest;
+    private final boolean logRequestDetails;
+
+    private HttpEasyClient(Builder builder) {
+        this.baseUrl = builder.baseUrl;
+        this.trustAllCertificates = builder.trustAllCertificates;
+        this.trustAllHosts = builder.trustAllHosts;
+        this.sslContext = builder.sslContext;
+        this.sensitiveParameters = Collections.unmodifiableList(new ArrayList<>(builder.sensitiveParameters));
+        this.transport = builder.transport;
+        this.reuseConnections = builder.reuseConnections;
+        this.compressResponses = builder.compressResponses;
+        this.compressRequestsThreshold = builder.compressRequestsThreshold;
+        this.responseCache = builder.responseCache;
+        this.cassette = builder.cassette;
+        this.hedgingPolicy = builder.hedgingPolicy;
+        this.rateLimiter = builder.rateLimiter;
+        this.requestMetrics = builder.requestMetrics;
+        this.gson = builder.gson;
+        this.authUser = builder.authUser;
+        this.authPassword = builder.authPassword;
+        this.proxyConfiguration = builder.proxyConfiguration;
+        this.proxy = builder.proxy;
+        this.proxyUser = builder.proxyUser;
+        this.proxyPassword = builder.proxyPassword;
+        this.bypassProxy = builder.bypassProxy;
+        this.nonProxyHosts = builder.nonProxyHosts;
+        this.nonProxyHostsPattern = compileHosts(builder.nonProxyHosts);
+        this.proxyCacheTtl = builder.proxyCacheTtl;
+        this.asyncThreads = builder.asyncThreads;
+        this.maxRequestsPerHost = builder.maxRequestsPerHost;
+        this.asyncExecutor = builder.asyncExecutor;
+        this.logWriter = builder.logWriter;
+        this.logRequest = builder.logRequest;
+        this.logRequestDetails = builder.logRequestDetails;
+
+        if (builder.proxySelector != null || proxyConfiguration != ProxyConfiguration.AUTOMATIC) {
+            this.proxySelector = builder.proxySelector;
+        } else {
+            this.proxySelector = AutomaticProxySelector.INSTANCE;
+        }
+
+        // Keep the resources of the client this was built from unless the settings they depend on have changed
+        if (builder.proxyCache != null) {
+            this.proxyCache = builder.proxyCache;
+        } else {
+            this.proxyCache = proxyCacheTtl > 0 ? new ProxyCache(proxyCacheTtl) : null;
+        }
+
+        this.asyncRequests = builder.asyncRequests != null ? builder.asyncRequests : new AsyncRequests();
+    }
+
+    /**
+     * @return A builder with the default settings
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return A builder starting from this client's settings, the client itself is unchanged
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * @return A new request that will be sent with this client's settings
+     */
+    public HttpEasy request() {
+        return new HttpEasy(this);
+    }
+
+    /**
+     * @param url Full URL, or path to append to this client's base URL, containing {...} parameters
+     * @return A template for creating requests that will be sent with this client's settings, see {@link RequestTemplate}
+     */
+    public RequestTemplate template(String url) {
+        return RequestTemplate.create(this, url);
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public boolean isTrustAllCertificates() {
+        return trustAllCertificates;
+    }
+
+    public boolean isTrustAllHosts() {
+        return trustAllHosts;
+    }
+
+    /**
+     * @return SSL context used for HTTPS connections, or null for the JVM default
+     */
+    public SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    public List<String> getSensitiveParameters() {
+        return sensitiveParameters;
+    }
+
+    public HttpTransport getTransport() {
+        return transport;
+    }
+
+    public boolean isReuseConnections() {
+        return reuseConnections;
+    }
+
+    public boolean isCompressResponses() {
+        return compressResponses;
+    }
+
+    public int getCompressRequestsThreshold() {
+        return compressRequestsThreshold;
+    }
+
+    public HttpResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    public Cassette getCassette() {
+        return cassette;
+    }
+
+    public HedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public RequestMetrics getRequestMetrics() {
+        return requestMetrics;
+    }
+
+    public Gson getGson() {
+        return gson;
+    }
+
+    public String getAuthUser() {
+        return authUser;
+    }
+
+    public String getAuthPassword() {
+        return authPassword;
+    }
+
+    public ProxyConfiguration getProxyConfiguration() {
+        return proxyConfiguration;
+    }
+
+    public String getProxyUser() {
+        return proxyUser;
+    }
+
+    public String getProxyPassword() {
+        return proxyPassword;
+    }
+
+    /**
+     * @return The cache of proxy decisions, or null if disabled
+     */
+    public ProxyCache getProxyCache() {
+        return proxyCache;
+    }
+
+    public LogWriter getLogWriter() {
+        return logWriter;
+    }
+
+    public boolean isLogRequest() {
+        return logRequest;
+    }
+
+    public boolean isLogRequestDetails() {
+        return logRequestDetails;
+    }
+
+    /**
+     * @param url URL being requested
+     * @return The proxy to send the request through, {@link Proxy#NO_PROXY} for a direct connection
+     */
+    public Proxy getProxy(URL url) {
+        if (proxyCache == null) {
+            return resolveProxy(url);
+        }
+
+        return proxyCache.get(url, this::resolveProxy);
+    }
+
+    private Proxy resolveProxy(URL url) {
+        if (proxyConfiguration == ProxyConfiguration.MANUAL) {
+            if (bypassProxy && isProxyBypassHost(url)) {
+                return Proxy.NO_PROXY;
+            }
+
+            return proxy;
+        }
+
+        Proxy selected = Proxy.NO_PROXY;
+
+        if (proxySelector != null) {
+            // Get list of proxies from default ProxySelector available for given URL
+            List<Proxy> proxies = proxySelector.select(getUri(url));
+
+            // Find first proxy for HTTP/S. Any DIRECT proxy in the list returned is only second choice
+            if (proxies != null) {
+                loop:
+                for (Proxy p : proxies) {
+                    switch (p.type()) {
+                    case HTTP:
+                        selected = p;
+                        break loop;
+                    case DIRECT:
+                        selected = p;
+                        break;
+                    default:
+                        // ignore other proxy types
+                    }
+                }
+            }
+        }
+
+        return selected;
+    }
+
+    // Some stuff to think about when we have time...
+    // TODO If system system properties http(s).nonProxyHosts are set do we actually need to do anything, documentation says that it's automatically handled.
+    // TODO Given that trying to use same nonPorxyHosts config setting for both Browser and HttpEasy is there any difference in format?
+    // eg: Do we need to cater for IPAdress ranges? http.nonProxyHosts doesn't specify but I believe browsers can cope with this...
+    private boolean isProxyBypassHost(URL url) {
+        String host = url.getHost().toLowerCase();
+
+        return nonProxyHostsPattern.matcher(host).matches();
+    }
+
+    private static URI getUri(URL url) {
+        try {
+            return url.toURI();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static List<String> splitHosts(String hosts) {
+        return Collections.unmodifiableList(Arrays.asList(Arrays.stream(hosts.split(",")).map(String::trim).map(String::toLowerCase).toArray(String[]::new)));
+    }
+
+    /**
+     * Combine the host patterns into a single regular expression so that a host can be checked against them all at once.
+     */
+    private static Pattern compileHosts(List<String> hosts) {
+        return Pattern.compile(hosts.stream().map(HttpEasyClient::escapePattern).collect(Collectors.joining("|", "(?:", ")")));
+    }
+
+    private static String escapePattern(String pattern) {
+        return Arrays.stream(pattern.split("\\*", -1)).map(part -> part.isEmpty() ? "" : Pattern.quote(part)).collect(Collectors.joining(".*"));
+    }
+
+    /**
+     * @return The executor used to run asynchronous requests
+     */
+    public HostLimitedExecutor getAsyncExecutor() {
+        return asyncRequests.get();
+    }
+
+    /**
+     * Shut down the executor this client created for asynchronous requests, letting any queued requests finish. Has no effect
+     * on an executor supplied to {@link Builder#asyncExecutor(ExecutorService)}.
+     */
+    void shutdownAsyncExecutor() {
+        asyncRequests.shutdown();
+    }
+
+    /**
+     * @param other Client to compare with
+     * @return true if both clients run asynchronous requests on the same executor, without creating it
+     */
+    boolean sharesAsyncExecutor(HttpEasyClient other) {
+        return asyncRequests == other.asyncRequests;
+    }
+
+    /**
+     * @return true once the executor for asynchronous requests has been created
+     */
+    boolean isAsyncExecutorStarted() {
+        return asyncRequests.executor != null;
+    }
+
+    /**
+     * The executor for asynchronous requests, created when first needed and shared by clients built from this one until the
+     * asynchronous settings change.
+     */
+    private final class AsyncRequests {
+        private volatile HostLimitedExecutor executor = null;
+        private boolean created = false;
+
+        HostLimitedExecutor get() {
+            HostLimitedExecutor current = executor;
+
+            if (current == null) {
+                synchronized (this) {
+                    current = executor;
+
+                    if (current == null) {
+                        ExecutorService service = asyncExecutor;
+
+                        if (service == null) {
+                            service = createAsyncExecutor(asyncThreads);
+                            created = true;
+                        }
+
+                        current = new HostLimitedExecutor(service, maxRequestsPerHost);
+                        executor = current;
+                    }
+                }
+            }
+
+            return current;
+        }
+
+        synchronized void shutdown() {
+            if (executor != null && created) {
+                ExecutorService service = (ExecutorService) executor.getExecutor();
+
+                executor.whenIdle(service::shutdown);
+            }
+        }
+    }
+
+    private static ExecutorService createAsyncExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "HttpEasy-async-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), factory);
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
+    /**
+     * The system proxy settings found by Proxy Vole, looked up once when first needed.
+     */
+    private static final class AutomaticProxySelector {
+        private static final ProxySelector INSTANCE = create();
+
+        private static ProxySelector create() {
+            Logger.setBackend(ProxyVoleLoggerFactory.getBackendLogger());
+            return ProxySearch.getDefaultProxySearch().getProxySelector();
+        }
+    }
+
+    /**
+     * Builds an {@link HttpEasyClient}, see {@link HttpEasyDefaults} for a description of each setting.
+     */
+    public static final class Builder {
+        private String baseUrl = "";
+        private boolean trustAllCertificates = false;
+        private boolean trustAllHosts = false;
+        private SSLContext sslContext = null;
+        private List<String> sensitiveParameters = new ArrayList<>();
+        private HttpTransport transport = HttpTransports.urlConnection();
+        private boolean reuseConnections = false;
+        private boolean compressResponses = false;
+        private int compressRequestsThreshold = -1;
+        private HttpResponseCache responseCache = null;
+        private Cassette cassette = null;
+        private HedgingPolicy hedgingPolicy = null;
+        private RateLimiter rateLimiter = null;
+        private RequestMetrics requestMetrics = null;
+        private Gson gson = JsonReader.getGson();
+        private String authUser = null;
+        private String authPassword = null;
+        private ProxyConfiguration proxyConfiguration = ProxyConfiguration.MANUAL;
+        private ProxySelector proxySelector = null;
+        private Proxy proxy = Proxy.NO_PROXY;
+        private String proxyUser = null;
+        private String proxyPassword = null;
+        private boolean bypassProxy = false;
+        private List<String> nonProxyHosts = DEFAULT_NON_PROXY_HOSTS;
+        private long proxyCacheTtl = 0;
+        private ProxyCache proxyCache = null;
+        private int asyncThreads = 16;
+        private int maxRequestsPerHost = 6;
+        private ExecutorService asyncExecutor = null;
+        private AsyncRequests asyncRequests = null;
+        private LogWriter logWriter = new LoggerLogWriter();
+        private boolean logRequest = true;
+        private boolean logRequestDetails = false;
+
+        private Builder() {
+        }
+
+        private Builder(HttpEasyClient client) {
+            this.baseUrl = client.baseUrl;
+            this.trustAllCertificates = client.trustAllCertificates;
+            this.trustAllHosts = client.trustAllHosts;
+            this.sslContext = client.sslContext;
+            this.sensitiveParameters = new ArrayList<>(client.sensitiveParameters);
+            this.transport = client.transport;
+            this.reuseConnections = client.reuseConnections;
+            this.compressResponses = client.compressResponses;
+            this.compressRequestsThreshold = client.compressRequestsThreshold;
+            this.responseCache = client.responseCache;
+            this.cassette = client.cassette;
+            this.hedgingPolicy = client.hedgingPolicy;
+            this.rateLimiter = client.rateLimiter;
+            this.requestMetrics = client.requestMetrics;
+            this.gson = client.gson;
+            this.authUser = client.authUser;
+            this.authPassword = client.authPassword;
+            this.proxyConfiguration = client.proxyConfiguration;
+            this.proxySelector = client.proxySelector;
+            this.proxy = client.proxy;
+            this.proxyUser = client.proxyUser;
+            this.proxyPassword = client.proxyPassword;
+            this.bypassProxy = client.bypassProxy;
+            this.nonProxyHosts = client.nonProxyHosts;
+            this.proxyCacheTtl = client.proxyCacheTtl;
+            this.proxyCache = client.proxyCache;
+            this.asyncThreads = client.asyncThreads;
+            this.maxRequestsPerHost = client.maxRequestsPerHost;
+            this.asyncExecutor = client.asyncExecutor;
+            this.asyncRequests = client.asyncRequests;
+            this.logWriter = client.logWriter;
+            this.logRequest = client.logRequest;
+            this.logRequestDetails = client.logRequestDetails;
+        }
+
+        public Builder baseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+            return this;
+        }
+
+        public Builder trustAllCertificates(boolean trustAllCertificates) {
+            this.trustAllCertificates = trustAllCertificates;
+            return this;
+        }
+
+        public Builder trustAllHosts(boolean trustAllHosts) {
+            this.trustAllHosts = trustAllHosts;
+            return this;
+        }
+
+        /**
+         * @param sslContext SSL context for HTTPS connections, eg with a client certificate or private trust store, null for the
+         *                   JVM default. Ignored by requests that trust all certificates
+         * @return A self reference
+         */
+        public Builder sslContext(SSLContext sslContext) {
+            this.sslContext = sslContext;
+            return this;
+        }
+
+        public Builder sensitiveParameters(String... params) {
+            this.sensitiveParameters.addAll(Arrays.asList(params));
+            return this;
+        }
+
+        public Builder transport(HttpTransport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        public Builder reuseConnections(boolean reuseConnections) {
+            this.reuseConnections = reuseConnections;
+            return this;
+        }
+
+        public Builder compressResponses(boolean compressResponses) {
+            this.compressResponses = compressResponses;
+            return this;
+        }
+
+        public Builder compressRequests(int thresholdBytes) {
+            this.compressRequestsThreshold = thresholdBytes;
+            return this;
+        }
+
+        public Builder responseCache(HttpResponseCache responseCache) {
+            this.responseCache = responseCache;
+            return this;
+        }
+
+        public Builder cassette(Cassette cassette) {
+            this.cassette = cassette;
+            return this;
+        }
+
+        public Builder hedging(HedgingPolicy hedgingPolicy) {
+            this.hedgingPolicy = hedgingPolicy;
+            return this;
+        }
+
+        public Builder rateLimiter(RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        public Builder requestMetrics(RequestMetrics requestMetrics) {
+            this.requestMetrics = requestMetrics;
+            return this;
+        }
+
+        /**
+         * @param gson Gson used to bind JSON responses to objects, configured with any type adapters the responses need
+         * @return A self reference
+         */
+        public Builder gson(Gson gson) {
+            this.gson = gson;
+            return this;
+        }
+
+        public Builder authorization(String username, String password) {
+            this.authUser = username;
+            this.authPassword = password;
+            return this;
+        }
+
+        public Builder proxyConfiguration(ProxyConfiguration configuration) {
+            this.proxyConfiguration = configuration;
+            return proxyChanged();
+        }
+
+        /**
+         * @param proxySelector Selector used in {@link ProxyConfiguration#AUTOMATIC} mode, the default of null uses the system
+         *                      settings found by Proxy Vole
+         * @return A self reference
+         */
+        public Builder proxySelector(ProxySelector proxySelector) {
+            this.proxySelector = proxySelector;
+            return proxyChanged();
+        }
+
+        public Builder proxy(Proxy proxy) {
+            this.proxy = proxy;
+            return proxyChanged();
+        }
+
+        public Builder proxyAuth(String userName, String password) {
+            this.proxyUser = userName;
+            this.proxyPassword = password;
+            return this;
+        }
+
+        public Builder bypassProxy(boolean bypassProxy) {
+            this.bypassProxy = bypassProxy;
+            return proxyChanged();
+        }
+
+        public Builder nonProxyHosts(String proxyBypassHosts) {
+            this.nonProxyHosts = splitHosts(proxyBypassHosts);
+            return proxyChanged();
+        }
+
+        public Builder proxyCacheTtl(long ttlMillis) {
+            this.proxyCacheTtl = ttlMillis;
+            return proxyChanged();
+        }
+
+        private Builder proxyChanged() {
+            this.proxyCache = null;
+            return this;
+        }
+
+        public Builder asyncThreads(int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("threads must be at least 1");
+            }
+
+            this.asyncThreads = threads;
+            return asyncChanged();
+        }
+
+        public Builder asyncExecutor(ExecutorService executor) {
+            this.asyncExecutor = executor;
+            return asyncChanged();
+        }
+
+        public Builder maxRequestsPerHost(int maxRequestsPerHost) {
+            if (maxRequestsPerHost < 1) {
+                throw new IllegalArgumentException("maxRequestsPerHost must be at least 1");
+            }
+
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            return asyncChanged();
+        }
+
+        private Builder asyncChanged() {
+            this.asyncRequests = null;
+            return this;
+        }
+
+        public Builder withLogWriter(LogWriter logWriter) {
+            this.logWriter = logWriter;
+            return this;
+        }
+
+        public Builder logRequest(boolean logRequest) {
+            this.logRequest = logRequest;
+            return this;
+        }
+
+        public Builder logRequestDetails(boolean logRequestDetails) {
+            this.logRequestDetails = logRequestDetails;
+            return this;
+        }
+
+        /**
+         * @return A new client with these settings
+         */
+        public HttpEasyClient build() {
+            return new HttpEasyClient(this);
+        }
+    }
+}
@@ -1,49 +1,44 @@
 package org.concordion.cubano.driver.http;
 
 import java.net.Proxy;
-import java.net.ProxySelector;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-
-import org.concordion.cubano.driver.http.logging.LoggerLogWriter;
-
-import com.github.markusbernhardt.proxy.ProxySearch;
-import com.github.markusbernhardt.proxy.util.Logger;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.function.UnaryOperator;
+
+import javax.net.ssl.SSLContext;
+
+import org.concordion.cubano.driver.http.cache.Cassette;
+import org.concordion.cubano.driver.http.cache.HttpResponseCache;
+import org.concordion.cubano.driver.http.cache.ProxyCache;
+import org.concordion.cubano.driver.http.concurrent.HedgingPolicy;
+import org.concordion.cubano.driver.http.concurrent.HostLimitedExecutor;
+import org.concordion.cubano.driver.http.concurrent.RateLimiter;
+import org.concordion.cubano.driver.http.metrics.RequestMetrics;
+import org.concordion.cubano.driver.http.transport.ConnectionStatistics;
+import org.concordion.cubano.driver.http.transport.ConnectionStatistics.HostStatistics;
+import org.concordion.cubano.driver.http.transport.HttpTransport;
+import org.concordion.cubano.driver.http.transport.HttpTransports;
+
+import com.google.gson.Gson;
 
 /**
  * Allows setting of default properties used by all subsequent HttpEasy requests.
+ * <p>
+ * The settings are held in an immutable {@link HttpEasyClient} that is replaced whenever a setting changes, so they can safely be
+ * changed while requests are running on other threads. Use {@link HttpEasyClient#builder()} instead where different threads need
+ * different settings.
+ * </p>
  *
  * @author Andrew Sumner
  */
 public class HttpEasyDefaults {
     public static final String DEFAULT_PROXY_BYPASS_HOSTS = "localhost,127.0.0.1";
 
-    private static String baseUrl = "";
-    private static boolean trustAllCertificates = false;
-    private static boolean trustAllHosts = false;
-    private static List<String> sensitiveParameters = new ArrayList<>();
-
-    // Request authorisation
-    private static String authUser = null;
-    private static String authPassword = null;
-
-    // Proxy
-    private static ProxyConfiguration proxyConfiguration = ProxyConfiguration.MANUAL;
-    private static volatile ProxySelector proxySearch = null;
-    private static Proxy proxy = Proxy.NO_PROXY;
-    private static String proxyUser = null;
-    private static String proxyPassword = null;
-    private static boolean bypassProxy = false;
-    private static List<String> nonProxyHosts = splitHosts(DEFAULT_PROXY_BYPASS_HOSTS);
-
-    // Logging
-    private static LogWriter defaultLogWriter = new LoggerLogWriter();
-    private static boolean logRequest = true;
-    private static boolean logRequestDetails = false;
+    private static volatile HttpEasyClient client = HttpEasyClient.builder().build();
+    // A client whose async executor was created for the defaults, rather than by a caller who may still be using it
+    private static HttpEasyClient asyncOwner = client;
 
     /**
      * Skip validation of any SSL certificates.
@@ -54,7 +49,7 @@ public class HttpEasyDefaults {
      * @see HttpEasy#trustAllCertificates(boolean) to override this setting per request
      */
     public HttpEasyDefaults trustAllCertificates(boolean trustAllCertificates) {
-        HttpEasyDefaults.trustAllCertificates = trustAllCertificates;
+        update(b -> b.trustAllCertificates(trustAllCertificates));
 
         return this;
     }
@@ -68,7 +63,183 @@ public class HttpEasyDefaults {
      * @see HttpEasy#trustAllHosts(boolean) to override this setting per request
      */
     public HttpEasyDefaults trustAllHosts(boolean trustAllHosts) {
-        HttpEasyDefaults.trustAllHosts = trustAllHosts;
+        update(b -> b.trustAllHosts(trustAllHosts));
+
+        return this;
+    }
+
+    /**
+     * Use an SSL context for HTTPS connections, eg one holding a client certificate or a private trust store.
+     *
+     * @param sslContext SSL context, the default of null uses the JVM default
+     * @return A self reference
+     */
+    public HttpEasyDefaults sslContext(SSLContext sslContext) {
+        update(b -> b.sslContext(sslContext));
+
+        return this;
+    }
+
+    /**
+     * Set the transport used to send requests.
+     * <p>
+     * Defaults to {@link HttpTransports#urlConnection()}, use {@link HttpTransports#httpClient()} for HTTP/2 and
+     * connection sharing on Java 11 or later.
+     * </p>
+     *
+     * @param transport Transport implementation
+     * @return A self reference
+     * @see HttpEasy#transport(HttpTransport) to override this setting per request
+     */
+    public HttpEasyDefaults transport(HttpTransport transport) {
+        update(b -> b.transport(transport));
+
+        return this;
+    }
+
+    /**
+     * Once a response has been read leave the connection open so that it can be reused by later requests to the same host rather
+     * than disconnecting, saving the cost of a new TCP connection and TLS handshake per request.
+     * <p>
+     * The response body is fully read and closed before the connection is handed back to the transport's pool, a response
+     * stream closed part way through has up to 64KB of what remains read and discarded so that the connection can still be kept.
+     * See {@link #getConnectionStatistics()} for how many connections are being kept or closed.
+     * </p>
+     *
+     * @param reuseConnections Set to true to keep connections alive, the default is false
+     * @return A self reference
+     * @see HttpEasy#reuseConnection(boolean) to override this setting per request
+     */
+    public HttpEasyDefaults reuseConnections(boolean reuseConnections) {
+        update(b -> b.reuseConnections(reuseConnections));
+
+        return this;
+    }
+
+    /**
+     * Ask servers to compress responses by sending an "Accept-Encoding: gzip, deflate" header, compressed responses are
+     * decoded transparently when read.
+     *
+     * @param compressResponses Set to true to accept compressed responses, the default is false
+     * @return A self reference
+     * @see HttpEasy#compressResponses(boolean) to override this setting per request
+     */
+    public HttpEasyDefaults compressResponses(boolean compressResponses) {
+        update(b -> b.compressResponses(compressResponses));
+
+        return this;
+    }
+
+    /**
+     * Gzip raw data and url encoded form request bodies that are at least the given size, the server must accept gzip
+     * encoded requests.
+     * <p>
+     * Data supplied as an InputStream is always compressed when enabled as its length is not known up front.
+     * </p>
+     *
+     * @param thresholdBytes Minimum body size in bytes to compress, the default of -1 never compresses
+     * @return A self reference
+     * @see HttpEasy#compressRequests(int) to override this setting per request
+     */
+    public HttpEasyDefaults compressRequests(int thresholdBytes) {
+        update(b -> b.compressRequests(thresholdBytes));
+
+        return this;
+    }
+
+    /**
+     * Cache GET responses according to their Cache-Control, ETag and Last-Modified headers, see {@link HttpResponseCache}.
+     *
+     * @param responseCache Cache to use, the default of null disables caching
+     * @return A self reference
+     * @see HttpEasy#useCache(boolean) to bypass the cache per request
+     */
+    public HttpEasyDefaults responseCache(HttpResponseCache responseCache) {
+        update(b -> b.responseCache(responseCache));
+
+        return this;
+    }
+
+    /**
+     * Record requests to, or replay them from, a cassette so that a suite can be run without the services it calls, see
+     * {@link Cassette}.
+     * <p>
+     * As there is one cassette per specification, specifications run in parallel should each build an {@link HttpEasyClient}
+     * with their own cassette instead.
+     * </p>
+     *
+     * @param cassette Cassette to use, the default of null sends every request to the server
+     * @return A self reference
+     */
+    public HttpEasyDefaults cassette(Cassette cassette) {
+        update(b -> b.cassette(cassette));
+
+        return this;
+    }
+
+    /**
+     * Hedge GET and HEAD requests, sending a second identical request if the first has not responded within the delay calculated
+     * by the policy, see {@link HedgingPolicy}.
+     *
+     * @param hedgingPolicy Policy to use, the default of null disables hedging
+     * @return A self reference
+     * @see HttpEasy#hedging(HedgingPolicy) to override this setting per request
+     */
+    public HttpEasyDefaults hedging(HedgingPolicy hedgingPolicy) {
+        update(b -> b.hedging(hedgingPolicy));
+
+        return this;
+    }
+
+    /**
+     * Limit the rate requests are sent to each host, requests over the limit block until they may be sent. Hosts that respond
+     * with 429 Too Many Requests or 503 Service Unavailable and a Retry-After header are paused for the requested time.
+     * <p>
+     * Requests answered by the {@link #responseCache(HttpResponseCache) response cache} or replayed from a cassette do not use a
+     * permit.
+     * </p>
+     *
+     * @param rateLimiter Rate limiter to use, the default of null does not limit requests
+     * @return A self reference
+     */
+    public HttpEasyDefaults rateLimiter(RateLimiter rateLimiter) {
+        update(b -> b.rateLimiter(rateLimiter));
+
+        return this;
+    }
+
+    /**
+     * Limit the rate requests are sent to each host, see {@link #rateLimiter(RateLimiter)}.
+     *
+     * @param permitsPerSecond Requests per second allowed to each host
+     * @param burst            Number of requests that may be sent at once to a host that has been idle
+     * @return A self reference
+     */
+    public HttpEasyDefaults rateLimit(double permitsPerSecond, int burst) {
+        return rateLimiter(new RateLimiter(permitsPerSecond, burst));
+    }
+
+    /**
+     * Record how long each phase of every request takes, aggregated per endpoint, so that they can be reported at the end of a
+     * suite, see {@link RequestMetrics}.
+     *
+     * @param requestMetrics Where to record timings, the default of null only keeps the timings of each request
+     * @return A self reference
+     */
+    public HttpEasyDefaults requestMetrics(RequestMetrics requestMetrics) {
+        update(b -> b.requestMetrics(requestMetrics));
+
+        return this;
+    }
+
+    /**
+     * Set the Gson used to bind JSON responses to objects, see {@link HttpEasyReader#as(Class)}.
+     *
+     * @param gson Gson configured with any type adapters the responses need
+     * @return A self reference
+     */
+    public HttpEasyDefaults gson(Gson gson) {
+        update(b -> b.gson(gson));
 
         return this;
     }
@@ -81,8 +252,7 @@ public class HttpEasyDefaults {
      * @return A self reference
      */
     public HttpEasyDefaults authorization(final String username, final String password) {
-        HttpEasyDefaults.authUser = username;
-        HttpEasyDefaults.authPassword = password;
+        update(b -> b.authorization(username, password));
 
         return this;
     }
@@ -94,16 +264,7 @@ public class HttpEasyDefaults {
      * @return A self reference
      */
     public HttpEasyDefaults proxyConfiguration(ProxyConfiguration configuration) {
-        HttpEasyDefaults.proxyConfiguration = configuration;
-        
-        if (configuration == ProxyConfiguration.AUTOMATIC && proxySearch == null) {
-            synchronized (HttpEasyDefaults.class) {
-                if (proxySearch == null) {
-                    Logger.setBackend(ProxyVoleLoggerFactory.getBackendLogger());
-                    proxySearch = ProxySearch.getDefaultProxySearch().getProxySelector();
-                }
-            }
-        }
+        update(b -> b.proxyConfiguration(configuration));
 
         return this;
     }
@@ -115,7 +276,7 @@ public class HttpEasyDefaults {
      * @return A self reference
      */
     public HttpEasyDefaults proxy(Proxy proxy) {
-        HttpEasyDefaults.proxy = proxy;
+        update(b -> b.proxy(proxy));
 
         return this;
     }
@@ -128,8 +289,7 @@ public class HttpEasyDefaults {
      * @return A self reference
      */
     public HttpEasyDefaults proxyAuth(String userName, String password) {
-        HttpEasyDefaults.proxyUser = userName;
-        HttpEasyDefaults.proxyPassword = password;
+        update(b -> b.proxyAuth(userName, password));
 
         return this;
     }
@@ -144,7 +304,8 @@ public class HttpEasyDefaults {
      * @return A self reference
      */
     public HttpEasyDefaults bypassProxy(boolean bypassProxy) {
-        HttpEasyDefaults.bypassProxy = bypassProxy;
+        update(b -> b.bypassProxy(bypassProxy));
+
         return this;
     }
 
@@ -162,13 +323,71 @@ public class HttpEasyDefaults {
      * @return
      */
     public HttpEasyDefaults nonProxyHosts(String proxyBypassHosts) {
-        HttpEasyDefaults.nonProxyHosts = splitHosts(proxyBypassHosts);
+        update(b -> b.nonProxyHosts(proxyBypassHosts));
+
+        return this;
+    }
+
+    /**
+     * Remember the proxy chosen for each host for a time rather than looking it up for every request, which in automatic mode may
+     * mean evaluating a PAC script.
+     * <p>
+     * Off by default so that every request consults the proxy configuration. Changing any of the proxy settings forgets all
+     * remembered decisions, and as decisions are kept per host a PAC script that picks a proxy by path only sees the first path
+     * requested for each host.
+     * </p>
+     *
+     * @param ttlMillis How long to remember the proxy for a host, 0 to look it up for every request
+     * @return A self reference
+     * @see #getProxyCache() for statistics
+     */
+    public HttpEasyDefaults proxyCacheTtl(long ttlMillis) {
+        update(b -> b.proxyCacheTtl(ttlMillis));
 
         return this;
     }
 
-    private static List<String> splitHosts(String hosts) {
-        return Arrays.asList(Arrays.stream(hosts.split(",")).map(String::trim).map(String::toLowerCase).toArray(String[]::new));
+    /**
+     * Set the number of threads used to run asynchronous requests such as {@link HttpEasy#getAsync()}.
+     * <p>
+     * Defaults to 16, has no effect if an executor has been supplied via {@link #asyncExecutor(ExecutorService)}.
+     * </p>
+     *
+     * @param threads Maximum number of requests that may run at the same time across all hosts
+     * @return A self reference
+     */
+    public HttpEasyDefaults asyncThreads(int threads) {
+        updateAsync(b -> b.asyncThreads(threads));
+
+        return this;
+    }
+
+    /**
+     * Supply the executor used to run asynchronous requests, the executor will not be shut down by HttpEasy.
+     *
+     * @param executor Executor, or null to revert to the default executor
+     * @return A self reference
+     */
+    public HttpEasyDefaults asyncExecutor(ExecutorService executor) {
+        updateAsync(b -> b.asyncExecutor(executor));
+
+        return this;
+    }
+
+    /**
+     * Limit the number of asynchronous requests to the same host that may run at the same time, further requests
+     * for that host are queued until one completes.
+     * <p>
+     * Defaults to 6
+     * </p>
+     *
+     * @param maxRequestsPerHost Maximum concurrent requests per host
+     * @return A self reference
+     */
+    public HttpEasyDefaults maxRequestsPerHost(int maxRequestsPerHost) {
+        updateAsync(b -> b.maxRequestsPerHost(maxRequestsPerHost));
+
+        return this;
     }
 
     /**
@@ -178,14 +397,14 @@ public class HttpEasyDefaults {
      * @return A self reference
      */
     public HttpEasyDefaults baseUrl(String baseUrl) {
-        HttpEasyDefaults.baseUrl = baseUrl;
+        update(b -> b.baseUrl(baseUrl));
 
         return this;
     }
 
     public HttpEasyDefaults sensitiveParameters(String... params) {
-        HttpEasyDefaults.sensitiveParameters.addAll(Arrays.asList(params));
-        
+        update(b -> b.sensitiveParameters(params));
+
         return this;
     }
 
@@ -196,128 +415,215 @@ public class HttpEasyDefaults {
      * @return A self reference
      */
     public HttpEasyDefaults withLogWriter(LogWriter logWriter) {
-        HttpEasyDefaults.defaultLogWriter = logWriter;
+        update(b -> b.withLogWriter(logWriter));
 
         return this;
     }
 
     public HttpEasyDefaults logRequest(boolean logRequest) {
-        HttpEasyDefaults.logRequest = logRequest;
+        update(b -> b.logRequest(logRequest));
 
         return this;
     }
 
     public HttpEasyDefaults logRequestDetails() {
-        HttpEasyDefaults.logRequestDetails = true;
+        update(b -> b.logRequestDetails(true));
 
         return this;
     }
 
     public HttpEasyDefaults logRequestDetails(boolean logRequestDetails) {
-        HttpEasyDefaults.logRequestDetails = logRequestDetails;
+        update(b -> b.logRequestDetails(logRequestDetails));
 
         return this;
     }
 
+    /**
+     * Replace all the default settings with those of the client.
+     *
+     * @param client Client to use for requests created by {@link HttpEasy#request()}
+     * @return A self reference
+     */
+    public HttpEasyDefaults client(HttpEasyClient client) {
+        HttpEasyClient replaced = null;
+
+        synchronized (HttpEasyDefaults.class) {
+            HttpEasyClient previous = HttpEasyDefaults.client;
+            HttpEasyDefaults.client = client;
+
+            if (!previous.sharesAsyncExecutor(client) && ownsAsyncExecutor(previous)) {
+                replaced = previous;
+            }
+
+            if (!ownsAsyncExecutor(client)) {
+                asyncOwner = null;
+            }
+        }
+
+        // The caller's client is never shut down, they may still be sending requests with it
+        if (replaced != null) {
+            replaced.shutdownAsyncExecutor();
+        }
+
+        return this;
+    }
+
+    private static boolean ownsAsyncExecutor(HttpEasyClient client) {
+        return asyncOwner != null && asyncOwner.sharesAsyncExecutor(client);
+    }
+
+    /**
+     * Settings are held in an immutable client that is replaced as a whole, so that a request always sees a consistent set of
+     * settings even while they are being changed on another thread.
+     */
+    private static HttpEasyClient update(UnaryOperator<HttpEasyClient.Builder> change) {
+        synchronized (HttpEasyDefaults.class) {
+            HttpEasyClient previous = client;
+
+            client = change.apply(previous.toBuilder()).build();
+
+            return previous;
+        }
+    }
+
+    private static void updateAsync(UnaryOperator<HttpEasyClient.Builder> change) {
+        HttpEasyClient replaced = null;
+
+        synchronized (HttpEasyDefaults.class) {
+            HttpEasyClient previous = update(change);
+
+            if (ownsAsyncExecutor(previous)) {
+                replaced = previous;
+            }
+
+            asyncOwner = client;
+        }
+
+        // Let any queued requests finish on the executor we created
+        if (replaced != null) {
+            replaced.shutdownAsyncExecutor();
+        }
+    }
+
+    /**
+     * @return The client holding the default settings, used by requests created by {@link HttpEasy#request()}
+     */
+    public static HttpEasyClient getClient() {
+        return client;
+    }
+
     public static boolean isTrustAllCertificates() {
-        return trustAllCertificates;
+        return client.isTrustAllCertificates();
     }
 
     public static boolean isTrustAllHosts() {
-        return trustAllHosts;
+        return client.isTrustAllHosts();
     }
 
-    public static List<String> getSensitiveParameters() {
-        return sensitiveParameters;
+    public static HttpTransport getTransport() {
+        return client.getTransport();
     }
 
-    public static String getAuthUser() {
-        return HttpEasyDefaults.authUser;
+    public static boolean isReuseConnections() {
+        return client.isReuseConnections();
     }
 
-    public static String getAuthPassword() {
-        return HttpEasyDefaults.authPassword;
+    public static boolean isCompressResponses() {
+        return client.isCompressResponses();
     }
 
-    public static Proxy getProxy(URL url) {
-        if (proxyConfiguration == ProxyConfiguration.MANUAL) {
-            if (bypassProxy && isProxyBypassHost(url)) {
-                return Proxy.NO_PROXY;
-            }
+    public static int getCompressRequestsThreshold() {
+        return client.getCompressRequestsThreshold();
+    }
 
-            return proxy;
-        }
+    public static HttpResponseCache getResponseCache() {
+        return client.getResponseCache();
+    }
 
-        Proxy proxy = Proxy.NO_PROXY;
-
-        if (proxySearch != null) {
-            // Get list of proxies from default ProxySelector available for given URL
-            List<Proxy> proxies = proxySearch.select(getUri(url));
-
-            // Find first proxy for HTTP/S. Any DIRECT proxy in the list returned is only second choice
-            if (proxies != null) {
-                loop:
-                for (Proxy p : proxies) {
-                    switch (p.type()) {
-                    case HTTP:
-                        proxy = p;
-                        break loop;
-                    case DIRECT:
-                        proxy = p;
-                        break;
-                    default:
-                        // ignore other proxy types
-                    }
-                }
-            }
-        }
+    public static Cassette getCassette() {
+        return client.getCassette();
+    }
 
-        return proxy;
+    public static HedgingPolicy getHedgingPolicy() {
+        return client.getHedgingPolicy();
     }
 
-    // Some stuff to think about when we have time...
-    // TODO If system system properties http(s).nonProxyHosts are set do we actually need to do anything, documentation says that it's automatically handled.
-    // TODO Given that trying to use same nonPorxyHosts config setting for both Browser and HttpEasy is there any difference in format?
-    // eg: Do we need to cater for IPAdress ranges? http.nonProxyHosts doesn't specify but I believe browsers can cope with this...
-    private static boolean isProxyBypassHost(URL url) {
-        String host = url.getHost().toLowerCase();
+    public static RateLimiter getRateLimiter() {
+        return client.getRateLimiter();
+    }
 
-        return nonProxyHosts.stream().anyMatch(pattern -> host.matches(escapePattern(pattern)));
+    /**
+     * @return Where request timings are recorded, null if they are not being aggregated
+     */
+    public static RequestMetrics getRequestMetrics() {
+        return client.getRequestMetrics();
     }
 
-    private static String escapePattern(String pattern) {
-        return pattern.replace(".", "\\.").replace("*", ".*");
+    /**
+     * @return The Gson used to bind JSON responses to objects
+     */
+    public static Gson getGson() {
+        return client.getGson();
+    }
+
+    /**
+     * @return Per host counts of requests sent and of responses that released their connection for reuse or closed it
+     */
+    public static Map<String, HostStatistics> getConnectionStatistics() {
+        return ConnectionStatistics.getStatistics();
+    }
+
+    /**
+     * @return The executor used to run asynchronous requests
+     */
+    public static HostLimitedExecutor getAsyncExecutor() {
+        return client.getAsyncExecutor();
+    }
+
+    public static List<String> getSensitiveParameters() {
+        return client.getSensitiveParameters();
+    }
+
+    public static String getAuthUser() {
+        return client.getAuthUser();
+    }
+
+    public static String getAuthPassword() {
+        return client.getAuthPassword();
+    }
+
+    /**
+     * @return The cache of proxy decisions, or null if disabled by {@link #proxyCacheTtl(long)}
+     */
+    public static ProxyCache getProxyCache() {
+        return client.getProxyCache();
+    }
+
+    public static Proxy getProxy(URL url) {
+        return client.getProxy(url);
     }
 
     public static String getProxyUser() {
-        return HttpEasyDefaults.proxyUser;
+        return client.getProxyUser();
     }
 
     public static String getProxyPassword() {
-        return HttpEasyDefaults.proxyPassword;
+        return client.getProxyPassword();
     }
 
     public static String getBaseUrl() {
-        return HttpEasyDefaults.baseUrl;
+        return client.getBaseUrl();
     }
 
     public static LogWriter getDefaultLogWriter() {
-        return HttpEasyDefaults.defaultLogWriter;
+        return client.getLogWriter();
     }
 
     public static boolean getLogRequest() {
-        return logRequest;
+        return client.isLogRequest();
     }
 
     public static boolean getLogRequestDetails() {
-        return logRequestDetails;
-    }
-
-    private static URI getUri(URL url) {
-        try {
-            return url.toURI();
-        } catch (URISyntaxException e) {
-            throw new IllegalArgumentException(e);
-        }
+        return client.isLogRequestDetails();
     }
-}
\ No newline at end of file
+}
@@ -1,32 +1,56 @@
 package org.concordion.cubano.driver.http;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import javax.xml.parsers.ParserConfigurationException;
 
+import org.concordion.cubano.driver.http.io.ChannelTransfer;
 import org.concordion.cubano.driver.http.logging.LogManager;
+import org.concordion.cubano.driver.http.metrics.RequestTimings;
+import org.concordion.cubano.driver.http.transport.HttpConnection;
+import org.concordion.cubano.driver.http.transport.HttpTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
 
+import com.google.common.net.MediaType;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+
 /**
  * Response reader for HTTP requests, can parse JSON and XML and download files.
  *
  * @author Andrew Sumner
  */
 public class HttpEasyReader {
-    private HttpURLConnection connection;
+    private HttpConnection connection;
+    private final boolean reuseConnection;
+    private final boolean decodeResponse;
+    private final LogManager logManager;
+    private final RequestTimings timings;
+    private final Gson gson;
     private String returned = null;
+    private boolean streamed = false;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpEasyReader.class);
 
@@ -37,13 +61,37 @@ public class HttpEasyReader {
      * @param request Request that is creating this reader
      * @throws HttpResponseException if request failed
      * @throws IOException for connection errors
+     * @deprecated Use {@link #HttpEasyReader(HttpConnection, HttpEasy)}, connections are now created by a {@link HttpTransport}
      */
+    @Deprecated
     public HttpEasyReader(HttpURLConnection connection, HttpEasy request) throws HttpResponseException, IOException {
+        this(HttpConnection.of(connection), request);
+    }
+
+    /**
+     * Create new HttpEasyReader.
+     *
+     * @param connection Connection created by the request's transport
+     * @param request Request that is creating this reader
+     * @throws HttpResponseException if request failed
+     * @throws IOException for connection errors
+     */
+    public HttpEasyReader(HttpConnection connection, HttpEasy request) throws HttpResponseException, IOException {
 
         this.connection = connection;
+        this.reuseConnection = request.isReuseConnection();
+        this.decodeResponse = request.isCompressResponses();
+        this.logManager = request.getLogManager();
+        this.timings = request.getTimings();
+        this.gson = request.getGson();
 
         Family responseFamily = getResponseCodeFamily();
 
+        if (timings != null) {
+            timings.responseReceived();
+        }
+
+        request.responseReceived(connection);
         logResponse(request);
 
         if (responseFamily != Family.SUCCESSFUL) {
@@ -71,7 +119,7 @@ public class HttpEasyReader {
 
         logger.getBuffer().writeLine("Response Headers:");
 
-        for (Entry<String, List<String>> header : getConnection().getHeaderFields().entrySet()) {
+        for (Entry<String, List<String>> header : getHttpConnection().getHeaderFields().entrySet()) {
             for (String value : header.getValue()) {
                 if (header.getKey() == null || header.getKey().isEmpty()) {
                     logger.getBuffer().writeIndentedLine(value);
@@ -88,7 +136,12 @@ public class HttpEasyReader {
         }
 
         logger.getBuffer().writeLine("Response:");
-        logger.getBuffer().write(formatAsReaderUsingContentType(getConnection().getContentType()));
+        logger.getBuffer().write(formatAsReaderUsingContentType(getHttpConnection().getContentType()));
+
+        if (timings != null) {
+            logger.getBuffer().writeLine("").write("Timings: ").writeLine(timings.toString());
+        }
+
         logger.flushResponse();
     }
 
@@ -138,8 +191,21 @@ public class HttpEasyReader {
      * exposed methods don't provide the information you are after.
      *
      * @return A {@link HttpURLConnection}
+     * @throws UnsupportedOperationException if the request was not sent with the url connection transport
+     * @deprecated Use {@link #getHttpConnection()}, which works with every {@link HttpTransport}
      */
+    @Deprecated
     public HttpURLConnection getConnection() {
+        return connection.getHttpURLConnection();
+    }
+
+    /**
+     * Returns the underlying connection object in the event that the
+     * exposed methods don't provide the information you are after.
+     *
+     * @return A {@link HttpConnection}, use {@link HttpConnection#getHttpURLConnection()} if the {@link HttpURLConnection} is required
+     */
+    public HttpConnection getHttpConnection() {
         return connection;
     }
 
@@ -172,10 +238,237 @@ public class HttpEasyReader {
             return returned;
         }
 
+        return asString(getResponseStream());
+    }
+
+    private InputStream getResponseStream() throws IOException {
+        return decode(getEncodedResponseStream());
+    }
+
+    private InputStream getEncodedResponseStream() throws IOException {
+        if (streamed) {
+            throw new IllegalStateException("The response has already been read as a stream");
+        }
+
         if (connection.getResponseCode() < HttpURLConnection.HTTP_BAD_REQUEST) {
-            return asString(connection.getInputStream());
+            return connection.getInputStream();
         } else {
-            return asString(connection.getErrorStream());
+            return connection.getErrorStream();
+        }
+    }
+
+    /**
+     * Transparently decode a gzip or deflate encoded response body, if the request asked for it to be compressed.
+     */
+    private InputStream decode(InputStream stream) {
+        if (!decodeResponse) {
+            return stream;
+        }
+
+        return DecodingInputStream.decode(stream, connection.getHeaderField("Content-Encoding"), logManager);
+    }
+
+    /**
+     * Stream the response body rather than reading it all into memory, the stream must be closed once finished with.
+     * <p>
+     * The body can only be read once, either through one of the streaming methods or {@link #asString()}. If the response has already
+     * been read, for example to log it, the stream is served from the text returned by {@link #asString()}, encoded with the
+     * response's charset.
+     * </p>
+     *
+     * @return The response body
+     * @throws IOException If unable to read the response
+     */
+    public InputStream asInputStream() throws IOException {
+        if (returned != null) {
+            return new ByteArrayInputStream(returned.getBytes(getCharset()));
+        }
+
+        return asInputStream(getResponseStream());
+    }
+
+    /**
+     * Stream the response body exactly as it was sent, without removing any Content-Encoding, for reading part of a file whose
+     * offsets are those of the encoded body.
+     *
+     * @return The response body
+     * @throws IOException If unable to read the response
+     */
+    InputStream asEncodedInputStream() throws IOException {
+        if (returned != null) {
+            throw new IllegalStateException("The response has already been read");
+        }
+
+        return asInputStream(getEncodedResponseStream());
+    }
+
+    private InputStream asInputStream(InputStream stream) {
+        streamed = true;
+
+        if (stream == null) {
+            releaseConnection(true);
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        return new ReleasingInputStream(stream);
+    }
+
+    /**
+     * Stream the response body as characters using the charset from the Content-Type header, see {@link #asInputStream()}.
+     *
+     * @return The response body, which must be closed once finished with
+     * @throws IOException If unable to read the response
+     */
+    public Reader asReader() throws IOException {
+        return asReader(getCharset());
+    }
+
+    /**
+     * Stream the response body as characters, see {@link #asInputStream()}.
+     *
+     * @param charset Charset to decode the body with
+     * @return The response body, which must be closed once finished with
+     * @throws IOException If unable to read the response
+     */
+    public Reader asReader(Charset charset) throws IOException {
+        return new InputStreamReader(asInputStream(), charset);
+    }
+
+    /**
+     * Lazily read the response body line by line, see {@link #asInputStream()}.
+     * <p>
+     * The stream must be closed, eg using try-with-resources, if it is not read to the end.
+     * </p>
+     *
+     * <pre>
+     * try (Stream&lt;String&gt; lines = reader.lines()) {
+     *     lines.filter(line -&gt; line.startsWith("ERROR")).forEach(errors::add);
+     * }
+     * </pre>
+     *
+     * @return The lines of the response body
+     * @throws IOException If unable to read the response
+     */
+    public Stream<String> lines() throws IOException {
+        BufferedReader reader = new BufferedReader(asReader());
+
+        return reader.lines().onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Pass the response body to the consumer a block at a time, see {@link #asInputStream()}.
+     * <p>
+     * The buffer passed to the consumer is reused and is only valid for the duration of the call.
+     * </p>
+     *
+     * @param consumer Receives each block of the response body
+     * @throws IOException If unable to read the response
+     */
+    public void consume(Consumer<ByteBuffer> consumer) throws IOException {
+        final int bufferSize = 8192;
+        byte[] buffer = new byte[bufferSize];
+        ByteBuffer block = ByteBuffer.wrap(buffer);
+
+        try (InputStream stream = asInputStream()) {
+            int bytesRead;
+
+            while ((bytesRead = stream.read(buffer)) != -1) {
+                block.clear();
+                block.limit(bytesRead);
+                consumer.accept(block);
+            }
+        }
+    }
+
+    /**
+     * @return The charset declared by the response's Content-Type header, or UTF-8 if none
+     */
+    public Charset getCharset() {
+        String contentType = connection.getContentType();
+
+        if (contentType != null) {
+            try {
+                return MediaType.parse(contentType).charset().or(StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                LOGGER.debug("Unable to determine charset from ContentType '{}': {}", contentType, e.getMessage());
+            }
+        }
+
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Releases the connection once the response stream is closed. A stream closed before the end of the response has a little of
+     * what remains read so that a connection with only a short tail left can still be kept rather than disconnected.
+     */
+    private class ReleasingInputStream extends FilterInputStream {
+        private static final int DRAIN_LIMIT = 64 * 1024;
+
+        private boolean endOfStream = false;
+        private boolean closed = false;
+
+        ReleasingInputStream(InputStream stream) {
+            super(stream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            endOfStream = value == -1;
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            endOfStream = count == -1;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+
+            try {
+                if (!endOfStream && reuseConnection) {
+                    endOfStream = drain();
+                }
+
+                super.close();
+            } finally {
+                releaseConnection(endOfStream);
+            }
+        }
+
+        private boolean drain() {
+            byte[] buffer = new byte[8192];
+            int remaining = DRAIN_LIMIT;
+
+            try {
+                while (remaining > 0) {
+                    int count = in.read(buffer, 0, Math.min(buffer.length, remaining));
+
+                    if (count == -1) {
+                        return true;
+                    }
+
+                    remaining -= count;
+                }
+
+                return in.read() == -1;
+            } catch (IOException e) {
+                return false;
+            }
         }
     }
 
@@ -185,8 +478,10 @@ public class HttpEasyReader {
             return returned;
         }
 
-        // read the output from the server
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+        boolean complete = false;
+
+        // read the output from the server, decoded with the response's charset so that it can be streamed again afterwards
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, getCharset()))) {
             StringBuilder sb = new StringBuilder();
 
             String line = null;
@@ -195,13 +490,37 @@ public class HttpEasyReader {
             }
 
             returned = sb.toString().trim();
+            complete = true;
         } finally {
-            connection.disconnect();
+            releaseConnection(complete);
         }
 
         return returned;
     }
 
+    /**
+     * A fully read and closed response can leave its connection in the keep-alive cache, anything else must disconnect
+     * as the connection is in an unknown state.
+     */
+    private void releaseConnection(boolean responseFullyRead) {
+        if (responseFullyRead && timings != null) {
+            timings.responseRead();
+        }
+
+        if (reuseConnection && responseFullyRead) {
+            connection.release();
+        } else {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * @return How long each phase of the request took, the read phase is only known once the response has been read to the end
+     */
+    public RequestTimings getTimings() {
+        return timings;
+    }
+
     /**
      * @return A JsonReader to handle a json response.
      * @throws IOException If unable to read the response
@@ -210,6 +529,56 @@ public class HttpEasyReader {
         return new JsonReader(asString());
     }
 
+    /**
+     * Bind a json response to an object while streaming it, rather than reading it into a string and a tree of
+     * {@link JsonElement}s first as {@link JsonReader#fromJson(Class)} does.
+     * <p>
+     * The response is bound using the client's Gson, see {@link HttpEasyDefaults#gson(Gson)}.
+     * </p>
+     *
+     * @param <T>  The type of the desired object
+     * @param type Class to populate
+     * @return A new object of the supplied type, null if the response is empty
+     * @throws IOException If unable to read the response, or it is not a valid representation of the type
+     */
+    public <T> T as(Class<T> type) throws IOException {
+        return as((Type) type);
+    }
+
+    /**
+     * Bind a json response to an object of a generic type while streaming it, see {@link #as(Class)}.
+     *
+     * <pre>
+     * List&lt;Customer&gt; customers = reader.as(new TypeToken&lt;List&lt;Customer&gt;&gt;() { }.getType());
+     * </pre>
+     *
+     * @param <T>  The type of the desired object
+     * @param type Type to populate
+     * @return A new object of the supplied type, null if the response is empty
+     * @throws IOException If unable to read the response, or it is not a valid representation of the type
+     */
+    public <T> T as(Type type) throws IOException {
+        try (Reader reader = asReader()) {
+            return gson.fromJson(reader, type);
+        } catch (JsonParseException e) {
+            throw new IOException("Unable to bind the response to " + type.getTypeName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Search a json response for the requested elements while streaming it, rather than parsing the whole response,
+     * see {@link JsonReader#select(Reader, String...)}.
+     *
+     * @param paths Dot separated Json search paths
+     * @return The element found for each path, or null if not found, in the order requested
+     * @throws IOException If unable to read the response
+     */
+    public Map<String, JsonElement> selectJson(String... paths) throws IOException {
+        try (Reader reader = asReader()) {
+            return JsonReader.select(reader, paths);
+        }
+    }
+
     /**
      * @return An XmlReader to handle an xml response.
      * @throws SAXException Encapsulate a general SAX error or warning
@@ -220,27 +589,59 @@ public class HttpEasyReader {
         return new XmlReader(asString());
     }
 
+    /**
+     * Unmarshal each element of an xml response matching the path while streaming it, rather than parsing the whole
+     * response, see {@link XmlElementIterator}.
+     * <p>
+     * The iterator must be closed, eg using try-with-resources, if it is not read to the end.
+     * </p>
+     *
+     * @param <T>  The type of the desired class
+     * @param path Slash separated path of the elements to return
+     * @param type Class of object to deserialize each element to
+     * @return Iterator over the matching elements
+     * @throws IOException If unable to read the response
+     */
+    public <T> XmlElementIterator<T> iterateXml(String path, Class<T> type) throws IOException {
+        return new XmlElementIterator<>(asInputStream(), path, type);
+    }
+
+    /**
+     * Unmarshal each element of an xml response matching the path while streaming it, rather than parsing the whole
+     * response, see {@link XmlElementIterator}.
+     * <p>
+     * The stream must be closed, eg using try-with-resources, if it is not read to the end.
+     * </p>
+     *
+     * <pre>
+     * try (Stream&lt;Item&gt; items = reader.streamXml("//item", Item.class)) {
+     *     items.filter(item -&gt; item.isActive()).forEach(active::add);
+     * }
+     * </pre>
+     *
+     * @param <T>  The type of the desired class
+     * @param path Slash separated path of the elements to return
+     * @param type Class of object to deserialize each element to
+     * @return Stream of the matching elements
+     * @throws IOException If unable to read the response
+     */
+    public <T> Stream<T> streamXml(String path, Class<T> type) throws IOException {
+        return iterateXml(path, type).stream();
+    }
+
     /**
      * Download a file from the response.
+     * <p>
+     * The file is saved exactly as sent unless the request asked for a compressed response, see
+     * {@link HttpEasy#compressResponses(boolean)}.
+     * </p>
      *
      * @param saveDir Location to place the file, the file name is gotten from the response headers
      * @return File object
      * @throws IOException If unable to write the file
      */
     public File downloadFile(String saveDir) throws IOException {
-        final int bufferSize = 4096;
-
-        String fileName = parseDispositionFilename(connection.getHeaderField("Content-Disposition"));
-
-        if (fileName == null) {
-            fileName = connection.getURL().getPath();
-
-            if (connection.getURL().getQuery() != null || fileName == null || fileName.isEmpty()) {
-                throw new IOException("Unable to get fileName from either Content-Disposition header or url:" + connection.getURL());
-            }
-        }
-
-        fileName = new File(fileName).getName();
+        String fileName = getFileName();
 
         // System.out.println("Content-Type = " + connection.getContentType());
         // System.out.println("Content-Disposition = " + disposition);
@@ -255,23 +656,43 @@ public class HttpEasyReader {
         }
 
         File saveFile = new File(saveDir, fileName);
+        boolean complete = false;
+
+        long started = System.nanoTime();
 
-        try (
-                InputStream inputStream = connection.getInputStream();
-                FileOutputStream outputStream = new FileOutputStream(saveFile);) {
+        try (InputStream inputStream = decode(connection.getInputStream())) {
+            long bytes = ChannelTransfer.toFile(inputStream, saveFile);
 
-            int bytesRead = -1;
-            byte[] buffer = new byte[bufferSize];
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, bytesRead);
+            complete = true;
+
+            if (logManager != null) {
+                logManager.info("Downloaded {0} to {1}", ChannelTransfer.describe(bytes, System.nanoTime() - started), saveFile.getPath());
             }
         } finally {
-            connection.disconnect();
+            releaseConnection(complete);
         }
 
         return saveFile;
     }
 
+    /**
+     * @return The name of the file being downloaded, from the Content-Disposition header or failing that the url
+     * @throws IOException If neither contain a file name
+     */
+    String getFileName() throws IOException {
+        String fileName = parseDispositionFilename(connection.getHeaderField("Content-Disposition"));
+
+        if (fileName == null) {
+            fileName = connection.getURL().getPath();
+
+            if (connection.getURL().getQuery() != null || fileName == null || fileName.isEmpty()) {
+                throw new IOException("Unable to get fileName from either Content-Disposition header or url:" + connection.getURL());
+            }
+        }
+
+        return new File(fileName).getName();
+    }
+
     /**
      * Retrieves the "filename" attribute from a content disposition line.
      *
@@ -0,0 +1,82 @@
+package org.concordion.cubano.driver.http;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+/**
+ * Cache of JAXB contexts, marshallers and unmarshallers.
+ * <p>
+ * Creating a JAXBContext introspects the whole class graph so is very slow, contexts are thread safe and shared by all
+ * threads. Marshallers and unmarshallers are cheap in comparison but are not thread safe, so each thread keeps its own per class.
+ * </p>
+ */
+final class JaxbCache {
+    private static final ConcurrentMap<Class<?>, JAXBContext> CONTEXTS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Map<Class<?>, Unmarshaller>> UNMARSHALLERS = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<Class<?>, Marshaller>> MARSHALLERS = ThreadLocal.withInitial(HashMap::new);
+
+    private JaxbCache() {
+    }
+
+    /**
+     * @param type Class to bind
+     * @return The shared context for the class
+     * @throws JAXBException If a context cannot be created for the class
+     */
+    static JAXBContext context(Class<?> type) throws JAXBException {
+        JAXBContext context = CONTEXTS.get(type);
+
+        if (context == null) {
+            // Not computeIfAbsent as newInstance throws a checked exception, two threads may create a context but only one is kept
+            context = JAXBContext.newInstance(type);
+            JAXBContext existing = CONTEXTS.putIfAbsent(type, context);
+
+            if (existing != null) {
+                context = existing;
+            }
+        }
+
+        return context;
+    }
+
+    /**
+     * @param type Class to bind
+     * @return An unmarshaller for the class, only valid on the current thread
+     * @throws JAXBException If an unmarshaller cannot be created for the class
+     */
+    static Unmarshaller unmarshaller(Class<?> type) throws JAXBException {
+        Map<Class<?>, Unmarshaller> unmarshallers = UNMARSHALLERS.get();
+        Unmarshaller unmarshaller = unmarshallers.get(type);
+
+        if (unmarshaller == null) {
+            unmarshaller = context(type).createUnmarshaller();
+            unmarshallers.put(type, unmarshaller);
+        }
+
+        return unmarshaller;
+    }
+
+    /**
+     * @param type Class to bind
+     * @return A marshaller for the class, only valid on the current thread
+     * @throws JAXBException If a marshaller cannot be created for the class
+     */
+    static Marshaller marshaller(Class<?> type) throws JAXBException {
+        Map<Class<?>, Marshaller> marshallers = MARSHALLERS.get();
+        Marshaller marshaller = marshallers.get(type);
+
+        if (marshaller == null) {
+            marshaller = context(type).createMarshaller();
+            marshallers.put(type, marshaller);
+        }
+
+        return marshaller;
+    }
+}
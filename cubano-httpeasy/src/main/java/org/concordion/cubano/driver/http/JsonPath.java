@@ -0,0 +1,653 @@
+package org.concordion.cubano.driver.http;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * A compiled JSON path expression.
+ * <p>
+ * Compiled paths are immutable and thread safe, {@link #compile(String)} keeps recently used expressions in a bounded cache so
+ * repeatedly evaluating the same expression does not re-parse it.
+ * </p>
+ * <p>
+ * Supported syntax, the leading <code>$.</code> is optional:
+ * </p>
+ * <ul>
+ * <li><code>rows[0].doc._id</code> - object members and array indexes, negative indexes count back from the end</li>
+ * <li><code>ele1.ele2part1\\.ele2part2</code> or <code>ele1['ele2part1.ele2part2']</code> - member names containing a dot</li>
+ * <li><code>rows[*].doc._id</code> or <code>doc.*</code> - every element of an array or value of an object</li>
+ * <li><code>$..name</code> - recursive descent, every member called name at any depth</li>
+ * <li><code>rows[?(@.doc.type == 'invoice')].id</code> - array elements matching a predicate, supports
+ * <code>== != &lt; &lt;= &gt; &gt;=</code> against string, number, boolean and null literals or just <code>@.member</code> to
+ * test for existence</li>
+ * </ul>
+ * <p>
+ * A path without wildcards, recursive descent or predicates is definite and evaluates to a single element, or null if there is
+ * no match. Any other path evaluates to a JsonArray of all matches.
+ * </p>
+ */
+public final class JsonPath {
+    private static final int CACHE_SIZE = 1000;
+    private static final Cache<String, JsonPath> CACHE = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+
+    private final String expression;
+    private final Segment[] segments;
+    private final boolean definite;
+
+    private JsonPath(String expression, Segment[] segments) {
+        this.expression = expression;
+        this.segments = segments;
+
+        boolean isDefinite = true;
+
+        for (Segment segment : segments) {
+            isDefinite &= segment.isDefinite();
+        }
+
+        this.definite = isDefinite;
+    }
+
+    /**
+     * Compile a path expression, or return the cached compiled version.
+     *
+     * @param expression Path expression
+     * @return The compiled path
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    public static JsonPath compile(String expression) {
+        JsonPath path = CACHE.getIfPresent(expression);
+
+        if (path == null) {
+            path = new JsonPath(expression, new Parser(expression).parse());
+            CACHE.put(expression, path);
+        }
+
+        return path;
+    }
+
+    /**
+     * @return The expression this path was compiled from
+     */
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * @return true if the path can match at most one element
+     */
+    public boolean isDefinite() {
+        return definite;
+    }
+
+    /**
+     * Evaluate the path.
+     *
+     * @param json Element to evaluate the path against
+     * @return For a definite path the matching element or null, otherwise a JsonArray of all matching elements
+     */
+    public JsonElement evaluate(JsonElement json) {
+        return evaluate(json, 0);
+    }
+
+    JsonElement evaluate(JsonElement json, int fromSegment) {
+        if (isDefinite(fromSegment)) {
+            JsonElement node = json;
+
+            for (int i = fromSegment; i < segments.length && node != null; i++) {
+                node = segments[i].select(node);
+            }
+
+            return node;
+        }
+
+        JsonArray matches = new JsonArray();
+
+        if (json != null) {
+            collect(json, fromSegment, matches);
+        }
+
+        return matches;
+    }
+
+    boolean isDefinite(int fromSegment) {
+        for (int i = fromSegment; i < segments.length; i++) {
+            if (!segments[i].isDefinite()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    void collect(JsonElement node, int index, JsonArray out) {
+        if (index == segments.length) {
+            out.add(node);
+        } else {
+            segments[index].collect(this, node, index + 1, out);
+        }
+    }
+
+    int length() {
+        return segments.length;
+    }
+
+    Segment getSegment(int index) {
+        return segments[index];
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    /**
+     * A single step of a path.
+     */
+    abstract static class Segment {
+        /**
+         * @return true if the segment selects at most one child
+         */
+        boolean isDefinite() {
+            return false;
+        }
+
+        /**
+         * Select the single child this segment refers to, only called for definite segments.
+         */
+        JsonElement select(JsonElement node) {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Pass each child selected by this segment on to the next segment of the path.
+         */
+        abstract void collect(JsonPath path, JsonElement node, int next, JsonArray out);
+
+        /**
+         * @return true if the segment selects the named member, used when streaming
+         */
+        boolean matches(String name) {
+            return false;
+        }
+
+        /**
+         * @return true if the segment selects the indexed element, used when streaming
+         */
+        boolean matches(int index) {
+            return false;
+        }
+
+        /**
+         * @return true if the segment can be evaluated from member names and array indexes alone, used when streaming
+         */
+        boolean isStreamable() {
+            return true;
+        }
+
+        /**
+         * @return true if the segment also applies to descendants, used when streaming
+         */
+        boolean isRecursive() {
+            return false;
+        }
+    }
+
+    private static final class Member extends Segment {
+        private final String name;
+
+        Member(String name) {
+            this.name = name;
+        }
+
+        @Override
+        boolean isDefinite() {
+            return true;
+        }
+
+        @Override
+        JsonElement select(JsonElement node) {
+            return node.isJsonObject() ? node.getAsJsonObject().get(name) : null;
+        }
+
+        @Override
+        void collect(JsonPath path, JsonElement node, int next, JsonArray out) {
+            JsonElement child = select(node);
+
+            if (child != null) {
+                path.collect(child, next, out);
+            }
+        }
+
+        @Override
+        boolean matches(String member) {
+            return name.equals(member);
+        }
+    }
+
+    private static final class Index extends Segment {
+        private final int index;
+
+        Index(int index) {
+            this.index = index;
+        }
+
+        @Override
+        boolean isDefinite() {
+            return true;
+        }
+
+        @Override
+        JsonElement select(JsonElement node) {
+            if (!node.isJsonArray()) {
+                return null;
+            }
+
+            JsonArray array = node.getAsJsonArray();
+            int position = index < 0 ? array.size() + index : index;
+
+            return position >= 0 && position < array.size() ? array.get(position) : null;
+        }
+
+        @Override
+        void collect(JsonPath path, JsonElement node, int next, JsonArray out) {
+            JsonElement child = select(node);
+
+            if (child != null) {
+                path.collect(child, next, out);
+            }
+        }
+
+        @Override
+        boolean matches(int position) {
+            return index == position;
+        }
+
+        @Override
+        boolean isStreamable() {
+            // The length of the array isn't known until it has been read
+            return index >= 0;
+        }
+    }
+
+    private static final class Wildcard extends Segment {
+        @Override
+        void collect(JsonPath path, JsonElement node, int next, JsonArray out) {
+            if (node.isJsonArray()) {
+                for (JsonElement child : node.getAsJsonArray()) {
+                    path.collect(child, next, out);
+                }
+            } else if (node.isJsonObject()) {
+                for (Map.Entry<String, JsonElement> child : node.getAsJsonObject().entrySet()) {
+                    path.collect(child.getValue(), next, out);
+                }
+            }
+        }
+
+        @Override
+        boolean matches(String name) {
+            return true;
+        }
+
+        @Override
+        boolean matches(int index) {
+            return true;
+        }
+    }
+
+    private static final class Descendant extends Segment {
+        // null matches all members
+        private final String name;
+
+        Descendant(String name) {
+            this.name = name;
+        }
+
+        @Override
+        void collect(JsonPath path, JsonElement node, int next, JsonArray out) {
+            if (node.isJsonObject()) {
+                for (Map.Entry<String, JsonElement> child : node.getAsJsonObject().entrySet()) {
+                    if (matches(child.getKey())) {
+                        path.collect(child.getValue(), next, out);
+                    }
+
+                    collect(path, child.getValue(), next, out);
+                }
+            } else if (node.isJsonArray()) {
+                for (JsonElement child : node.getAsJsonArray()) {
+                    if (name == null) {
+                        path.collect(child, next, out);
+                    }
+
+                    collect(path, child, next, out);
+                }
+            }
+        }
+
+        @Override
+        boolean matches(String member) {
+            return name == null || name.equals(member);
+        }
+
+        @Override
+        boolean matches(int index) {
+            return name == null;
+        }
+
+        @Override
+        boolean isRecursive() {
+            return true;
+        }
+    }
+
+    private static final class Filter extends Segment {
+        private final JsonPath operand;
+        private final String operator;
+        private final JsonElement literal;
+
+        Filter(JsonPath operand, String operator, JsonElement literal) {
+            this.operand = operand;
+            this.operator = operator;
+            this.literal = literal;
+        }
+
+        @Override
+        void collect(JsonPath path, JsonElement node, int next, JsonArray out) {
+            if (node.isJsonArray()) {
+                for (JsonElement child : node.getAsJsonArray()) {
+                    if (test(child)) {
+                        path.collect(child, next, out);
+                    }
+                }
+            } else if (node.isJsonObject() && test(node)) {
+                path.collect(node, next, out);
+            }
+        }
+
+        private boolean test(JsonElement node) {
+            JsonElement value = operand.evaluate(node);
+
+            if (operator == null) {
+                return value != null;
+            }
+
+            if (literal.isJsonNull() || value == null || value.isJsonNull()) {
+                boolean bothNull = literal.isJsonNull() && (value == null || value.isJsonNull());
+                return operator.equals("==") ? bothNull : operator.equals("!=") && !bothNull;
+            }
+
+            if (!value.isJsonPrimitive()) {
+                return operator.equals("!=");
+            }
+
+            int comparison = compare(value.getAsJsonPrimitive(), literal.getAsJsonPrimitive());
+
+            switch (operator) {
+            case "==":
+                return comparison == 0;
+            case "!=":
+                return comparison != 0;
+            case "<":
+                return comparison < 0;
+            case "<=":
+                return comparison <= 0;
+            case ">":
+                return comparison > 0;
+            default:
+                return comparison >= 0;
+            }
+        }
+
+        private static int compare(JsonPrimitive value, JsonPrimitive literal) {
+            if (literal.isNumber() && value.isNumber()) {
+                return value.getAsBigDecimal().compareTo(literal.getAsBigDecimal());
+            }
+
+            if (literal.isBoolean()) {
+                return value.isBoolean() ? Boolean.compare(value.getAsBoolean(), literal.getAsBoolean()) : 1;
+            }
+
+            return value.getAsString().compareTo(literal.getAsString());
+        }
+
+        @Override
+        boolean isStreamable() {
+            return false;
+        }
+    }
+
+    /**
+     * Converts an expression to segments, all string handling is done here so that evaluation is allocation free.
+     */
+    private static final class Parser {
+        private final String expression;
+        private int pos = 0;
+
+        Parser(String expression) {
+            this.expression = expression;
+        }
+
+        /**
+         * $ and @ only mark the root when followed by a segment, or on their own, otherwise they are part of a member name such
+         * as "$type" or "@id".
+         */
+        private boolean isRoot() {
+            if (!expression.startsWith("$") && !expression.startsWith("@")) {
+                return false;
+            }
+
+            return expression.length() == 1 || expression.charAt(1) == '.' || expression.charAt(1) == '[';
+        }
+
+        Segment[] parse() {
+            List<Segment> segments = new ArrayList<>();
+
+            if (isRoot()) {
+                pos = 1;
+            } else if (!expression.isEmpty() && expression.charAt(0) != '[' && expression.charAt(0) != '.') {
+                segments.add(readName());
+            }
+
+            while (pos < expression.length()) {
+                char c = expression.charAt(pos);
+
+                if (expression.startsWith("..", pos)) {
+                    pos += 2;
+
+                    if (peek() == '*') {
+                        pos++;
+                        segments.add(new Descendant(null));
+                    } else if (peek() == '[') {
+                        Segment inner = readBracket();
+
+                        if (!(inner instanceof Member)) {
+                            throw error("Recursive descent only supports member names");
+                        }
+
+                        segments.add(new Descendant(((Member) inner).name));
+                    } else {
+                        segments.add(new Descendant(((Member) readName()).name));
+                    }
+                } else if (c == '.') {
+                    pos++;
+
+                    if (peek() == '*') {
+                        pos++;
+                        segments.add(new Wildcard());
+                    } else {
+                        segments.add(readName());
+                    }
+                } else if (c == '[') {
+                    segments.add(readBracket());
+                } else {
+                    throw error("Unexpected character '" + c + "'");
+                }
+            }
+
+            return segments.toArray(new Segment[segments.size()]);
+        }
+
+        private char peek() {
+            return pos < expression.length() ? expression.charAt(pos) : 0;
+        }
+
+        private Segment readName() {
+            StringBuilder name = new StringBuilder();
+
+            while (pos < expression.length()) {
+                char c = expression.charAt(pos);
+
+                if (c == '\\' && pos + 1 < expression.length() && expression.charAt(pos + 1) == '.') {
+                    name.append('.');
+                    pos += 2;
+                } else if (c == '.' || c == '[') {
+                    break;
+                } else {
+                    name.append(c);
+                    pos++;
+                }
+            }
+
+            if (name.length() == 0) {
+                throw error("Missing member name");
+            }
+
+            return new Member(name.toString());
+        }
+
+        private Segment readBracket() {
+            int end = findClose(pos);
+            String content = expression.substring(pos + 1, end).trim();
+            pos = end + 1;
+
+            if (content.equals("*")) {
+                return new Wildcard();
+            }
+
+            if (content.startsWith("?(") && content.endsWith(")")) {
+                return parseFilter(content.substring(2, content.length() - 1).trim());
+            }
+
+            if (isQuoted(content)) {
+                return new Member(content.substring(1, content.length() - 1));
+            }
+
+            try {
+                return new Index(Integer.parseInt(content));
+            } catch (NumberFormatException e) {
+                throw error("Invalid array index '" + content + "'");
+            }
+        }
+
+        private int findClose(int open) {
+            char quote = 0;
+            int depth = 0;
+
+            for (int i = open; i < expression.length(); i++) {
+                char c = expression.charAt(i);
+
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '\'' || c == '"') {
+                    quote = c;
+                } else if (c == '[' || c == '(') {
+                    depth++;
+                } else if (c == ']' || c == ')') {
+                    depth--;
+
+                    if (depth == 0 && c == ']') {
+                        return i;
+                    }
+                }
+            }
+
+            throw error("Unclosed '['");
+        }
+
+        private Segment parseFilter(String filter) {
+            if (!filter.startsWith("@")) {
+                throw error("Predicate must start with '@'");
+            }
+
+            String[] operators = {"==", "!=", "<=", ">=", "<", ">"};
+            char quote = 0;
+
+            for (int i = 0; i < filter.length(); i++) {
+                char c = filter.charAt(i);
+
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                    continue;
+                }
+
+                if (c == '\'' || c == '"') {
+                    quote = c;
+                    continue;
+                }
+
+                for (String operator : operators) {
+                    if (filter.startsWith(operator, i)) {
+                        JsonPath operand = compileOperand(filter.substring(0, i).trim());
+                        JsonElement literal = parseLiteral(filter.substring(i + operator.length()).trim());
+
+                        return new Filter(operand, operator, literal);
+                    }
+                }
+            }
+
+            return new Filter(compileOperand(filter), null, null);
+        }
+
+        private JsonPath compileOperand(String operand) {
+            JsonPath path = new JsonPath(operand, new Parser(operand).parse());
+
+            if (!path.isDefinite()) {
+                throw error("Predicate operand '" + operand + "' must refer to a single value");
+            }
+
+            return path;
+        }
+
+        private JsonElement parseLiteral(String literal) {
+            if (isQuoted(literal)) {
+                return new JsonPrimitive(literal.substring(1, literal.length() - 1));
+            }
+
+            if (literal.equals("null")) {
+                return JsonNull.INSTANCE;
+            }
+
+            if (literal.equals("true") || literal.equals("false")) {
+                return new JsonPrimitive(Boolean.parseBoolean(literal));
+            }
+
+            try {
+                return new JsonPrimitive(new BigDecimal(literal));
+            } catch (NumberFormatException e) {
+                throw error("Invalid literal '" + literal + "'");
+            }
+        }
+
+        private static boolean isQuoted(String value) {
+            return value.length() >= 2
+                    && (value.charAt(0) == '\'' || value.charAt(0) == '"')
+                    && value.charAt(value.length() - 1) == value.charAt(0);
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " in JSON path: " + expression);
+        }
+    }
+}
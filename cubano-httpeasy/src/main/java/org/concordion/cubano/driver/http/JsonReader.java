@@ -1,12 +1,11 @@
 package org.concordion.cubano.driver.http;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.lang.reflect.Type;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
@@ -18,9 +17,10 @@ import com.google.gson.JsonSyntaxException;
  * @author Andrew Sumner
  */
 public class JsonReader implements ResponseReader {
+    private static final Gson GSON = new Gson();
+    private static final Gson PRETTY_GSON = GSON.newBuilder().setPrettyPrinting().create();
+
     private final JsonElement json;
-    // Check if has '.' not preceded by '\'
-    private static final Pattern CHECK_FOR_DOT = Pattern.compile("(?<!\\\\)\\.");
 
     /**
      * A json reader.
@@ -40,14 +40,23 @@ public class JsonReader implements ResponseReader {
         this.json = element;
     }
 
+    /**
+     * Gson instances are thread safe and cache the type adapters they build, so one instance is shared rather than creating a
+     * new one for each call.
+     *
+     * @return The Gson instance used when no other has been configured
+     */
+    public static Gson getGson() {
+        return GSON;
+    }
+
     /**
      * @return A nicely formatted JSON string
      * @throws IOException If unable to read the response
      */
     @Override
     public String asPrettyString() throws IOException {
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        return gson.toJson(json);
+        return PRETTY_GSON.toJson(json);
     }
 
     /**
@@ -142,6 +151,10 @@ public class JsonReader implements ResponseReader {
      * <pre>
      * ele1.ele2part1\\.ele2part2
      * </pre>
+     * <p>
+     * Wildcards, recursive descent and predicates are also supported, see {@link JsonPath} for the full syntax. Compiled
+     * paths are cached so there is no need to hold on to them.
+     * </p>
      *
      * @param path A dot separated Json search path
      * @return JsonElement or null if not found
@@ -168,53 +181,27 @@ public class JsonReader implements ResponseReader {
             return null;
         }
 
-        if (!hasNextJsonPathElement(path)) {
-            return json.getAsJsonObject().get(removeEscapeCharacter(path));
-        } else {
-            JsonElement newJson;
-            String next = getNextJsonPathElement(path);
-
-            if (next.endsWith("]")) {
-                int pos = next.lastIndexOf('[');
-                String index = next.substring(pos + 1, next.length() - 1);
-                next = next.substring(0, pos);
-
-                newJson = json.getAsJsonObject().get(next).getAsJsonArray().get(Integer.parseInt(index));
-            } else {
-                newJson = json.getAsJsonObject().get(next);
-            }
-
-            return jsonPath(newJson, getNewJsonPath(path));
-        }
+        return JsonPath.compile(path).evaluate(json);
     }
 
-    private String removeEscapeCharacter(String path) {
-        return path.replace("\\.", ".");
-    }
-
-    private boolean hasNextJsonPathElement(String path) {
-        Matcher matcher = CHECK_FOR_DOT.matcher(path);
-        return matcher.find();
-    }
-
-    private String getNextJsonPathElement(String path) {
-        Matcher matcher = CHECK_FOR_DOT.matcher(path);
-
-        if (matcher.find()) {
-            return removeEscapeCharacter(path.substring(0, matcher.start()));
-        } else {
-            return path;
-        }
-    }
-
-    private String getNewJsonPath(String path) {
-        Matcher matcher = CHECK_FOR_DOT.matcher(path);
-
-        if (matcher.find()) {
-            return path.substring(matcher.end());
-        } else {
-            return "";
-        }
+    /**
+     * Search a JSON stream for the requested elements in a single pass without parsing the whole document, only the matching
+     * values are held in memory.
+     * <pre>
+     * Map&lt;String, JsonElement&gt; values = JsonReader.select(reader, "rows[0].doc._id", "total_rows");
+     * </pre>
+     * <p>
+     * Paths use the same syntax as {@link #jsonPath(String)}. Reading stops once every path has been found so the
+     * stream may not be fully consumed, the caller is responsible for closing it.
+     * </p>
+     *
+     * @param json  Json stream
+     * @param paths Dot separated Json search paths
+     * @return The element found for each path, or null if not found, in the order requested
+     * @throws IOException If unable to read the stream
+     */
+    public static Map<String, JsonElement> select(Reader json, String... paths) throws IOException {
+        return new JsonStreamSelector(paths).select(json);
     }
 
     /**
@@ -229,7 +216,7 @@ public class JsonReader implements ResponseReader {
      * @throws IOException if json is not a valid representation for an object of type classOfT
      */
     public <T> T fromJson(Class<T> type) throws IOException {
-        return new Gson().fromJson(json, type);
+        return GSON.fromJson(json, type);
     }
 
     /**
@@ -241,7 +228,7 @@ public class JsonReader implements ResponseReader {
      * @throws JsonSyntaxException if json is not a valid representation for an object of type classOfT
      */
     public <T> T fromJson(Type returnType) throws JsonSyntaxException {
-        return new Gson().fromJson(json, returnType);
+        return GSON.fromJson(json, returnType);
     }
 
     /**
@@ -0,0 +1,194 @@
+package org.concordion.cubano.driver.http;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Evaluates a set of JSON paths in a single pass over a JSON token stream, only building elements for the values that match
+ * and skipping everything else.
+ * <p>
+ * Paths use the {@link JsonPath} syntax. A definite path returns its first match and an indefinite path a JsonArray of every
+ * match. Predicates and negative indexes can't be decided from the token stream so the value they apply to is parsed and the
+ * rest of the path evaluated against it.
+ * </p>
+ */
+class JsonStreamSelector {
+    private final List<String> paths = new ArrayList<>();
+    private final List<JsonPath> compiled = new ArrayList<>();
+    private final Map<String, JsonElement> results = new LinkedHashMap<>();
+    private int unresolved;
+    private boolean readAll;
+
+    JsonStreamSelector(String... paths) {
+        for (String path : paths) {
+            if (this.paths.contains(path)) {
+                continue;
+            }
+
+            JsonPath jsonPath = JsonPath.compile(path);
+
+            this.paths.add(path);
+            this.compiled.add(jsonPath);
+
+            if (jsonPath.isDefinite()) {
+                this.results.put(path, null);
+                this.unresolved++;
+            } else {
+                this.results.put(path, new JsonArray());
+                this.readAll = true;
+            }
+        }
+    }
+
+    /**
+     * Read the JSON and return the value matched by each path, or null where a definite path had no match.
+     * <p>
+     * Reading stops as soon as every path has been matched so the reader may not be fully consumed, this never happens if
+     * any of the paths are indefinite.
+     * </p>
+     *
+     * @param json JSON to read
+     * @return Matches keyed by path in the order requested
+     * @throws IOException If unable to read the JSON
+     */
+    Map<String, JsonElement> select(Reader json) throws IOException {
+        com.google.gson.stream.JsonReader reader = new com.google.gson.stream.JsonReader(json);
+        reader.setLenient(true);
+
+        List<int[]> candidates = new ArrayList<>();
+
+        for (int i = 0; i < paths.size(); i++) {
+            candidates.add(new int[] {i, 0});
+        }
+
+        if (!candidates.isEmpty()) {
+            visit(reader, candidates);
+        }
+
+        return results;
+    }
+
+    /**
+     * Visit the next value in the stream.
+     *
+     * @param candidates Pairs of path index and the segment within that path reached at this value
+     * @return false once every path has been resolved
+     */
+    private boolean visit(com.google.gson.stream.JsonReader reader, List<int[]> candidates) throws IOException {
+        if (candidates.isEmpty()) {
+            reader.skipValue();
+            return true;
+        }
+
+        if (needsElement(candidates)) {
+            JsonElement element = JsonParser.parseReader(reader);
+
+            for (int[] candidate : candidates) {
+                resolve(candidate[0], compiled.get(candidate[0]).evaluate(element, candidate[1]));
+            }
+
+            return isReading();
+        }
+
+        JsonToken token = reader.peek();
+
+        if (token == JsonToken.BEGIN_OBJECT) {
+            reader.beginObject();
+
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+
+                if (!visit(reader, advance(candidates, name, -1))) {
+                    return false;
+                }
+            }
+
+            reader.endObject();
+        } else if (token == JsonToken.BEGIN_ARRAY) {
+            reader.beginArray();
+            int index = 0;
+
+            while (reader.hasNext()) {
+                if (!visit(reader, advance(candidates, null, index++))) {
+                    return false;
+                }
+            }
+
+            reader.endArray();
+        } else {
+            reader.skipValue();
+        }
+
+        return true;
+    }
+
+    private boolean isReading() {
+        return readAll || unresolved > 0;
+    }
+
+    private boolean needsElement(List<int[]> candidates) {
+        for (int[] candidate : candidates) {
+            JsonPath path = compiled.get(candidate[0]);
+
+            if (candidate[1] == path.length() || !path.getSegment(candidate[1]).isStreamable()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private List<int[]> advance(List<int[]> candidates, String name, int index) {
+        List<int[]> next = new ArrayList<>(candidates.size());
+
+        for (int[] candidate : candidates) {
+            JsonPath path = compiled.get(candidate[0]);
+
+            if (path.isDefinite() && results.get(paths.get(candidate[0])) != null) {
+                continue;
+            }
+
+            JsonPath.Segment segment = path.getSegment(candidate[1]);
+
+            if (segment.isRecursive()) {
+                add(next, candidate[0], candidate[1]);
+            }
+
+            if (name == null ? segment.matches(index) : segment.matches(name)) {
+                add(next, candidate[0], candidate[1] + 1);
+            }
+        }
+
+        return next;
+    }
+
+    private static void add(List<int[]> candidates, int pathIndex, int segmentIndex) {
+        for (int[] candidate : candidates) {
+            if (candidate[0] == pathIndex && candidate[1] == segmentIndex) {
+                return;
+            }
+        }
+
+        candidates.add(new int[] {pathIndex, segmentIndex});
+    }
+
+    private void resolve(int pathIndex, JsonElement element) {
+        String path = paths.get(pathIndex);
+
+        if (!compiled.get(pathIndex).isDefinite()) {
+            results.get(path).getAsJsonArray().addAll(element.getAsJsonArray());
+        } else if (element != null && results.get(path) == null) {
+            results.put(path, element);
+            unresolved--;
+        }
+    }
+}
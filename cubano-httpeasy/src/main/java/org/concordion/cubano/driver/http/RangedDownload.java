@@ -0,0 +1,488 @@
+package org.concordion.cubano.driver.http;
+
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.concordion.cubano.driver.http.io.ChannelTransfer;
+import org.concordion.cubano.driver.http.logging.LogManager;
+
+/**
+ * Settings for downloading a large file as a number of byte ranges fetched in parallel, see
+ * {@link HttpEasy#downloadFile(String, RangedDownload)}.
+ * <p>
+ * A HEAD request is sent first to find the size of the file and whether the server supports ranges. The file is then split into
+ * chunks which are fetched by several threads and written straight to their place in a pre-sized file. A range that fails part
+ * way through is requested again from where it got to.
+ * </p>
+ * <p>
+ * The download is written to a ".part" file alongside a ".progress" file recording the completed chunks, if the download fails
+ * it will carry on from the completed chunks next time as long as the server's ETag or Last-Modified header has not changed.
+ * Once every chunk is complete the length and, if given, the checksum are verified before the file is renamed.
+ * </p>
+ *
+ * <pre>
+ * File artefact = HttpEasy.request()
+ *     .path("artefacts/{name}")
+ *     .urlParameters("release.zip")
+ *     .downloadFile("target/downloads", RangedDownload.create()
+ *         .ranges(6)
+ *         .checksum("SHA-256", expectedSha));
+ * </pre>
+ */
+public class RangedDownload {
+    private static final AtomicInteger DOWNLOAD_NUMBER = new AtomicInteger();
+
+    private int ranges = 4;
+    private long chunkSize = 8L * 1024 * 1024;
+    private int retries = 3;
+    private boolean resume = true;
+    private String checksumAlgorithm = null;
+    private String checksum = null;
+
+    /**
+     * @return A new download with the default settings
+     */
+    public static RangedDownload create() {
+        return new RangedDownload();
+    }
+
+    /**
+     * @param ranges Number of ranges to fetch at the same time, the default is 4
+     * @return A self reference
+     */
+    public RangedDownload ranges(int ranges) {
+        if (ranges < 1) {
+            throw new IllegalArgumentException("ranges must be at least 1");
+        }
+
+        this.ranges = ranges;
+        return this;
+    }
+
+    /**
+     * @param chunkSize Size of each range requested, the default is 8MB. Files no larger than this are downloaded with a single GET
+     * @return A self reference
+     */
+    public RangedDownload chunkSize(long chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be at least 1");
+        }
+
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * @param retries Number of times a range that fails part way through is resumed before the download fails, the default is 3
+     * @return A self reference
+     */
+    public RangedDownload retries(int retries) {
+        if (retries < 0) {
+            throw new IllegalArgumentException("retries must not be negative");
+        }
+
+        this.retries = retries;
+        return this;
+    }
+
+    /**
+     * @param resume Whether to carry on from the chunks completed by an earlier failed download of the same file, the default is true
+     * @return A self reference
+     */
+    public RangedDownload resume(boolean resume) {
+        this.resume = resume;
+        return this;
+    }
+
+    /**
+     * Verify the downloaded file against a checksum.
+     *
+     * @param algorithm Name of the {@link MessageDigest} algorithm, eg "SHA-256" or "MD5"
+     * @param expected  Expected checksum as hex
+     * @return A self reference
+     */
+    public RangedDownload checksum(String algorithm, String expected) {
+        try {
+            MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unknown checksum algorithm " + algorithm, e);
+        }
+
+        this.checksumAlgorithm = algorithm;
+        this.checksum = expected.toLowerCase(Locale.ROOT);
+        return this;
+    }
+
+    File download(HttpEasy request, String saveDir) throws IOException {
+        HttpEasy probe = request.downloadCopy();
+        HttpEasyReader head = probe.head();
+
+        request.completedBy(probe);
+
+        long length = head.getHttpConnection().getContentLengthLong();
+        boolean acceptsRanges = "bytes".equalsIgnoreCase(head.getResponseHeaderField("Accept-Ranges"));
+
+        if (!acceptsRanges || length <= chunkSize) {
+            return downloadWhole(request, saveDir);
+        }
+
+        File folder = new File(saveDir);
+        if (!folder.exists()) {
+            if (!folder.mkdirs()) {
+                throw new IOException("Unable to create the folder " + folder.getPath());
+            }
+        }
+
+        String fileName = head.getFileName();
+        String etag = head.getResponseHeaderField("ETag");
+        String version = etag != null ? etag : head.getResponseHeaderField("Last-Modified");
+
+        return new Transfer(request, probe.getLogManager(), new File(saveDir, fileName), length, etag, version).run();
+    }
+
+    private File downloadWhole(HttpEasy request, String saveDir) throws IOException {
+        HttpEasy whole = request.downloadCopy();
+        File file = whole.get().downloadFile(saveDir);
+
+        request.completedBy(whole);
+        verifyChecksum(file);
+
+        return file;
+    }
+
+    private void verifyChecksum(File file) throws IOException {
+        if (checksumAlgorithm == null) {
+            return;
+        }
+
+        String actual = checksumOf(file);
+
+        if (!actual.equals(checksum)) {
+            Files.deleteIfExists(file.toPath());
+            throw new IOException(String.format("%s checksum of %s was %s but expected %s", checksumAlgorithm, file.getName(), actual, checksum));
+        }
+    }
+
+    private String checksumOf(File file) throws IOException {
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance(checksumAlgorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(ChannelTransfer.BUFFER_SIZE);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        StringBuilder hex = new StringBuilder();
+
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+
+        return hex.toString();
+    }
+
+    /**
+     * A single run of the download, fetching whichever chunks are not already complete.
+     */
+    private class Transfer {
+        private final HttpEasy request;
+        private final LogManager logManager;
+        private final File saveFile;
+        private final File partFile;
+        private final File progressFile;
+        private final long length;
+        private final String etag;
+        private final String header;
+        private final int chunks;
+
+        private final Queue<Integer> remaining = new ConcurrentLinkedQueue<>();
+        private final AtomicLong downloaded = new AtomicLong();
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger resumed = new AtomicInteger();
+        private final AtomicBoolean failed = new AtomicBoolean(false);
+        private FileChannel channel;
+        private BufferedWriter progress;
+
+        Transfer(HttpEasy request, LogManager logManager, File saveFile, long length, String etag, String version) {
+            this.request = request;
+            this.logManager = logManager;
+            this.saveFile = saveFile;
+            this.partFile = new File(saveFile.getPath() + ".part");
+            this.progressFile = new File(saveFile.getPath() + ".progress");
+            this.length = length;
+            this.etag = etag;
+            this.header = version == null ? null : length + " " + version;
+            this.chunks = (int) ((length + chunkSize - 1) / chunkSize);
+        }
+
+        File run() throws IOException {
+            Set<Integer> done = previouslyCompleted();
+
+            if (done.isEmpty()) {
+                Files.deleteIfExists(partFile.toPath());
+                Files.deleteIfExists(progressFile.toPath());
+            } else if (logManager != null) {
+                logManager.info("Resuming download of {0}, {1} of {2} chunks already complete", saveFile.getName(), done.size(), chunks);
+            }
+
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                if (!done.contains(chunk)) {
+                    remaining.add(chunk);
+                }
+            }
+
+            completed.set(done.size());
+
+            long started = System.nanoTime();
+            int threads = Math.min(ranges, Math.max(1, remaining.size()));
+
+            try (RandomAccessFile file = new RandomAccessFile(partFile, "rw")) {
+                file.setLength(length);
+                channel = file.getChannel();
+
+                try (BufferedWriter writer = Files.newBufferedWriter(progressFile.toPath(), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    progress = writer;
+
+                    if (done.isEmpty() && header != null) {
+                        writer.write(header);
+                        writer.newLine();
+                        writer.flush();
+                    }
+
+                    fetchAll(threads);
+                }
+            }
+
+            verify();
+
+            Files.move(partFile.toPath(), saveFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.deleteIfExists(progressFile.toPath());
+
+            if (logManager != null) {
+                logManager.info("Downloaded {0} to {1} using {2} ranges{3}", ChannelTransfer.describe(downloaded.get(), System.nanoTime() - started),
+                        saveFile.getPath(), threads, resumed.get() == 0 ? "" : ", resumed " + resumed.get() + " dropped ranges");
+            }
+
+            return saveFile;
+        }
+
+        /**
+         * @return Chunks completed by an earlier run, provided the file has not changed on the server since
+         */
+        private Set<Integer> previouslyCompleted() throws IOException {
+            Set<Integer> done = new HashSet<>();
+
+            if (!resume || header == null || !progressFile.exists() || !partFile.exists() || partFile.length() != length) {
+                return done;
+            }
+
+            List<String> lines = Files.readAllLines(progressFile.toPath(), StandardCharsets.UTF_8);
+
+            if (lines.isEmpty() || !lines.get(0).equals(header)) {
+                return done;
+            }
+
+            for (String line : lines.subList(1, lines.size())) {
+                try {
+                    done.add(Integer.parseInt(line.trim()));
+                } catch (NumberFormatException e) {
+                    // Partially written line from a run that was killed
+                }
+            }
+
+            return done;
+        }
+
+        private void fetchAll(int threads) throws IOException {
+            String prefix = "HttpEasyDownload-" + DOWNLOAD_NUMBER.incrementAndGet() + "-";
+            AtomicInteger threadNumber = new AtomicInteger();
+
+            ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, prefix + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            List<Future<?>> workers = new ArrayList<>();
+            IOException failure = null;
+
+            try {
+                for (int i = 0; i < threads; i++) {
+                    workers.add(executor.submit(() -> {
+                        fetchChunks();
+                        return null;
+                    }));
+                }
+
+                for (Future<?> worker : workers) {
+                    try {
+                        worker.get();
+                    } catch (ExecutionException e) {
+                        if (failure == null) {
+                            failure = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.set(true);
+                throw new InterruptedIOException("Interrupted downloading " + saveFile.getName());
+            } finally {
+                executor.shutdownNow();
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        private void fetchChunks() throws IOException {
+            byte[] buffer = new byte[ChannelTransfer.BUFFER_SIZE];
+            Integer chunk;
+
+            try {
+                while (!failed.get() && (chunk = remaining.poll()) != null) {
+                    fetchChunk(chunk, buffer);
+                    chunkComplete(chunk);
+                }
+            } catch (IOException | RuntimeException e) {
+                failed.set(true);
+                throw e;
+            }
+        }
+
+        private void fetchChunk(int chunk, byte[] buffer) throws IOException {
+            long position = chunk * chunkSize;
+            long end = Math.min(length, position + chunkSize) - 1;
+            int failures = 0;
+
+            while (position <= end) {
+                try {
+                    HttpEasyReader reader = requestRange(position, end);
+
+                    // Ranges are offsets into the body as sent, a gzip encoded file must be saved without decoding each range
+                    try (InputStream in = reader.asEncodedInputStream()) {
+                        int read;
+
+                        while (position <= end && (read = in.read(buffer, 0, (int) Math.min(buffer.length, end - position + 1))) != -1) {
+                            ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+
+                            while (bytes.hasRemaining()) {
+                                position += channel.write(bytes, position);
+                            }
+
+                            downloaded.addAndGet(read);
+                        }
+                    }
+
+                    if (position <= end) {
+                        throw new EOFException("Connection closed with " + (end - position + 1) + " bytes of the range remaining");
+                    }
+                } catch (HttpResponseException e) {
+                    throw e;
+                } catch (IOException e) {
+                    if (failed.get() || ++failures > retries) {
+                        throw e;
+                    }
+
+                    resumed.incrementAndGet();
+                }
+            }
+        }
+
+        private HttpEasyReader requestRange(long from, long to) throws IOException {
+            HttpEasy range = request.downloadCopy().header("Range", "bytes=" + from + "-" + to);
+
+            if (etag != null) {
+                range.header("If-Range", etag);
+            }
+
+            HttpEasyReader reader;
+
+            try {
+                reader = range.sendDeferred("GET");
+            } catch (HttpResponseException e) {
+                range.getLogManager().writeDeferred();
+                throw e;
+            }
+
+            range.getLogManager().discardDeferred();
+
+            if (reader.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+                reader.getHttpConnection().disconnect();
+
+                throw new HttpResponseException(reader.getResponseCode(), String.format(
+                        "Expected a partial response for bytes %d-%d of %s but got response code %d, the file may have changed on the server",
+                        from, to, saveFile.getName(), reader.getResponseCode()));
+            }
+
+            return reader;
+        }
+
+        private synchronized void chunkComplete(int chunk) throws IOException {
+            completed.incrementAndGet();
+
+            if (header != null) {
+                progress.write(Integer.toString(chunk));
+                progress.newLine();
+                progress.flush();
+            }
+        }
+
+        private void verify() throws IOException {
+            if (completed.get() != chunks || partFile.length() != length) {
+                throw new IOException(String.format("Download of %s is incomplete, expected %d bytes in %d chunks but have %d bytes in %d chunks",
+                        saveFile.getName(), length, chunks, partFile.length(), completed.get()));
+            }
+
+            if (checksumAlgorithm != null) {
+                String actual = checksumOf(partFile);
+
+                if (!actual.equals(checksum)) {
+                    Files.deleteIfExists(partFile.toPath());
+                    Files.deleteIfExists(progressFile.toPath());
+                    throw new IOException(String.format("%s checksum of %s was %s but expected %s", checksumAlgorithm, saveFile.getName(), actual, checksum));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package org.concordion.cubano.driver.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A request URL and headers that are parsed once and then bound to parameters for each request, for endpoints that are called
+ * many times.
+ * <p>
+ * The URL is split into its literal parts and parameters when the template is created, binding parameters only has to join
+ * them back together. Templates are immutable and can be shared between threads, {@link #header(String, String)} returns a new
+ * template.
+ * </p>
+ * <p>
+ * The base URL, if the template doesn't contain a full URL, is taken from the client each time a request is sent, so a template
+ * held in a static field follows later changes to the default base URL.
+ * </p>
+ *
+ * <pre>
+ * private static final RequestTemplate CUSTOMER = HttpEasy.template("customer/{id}").header("Accept", "application/json");
+ *
+ * String customer = CUSTOMER.bind(id).get().asString();
+ * </pre>
+ */
+public final class RequestTemplate {
+    private static final Pattern USER_INFO = Pattern.compile("^([^/]*//)([^/@]*)@");
+    private static final Pattern SCHEME_AND_HOST = Pattern.compile("^[^/]*//[^/]*");
+
+    private final HttpEasyClient client;
+    private final String url;
+    private final String startToken;
+    private final String endToken;
+    private final String[] segments;
+    private final int length;
+    private final String pathTemplate;
+    private final String authUser;
+    private final String authPassword;
+    private final Map<String, String> headers;
+    private final boolean relative;
+    private volatile Base base = null;
+
+    private RequestTemplate(HttpEasyClient client, String spec, String startToken, String endToken, Map<String, String> headers) {
+        this.client = client;
+        this.url = spec;
+        this.startToken = startToken;
+        this.endToken = endToken;
+        this.headers = Collections.unmodifiableMap(headers);
+        this.relative = !HttpEasy.containsProtol(spec);
+
+        Matcher userInfo = USER_INFO.matcher(spec);
+        String user = null;
+        String password = null;
+
+        if (relative) {
+            spec = spec.isEmpty() || spec.startsWith("/") ? spec : "/" + spec;
+        } else if (userInfo.find()) {
+            String credentials = userInfo.group(2);
+            int index = credentials.indexOf(":");
+
+            if (index > 0) {
+                user = credentials.substring(0, index);
+                password = credentials.substring(index + 1);
+            }
+
+            spec = userInfo.replaceFirst("$1");
+        }
+
+        this.authUser = user;
+        this.authPassword = password;
+        this.segments = split(spec, startToken, endToken);
+        this.length = spec.length();
+
+        this.pathTemplate = pathOf(relative ? spec : SCHEME_AND_HOST.matcher(spec).replaceFirst(""));
+    }
+
+    private static String pathOf(String spec) {
+        int queryStart = spec.indexOf('?');
+
+        return queryStart < 0 ? spec : spec.substring(0, queryStart);
+    }
+
+    /**
+     * Create a template.
+     *
+     * @param client Client the requests are sent with, null for {@link HttpEasyDefaults}
+     * @param url    Full URL, or path to append to the client's base URL
+     * @return The template
+     */
+    static RequestTemplate create(HttpEasyClient client, String url) {
+        return new RequestTemplate(client, url, "{", "}", new LinkedHashMap<>());
+    }
+
+    /**
+     * Split the URL into the literal text between parameters, there is always one more segment than parameters.
+     */
+    private static String[] split(String spec, String startToken, String endToken) {
+        List<String> parts = new ArrayList<>();
+        int from = 0;
+        int start;
+
+        while ((start = spec.indexOf(startToken, from)) > 0) {
+            int end = spec.indexOf(endToken, start + startToken.length());
+
+            if (end < 0) {
+                throw new IllegalArgumentException("URL parameter at position " + start + " of " + spec + " is missing " + endToken);
+            }
+
+            parts.add(spec.substring(from, start));
+            from = end + endToken.length();
+        }
+
+        parts.add(spec.substring(from));
+
+        return parts.toArray(new String[parts.size()]);
+    }
+
+    /**
+     * Create a copy of this template that sends an additional header.
+     *
+     * @param name  Header name
+     * @param value Header value
+     * @return A new template
+     */
+    public RequestTemplate header(String name, String value) {
+        Map<String, String> copy = new LinkedHashMap<>(headers);
+        copy.put(name, value);
+
+        return new RequestTemplate(client, url, startToken, endToken, copy);
+    }
+
+    /**
+     * Create a copy of this template with different parameter tokens, see {@link HttpEasy#parameterTokens(String, String)}.
+     *
+     * @param start Start token
+     * @param end   End token
+     * @return A new template
+     */
+    public RequestTemplate parameterTokens(String start, String end) {
+        return new RequestTemplate(client, url, start, end, new LinkedHashMap<>(headers));
+    }
+
+    /**
+     * Create a request from this template.
+     *
+     * @param urlParameters Values for the parameters in the URL, in the order they appear
+     * @return A request that can have further settings added before it is sent, apart from changes to the URL
+     */
+    public HttpEasy bind(Object... urlParameters) {
+        HttpEasy request = new HttpEasy(client);
+
+        request.prepared(this, urlParameters);
+
+        return request;
+    }
+
+    /**
+     * @return Number of parameters in the URL
+     */
+    public int getParameterCount() {
+        return segments.length - 1;
+    }
+
+    /**
+     * @return The headers sent with every request created from this template
+     */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    String getAuthUser() {
+        return authUser;
+    }
+
+    String getAuthPassword() {
+        return authPassword;
+    }
+
+    /**
+     * @param baseUrl Base URL of the client the request is sent with
+     * @return The path of the URL before the parameters are replaced
+     */
+    String getPathTemplate(String baseUrl) {
+        String path = relative ? resolve(baseUrl).path + pathTemplate : pathTemplate;
+
+        return path.startsWith("/") ? path : "/" + path;
+    }
+
+    /**
+     * Join the URL back together with the parameter values, following the same rules as {@link HttpEasy#urlParameters(Object...)}.
+     *
+     * @param baseUrl    Base URL of the client the request is sent with, ignored if the template is a full URL
+     * @param parameters Parameter values
+     * @param query      Query parameters added to the request, may be empty
+     * @return The URL
+     */
+    String expand(String baseUrl, Object[] parameters, CharSequence query) {
+        String prefix = relative ? resolve(baseUrl).prefix : "";
+        StringBuilder url = new StringBuilder(prefix.length() + length + 16 * getParameterCount() + query.length() + 1);
+        String current = "";
+
+        url.append(prefix);
+
+        for (int i = 0; i < getParameterCount(); i++) {
+            url.append(segments[i]);
+
+            if (i < parameters.length) {
+                current = String.valueOf(parameters[i]);
+
+                if (current.contains(" ")) {
+                    throw new IllegalArgumentException("URL Parameter [" + (i + 1) + "] cannot contain a space");
+                }
+            }
+
+            url.append(current);
+        }
+
+        url.append(segments[segments.length - 1]);
+
+        if (query.length() > 0) {
+            url.append(url.indexOf("?") < 0 ? '?' : '&').append(query);
+        }
+
+        return url.toString();
+    }
+
+    /**
+     * The base URL last used, only replaced when a request is sent with a different one.
+     */
+    private Base resolve(String baseUrl) {
+        String value = baseUrl == null ? "" : baseUrl;
+        Base current = base;
+
+        if (current == null || !current.url.equals(value)) {
+            current = new Base(value, length > 0);
+            base = current;
+        }
+
+        return current;
+    }
+
+    /**
+     * @return The URL template
+     */
+    @Override
+    public String toString() {
+        return url;
+    }
+
+    /**
+     * A base URL split into the text that is prepended to the template and its path.
+     */
+    private static final class Base {
+        private final String url;
+        private final String prefix;
+        private final String path;
+
+        Base(String url, boolean appended) {
+            this.url = url;
+            this.prefix = appended && url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+
+            String basePath = pathOf(SCHEME_AND_HOST.matcher(prefix).replaceFirst(""));
+            this.path = basePath.endsWith("/") ? basePath.substring(0, basePath.length() - 1) : basePath;
+        }
+    }
+}
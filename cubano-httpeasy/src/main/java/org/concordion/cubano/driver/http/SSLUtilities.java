@@ -12,50 +12,59 @@ import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
+/**
+ * Shared trust all certificates socket factory and trust all hosts verifier, both are created once and are safe to use from
+ * any thread.
+ */
 public class SSLUtilities {
 
-    private static TrustManager[] trustAllCerts = null;
-    private static SSLSocketFactory trustAllSocketFactory = null;
-    private static HostnameVerifier allHostsValid = null;
+    private static final Object LOCK = new Object();
+    private static volatile SSLSocketFactory trustAllSocketFactory = null;
 
     public static SSLSocketFactory getTrustAllCertificatesSocketFactory() throws NoSuchAlgorithmException, KeyManagementException {
+        SSLSocketFactory factory = trustAllSocketFactory;
 
-        if (trustAllCerts == null) {
-            // Create a trust manager that does not validate certificate chains
-            trustAllCerts = new TrustManager[] {
-                    new X509TrustManager() {
-                        public java.security.cert.X509Certificate[] getAcceptedIssuers() {
-                            return null;
-                        }
-
-                        public void checkClientTrusted(X509Certificate[] certs, String authType) {
-                        }
-
-                        public void checkServerTrusted(X509Certificate[] certs, String authType) {
-                        }
-                    }
-            };
-        }
+        if (factory == null) {
+            synchronized (LOCK) {
+                factory = trustAllSocketFactory;
+
+                if (factory == null) {
+                    // Create a trust manager that does not validate certificate chains
+                    TrustManager[] trustAllCerts = new TrustManager[] {
+                            new X509TrustManager() {
+                                public java.security.cert.X509Certificate[] getAcceptedIssuers() {
+                                    return null;
+                                }
+
+                                public void checkClientTrusted(X509Certificate[] certs, String authType) {
+                                }
+
+                                public void checkServerTrusted(X509Certificate[] certs, String authType) {
+                                }
+                            }
+                    };
+
+                    SSLContext sc = SSLContext.getInstance("SSL");
+                    sc.init(null, trustAllCerts, new SecureRandom());
 
-        if (trustAllSocketFactory == null) {
-            SSLContext sc = SSLContext.getInstance("SSL");
-            sc.init(null, trustAllCerts, new SecureRandom());
-            
-            trustAllSocketFactory = sc.getSocketFactory();
+                    factory = sc.getSocketFactory();
+                    trustAllSocketFactory = factory;
+                }
+            }
         }
 
-        return trustAllSocketFactory;
+        return factory;
     }
 
     public static HostnameVerifier getTrustAllHostsVerifier() {
-        if (allHostsValid == null) {
-            allHostsValid = new HostnameVerifier() {
-                public boolean verify(String hostname, SSLSession session) {
-                    return true;
-                }
-            };
-        }
+        return TrustAllHosts.VERIFIER;
+    }
 
-        return allHostsValid;
+    private static final class TrustAllHosts {
+        private static final HostnameVerifier VERIFIER = new HostnameVerifier() {
+            public boolean verify(String hostname, SSLSession session) {
+                return true;
+            }
+        };
     }
 }
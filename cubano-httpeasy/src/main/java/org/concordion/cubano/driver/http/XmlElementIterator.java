@@ -0,0 +1,192 @@
+package org.concordion.cubano.driver.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.xml.bind.DataBindingException;
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streams an XML document and unmarshals each element matching a path as it is reached, without ever building a DOM.
+ * <p>
+ * The path is a slash separated list of element local names (namespace prefixes are ignored) starting from the root element,
+ * <code>*</code> matches any element and a leading <code>//</code> matches the path at any depth, eg:
+ * </p>
+ * <pre>
+ * Envelope/Body/listResponse/item
+ * //item
+ * </pre>
+ * <p>
+ * The underlying stream is closed once the end of the document is reached or {@link #close()} is called, the iterator must
+ * be closed if it is not read to the end. Read and binding errors are thrown as {@link UncheckedIOException} and
+ * {@link DataBindingException} respectively.
+ * </p>
+ *
+ * @param <T> Type each matching element is unmarshalled to
+ */
+public class XmlElementIterator<T> implements Iterator<T>, Closeable {
+    private final InputStream source;
+    private final XMLStreamReader reader;
+    private final Class<T> type;
+    private final String[] steps;
+    private final boolean anyDepth;
+    private final List<String> elements = new ArrayList<>();
+    private boolean eventConsumed = false;
+    private boolean closed = false;
+    private T next = null;
+
+    /**
+     * Constructor.
+     *
+     * @param xml  XML stream, encoding is detected from the XML declaration
+     * @param path Path of the elements to return
+     * @param type Class to unmarshal each element to
+     * @throws IOException If the stream cannot be read or the class cannot be bound
+     */
+    public XmlElementIterator(InputStream xml, String path, Class<T> type) throws IOException {
+        this.anyDepth = path.startsWith("//");
+        this.steps = (anyDepth ? path.substring(2) : path.startsWith("/") ? path.substring(1) : path).split("/");
+        this.type = type;
+        this.source = xml;
+
+        try {
+            // Fail early if the class can't be bound
+            JaxbCache.context(type);
+            this.reader = XmlFactories.get().xmlInputFactory().createXMLStreamReader(xml);
+        } catch (JAXBException | XMLStreamException e) {
+            xml.close();
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !closed) {
+            next = read();
+        }
+
+        return next != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        T value = next;
+        next = null;
+
+        return value;
+    }
+
+    /**
+     * @return A sequential stream of the matching elements, closing the stream closes this iterator
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            source.close();
+        }
+    }
+
+    private T read() {
+        try {
+            while (!eventConsumed || reader.hasNext()) {
+                int event = eventConsumed ? reader.next() : reader.getEventType();
+                eventConsumed = true;
+
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    elements.add(reader.getLocalName());
+
+                    if (matches()) {
+                        elements.remove(elements.size() - 1);
+
+                        // Unmarshallers are per thread and the iterator may be read on a different thread to the one it was created on
+                        T value = JaxbCache.unmarshaller(type).unmarshal(reader, type).getValue();
+
+                        // The reader is left on the event following the end of the element
+                        eventConsumed = false;
+
+                        if (value != null) {
+                            return value;
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    elements.remove(elements.size() - 1);
+                }
+            }
+
+            close();
+
+            return null;
+        } catch (XMLStreamException e) {
+            closeQuietly();
+            throw new UncheckedIOException(new IOException(e));
+        } catch (IOException e) {
+            closeQuietly();
+            throw new UncheckedIOException(e);
+        } catch (JAXBException e) {
+            closeQuietly();
+            throw new DataBindingException(e);
+        }
+    }
+
+    private boolean matches() {
+        int offset = elements.size() - steps.length;
+
+        if (offset < 0 || (offset > 0 && !anyDepth)) {
+            return false;
+        }
+
+        for (int i = 0; i < steps.length; i++) {
+            if (!steps[i].equals("*") && !steps[i].equals(elements.get(offset + i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            // Already reporting the original failure
+        }
+    }
+}
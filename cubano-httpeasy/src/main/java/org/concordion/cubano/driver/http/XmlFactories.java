@@ -0,0 +1,149 @@
+package org.concordion.cubano.driver.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+/**
+ * Per thread cache of the JAXP objects used by {@link XmlReader}.
+ * <p>
+ * Looking up a JAXP factory scans the class path for service providers so is expensive, and none of the factories or the
+ * objects they create are thread safe, so each thread gets its own set which are reset before being handed out.
+ * Compiled XPath expressions are cached per thread in a bounded LRU cache keyed by the expression and namespace context.
+ * </p>
+ */
+final class XmlFactories {
+    private static final int XPATH_CACHE_SIZE = 256;
+    private static final ThreadLocal<XmlFactories> CURRENT = ThreadLocal.withInitial(XmlFactories::new);
+
+    private DocumentBuilder documentBuilder;
+    private XPathFactory xPathFactory;
+    private Transformer transformer;
+    private XMLInputFactory xmlInputFactory;
+    private final Map<XPathKey, XPathExpression> expressions = new LinkedHashMap<XPathKey, XPathExpression>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<XPathKey, XPathExpression> eldest) {
+            return size() > XPATH_CACHE_SIZE;
+        }
+    };
+
+    private XmlFactories() {
+    }
+
+    /**
+     * @return The cache for the current thread
+     */
+    static XmlFactories get() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return A document builder with default settings, only valid on the current thread until the next call
+     * @throws ParserConfigurationException If a builder can't be created
+     */
+    DocumentBuilder documentBuilder() throws ParserConfigurationException {
+        if (documentBuilder == null) {
+            documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        } else {
+            documentBuilder.reset();
+        }
+
+        return documentBuilder;
+    }
+
+    /**
+     * @return An identity transformer with default output properties, only valid on the current thread until the next call
+     * @throws TransformerConfigurationException If a transformer can't be created
+     */
+    Transformer transformer() throws TransformerConfigurationException {
+        if (transformer == null) {
+            transformer = TransformerFactory.newInstance().newTransformer();
+        } else {
+            transformer.reset();
+        }
+
+        return transformer;
+    }
+
+    /**
+     * @return A namespace aware StAX input factory, only valid on the current thread
+     */
+    XMLInputFactory xmlInputFactory() {
+        if (xmlInputFactory == null) {
+            xmlInputFactory = XMLInputFactory.newInstance();
+        }
+
+        return xmlInputFactory;
+    }
+
+    /**
+     * Compile an XPath expression, or return the previously compiled one.
+     *
+     * @param expression       XPath expression
+     * @param namespaceContext Namespace context, may be null
+     * @return Compiled expression, only valid on the current thread
+     * @throws XPathExpressionException If the expression is invalid
+     */
+    XPathExpression xPath(String expression, NamespaceContext namespaceContext) throws XPathExpressionException {
+        XPathKey key = new XPathKey(expression, namespaceContext);
+        XPathExpression compiled = expressions.get(key);
+
+        if (compiled == null) {
+            if (xPathFactory == null) {
+                xPathFactory = XPathFactory.newInstance();
+            }
+
+            XPath xPath = xPathFactory.newXPath();
+
+            if (namespaceContext != null) {
+                xPath.setNamespaceContext(namespaceContext);
+            }
+
+            compiled = xPath.compile(expression);
+            expressions.put(key, compiled);
+        }
+
+        return compiled;
+    }
+
+    private static final class XPathKey {
+        private final String expression;
+        private final NamespaceContext namespaceContext;
+
+        XPathKey(String expression, NamespaceContext namespaceContext) {
+            this.expression = expression;
+            this.namespaceContext = namespaceContext;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof XPathKey)) {
+                return false;
+            }
+
+            XPathKey other = (XPathKey) obj;
+
+            return expression.equals(other.expression) && Objects.equals(namespaceContext, other.namespaceContext);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * expression.hashCode() + Objects.hashCode(namespaceContext);
+        }
+    }
+}
@@ -1,21 +1,23 @@
 package org.concordion.cubano.driver.http;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.stream.Stream;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
+import javax.xml.namespace.NamespaceContext;
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.TransformerFactoryConfigurationError;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
@@ -23,7 +25,6 @@ import javax.xml.transform.stream.StreamSource;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
@@ -38,6 +39,7 @@ import org.xml.sax.SAXException;
  * @author Andrew Sumner
  */
 public class XmlReader implements ResponseReader {
+    private final String xml;
     private final Document document;
 
     /**
@@ -49,15 +51,13 @@ public class XmlReader implements ResponseReader {
      * @throws SAXException SAX exception
      */
     public XmlReader(String xml) throws ParserConfigurationException, SAXException, IOException {
-        DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder;
-        builder = domFactory.newDocumentBuilder();
-
+        DocumentBuilder builder = XmlFactories.get().documentBuilder();
 
         InputSource src = new InputSource();
         src.setCharacterStream(new StringReader(xml));
 
         document = builder.parse(src);
+        this.xml = xml;
     }
 
     /**
@@ -80,8 +80,7 @@ public class XmlReader implements ResponseReader {
 
     private static String convertXmlNodeToString(Node node) throws TransformerFactoryConfigurationError, TransformerException {
         DOMSource domSource = new DOMSource(node);
-        Transformer transformer;
-        transformer = TransformerFactory.newInstance().newTransformer();
+        Transformer transformer = XmlFactories.get().transformer();
         StringWriter sw = new StringWriter();
         StreamResult sr = new StreamResult(sw);
         transformer.transform(domSource, sr);
@@ -91,15 +90,40 @@ public class XmlReader implements ResponseReader {
     /**
      * Evaluate an XPath expression in the specified context and return the result
      * as the specified type.. {@link XPath#evaluate(String, InputSource, QName)}
+     * <p>
+     * Compiled expressions are cached so evaluating the same expression again is cheap.
+     * </p>
      * 
      * @param expression
      *            search path
+     * @param returnType
+     *            the desired return type, one of the {@link XPathConstants}
      * @return Result of evaluating an XPath expression as an Object of returnType.
      * @throws XPathExpressionException
      */
     public Object evaluate(String expression, QName returnType) throws XPathExpressionException {
-        XPath xPath = XPathFactory.newInstance().newXPath();
-        return xPath.evaluate(expression, document, returnType);
+        return evaluate(expression, null, returnType);
+    }
+
+    /**
+     * Evaluate an XPath expression using the supplied namespace context to resolve prefixes and return the result
+     * as the specified type.
+     * <p>
+     * Compiled expressions are cached by expression and namespace context, so reuse the same context instance (or one that
+     * implements equals) to benefit from the cache.
+     * </p>
+     *
+     * @param expression
+     *            search path
+     * @param namespaceContext
+     *            namespace context for resolving prefixes in the expression, may be null
+     * @param returnType
+     *            the desired return type, one of the {@link XPathConstants}
+     * @return Result of evaluating an XPath expression as an Object of returnType.
+     * @throws XPathExpressionException
+     */
+    public Object evaluate(String expression, NamespaceContext namespaceContext, QName returnType) throws XPathExpressionException {
+        return XmlFactories.get().xPath(expression, namespaceContext).evaluate(document, returnType);
     }
 
     /**
@@ -153,8 +177,7 @@ public class XmlReader implements ResponseReader {
             Source xmlInput = new StreamSource(new StringReader(input));
             StringWriter stringWriter = new StringWriter();
             StreamResult xmlOutput = new StreamResult(stringWriter);
-            TransformerFactory transformerFactory = TransformerFactory.newInstance();
-            Transformer transformer = transformerFactory.newTransformer();
+            Transformer transformer = XmlFactories.get().transformer();
             transformer.setOutputProperty(OutputKeys.INDENT, "yes");
             transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", String.valueOf(indent));
             transformer.transform(xmlInput, xmlOutput);
@@ -167,8 +190,7 @@ public class XmlReader implements ResponseReader {
     private String getXmlString(Node node) {
         try {
             DOMSource domSource = new DOMSource(node);
-            Transformer transformer;
-            transformer = TransformerFactory.newInstance().newTransformer();
+            Transformer transformer = XmlFactories.get().transformer();
             StringWriter sw = new StringWriter();
             StreamResult sr = new StreamResult(sw);
             transformer.transform(domSource, sr);
@@ -181,20 +203,23 @@ public class XmlReader implements ResponseReader {
     }
 
     /**
-     * 
-     * @param node node
-     * @param name name of node
-     * @return is Node found using name
+     * Stream an XML document and unmarshal each element matching the path as it is reached, without building a DOM, see
+     * {@link XmlElementIterator} for the path syntax.
+     * <pre>
+     * try (Stream&lt;Item&gt; items = XmlReader.stream(input, "Envelope/Body/listResponse/item", Item.class)) {
+     *     items.forEach(this::check);
+     * }
+     * </pre>
+     *
+     * @param <T>  The type of the desired class
+     * @param xml  XML stream, closed when the returned stream is closed
+     * @param path Path of the elements to return
+     * @param type Class of object to deserialize each element to
+     * @return Stream of matching elements, must be closed if not read to the end
+     * @throws IOException If the stream cannot be read or the class cannot be bound
      */
-    private boolean isNodeNamed(Node node, String name) {
-        String nodeName = node.getNodeName();
-        int index = nodeName.indexOf(":");
-
-        if (index >= 0) {
-            nodeName = nodeName.substring(index + 1);
-        }
-
-        return nodeName.equalsIgnoreCase(name);
+    public static <T> Stream<T> stream(InputStream xml, String path, Class<T> type) throws IOException {
+        return new XmlElementIterator<>(xml, path, type).stream();
     }
 
     /**
@@ -207,36 +232,55 @@ public class XmlReader implements ResponseReader {
      */
     @SuppressWarnings("unchecked")
     public <T> T from(Class<T> clazz) throws JAXBException {
-        Node parse = document;
+        // The document isn't namespace aware so can't be unmarshalled directly, instead stream the source from the start of
+        // the content rather than serialising the content node back to a string first
+        try {
+            XMLStreamReader reader = XmlFactories.get().xmlInputFactory().createXMLStreamReader(new StringReader(xml));
 
-        if (document.hasChildNodes()) {
-            Node node = document.getFirstChild();
+            try {
+                moveToContent(reader);
 
-            if (isNodeNamed(node, "Envelope")) {
-                Node child = node.getFirstChild();
+                return (T) JaxbCache.unmarshaller(clazz).unmarshal(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new JAXBException(e);
+        }
+    }
 
-                while (child != null) {
-                    if (isNodeNamed(child, "Body")) {
-                        parse = child.getFirstChild();
-                        break;
-                    }
+    /**
+     * Position the reader at the root element, or the first element in the body if the XML is a soap envelope.
+     */
+    private static void moveToContent(XMLStreamReader reader) throws XMLStreamException, JAXBException {
+        while (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+            reader.next();
+        }
 
-                    child = child.getNextSibling();
-                }
-            }
+        if (!reader.getLocalName().equalsIgnoreCase("Envelope")) {
+            return;
         }
 
-        StringReader stream = new StringReader(getXmlString(parse));
-        T result;
+        int depth = 0;
 
-        try {
-            JAXBContext jaxbc = JAXBContext.newInstance(clazz);
-            Unmarshaller unmarshaller = jaxbc.createUnmarshaller();
-            result = (T) unmarshaller.unmarshal(stream);
-        } catch (JAXBException e) {
-            throw e;
+        while (reader.hasNext()) {
+            int event = reader.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (depth == 0 && reader.getLocalName().equalsIgnoreCase("Body")) {
+                    if (reader.nextTag() != XMLStreamConstants.START_ELEMENT) {
+                        throw new JAXBException("Soap body is empty");
+                    }
+
+                    return;
+                }
+
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
         }
 
-        return result;
+        throw new JAXBException("Soap envelope has no body");
     }
 }
@@ -0,0 +1,354 @@
+package org.concordion.cubano.driver.http.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A stored response along with the information needed to decide whether it is still fresh.
+ */
+final class CachedResponse {
+    /** Response headers that are never written to disk, lower case. */
+    static final List<String> PRIVATE_HEADERS = Collections.unmodifiableList(Arrays.asList("set-cookie", "set-cookie2"));
+
+    private final String url;
+    private final int responseCode;
+    private final String responseMessage;
+    private final Map<String, List<String>> headers;
+    private final byte[] body;
+    private final long freshUntil;
+
+    CachedResponse(String url, int responseCode, String responseMessage, Map<String, List<String>> headers, byte[] body, long now) {
+        this.url = url;
+        this.responseCode = responseCode;
+        this.responseMessage = responseMessage;
+        this.headers = copy(headers);
+        this.body = body;
+        this.freshUntil = now + freshnessLifetime(this.headers, now);
+    }
+
+    private CachedResponse(String url, int responseCode, String responseMessage, long freshUntil, Map<String, List<String>> headers, byte[] body) {
+        this.url = url;
+        this.responseCode = responseCode;
+        this.responseMessage = responseMessage;
+        this.headers = headers;
+        this.body = body;
+        this.freshUntil = freshUntil;
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    int getResponseCode() {
+        return responseCode;
+    }
+
+    String getResponseMessage() {
+        return responseMessage;
+    }
+
+    Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * @return Approximate memory used by the entry
+     */
+    long size() {
+        long size = body.length;
+
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            size += header.getKey() == null ? 0 : header.getKey().length();
+
+            for (String value : header.getValue()) {
+                size += value.length();
+            }
+        }
+
+        return size;
+    }
+
+    boolean isFresh(long now) {
+        return now < freshUntil;
+    }
+
+    boolean hasValidators() {
+        return getHeader(headers, "ETag") != null || getHeader(headers, "Last-Modified") != null;
+    }
+
+    String getETag() {
+        return getHeader(headers, "ETag");
+    }
+
+    String getLastModified() {
+        return getHeader(headers, "Last-Modified");
+    }
+
+    /**
+     * Create a copy of this response with the headers returned by a 304 Not Modified response applied.
+     *
+     * @param notModifiedHeaders Headers of the 304 response
+     * @param now                Current time
+     * @return The updated response
+     */
+    CachedResponse revalidated(Map<String, List<String>> notModifiedHeaders, long now) {
+        Map<String, List<String>> updated = copy(headers);
+
+        for (Map.Entry<String, List<String>> header : notModifiedHeaders.entrySet()) {
+            String name = header.getKey();
+
+            // The status line and body framing headers describe the 304, not the stored response
+            if (name == null || name.equalsIgnoreCase("Content-Length") || name.equalsIgnoreCase("Transfer-Encoding")
+                    || name.equalsIgnoreCase("Content-Encoding")) {
+                continue;
+            }
+
+            updated.keySet().removeIf(existing -> existing != null && existing.equalsIgnoreCase(name));
+            updated.put(name, new ArrayList<>(header.getValue()));
+        }
+
+        return new CachedResponse(url, responseCode, responseMessage, now + freshnessLifetime(updated, now), updated, body);
+    }
+
+    /**
+     * Create a copy of this response to store outside of memory, without values that must not be written to disk.
+     *
+     * @param storedUrl   URL to store, with sensitive values masked
+     * @param headerNames Names of headers to leave out, eg Set-Cookie
+     * @return The copy
+     */
+    CachedResponse redacted(String storedUrl, Collection<String> headerNames) {
+        Map<String, List<String>> kept = copy(headers);
+        kept.keySet().removeIf(name -> name != null && headerNames.contains(name.toLowerCase(Locale.ROOT)));
+
+        return new CachedResponse(storedUrl, responseCode, responseMessage, freshUntil, kept, body);
+    }
+
+    /**
+     * @param url                 Request URL
+     * @param sensitiveParameters Names of query parameters whose values must not be stored
+     * @return The URL with the values of the sensitive parameters masked
+     */
+    static String maskParameters(URL url, List<String> sensitiveParameters) {
+        String masked = url.toString();
+
+        for (String key : sensitiveParameters) {
+            masked = masked.replaceAll("(?i)(?<=\\?|&)" + Pattern.quote(key) + "=[^&#]*", Matcher.quoteReplacement(key) + "=*****");
+        }
+
+        return masked;
+    }
+
+    /**
+     * @param responseCode Status of the response
+     * @param headers      Response headers
+     * @return true if the response may be stored
+     */
+    static boolean isStorable(int responseCode, Map<String, List<String>> headers) {
+        if (responseCode != 200) {
+            return false;
+        }
+
+        Map<String, String> directives = cacheControl(headers);
+
+        if (directives.containsKey("no-store")) {
+            return false;
+        }
+
+        String vary = getHeader(headers, "Vary");
+
+        if (vary != null && vary.trim().equals("*")) {
+            return false;
+        }
+
+        return freshnessLifetime(headers, System.currentTimeMillis()) > 0
+                || getHeader(headers, "ETag") != null
+                || getHeader(headers, "Last-Modified") != null;
+    }
+
+    /**
+     * @param headers Request or response headers
+     * @return The Cache-Control directives, keys are lower case, values are null for directives without a value
+     */
+    static Map<String, String> cacheControl(Map<String, List<String>> headers) {
+        Map<String, String> directives = new LinkedHashMap<>();
+
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (header.getKey() == null || !header.getKey().equalsIgnoreCase("Cache-Control")) {
+                continue;
+            }
+
+            for (String value : header.getValue()) {
+                for (String directive : value.split(",")) {
+                    int equals = directive.indexOf('=');
+                    String name = (equals < 0 ? directive : directive.substring(0, equals)).trim().toLowerCase(Locale.ROOT);
+                    String argument = equals < 0 ? null : directive.substring(equals + 1).trim().replace("\"", "");
+
+                    if (!name.isEmpty()) {
+                        directives.put(name, argument);
+                    }
+                }
+            }
+        }
+
+        return directives;
+    }
+
+    /**
+     * How long the response is fresh for from now, following RFC 7234 without heuristic freshness.
+     */
+    private static long freshnessLifetime(Map<String, List<String>> headers, long now) {
+        Map<String, String> directives = cacheControl(headers);
+
+        if (directives.containsKey("no-cache")) {
+            return 0;
+        }
+
+        long age = parseSeconds(getHeader(headers, "Age")) * 1000;
+
+        if (directives.get("max-age") != null) {
+            return Math.max(0, parseSeconds(directives.get("max-age")) * 1000 - age);
+        }
+
+        String expires = getHeader(headers, "Expires");
+
+        if (expires != null) {
+            long expiresAt = parseDate(expires);
+            String date = getHeader(headers, "Date");
+            long servedAt = date == null ? now : parseDate(date);
+
+            if (expiresAt < 0 || servedAt < 0) {
+                return 0;
+            }
+
+            return Math.max(0, expiresAt - servedAt - age);
+        }
+
+        return 0;
+    }
+
+    private static long parseSeconds(String value) {
+        if (value == null) {
+            return 0;
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static long parseDate(String value) {
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    static String getHeader(Map<String, List<String>> headers, String name) {
+        String found = null;
+
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (header.getKey() != null && header.getKey().equalsIgnoreCase(name) && !header.getValue().isEmpty()) {
+                found = header.getValue().get(header.getValue().size() - 1);
+            }
+        }
+
+        return found;
+    }
+
+    private static Map<String, List<String>> copy(Map<String, List<String>> headers) {
+        Map<String, List<String>> copy = new LinkedHashMap<>();
+
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            copy.put(header.getKey(), Collections.unmodifiableList(new ArrayList<>(header.getValue())));
+        }
+
+        return copy;
+    }
+
+    /**
+     * Write the response to the disk store.
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeUTF(url);
+        out.writeInt(responseCode);
+        writeNullable(out, responseMessage);
+        out.writeLong(freshUntil);
+        out.writeInt(headers.size());
+
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            writeNullable(out, header.getKey());
+            out.writeInt(header.getValue().size());
+
+            for (String value : header.getValue()) {
+                out.writeUTF(value);
+            }
+        }
+
+        out.writeInt(body.length);
+        out.write(body);
+    }
+
+    /**
+     * Read a response written by {@link #write(DataOutputStream)}.
+     */
+    static CachedResponse read(DataInputStream in) throws IOException {
+        String url = in.readUTF();
+        int responseCode = in.readInt();
+        String responseMessage = readNullable(in);
+        long freshUntil = in.readLong();
+        int headerCount = in.readInt();
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+
+        for (int i = 0; i < headerCount; i++) {
+            String name = readNullable(in);
+            int valueCount = in.readInt();
+            List<String> values = new ArrayList<>(valueCount);
+
+            for (int j = 0; j < valueCount; j++) {
+                values.add(in.readUTF());
+            }
+
+            headers.put(name, Collections.unmodifiableList(values));
+        }
+
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+
+        return new CachedResponse(url, responseCode, responseMessage, freshUntil, headers, body);
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,372 @@
+package org.concordion.cubano.driver.http.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.concordion.cubano.driver.http.transport.ConnectionOptions;
+import org.concordion.cubano.driver.http.transport.HttpConnection;
+import org.concordion.cubano.driver.http.transport.HttpTransport;
+
+/**
+ * Holds back the request until it is connected so that a GET can be answered from the {@link HttpResponseCache} without
+ * contacting the server, otherwise passes the request through to the underlying transport.
+ */
+final class CachingConnection extends HttpConnection {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final HttpResponseCache cache;
+    private final HttpTransport transport;
+    private final URL url;
+    private final ConnectionOptions options;
+    private final List<String> sensitiveParameters;
+
+    private String method = "GET";
+    private final Map<String, List<String>> requestHeaders = new LinkedHashMap<>();
+    private boolean doOutput = false;
+    private long fixedLength = -1;
+    private int chunkLength = -1;
+
+    private HttpConnection delegate = null;
+    private String key = null;
+    private CachedResponse stale = null;
+    private CachedResponse served = null;
+    private String cacheStatus = null;
+    private InputStream body = null;
+    private boolean resolved = false;
+
+    CachingConnection(HttpResponseCache cache, HttpTransport transport, URL url, ConnectionOptions options, List<String> sensitiveParameters) {
+        this.cache = cache;
+        this.transport = transport;
+        this.url = url;
+        this.options = options;
+        this.sensitiveParameters = sensitiveParameters;
+    }
+
+    @Override
+    public URL getURL() {
+        return url;
+    }
+
+    @Override
+    public void setRequestMethod(String method) throws IOException {
+        this.method = method;
+
+        if (delegate != null) {
+            delegate.setRequestMethod(method);
+        }
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+
+    @Override
+    public void setRequestProperty(String key, String value) {
+        requestHeaders.keySet().removeIf(existing -> existing.equalsIgnoreCase(key));
+        requestHeaders.put(key, Collections.singletonList(value));
+
+        if (delegate != null) {
+            delegate.setRequestProperty(key, value);
+        }
+    }
+
+    @Override
+    public Map<String, List<String>> getRequestProperties() {
+        if (delegate != null) {
+            return delegate.getRequestProperties();
+        }
+
+        Map<String, List<String>> headers = new LinkedHashMap<>(requestHeaders);
+        headers.keySet().removeIf(name -> name.equalsIgnoreCase("Authorization") || name.equalsIgnoreCase("Proxy-Authorization"));
+
+        return headers;
+    }
+
+    @Override
+    public void setDoOutput(boolean doOutput) {
+        this.doOutput = doOutput;
+    }
+
+    @Override
+    public void setFixedLengthStreamingMode(long contentLength) {
+        this.fixedLength = contentLength;
+    }
+
+    @Override
+    public void setChunkedStreamingMode(int chunkLength) {
+        this.chunkLength = chunkLength;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        if (delegate != null || served != null) {
+            return;
+        }
+
+        if (method.equals("GET")) {
+            Map<String, String> directives = CachedResponse.cacheControl(requestHeaders);
+
+            if (!directives.containsKey("no-store")) {
+                key = HttpResponseCache.key(url, requestHeaders);
+
+                CachedResponse cached = cache.get(key);
+
+                if (cached != null && cached.isFresh(System.currentTimeMillis()) && !directives.containsKey("no-cache")) {
+                    cache.recordHit();
+                    serve(cached, "HIT");
+                    return;
+                }
+
+                stale = cached != null && cached.hasValidators() ? cached : null;
+            }
+        }
+
+        openDelegate();
+    }
+
+    @Override
+    public boolean isConnectDeferred() {
+        return delegate == null || delegate.isConnectDeferred();
+    }
+
+    private void openDelegate() throws IOException {
+        delegate = transport.openConnection(url, options);
+        delegate.setRequestMethod(method);
+
+        for (Map.Entry<String, List<String>> header : requestHeaders.entrySet()) {
+            delegate.setRequestProperty(header.getKey(), header.getValue().get(0));
+        }
+
+        if (stale != null) {
+            if (stale.getETag() != null) {
+                delegate.setRequestProperty("If-None-Match", stale.getETag());
+            }
+
+            if (stale.getLastModified() != null) {
+                delegate.setRequestProperty("If-Modified-Since", stale.getLastModified());
+            }
+        }
+
+        if (doOutput) {
+            delegate.setDoOutput(true);
+        }
+
+        if (fixedLength >= 0) {
+            delegate.setFixedLengthStreamingMode(fixedLength);
+        } else if (chunkLength >= 0) {
+            delegate.setChunkedStreamingMode(chunkLength);
+        }
+
+        delegate.connect();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        connect();
+
+        if (delegate == null) {
+            throw new IOException("Request for " + url + " was answered from the cache and does not accept a body");
+        }
+
+        return delegate.getOutputStream();
+    }
+
+    /**
+     * Decide, on first access to the response, whether it comes from the server or the cache.
+     */
+    private void resolve() throws IOException {
+        connect();
+
+        if (resolved) {
+            return;
+        }
+
+        resolved = true;
+
+        if (served != null) {
+            return;
+        }
+
+        int responseCode = delegate.getResponseCode();
+
+        if (key == null) {
+            if (!method.equals("GET") && !method.equals("HEAD") && responseCode < 400) {
+                cache.invalidate(url);
+            }
+
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+
+        if (responseCode == 304 && stale != null) {
+            cache.recordRevalidation();
+
+            CachedResponse updated = stale.revalidated(delegate.getHeaderFields(), now);
+            cache.put(key, updated, CachedResponse.maskParameters(url, sensitiveParameters));
+
+            drain(delegate.getInputStream());
+
+            serve(updated, "REVALIDATED");
+            return;
+        }
+
+        cache.recordMiss();
+
+        Map<String, List<String>> headers = delegate.getHeaderFields();
+
+        if (!CachedResponse.isStorable(responseCode, headers)) {
+            return;
+        }
+
+        long contentLength = delegate.getContentLengthLong();
+
+        if (contentLength > cache.getMaxEntryBytes()) {
+            return;
+        }
+
+        InputStream in = delegate.getInputStream();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(contentLength > 0 ? (int) contentLength : BUFFER_SIZE);
+        byte[] chunk = new byte[BUFFER_SIZE];
+        int read;
+
+        while ((read = in.read(chunk)) != -1) {
+            buffer.write(chunk, 0, read);
+
+            if (buffer.size() > cache.getMaxEntryBytes()) {
+                // Too big to cache, hand what has been read so far and the rest of the stream to the caller
+                body = new SequenceInputStream(new ByteArrayInputStream(buffer.toByteArray()), in);
+                return;
+            }
+        }
+
+        in.close();
+
+        CachedResponse response = new CachedResponse(url.toString(), responseCode, delegate.getResponseMessage(), headers, buffer.toByteArray(), now);
+        cache.put(key, response, CachedResponse.maskParameters(url, sensitiveParameters));
+
+        body = new ByteArrayInputStream(response.getBody());
+    }
+
+    private void serve(CachedResponse response, String status) {
+        served = response;
+        cacheStatus = status;
+        body = new ByteArrayInputStream(response.getBody());
+        resolved = true;
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+
+        try (InputStream stream = in) {
+            byte[] chunk = new byte[BUFFER_SIZE];
+
+            while (stream.read(chunk) != -1) {
+                // Discard
+            }
+        }
+    }
+
+    @Override
+    public int getResponseCode() throws IOException {
+        resolve();
+
+        return served != null ? served.getResponseCode() : delegate.getResponseCode();
+    }
+
+    @Override
+    public String getResponseMessage() throws IOException {
+        resolve();
+
+        return served != null ? served.getResponseMessage() : delegate.getResponseMessage();
+    }
+
+    @Override
+    public String getHeaderField(String name) {
+        if (name != null && name.equalsIgnoreCase(HttpResponseCache.CACHE_STATUS_HEADER)) {
+            return getCacheStatus();
+        }
+
+        Map<String, List<String>> headers = getHeaderFields();
+
+        return headers == null ? null : CachedResponse.getHeader(headers, name);
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaderFields() {
+        try {
+            resolve();
+        } catch (IOException e) {
+            return Collections.emptyMap();
+        }
+
+        if (served == null) {
+            Map<String, List<String>> headers = delegate.getHeaderFields();
+
+            if (key == null) {
+                return headers;
+            }
+
+            headers = new LinkedHashMap<>(headers);
+            headers.put(HttpResponseCache.CACHE_STATUS_HEADER, Collections.singletonList("MISS"));
+            return headers;
+        }
+
+        Map<String, List<String>> headers = new LinkedHashMap<>(served.getHeaders());
+        headers.put(HttpResponseCache.CACHE_STATUS_HEADER, Collections.singletonList(cacheStatus));
+
+        return headers;
+    }
+
+    private String getCacheStatus() {
+        try {
+            resolve();
+        } catch (IOException e) {
+            return null;
+        }
+
+        return served != null ? cacheStatus : key != null ? "MISS" : null;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        resolve();
+
+        return body != null ? body : delegate.getInputStream();
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        if (served != null || delegate == null) {
+            return null;
+        }
+
+        return delegate.getErrorStream();
+    }
+
+    @Override
+    public void disconnect() {
+        if (delegate != null) {
+            delegate.disconnect();
+        }
+    }
+
+    @Override
+    public void release() {
+        if (delegate != null) {
+            delegate.release();
+        }
+    }
+}
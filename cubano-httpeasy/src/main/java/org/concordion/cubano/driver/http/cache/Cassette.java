@@ -0,0 +1,498 @@
+package org.concordion.cubano.driver.http.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.concordion.cubano.driver.http.transport.HttpTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records requests and their responses to a file so that they can be replayed on later runs without contacting the server.
+ * <p>
+ * Use one cassette per specification. In {@link Mode#RECORD} every request is sent to the server and its response stored, in
+ * {@link Mode#REPLAY} requests are answered from the cassette without opening a connection and a request that was not recorded
+ * fails, in {@link Mode#REPLAY_OR_RECORD} requests that were not recorded are sent to the server and added to the cassette.
+ * Requests that could not be replayed are logged and available from {@link #getMisses()}.
+ * </p>
+ * <p>
+ * Requests are matched on their method, URL and a hash of their body by default, see {@link #matchOn(Match...)}. Request
+ * headers are only stored, and matched, if named in {@link #matchHeaders(String...)} so credentials never reach the file. When
+ * the same request was recorded more than once its responses are replayed in the order they were recorded, the last repeating
+ * once the others have been used.
+ * </p>
+ * <p>
+ * The values of the client's {@link org.concordion.cubano.driver.http.HttpEasyClient#getSensitiveParameters() sensitive
+ * parameters} are masked in the stored URL, and so are not part of the match, and the Set-Cookie response headers are not
+ * stored, see {@link #excludeResponseHeaders(String...)}.
+ * </p>
+ * <p>
+ * Request bodies are held in memory until the response is needed as the body is part of the match.
+ * </p>
+ *
+ * <pre>
+ * Cassette cassette = Cassette.forSpecification(new File("src/test/resources/cassettes"), getClass(), Mode.REPLAY_OR_RECORD);
+ * HttpEasyClient client = HttpEasyClient.builder().cassette(cassette).build();
+ * ...
+ * cassette.close();
+ * </pre>
+ */
+public class Cassette implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Cassette.class);
+
+    private static final String FORMAT = "cubano-cassette";
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".cassette";
+
+    /**
+     * How a cassette treats requests.
+     */
+    public enum Mode {
+        /** Send every request to the server and store the responses, replacing the cassette's previous contents. */
+        RECORD,
+        /** Answer requests from the cassette, failing those that were not recorded. */
+        REPLAY,
+        /** Answer requests from the cassette, sending those that were not recorded to the server and storing their responses. */
+        REPLAY_OR_RECORD
+    }
+
+    /**
+     * The parts of a request that must be the same for a recorded response to be replayed.
+     */
+    public enum Match {
+        /** Request method. */
+        METHOD,
+        /** Scheme, host, port and path of the URL. */
+        PATH,
+        /** Query string of the URL. */
+        QUERY,
+        /** Values of the headers named by {@link Cassette#matchHeaders(String...)}. */
+        HEADERS,
+        /** Hash of the request body. */
+        BODY
+    }
+
+    private final File file;
+    private final Mode mode;
+    private volatile Set<Match> match = EnumSet.of(Match.METHOD, Match.PATH, Match.QUERY, Match.BODY);
+    private volatile List<String> headerNames = Collections.emptyList();
+    private volatile List<String> excludedResponseHeaders = CachedResponse.PRIVATE_HEADERS;
+
+    private final List<Recording> recordings = new ArrayList<>();
+    private final Map<String, Track> index = new ConcurrentHashMap<>();
+    private final List<String> misses = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong replayed = new AtomicLong();
+    private boolean changed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param file File the cassette is stored in
+     * @param mode How requests are treated
+     * @throws IOException If replaying and the cassette can't be read
+     */
+    public Cassette(File file, Mode mode) throws IOException {
+        this.file = file;
+        this.mode = mode;
+
+        if (mode == Mode.RECORD) {
+            return;
+        }
+
+        if (file.isFile()) {
+            load();
+        } else if (mode == Mode.REPLAY) {
+            throw new FileNotFoundException("Cassette " + file.getPath() + " has not been recorded");
+        }
+    }
+
+    /**
+     * Get the cassette for a specification, named after the specification's class.
+     *
+     * @param directory     Directory cassettes are stored in
+     * @param specification Specification, or test, class
+     * @param mode          How requests are treated
+     * @return The cassette
+     * @throws IOException If replaying and the cassette can't be read
+     */
+    public static Cassette forSpecification(File directory, Class<?> specification, Mode mode) throws IOException {
+        return new Cassette(new File(directory, specification.getName() + SUFFIX), mode);
+    }
+
+    /**
+     * Set which parts of a request must be the same for a recorded response to be replayed, the default is the method, URL and
+     * body.
+     *
+     * @param parts Parts of the request to match on
+     * @return A self reference
+     */
+    public Cassette matchOn(Match... parts) {
+        this.match = parts.length == 0 ? EnumSet.noneOf(Match.class) : EnumSet.copyOf(Arrays.asList(parts));
+
+        reindex();
+
+        return this;
+    }
+
+    /**
+     * Store the named request headers, and match on them if {@link Match#HEADERS} is included in {@link #matchOn(Match...)}.
+     *
+     * @param names Header names, eg "Accept"
+     * @return A self reference
+     */
+    public Cassette matchHeaders(String... names) {
+        List<String> lowerCase = new ArrayList<>();
+
+        for (String name : names) {
+            lowerCase.add(name.toLowerCase(Locale.ROOT));
+        }
+
+        this.headerNames = Collections.unmodifiableList(lowerCase);
+
+        if (!lowerCase.isEmpty() && !match.contains(Match.HEADERS)) {
+            Set<Match> parts = EnumSet.copyOf(match);
+            parts.add(Match.HEADERS);
+            this.match = parts;
+        }
+
+        reindex();
+
+        return this;
+    }
+
+    /**
+     * Set the response headers that are not written to the cassette, the default is Set-Cookie and Set-Cookie2.
+     *
+     * @param names Header names, none to store every header
+     * @return A self reference
+     */
+    public Cassette excludeResponseHeaders(String... names) {
+        List<String> lowerCase = new ArrayList<>();
+
+        for (String name : names) {
+            lowerCase.add(name.toLowerCase(Locale.ROOT));
+        }
+
+        this.excludedResponseHeaders = Collections.unmodifiableList(lowerCase);
+
+        return this;
+    }
+
+    /**
+     * Wrap a transport so that the requests it sends are recorded to, or replayed from, this cassette.
+     *
+     * @param transport Transport to send requests that are not replayed
+     * @return The recording transport
+     */
+    public HttpTransport wrap(HttpTransport transport) {
+        return wrap(transport, Collections.emptyList());
+    }
+
+    /**
+     * Wrap a transport so that the requests it sends are recorded to, or replayed from, this cassette.
+     *
+     * @param transport           Transport to send requests that are not replayed
+     * @param sensitiveParameters Names of query parameters whose values must not be stored
+     * @return The recording transport
+     */
+    public HttpTransport wrap(HttpTransport transport, List<String> sensitiveParameters) {
+        return (url, options) -> new CassetteConnection(this, transport, url, options, sensitiveParameters);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return Number of recorded responses
+     */
+    public synchronized int size() {
+        return recordings.size();
+    }
+
+    /**
+     * @return Number of requests answered from the cassette
+     */
+    public long getReplayCount() {
+        return replayed.get();
+    }
+
+    /**
+     * @return Number of requests that could not be answered from the cassette
+     */
+    public long getMissCount() {
+        return misses.size();
+    }
+
+    /**
+     * @return Method and URL of each request that could not be answered from the cassette
+     */
+    public List<String> getMisses() {
+        synchronized (misses) {
+            return new ArrayList<>(misses);
+        }
+    }
+
+    /**
+     * Reset the replay and miss counters.
+     */
+    public void resetStatistics() {
+        replayed.set(0);
+        misses.clear();
+    }
+
+    /**
+     * Write the cassette to its file if anything has been recorded since it was loaded.
+     *
+     * @throws IOException If unable to write the file
+     */
+    public synchronized void save() throws IOException {
+        if (!changed) {
+            return;
+        }
+
+        File directory = file.getAbsoluteFile().getParentFile();
+
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the folder " + directory.getPath());
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temp))))) {
+            out.writeUTF(FORMAT);
+            out.writeInt(VERSION);
+            out.writeInt(recordings.size());
+
+            for (Recording recording : recordings) {
+                recording.write(out);
+            }
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        changed = false;
+    }
+
+    /**
+     * Save the cassette and report any requests that could not be replayed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!misses.isEmpty()) {
+            LOGGER.warn("Cassette {} could not replay {} requests: {}", file.getName(), misses.size(), getMisses());
+        }
+
+        save();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: recordings=%d, replayed=%d, misses=%d", file.getName(), size(), getReplayCount(), getMissCount());
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (!FORMAT.equals(in.readUTF()) || in.readInt() != VERSION) {
+                throw new IOException("Cassette " + file.getPath() + " is not in a supported format, record it again");
+            }
+
+            int count = in.readInt();
+
+            synchronized (this) {
+                for (int i = 0; i < count; i++) {
+                    recordings.add(Recording.read(in));
+                }
+
+                reindex();
+            }
+        }
+    }
+
+    private synchronized void reindex() {
+        index.clear();
+
+        for (Recording recording : recordings) {
+            index.computeIfAbsent(key(recording), k -> new Track()).add(recording.response);
+        }
+    }
+
+    /**
+     * @return The stored headers of a request, those named by {@link #matchHeaders(String...)}
+     */
+    Map<String, String> selectHeaders(Map<String, List<String>> requestHeaders) {
+        Map<String, String> selected = new TreeMap<>();
+
+        for (Map.Entry<String, List<String>> header : requestHeaders.entrySet()) {
+            if (header.getKey() == null || header.getValue().isEmpty()) {
+                continue;
+            }
+
+            String name = header.getKey().toLowerCase(Locale.ROOT);
+
+            if (headerNames.contains(name)) {
+                selected.put(name, header.getValue().get(0));
+            }
+        }
+
+        return selected;
+    }
+
+    /**
+     * @return The recorded response to the request, or null if there isn't one
+     */
+    CachedResponse replay(String method, String url, Map<String, String> headers, String bodyHash) {
+        Track track = index.get(key(method, url, headers, bodyHash));
+
+        if (track == null) {
+            return null;
+        }
+
+        replayed.incrementAndGet();
+
+        return track.next();
+    }
+
+    void miss(String method, String url) {
+        String request = method + " " + url;
+
+        misses.add(request);
+        LOGGER.warn("Cassette {} has no recording for {}", file.getName(), request);
+    }
+
+    synchronized void record(String method, String url, Map<String, String> headers, String bodyHash, CachedResponse response) {
+        Recording recording = new Recording(method, url, headers, bodyHash, response.redacted(url, excludedResponseHeaders));
+
+        recordings.add(recording);
+        index.computeIfAbsent(key(recording), k -> new Track()).add(recording.response);
+        changed = true;
+    }
+
+    private String key(Recording recording) {
+        return key(recording.method, recording.url, recording.headers, recording.bodyHash);
+    }
+
+    private String key(String method, String url, Map<String, String> headers, String bodyHash) {
+        Set<Match> parts = match;
+        StringBuilder key = new StringBuilder();
+        int queryStart = url.indexOf('?');
+
+        if (parts.contains(Match.METHOD)) {
+            key.append(method);
+        }
+
+        key.append(' ');
+
+        if (parts.contains(Match.PATH)) {
+            key.append(queryStart < 0 ? url : url.substring(0, queryStart));
+        }
+
+        if (parts.contains(Match.QUERY) && queryStart >= 0) {
+            key.append(url.substring(queryStart));
+        }
+
+        if (parts.contains(Match.HEADERS)) {
+            for (String name : headerNames) {
+                key.append('\n').append(name).append(": ").append(headers.getOrDefault(name, ""));
+            }
+        }
+
+        if (parts.contains(Match.BODY)) {
+            key.append('\n').append(bodyHash);
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * The responses recorded for one request, replayed in turn.
+     */
+    private static final class Track {
+        private final List<CachedResponse> responses = new ArrayList<>();
+        private final AtomicInteger next = new AtomicInteger();
+
+        synchronized void add(CachedResponse response) {
+            responses.add(response);
+        }
+
+        synchronized CachedResponse next() {
+            int position = Math.min(next.getAndIncrement(), responses.size() - 1);
+
+            return responses.get(position);
+        }
+    }
+
+    private static final class Recording {
+        private final String method;
+        private final String url;
+        private final Map<String, String> headers;
+        private final String bodyHash;
+        private final CachedResponse response;
+
+        Recording(String method, String url, Map<String, String> headers, String bodyHash, CachedResponse response) {
+            this.method = method;
+            this.url = url;
+            this.headers = headers;
+            this.bodyHash = bodyHash;
+            this.response = response;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(method);
+            out.writeUTF(url);
+            out.writeInt(headers.size());
+
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                out.writeUTF(header.getKey());
+                out.writeUTF(header.getValue());
+            }
+
+            out.writeUTF(bodyHash);
+            response.write(out);
+        }
+
+        static Recording read(DataInputStream in) throws IOException {
+            String method = in.readUTF();
+            String url = in.readUTF();
+            int headerCount = in.readInt();
+            Map<String, String> headers = new TreeMap<>();
+
+            for (int i = 0; i < headerCount; i++) {
+                headers.put(in.readUTF(), in.readUTF());
+            }
+
+            String bodyHash = in.readUTF();
+
+            return new Recording(method, url, headers, bodyHash, CachedResponse.read(in));
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package org.concordion.cubano.driver.http.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.concordion.cubano.driver.http.cache.Cassette.Mode;
+import org.concordion.cubano.driver.http.transport.ConnectionOptions;
+import org.concordion.cubano.driver.http.transport.HttpConnection;
+import org.concordion.cubano.driver.http.transport.HttpTransport;
+
+/**
+ * Holds back the request, including its body, until the response is needed so that it can be matched against the
+ * {@link Cassette}. A replayed request never opens a connection, anything else is sent through the underlying transport and,
+ * once its response has been read, added to the cassette.
+ */
+final class CassetteConnection extends HttpConnection {
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[] NO_BODY = new byte[0];
+
+    private final Cassette cassette;
+    private final HttpTransport transport;
+    private final URL url;
+    private final ConnectionOptions options;
+    private final List<String> sensitiveParameters;
+
+    private String method = "GET";
+    private final Map<String, List<String>> requestHeaders = new LinkedHashMap<>();
+    private boolean doOutput = false;
+    private ByteArrayOutputStream requestBody = null;
+
+    private HttpConnection delegate = null;
+    private CachedResponse response = null;
+
+    CassetteConnection(Cassette cassette, HttpTransport transport, URL url, ConnectionOptions options, List<String> sensitiveParameters) {
+        this.cassette = cassette;
+        this.transport = transport;
+        this.url = url;
+        this.options = options;
+        this.sensitiveParameters = sensitiveParameters;
+    }
+
+    @Override
+    public URL getURL() {
+        return url;
+    }
+
+    @Override
+    public void setRequestMethod(String method) throws IOException {
+        this.method = method;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+
+    @Override
+    public void setRequestProperty(String key, String value) {
+        requestHeaders.keySet().removeIf(existing -> existing.equalsIgnoreCase(key));
+        requestHeaders.put(key, Collections.singletonList(value));
+    }
+
+    @Override
+    public Map<String, List<String>> getRequestProperties() {
+        Map<String, List<String>> headers = new LinkedHashMap<>(requestHeaders);
+        headers.keySet().removeIf(name -> name.equalsIgnoreCase("Authorization") || name.equalsIgnoreCase("Proxy-Authorization"));
+
+        return headers;
+    }
+
+    @Override
+    public void setDoOutput(boolean doOutput) {
+        this.doOutput = doOutput;
+    }
+
+    @Override
+    public void setFixedLengthStreamingMode(long contentLength) {
+        // The body is buffered and sent with its length if the request is not replayed
+    }
+
+    @Override
+    public void setChunkedStreamingMode(int chunkLength) {
+        // The body is buffered and sent with its length if the request is not replayed
+    }
+
+    @Override
+    public void connect() throws IOException {
+        // Nothing is sent until the response is needed
+    }
+
+    @Override
+    public boolean isConnectDeferred() {
+        return true;
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        if (response != null) {
+            throw new IOException("Response for " + url + " has already been read, the request body can no longer be written");
+        }
+
+        if (requestBody == null) {
+            requestBody = new ByteArrayOutputStream(BUFFER_SIZE);
+        }
+
+        return requestBody;
+    }
+
+    /**
+     * Replay the response, or fetch and record it, on first access to the response.
+     */
+    private void resolve() throws IOException {
+        if (response != null) {
+            return;
+        }
+
+        byte[] body = requestBody == null ? NO_BODY : requestBody.toByteArray();
+        String bodyHash = body.length == 0 ? "" : HttpResponseCache.hash(body);
+        Map<String, String> headers = cassette.selectHeaders(requestHeaders);
+        String storedUrl = CachedResponse.maskParameters(url, sensitiveParameters);
+
+        if (cassette.getMode() != Mode.RECORD) {
+            CachedResponse recorded = cassette.replay(method, storedUrl, headers, bodyHash);
+
+            if (recorded != null) {
+                response = recorded;
+                return;
+            }
+
+            cassette.miss(method, storedUrl);
+
+            if (cassette.getMode() == Mode.REPLAY) {
+                throw new IOException("Cassette " + cassette.getFile().getName() + " has no recording for " + method + " " + storedUrl);
+            }
+        }
+
+        CachedResponse fetched = fetch(body);
+
+        cassette.record(method, storedUrl, headers, bodyHash, fetched);
+        response = fetched;
+    }
+
+    private CachedResponse fetch(byte[] body) throws IOException {
+        delegate = transport.openConnection(url, options);
+        delegate.setRequestMethod(method);
+
+        for (Map.Entry<String, List<String>> header : requestHeaders.entrySet()) {
+            delegate.setRequestProperty(header.getKey(), header.getValue().get(0));
+        }
+
+        if (doOutput) {
+            delegate.setDoOutput(true);
+            delegate.setFixedLengthStreamingMode(body.length);
+        }
+
+        delegate.connect();
+
+        if (doOutput) {
+            try (OutputStream out = delegate.getOutputStream()) {
+                out.write(body);
+            }
+        }
+
+        int responseCode = delegate.getResponseCode();
+        byte[] content = read(responseCode >= 400 ? delegate.getErrorStream() : delegate.getInputStream());
+
+        return new CachedResponse(url.toString(), responseCode, delegate.getResponseMessage(), delegate.getHeaderFields(), content,
+                System.currentTimeMillis());
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        if (in == null) {
+            return NO_BODY;
+        }
+
+        try (InputStream stream = in) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUFFER_SIZE);
+            byte[] chunk = new byte[BUFFER_SIZE];
+            int read;
+
+            while ((read = stream.read(chunk)) != -1) {
+                buffer.write(chunk, 0, read);
+            }
+
+            return buffer.toByteArray();
+        }
+    }
+
+    @Override
+    public int getResponseCode() throws IOException {
+        resolve();
+
+        return response.getResponseCode();
+    }
+
+    @Override
+    public String getResponseMessage() throws IOException {
+        resolve();
+
+        return response.getResponseMessage();
+    }
+
+    @Override
+    public String getHeaderField(String name) {
+        return CachedResponse.getHeader(getHeaderFields(), name);
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaderFields() {
+        try {
+            resolve();
+        } catch (IOException e) {
+            return Collections.emptyMap();
+        }
+
+        return response.getHeaders();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        resolve();
+
+        if (response.getResponseCode() >= 400) {
+            throw new IOException("Server returned HTTP response code: " + response.getResponseCode() + " for URL: " + url);
+        }
+
+        return new ByteArrayInputStream(response.getBody());
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        if (response == null || response.getResponseCode() < 400) {
+            return null;
+        }
+
+        return new ByteArrayInputStream(response.getBody());
+    }
+
+    @Override
+    public void disconnect() {
+        if (delegate != null) {
+            delegate.disconnect();
+        }
+    }
+
+    @Override
+    public void release() {
+        if (delegate != null) {
+            delegate.release();
+        }
+    }
+}
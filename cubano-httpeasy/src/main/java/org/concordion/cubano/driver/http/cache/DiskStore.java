@@ -0,0 +1,155 @@
+package org.concordion.cubano.driver.http.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Size bounded on-disk tier of the response cache, one file per entry evicted in least recently used order.
+ * <p>
+ * An index of the entries is held in memory, rebuilt from the directory on start up so that the cache survives between test runs.
+ * Entries are keyed by a hash of the request URL, so that the values of its query parameters are not written to disk.
+ * </p>
+ */
+final class DiskStore {
+    private static final String SUFFIX = ".cache";
+
+    private final File directory;
+    private final long maxBytes;
+    private final Map<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+
+    DiskStore(File directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the folder " + directory.getPath());
+        }
+
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+
+        if (files != null) {
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+
+            for (File file : files) {
+                try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+                    index.put(in.readUTF(), file.length());
+                    size += file.length();
+                } catch (IOException e) {
+                    file.delete();
+                }
+            }
+        }
+
+        evict();
+    }
+
+    synchronized CachedResponse get(String requestKey) {
+        String key = storedKey(requestKey);
+
+        if (!index.containsKey(key)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file(key))))) {
+            in.readUTF();
+            return CachedResponse.read(in);
+        } catch (IOException e) {
+            removeStored(key);
+            return null;
+        }
+    }
+
+    synchronized void put(String requestKey, CachedResponse response) throws IOException {
+        String key = storedKey(requestKey);
+        File target = file(key);
+        File temp = new File(directory, target.getName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeUTF(key);
+            response.write(out);
+        }
+
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        Long previous = index.put(key, target.length());
+        size += target.length() - (previous == null ? 0 : previous);
+
+        evict();
+    }
+
+    synchronized void remove(String requestKey) {
+        removeStored(storedKey(requestKey));
+    }
+
+    private void removeStored(String key) {
+        Long previous = index.remove(key);
+
+        if (previous != null) {
+            size -= previous;
+            file(key).delete();
+        }
+    }
+
+    synchronized void removeUrl(String url) {
+        List<String> keys = new ArrayList<>();
+
+        String urlHash = HttpResponseCache.hash(url);
+
+        for (String key : index.keySet()) {
+            if (HttpResponseCache.isKeyForUrl(key, urlHash)) {
+                keys.add(key);
+            }
+        }
+
+        keys.forEach(this::removeStored);
+    }
+
+    synchronized void clear() {
+        new ArrayList<>(index.keySet()).forEach(this::removeStored);
+    }
+
+    synchronized long size() {
+        return size;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> eldest = index.entrySet().iterator();
+
+        while (size > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+
+            size -= entry.getValue();
+            file(entry.getKey()).delete();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * The request key with its URL replaced by a hash, the request headers are already hashed.
+     */
+    private static String storedKey(String requestKey) {
+        int end = requestKey.indexOf('\n');
+
+        return HttpResponseCache.hash(requestKey.substring(0, end)) + requestKey.substring(end);
+    }
+
+    private File file(String key) {
+        return new File(directory, HttpResponseCache.hash(key) + SUFFIX);
+    }
+}
@@ -0,0 +1,307 @@
+package org.concordion.cubano.driver.http.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.concordion.cubano.driver.http.transport.HttpTransport;
+
+/**
+ * A private HTTP cache for GET requests, with a size bounded in-memory tier and an optional on-disk tier.
+ * <p>
+ * Responses are stored according to their Cache-Control, Expires, ETag and Last-Modified headers. A fresh response is served
+ * without contacting the server, a stale response that has a validator is revalidated with If-None-Match / If-Modified-Since
+ * and served from the cache if the server answers 304 Not Modified. Either way the caller receives a normal 200 response, with
+ * an <code>X-Cache</code> header of HIT, REVALIDATED or MISS.
+ * </p>
+ * <p>
+ * A request with a <code>Cache-Control: no-cache</code> header is always revalidated, and one with <code>no-store</code> bypasses
+ * the cache. A successful POST, PUT or DELETE removes any cached responses for its URL.
+ * </p>
+ * <p>
+ * The disk tier stores a hash of the URL and request headers rather than the URL itself, and leaves out the Set-Cookie headers
+ * and the values of the client's sensitive query parameters, so that credentials never reach the disk.
+ * </p>
+ *
+ * <pre>
+ * HttpEasy.withDefaults()
+ *     .responseCache(new HttpResponseCache(10 * 1024 * 1024, new File("build/http-cache"), 100 * 1024 * 1024));
+ * </pre>
+ */
+public class HttpResponseCache {
+    static final String CACHE_STATUS_HEADER = "X-Cache";
+
+    private static final int ENTRY_FRACTION = 4;
+
+    private final long maxMemoryBytes;
+    private final long maxEntryBytes;
+    private final DiskStore disk;
+    private final Map<String, CachedResponse> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+
+    /**
+     * An in-memory cache.
+     *
+     * @param maxMemoryBytes Maximum size of the cached responses, a single response may use at most a quarter of this
+     */
+    public HttpResponseCache(long maxMemoryBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxEntryBytes = maxMemoryBytes / ENTRY_FRACTION;
+        this.disk = null;
+    }
+
+    /**
+     * An in-memory cache backed by a directory so that responses survive between runs.
+     *
+     * @param maxMemoryBytes Maximum size of the responses held in memory
+     * @param directory      Directory to store responses in, created if it doesn't exist
+     * @param maxDiskBytes   Maximum size of the responses held on disk, a single response may use at most a quarter of this
+     * @throws IOException If the directory cannot be created or read
+     */
+    public HttpResponseCache(long maxMemoryBytes, File directory, long maxDiskBytes) throws IOException {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxEntryBytes = Math.max(maxMemoryBytes, maxDiskBytes) / ENTRY_FRACTION;
+        this.disk = new DiskStore(directory, maxDiskBytes);
+    }
+
+    /**
+     * Wrap a transport so that the requests it sends go through this cache.
+     *
+     * @param transport Transport to send requests that can't be served from the cache
+     * @return The caching transport
+     */
+    public HttpTransport wrap(HttpTransport transport) {
+        return wrap(transport, Collections.emptyList());
+    }
+
+    /**
+     * Wrap a transport so that the requests it sends go through this cache.
+     *
+     * @param transport           Transport to send requests that can't be served from the cache
+     * @param sensitiveParameters Names of query parameters whose values must not be written to disk
+     * @return The caching transport
+     */
+    public HttpTransport wrap(HttpTransport transport, List<String> sensitiveParameters) {
+        return (url, options) -> new CachingConnection(this, transport, url, options, sensitiveParameters);
+    }
+
+    /**
+     * @return Number of requests served from the cache without contacting the server
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return Number of cacheable requests that had to be fetched from the server
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return Number of requests served from the cache after the server confirmed the stored response was still valid
+     */
+    public long getRevalidationCount() {
+        return revalidations.get();
+    }
+
+    /**
+     * @return Approximate size of the responses held in memory
+     */
+    public synchronized long getMemorySize() {
+        return memoryBytes;
+    }
+
+    /**
+     * @return Size of the responses held on disk, 0 if there is no disk tier
+     */
+    public long getDiskSize() {
+        return disk == null ? 0 : disk.size();
+    }
+
+    /**
+     * Reset the hit, miss and revalidation counters.
+     */
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        revalidations.set(0);
+    }
+
+    /**
+     * Remove all responses from the cache.
+     */
+    public void clear() {
+        synchronized (this) {
+            memory.clear();
+            memoryBytes = 0;
+        }
+
+        if (disk != null) {
+            disk.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d, misses=%d, revalidations=%d", getHitCount(), getMissCount(), getRevalidationCount());
+    }
+
+    CachedResponse get(String key) {
+        synchronized (this) {
+            CachedResponse response = memory.get(key);
+
+            if (response != null) {
+                return response;
+            }
+        }
+
+        if (disk == null) {
+            return null;
+        }
+
+        CachedResponse response = disk.get(key);
+
+        if (response != null) {
+            putInMemory(key, response);
+        }
+
+        return response;
+    }
+
+    /**
+     * @param storedUrl URL of the response as it may be written to disk, with sensitive values masked
+     */
+    void put(String key, CachedResponse response, String storedUrl) {
+        putInMemory(key, response);
+
+        if (disk != null) {
+            try {
+                disk.put(key, response.redacted(storedUrl, CachedResponse.PRIVATE_HEADERS));
+            } catch (IOException e) {
+                // The response is still cached in memory, a disk that is full or read only shouldn't fail the request
+                disk.remove(key);
+            }
+        }
+    }
+
+    private synchronized void putInMemory(String key, CachedResponse response) {
+        CachedResponse previous = memory.remove(key);
+
+        if (previous != null) {
+            memoryBytes -= previous.size();
+        }
+
+        if (response.size() > maxMemoryBytes / ENTRY_FRACTION) {
+            return;
+        }
+
+        memory.put(key, response);
+        memoryBytes += response.size();
+
+        Iterator<CachedResponse> eldest = memory.values().iterator();
+
+        while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+            memoryBytes -= eldest.next().size();
+            eldest.remove();
+        }
+    }
+
+    void invalidate(URL url) {
+        String prefix = url.toString();
+
+        synchronized (this) {
+            Iterator<Map.Entry<String, CachedResponse>> entries = memory.entrySet().iterator();
+
+            while (entries.hasNext()) {
+                Map.Entry<String, CachedResponse> entry = entries.next();
+
+                if (isKeyForUrl(entry.getKey(), prefix)) {
+                    memoryBytes -= entry.getValue().size();
+                    entries.remove();
+                }
+            }
+        }
+
+        if (disk != null) {
+            disk.removeUrl(prefix);
+        }
+    }
+
+    long getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    void recordRevalidation() {
+        revalidations.incrementAndGet();
+    }
+
+    /**
+     * The key is the URL followed by a hash of the request headers, so that requests made with different credentials or
+     * accepting different content don't share a response, and credentials never appear in the disk store.
+     */
+    static String key(URL url, Map<String, List<String>> requestHeaders) {
+        Map<String, List<String>> sorted = new TreeMap<>();
+
+        for (Map.Entry<String, List<String>> header : requestHeaders.entrySet()) {
+            if (header.getKey() == null) {
+                continue;
+            }
+
+            String name = header.getKey().toLowerCase(Locale.ROOT);
+
+            if (!name.equals("cache-control") && !name.equals("pragma") && !name.startsWith("if-")) {
+                sorted.put(name, header.getValue());
+            }
+        }
+
+        return url.toString() + "\n" + hash(sorted.toString());
+    }
+
+    static boolean isKeyForUrl(String key, String url) {
+        return key.length() > url.length() && key.startsWith(url) && key.charAt(url.length()) == '\n';
+    }
+
+    static String hash(String value) {
+        return hash(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String hash(byte[] value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
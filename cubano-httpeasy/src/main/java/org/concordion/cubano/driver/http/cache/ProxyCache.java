@@ -0,0 +1,166 @@
+package org.concordion.cubano.driver.http.cache;
+
+import java.net.Proxy;
+import java.net.URL;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Remembers which proxy to use for each scheme, host and port so that the proxy configuration, which may mean evaluating a PAC
+ * script, is not consulted on every request.
+ * <p>
+ * Decisions are kept for a fixed time after which the next request to the host looks the proxy up again. When several threads
+ * request an unknown host at the same time only one of them looks the proxy up, the others wait for its answer, requests for
+ * other hosts are not held up by the lookup. At most {@link #DEFAULT_MAXIMUM_SIZE} hosts are remembered unless told otherwise,
+ * the least recently used being forgotten first.
+ * </p>
+ * <p>
+ * As decisions are cached per host, a PAC script that chooses a proxy based on the path of the URL will only be asked about the
+ * first URL requested for each host.
+ * </p>
+ */
+public class ProxyCache {
+    /** Number of hosts remembered by default. */
+    public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+    private final Cache<String, Proxy> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param ttlMillis How long a proxy decision is remembered for
+     */
+    public ProxyCache(long ttlMillis) {
+        this(ttlMillis, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param ttlMillis   How long a proxy decision is remembered for
+     * @param maximumSize Maximum number of hosts to remember
+     */
+    public ProxyCache(long ttlMillis, long maximumSize) {
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("ttlMillis must be greater than 0");
+        }
+
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be greater than 0");
+        }
+
+        this.entries = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    /**
+     * Get the proxy for a URL, looking it up if there is no current decision for the URL's host.
+     *
+     * @param url      URL being requested
+     * @param resolver Looks up the proxy for a URL, must not return null
+     * @return The proxy to use
+     */
+    public Proxy get(URL url, Function<URL, Proxy> resolver) {
+        String key = key(url);
+        Proxy proxy = entries.getIfPresent(key);
+
+        if (proxy != null) {
+            hits.incrementAndGet();
+            return proxy;
+        }
+
+        boolean[] resolved = new boolean[1];
+
+        try {
+            proxy = entries.get(key, () -> {
+                resolved[0] = true;
+                return resolver.apply(url);
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new IllegalStateException("Unable to look up proxy for " + url, e.getCause());
+        }
+
+        if (resolved[0]) {
+            misses.incrementAndGet();
+        } else {
+            // Another thread looked it up while this one was waiting
+            hits.incrementAndGet();
+        }
+
+        return proxy;
+    }
+
+    private static String key(URL url) {
+        int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+
+        return url.getProtocol().toLowerCase(Locale.ROOT) + "://" + url.getHost().toLowerCase(Locale.ROOT) + ":" + port;
+    }
+
+    /**
+     * Forget all proxy decisions, called whenever the proxy settings change.
+     */
+    public void clear() {
+        entries.invalidateAll();
+    }
+
+    /**
+     * @return Number of proxy decisions held
+     */
+    public int size() {
+        entries.cleanUp();
+
+        return (int) entries.size();
+    }
+
+    /**
+     * @return Number of requests that used a remembered decision
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return Number of requests that had to look up the proxy
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return Fraction of requests that used a remembered decision, between 0 and 1
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    /**
+     * Reset the hit and miss counters.
+     */
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hosts=%d, hits=%d, misses=%d (%.1f%% hit rate)", size(), getHitCount(), getMissCount(), getHitRate() * 100);
+    }
+}
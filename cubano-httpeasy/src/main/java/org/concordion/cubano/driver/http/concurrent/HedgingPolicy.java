@@ -0,0 +1,187 @@
+package org.concordion.cubano.driver.http.concurrent;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Settings and statistics for hedged requests, where a second identical request is sent if the first has not completed within
+ * the time that most requests to the same host complete in, and whichever responds first is used.
+ * <p>
+ * The hedge delay is the configured percentile of the most recent response times for the host, bounded by a minimum and maximum.
+ * Until enough responses have been seen for a host the maximum delay is used.
+ * </p>
+ *
+ * <pre>
+ * HttpEasy.withDefaults().hedging(new HedgingPolicy(95, 50, 2000));
+ * </pre>
+ */
+public class HedgingPolicy {
+    private static final int WINDOW_SIZE = 200;
+    private static final int MIN_SAMPLES = 10;
+    private static final AtomicInteger POLICY_NUMBER = new AtomicInteger();
+
+    private final double percentile;
+    private final long minDelayMillis;
+    private final long maxDelayMillis;
+    private final Map<String, LatencyWindow> hosts = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param percentile     Percentile of recent response times to wait before hedging, eg 95
+     * @param minDelayMillis Never hedge sooner than this
+     * @param maxDelayMillis Never wait longer than this before hedging, also used until enough responses have been seen
+     */
+    public HedgingPolicy(double percentile, long minDelayMillis, long maxDelayMillis) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be greater than 0 and no more than 100");
+        }
+
+        if (minDelayMillis < 0 || maxDelayMillis < minDelayMillis) {
+            throw new IllegalArgumentException("delays must not be negative and minDelayMillis must not exceed maxDelayMillis");
+        }
+
+        this.percentile = percentile;
+        this.minDelayMillis = minDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+
+        String prefix = "HttpEasyHedge-" + POLICY_NUMBER.incrementAndGet() + "-";
+        AtomicInteger threadNumber = new AtomicInteger();
+
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param host Host and port the request is for
+     * @return How long to wait for a response before sending a hedge request
+     */
+    public long getDelayMillis(String host) {
+        LatencyWindow window = hosts.get(host);
+        long delay = window == null ? -1 : window.percentile(percentile);
+
+        if (delay < 0) {
+            return maxDelayMillis;
+        }
+
+        return Math.max(minDelayMillis, Math.min(maxDelayMillis, delay));
+    }
+
+    /**
+     * Record the time taken for a request to the host, used to calculate the hedge delay.
+     *
+     * @param host         Host and port the request was for
+     * @param elapsedNanos Time from sending the request to receiving the response, including any wait for a hedge
+     */
+    public void recordLatency(String host, long elapsedNanos) {
+        requests.incrementAndGet();
+        hosts.computeIfAbsent(host, k -> new LatencyWindow()).add(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+    }
+
+    /**
+     * Record that a hedge request was sent.
+     */
+    public void recordHedge() {
+        hedged.incrementAndGet();
+    }
+
+    /**
+     * Record that a hedge request responded before the original request.
+     */
+    public void recordHedgeWin() {
+        hedgeWins.incrementAndGet();
+    }
+
+    /**
+     * @return Executor that hedged requests are run on
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @return Number of requests that completed under this policy
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return Number of requests that were hedged
+     */
+    public long getHedgedCount() {
+        return hedged.get();
+    }
+
+    /**
+     * @return Number of hedged requests where the hedge responded first
+     */
+    public long getHedgeWinCount() {
+        return hedgeWins.get();
+    }
+
+    /**
+     * @return Fraction of requests that were hedged, between 0 and 1
+     */
+    public double getHedgeRate() {
+        long count = requests.get();
+
+        return count == 0 ? 0 : (double) hedged.get() / count;
+    }
+
+    /**
+     * Reset the request, hedge and win counters, recent response times are kept.
+     */
+    public void resetStatistics() {
+        requests.set(0);
+        hedged.set(0);
+        hedgeWins.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("requests=%d, hedged=%d (%.1f%%), hedgeWins=%d", getRequestCount(), getHedgedCount(), getHedgeRate() * 100, getHedgeWinCount());
+    }
+
+    /**
+     * The most recent response times for a host.
+     */
+    private static class LatencyWindow {
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int count = 0;
+        private int next = 0;
+
+        synchronized void add(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        synchronized long percentile(double percentile) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+
+            int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+
+            return sorted[Math.max(0, index)];
+        }
+    }
+}
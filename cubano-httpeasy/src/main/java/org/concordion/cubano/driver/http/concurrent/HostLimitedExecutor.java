@@ -0,0 +1,221 @@
+package org.concordion.cubano.driver.http.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Runs tasks on an underlying executor while limiting how many tasks for the same host run at once.
+ * <p>
+ * Tasks over the limit are queued per host and handed to the executor as running tasks for that host complete, so a busy
+ * host never ties up threads that could be serving other hosts.
+ * </p>
+ */
+public class HostLimitedExecutor {
+    private final Executor executor;
+    private final int maxPerHost;
+    private final Map<String, HostQueue> hosts = new HashMap<>();
+    private final List<Runnable> idleActions = new ArrayList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param executor   Executor to run the tasks on
+     * @param maxPerHost Maximum number of tasks for a single host that may run at the same time
+     */
+    public HostLimitedExecutor(Executor executor, int maxPerHost) {
+        if (maxPerHost < 1) {
+            throw new IllegalArgumentException("maxPerHost must be at least 1");
+        }
+
+        this.executor = executor;
+        this.maxPerHost = maxPerHost;
+    }
+
+    /**
+     * Run the task once fewer than the maximum number of tasks for the host are running.
+     *
+     * @param host Host the task will connect to
+     * @param task Task to run
+     * @throws RejectedExecutionException if the executor will not accept the task straight away, a task that was queued and is
+     *         later rejected is dropped
+     */
+    public void execute(String host, Runnable task) {
+        execute(host, task, e -> {
+            throw e;
+        });
+    }
+
+    /**
+     * Run the task once fewer than the maximum number of tasks for the host are running.
+     *
+     * @param host     Host the task will connect to
+     * @param task     Task to run
+     * @param rejected Called instead of running the task if the executor will not accept it, either straight away or once the
+     *                 task has been queued
+     */
+    public void execute(String host, Runnable task, Consumer<RejectedExecutionException> rejected) {
+        Task queued = new Task(task, rejected);
+
+        synchronized (hosts) {
+            HostQueue queue = hosts.computeIfAbsent(host, k -> new HostQueue());
+
+            if (queue.running >= maxPerHost) {
+                queue.waiting.add(queued);
+                return;
+            }
+
+            queue.running++;
+        }
+
+        dispatch(host, queued);
+    }
+
+    /**
+     * Run the action, typically shutting down the executor, once every task that has been handed to this executor, including
+     * those still queued for a host, has completed.
+     *
+     * @param action Action to run
+     */
+    public void whenIdle(Runnable action) {
+        synchronized (hosts) {
+            if (!hosts.isEmpty()) {
+                idleActions.add(action);
+                return;
+            }
+        }
+
+        action.run();
+    }
+
+    private void dispatch(String host, Task task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.task.run();
+                } finally {
+                    completed(host);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected(host, task, e);
+        }
+    }
+
+    /**
+     * The executor has been shut down, fail the task and those waiting behind it rather than leaving them queued forever.
+     */
+    private void rejected(String host, Task task, RejectedExecutionException e) {
+        List<Task> failed = new ArrayList<>();
+        List<Runnable> actions;
+
+        synchronized (hosts) {
+            HostQueue queue = hosts.get(host);
+
+            failed.addAll(queue.waiting);
+            queue.waiting.clear();
+
+            actions = release(host, queue);
+        }
+
+        try {
+            task.rejected.accept(e);
+        } finally {
+            for (Task waiting : failed) {
+                try {
+                    waiting.rejected.accept(e);
+                } catch (RejectedExecutionException ignored) {
+                    // Nobody to report it to, the task was queued by a caller that has already returned
+                }
+            }
+
+            actions.forEach(Runnable::run);
+        }
+    }
+
+    private void completed(String host) {
+        Task next;
+        List<Runnable> actions;
+
+        synchronized (hosts) {
+            HostQueue queue = hosts.get(host);
+            next = queue.waiting.poll();
+
+            if (next != null) {
+                actions = Collections.emptyList();
+            } else {
+                actions = release(host, queue);
+            }
+        }
+
+        if (next != null) {
+            try {
+                dispatch(host, next);
+            } catch (RejectedExecutionException e) {
+                // Queued without a handler, there is no caller left to report it to
+            }
+        } else {
+            actions.forEach(Runnable::run);
+        }
+    }
+
+    /**
+     * A task for the host has finished, must hold the lock on hosts.
+     *
+     * @return Actions to run now that the executor is idle
+     */
+    private List<Runnable> release(String host, HostQueue queue) {
+        queue.running--;
+
+        if (queue.running > 0) {
+            return Collections.emptyList();
+        }
+
+        hosts.remove(host);
+
+        if (!hosts.isEmpty() || idleActions.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Runnable> actions = new ArrayList<>(idleActions);
+        idleActions.clear();
+
+        return actions;
+    }
+
+    /**
+     * @return The executor the tasks are run on
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @return Maximum number of tasks for a single host that may run at the same time
+     */
+    public int getMaxPerHost() {
+        return maxPerHost;
+    }
+
+    private static class HostQueue {
+        private int running = 0;
+        private final Queue<Task> waiting = new ArrayDeque<>();
+    }
+
+    private static class Task {
+        private final Runnable task;
+        private final Consumer<RejectedExecutionException> rejected;
+
+        Task(Runnable task, Consumer<RejectedExecutionException> rejected) {
+            this.task = task;
+            this.rejected = rejected;
+        }
+    }
+}
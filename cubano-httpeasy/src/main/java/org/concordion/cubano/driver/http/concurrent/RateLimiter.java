@@ -0,0 +1,281 @@
+package org.concordion.cubano.driver.http.concurrent;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the rate requests are sent to each host using a token bucket per host, so that parallel tests queue up rather than
+ * overrunning a service.
+ * <p>
+ * Each bucket refills at the configured rate and holds up to the burst size, a request that finds the bucket empty blocks until
+ * a token becomes available. Buckets are updated with a compare and set so threads never contend on a lock. A host that
+ * responds with a Retry-After header can pause its bucket for the requested time.
+ * </p>
+ *
+ * <pre>
+ * HttpEasy.withDefaults()
+ *     .rateLimiter(new RateLimiter(20, 5)
+ *         .forHost("slow-service:443", 2, 1));
+ * </pre>
+ */
+public class RateLimiter {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final LongSupplier ticker;
+    private final Sleeper sleeper;
+    private final Bucket defaultLimit;
+    private final Map<String, Bucket> hostLimits = new ConcurrentHashMap<>();
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private final AtomicLong permits = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong retryAfterPauses = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param permitsPerSecond Requests per second allowed to each host
+     * @param burst            Number of requests that may be sent at once to a host that has been idle, at least 1
+     */
+    public RateLimiter(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, System::nanoTime, RateLimiter::park);
+    }
+
+    /**
+     * Constructor for tests that need to control time.
+     *
+     * @param permitsPerSecond Requests per second allowed to each host
+     * @param burst            Number of requests that may be sent at once to a host that has been idle, at least 1
+     * @param ticker           Source of the current time in nanoseconds
+     * @param sleeper          Waits for the given number of nanoseconds
+     */
+    RateLimiter(double permitsPerSecond, int burst, LongSupplier ticker, Sleeper sleeper) {
+        this.ticker = ticker;
+        this.sleeper = sleeper;
+        this.defaultLimit = new Bucket(permitsPerSecond, burst);
+    }
+
+    /**
+     * Waits for a permit.
+     */
+    @FunctionalInterface
+    interface Sleeper {
+        void sleep(long nanos) throws InterruptedException;
+    }
+
+    /**
+     * Use a different limit for a host.
+     *
+     * @param host             Host and port, eg "localhost:8080"
+     * @param permitsPerSecond Requests per second allowed to the host
+     * @param burst            Number of requests that may be sent at once to the host after it has been idle
+     * @return A self reference
+     */
+    public RateLimiter forHost(String host, double permitsPerSecond, int burst) {
+        hostLimits.put(host, new Bucket(permitsPerSecond, burst));
+        buckets.remove(host);
+        return this;
+    }
+
+    /**
+     * Wait until a request may be sent to the host.
+     *
+     * @param host Host and port
+     * @return Time spent waiting, in nanoseconds
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public long acquire(String host) throws InterruptedException {
+        long wait = bucket(host).reserve(ticker.getAsLong());
+
+        permits.incrementAndGet();
+
+        if (wait <= 0) {
+            return 0;
+        }
+
+        throttled.incrementAndGet();
+        totalWaitNanos.addAndGet(wait);
+        maxWaitNanos.accumulateAndGet(wait, Math::max);
+
+        sleeper.sleep(wait);
+
+        return wait;
+    }
+
+    private static void park(long nanos) throws InterruptedException {
+        long deadline = System.nanoTime() + nanos;
+        long remaining = nanos;
+
+        while (remaining > 0) {
+            LockSupport.parkNanos(RateLimiter.class, remaining);
+
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+    /**
+     * Stop sending requests to the host for the time given by a Retry-After header.
+     *
+     * @param host       Host and port
+     * @param retryAfter Value of the Retry-After header, either a number of seconds or an HTTP date
+     * @return The pause in milliseconds, 0 if the header could not be understood
+     */
+    public long retryAfter(String host, String retryAfter) {
+        long millis = parseRetryAfter(retryAfter);
+
+        if (millis > 0) {
+            retryAfterPauses.incrementAndGet();
+            bucket(host).pause(ticker.getAsLong() + TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        return millis;
+    }
+
+    private Bucket bucket(String host) {
+        return buckets.computeIfAbsent(host, h -> hostLimits.getOrDefault(h, defaultLimit).copy());
+    }
+
+    static long parseRetryAfter(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return 0;
+        }
+
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            // Must be a date
+        }
+
+        try {
+            long at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(0, at - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return Number of permits handed out
+     */
+    public long getPermitCount() {
+        return permits.get();
+    }
+
+    /**
+     * @return Number of permits that had to wait for a token
+     */
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    /**
+     * @return Total time spent waiting for permits
+     */
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+    }
+
+    /**
+     * @return Longest time spent waiting for a permit
+     */
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    /**
+     * @return Mean time spent waiting for a permit, across all permits
+     */
+    public double getMeanWaitMillis() {
+        long count = permits.get();
+
+        return count == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / count;
+    }
+
+    /**
+     * @return Number of times a host was paused because of a Retry-After header
+     */
+    public long getRetryAfterCount() {
+        return retryAfterPauses.get();
+    }
+
+    /**
+     * Reset the permit and wait time counters.
+     */
+    public void resetStatistics() {
+        permits.set(0);
+        throttled.set(0);
+        totalWaitNanos.set(0);
+        maxWaitNanos.set(0);
+        retryAfterPauses.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("permits=%d, throttled=%d, totalWait=%dms, maxWait=%dms, retryAfter=%d",
+                getPermitCount(), getThrottledCount(), getTotalWaitMillis(), getMaxWaitMillis(), getRetryAfterCount());
+    }
+
+    /**
+     * Token bucket held as the time at which the bucket will next be full, a request takes one token by moving that time on by
+     * one interval and waits if it moves beyond now.
+     */
+    private static final class Bucket {
+        private final long intervalNanos;
+        private final long burstNanos;
+        private final AtomicLong nextFree = new AtomicLong(Long.MIN_VALUE / 2);
+
+        Bucket(double permitsPerSecond, int burst) {
+            if (permitsPerSecond <= 0) {
+                throw new IllegalArgumentException("permitsPerSecond must be greater than 0");
+            }
+
+            if (burst < 1) {
+                throw new IllegalArgumentException("burst must be at least 1");
+            }
+
+            this.intervalNanos = Math.max(1, (long) (NANOS_PER_SECOND / permitsPerSecond));
+            this.burstNanos = intervalNanos * (burst - 1);
+        }
+
+        private Bucket(Bucket limit) {
+            this.intervalNanos = limit.intervalNanos;
+            this.burstNanos = limit.burstNanos;
+        }
+
+        Bucket copy() {
+            return new Bucket(this);
+        }
+
+        /**
+         * @param now Current time in nanoseconds
+         * @return How long the caller must wait before using the token it has taken
+         */
+        long reserve(long now) {
+            while (true) {
+                long previous = nextFree.get();
+                long start = Math.max(previous, now - burstNanos);
+
+                if (nextFree.compareAndSet(previous, start + intervalNanos)) {
+                    return start - now;
+                }
+            }
+        }
+
+        void pause(long until) {
+            nextFree.accumulateAndGet(until, Math::max);
+        }
+    }
+}
@@ -1,37 +1,42 @@
 package org.concordion.cubano.driver.http.dataWriter;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
-import org.concordion.cubano.driver.http.HttpEasyDefaults;
+import org.concordion.cubano.driver.http.io.ChannelTransfer;
 import org.concordion.cubano.driver.http.logging.LogManager;
+import org.concordion.cubano.driver.http.transport.HttpConnection;
 
 import com.google.common.net.MediaType;
 
 /**
  * Attach a "multipart/form-data" form to an http request.
+ * <p>
+ * The length of the body is calculated up front from the part headers, field values and file sizes so that it can be streamed
+ * straight to the server rather than buffered by the connection. If the form contains an InputStream, whose length can't be
+ * known, the body is sent using chunked transfer encoding instead.
+ * </p>
  *
  * @author Andrew Sumner
  */
 public class FormDataWriter implements DataWriter {
-    private final HttpURLConnection connection;
-    private final List<Field> fields;
+    private final HttpConnection connection;
     private final String boundary = "FormBoundary" + System.currentTimeMillis();
-    private OutputStream outputStream;
-    private PrintWriter writer = null;
-    private LogManager logger = null;
+    private final List<Part> parts = new ArrayList<>();
+    private final byte[] finalBoundary;
+    private final long contentLength;
     // private static final String NEW_LINE = System.lineSeparator();
     private static final String NEW_LINE = "\r\n";
+    private static final byte[] NEW_LINE_BYTES = NEW_LINE.getBytes(StandardCharsets.UTF_8);
+    private static final int CHUNK_SIZE = 64 * 1024;
 
     /**
      * Constructor.
@@ -40,142 +45,174 @@ public class FormDataWriter implements DataWriter {
      * @param query      Query string
      * @param fields     Fields to write to form
      * @throws UnsupportedEncodingException
+     * @deprecated Use the constructor taking a {@link HttpConnection}, connections are now created by a transport
      */
+    @Deprecated
     public FormDataWriter(HttpURLConnection connection, String query, List<Field> fields) throws UnsupportedEncodingException {
+        this(HttpConnection.of(connection), query, fields);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param connection The connection
+     * @param query      Query string
+     * @param fields     Fields to write to form
+     * @throws UnsupportedEncodingException The character encoding is not supported
+     */
+    public FormDataWriter(HttpConnection connection, String query, List<Field> fields) throws UnsupportedEncodingException {
         this.connection = connection;
-        this.fields = fields;
+
+        for (Field field : fields) {
+            parts.add(new Part(field));
+        }
+
+        this.finalBoundary = ("--" + boundary + "--" + NEW_LINE).getBytes(StandardCharsets.UTF_8);
+        this.contentLength = calculateContentLength();
 
         connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
+
+        if (contentLength >= 0) {
+            connection.setRequestProperty("Content-Length", Long.toString(contentLength));
+            connection.setFixedLengthStreamingMode(contentLength);
+        } else {
+            connection.setChunkedStreamingMode(CHUNK_SIZE);
+        }
     }
 
-    @Override
-    public void write(LogManager logger) throws IOException {
-        this.logger = logger;
-        outputStream = connection.getOutputStream();
+    /**
+     * @return Exact length of the body, or -1 if the form contains a part of unknown length
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
 
-        try {
-            writer = new PrintWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), true);
+    private long calculateContentLength() {
+        long length = finalBoundary.length;
 
-            if (logger.isLogRequestDetails()) {
-                logger.getBuffer().writeLine("Request Content (multipart/form-data):");
-            } else {
-                logger.getBuffer().setIndentLevel(1).writeLine("With multipart/form-data content:");
-            }
+        for (Part part : parts) {
+            long partLength = part.getContentLength();
 
-            for (Field field : fields) {
-                if (field.value instanceof File) {
-                    addFilePart(field.name, (File) field.value, field.type);
-                } else if (field.value instanceof InputStream) {
-                    addFilePart(field.name, (InputStream) field.value, field.type, field.fileName);
-                } else {
-                    addFormField(field.name, field.value);
-                }
+            if (partLength < 0) {
+                return -1;
             }
 
-            writeFinalBoundary();
-        } finally {
-            if (writer != null) {
-                writer.close();
-            }
+            length += part.header.length + partLength + NEW_LINE_BYTES.length;
         }
+
+        return length;
     }
 
-    private void writeFieldBoundary() {
-        StringBuilder buf = new StringBuilder();
-        buf.append("--").append(boundary).append(NEW_LINE);
+    @Override
+    public void write(LogManager logger) throws IOException {
+        if (logger.isLogRequestDetails()) {
+            logger.getBuffer().writeLine("Request Content (multipart/form-data):");
+        } else {
+            logger.getBuffer().setIndentLevel(1).writeLine("With multipart/form-data content:");
+        }
 
-        logger.getBuffer().writeIndented(buf.toString());
+        long started = System.nanoTime();
+        long sent = 0;
 
-        writer.append(buf);
-    }
+        try (OutputStream outputStream = connection.getOutputStream()) {
+            for (Part part : parts) {
+                sent += part.write(outputStream, logger);
+            }
 
-    private void writeFinalBoundary() {
-        StringBuilder buf = new StringBuilder();
-        buf.append("--").append(boundary).append("--").append(NEW_LINE);
+            outputStream.write(finalBoundary);
+            sent += finalBoundary.length;
 
-        logger.getBuffer().writeIndented(buf.toString());
+            logger.getBuffer().writeIndented(new String(finalBoundary, StandardCharsets.UTF_8));
+        }
 
-        writer.append(buf);
+        logger.getBuffer().writeIndentedLine("Sent " + ChannelTransfer.describe(sent, System.nanoTime() - started)
+                + (contentLength < 0 ? " using chunked encoding" : ""));
     }
 
     /**
-     * Adds a form field to the request.
-     *
-     * @param name  field name
-     * @param value field value
+     * A form field or file, along with the boundary and headers that precede it.
      */
-    private void addFormField(String name, Object value) {
-        StringBuilder buf = new StringBuilder();
+    private class Part {
+        private final Field field;
+        private final byte[] header;
+        private final byte[] value;
 
-        writeFieldBoundary();
-        buf.append("Content-Disposition: form-data; name=\"").append(name).append("\"").append(NEW_LINE);
-        // buf.append("Content-Type: text/plain; charset=utf-8").append(NEW_LINE);
-        buf.append(NEW_LINE);
+        Part(Field field) {
+            this.field = field;
 
-        logger.getBuffer().writeIndentedLines(buf.toString());
-        if (HttpEasyDefaults.getSensitiveParameters().contains(name)) {
-            logger.getBuffer().writeLine("*****");
-        } else {
-            logger.getBuffer().writeLine(String.valueOf(value));
-        }
+            StringBuilder buf = new StringBuilder();
+            buf.append("--").append(boundary).append(NEW_LINE);
 
-        buf.append(String.valueOf(value)).append(NEW_LINE);
+            if (field.value instanceof File || field.value instanceof InputStream) {
+                String fileName = field.value instanceof File ? ((File) field.value).getName() : field.fileName;
 
-        writer.append(buf);
-        writer.flush();
-    }
+                buf.append("Content-Disposition: form-data; name=\"").append(field.name).append("\"; filename=\"").append(fileName).append("\"").append(NEW_LINE);
+                if (field.type == null) {
+                    buf.append("Content-Type: ").append(URLConnection.guessContentTypeFromName(fileName)).append(NEW_LINE);
+                } else {
+                    buf.append("Content-Type: ").append(field.type.toString()).append(NEW_LINE);
+                }
 
-    /**
-     * Adds a upload file section to the request.
-     *
-     * @param fieldName  name attribute in <input type="file" name="..." />
-     * @param uploadFile a File to be uploaded
-     * @param type       MediaType of the file
-     * @throws IOException If unable to read the response
-     */
-    private void addFilePart(String fieldName, File uploadFile, MediaType type) throws IOException {
-        try (FileInputStream inputStream = new FileInputStream(uploadFile)) {
-            addFilePart(fieldName, inputStream, type, uploadFile.getName());
+                // buf.append("Content-Transfer-Encoding: binary").append(NEW_LINE);
+                this.value = null;
+            } else {
+                buf.append("Content-Disposition: form-data; name=\"").append(field.name).append("\"").append(NEW_LINE);
+                // buf.append("Content-Type: text/plain; charset=utf-8").append(NEW_LINE);
+                this.value = String.valueOf(field.value).getBytes(StandardCharsets.UTF_8);
+            }
+
+            buf.append(NEW_LINE);
+
+            this.header = buf.toString().getBytes(StandardCharsets.UTF_8);
         }
-    }
 
-    /**
-     * Adds a upload stream section to the request.
-     *
-     * @param fieldName   name attribute in <input type="file" name="..." />
-     * @param inputStream a File to be uploaded
-     * @param type        MediaType of the file
-     * @param fileName    name of file to be uploaded
-     * @throws IOException If unable to read the response
-     */
-    private void addFilePart(String fieldName, InputStream inputStream, MediaType type, String fileName) throws IOException {
-        StringBuilder buf = new StringBuilder();
+        long getContentLength() {
+            if (value != null) {
+                return value.length;
+            }
 
-        writeFieldBoundary();
-        buf.append("Content-Disposition: form-data; name=\"").append(fieldName).append("\"; filename=\"").append(fileName).append("\"").append(NEW_LINE);
-        if (type == null) {
-            buf.append("Content-Type: ").append(URLConnection.guessContentTypeFromName(fileName)).append(NEW_LINE);
-        } else {
-            buf.append("Content-Type: ").append(type.toString()).append(NEW_LINE);
+            if (field.value instanceof File) {
+                return ((File) field.value).length();
+            }
+
+            return -1;
         }
 
-        // buf.append("Content-Transfer-Encoding: binary").append(NEW_LINE);
-        buf.append(NEW_LINE);
+        long write(OutputStream outputStream, LogManager logger) throws IOException {
+            String headerText = new String(header, StandardCharsets.UTF_8);
+            int boundaryEnd = headerText.indexOf(NEW_LINE) + NEW_LINE.length();
 
-        logger.getBuffer().writeIndentedLines(buf.toString());
-        logger.getBuffer().writeLine("... Content of file ").write(fileName).writeLine(" ...");
+            logger.getBuffer().writeIndented(headerText.substring(0, boundaryEnd));
+            logger.getBuffer().writeIndentedLines(headerText.substring(boundaryEnd));
 
-        writer.append(buf);
-        writer.flush();
+            outputStream.write(header);
 
-        byte[] buffer = new byte[4096];
-        int bytesRead = -1;
-        while ((bytesRead = inputStream.read(buffer)) != -1) {
-            outputStream.write(buffer, 0, bytesRead);
-        }
-        outputStream.flush();
+            long length;
+
+            if (value != null) {
+                if (logger.getSensitiveParameters().contains(field.name)) {
+                    logger.getBuffer().writeLine("*****");
+                } else {
+                    logger.getBuffer().writeLine(String.valueOf(field.value));
+                }
+
+                outputStream.write(value);
+                length = value.length;
+            } else {
+                String fileName = field.value instanceof File ? ((File) field.value).getName() : field.fileName;
 
-        writer.append(NEW_LINE);
-        writer.flush();
+                logger.getBuffer().writeLine("... Content of file ").write(fileName).writeLine(" ...");
+
+                if (field.value instanceof File) {
+                    length = ChannelTransfer.fromFile((File) field.value, outputStream);
+                } else {
+                    length = ChannelTransfer.copy((InputStream) field.value, outputStream);
+                }
+            }
+
+            outputStream.write(NEW_LINE_BYTES);
+
+            return header.length + length + NEW_LINE_BYTES.length;
+        }
     }
 }
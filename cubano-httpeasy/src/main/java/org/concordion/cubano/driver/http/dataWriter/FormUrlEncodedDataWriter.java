@@ -8,8 +8,8 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 
-import org.concordion.cubano.driver.http.HttpEasyDefaults;
 import org.concordion.cubano.driver.http.logging.LogManager;
+import org.concordion.cubano.driver.http.transport.HttpConnection;
 
 /**
  * Attach an "application/x-www-form-urlencoded" form to an http request.
@@ -17,8 +17,9 @@ import org.concordion.cubano.driver.http.logging.LogManager;
  * @author Andrew Sumner
  */
 public class FormUrlEncodedDataWriter implements DataWriter {
-    private final HttpURLConnection connection;
+    private final HttpConnection connection;
     private final byte[] postEndcoded;
+    private final byte[] compressed;
 
     /**
      * Constructor.
@@ -27,10 +28,59 @@ public class FormUrlEncodedDataWriter implements DataWriter {
      * @param query Query string
      * @param fields Fields to write to form
      * @throws UnsupportedEncodingException The character encoding is not supported
+     * @deprecated Use the constructor taking a {@link HttpConnection}, connections are now created by a transport
      */
+    @Deprecated
     public FormUrlEncodedDataWriter(HttpURLConnection connection, String query, List<Field> fields) throws UnsupportedEncodingException {
+        this(HttpConnection.of(connection), query, fields);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param connection The connection
+     * @param query Query string
+     * @param fields Fields to write to form
+     * @throws UnsupportedEncodingException The character encoding is not supported
+     */
+    public FormUrlEncodedDataWriter(HttpConnection connection, String query, List<Field> fields) throws UnsupportedEncodingException {
         this.connection = connection;
+        this.postEndcoded = encode(query, fields);
+        this.compressed = null;
+
+        setHeaders();
+    }
 
+    /**
+     * Constructor.
+     *
+     * @param connection The connection
+     * @param query Query string
+     * @param fields Fields to write to form
+     * @param compressionThreshold Gzip the form if it is at least this many bytes, -1 to never compress
+     * @throws IOException If unable to encode or compress the form
+     */
+    public FormUrlEncodedDataWriter(HttpConnection connection, String query, List<Field> fields, int compressionThreshold) throws IOException {
+        this.connection = connection;
+        this.postEndcoded = encode(query, fields);
+        this.compressed = RequestCompression.shouldCompress(postEndcoded.length, compressionThreshold) ? RequestCompression.gzip(postEndcoded) : null;
+
+        setHeaders();
+    }
+
+    private void setHeaders() {
+        connection.setRequestProperty("charset", StandardCharsets.UTF_8.name());
+        connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+
+        if (compressed != null) {
+            RequestCompression.setContentEncoding(connection);
+            connection.setRequestProperty("Content-Length", Integer.toString(compressed.length));
+        } else {
+            connection.setRequestProperty("Content-Length", Integer.toString(postEndcoded.length));
+        }
+    }
+
+    private static byte[] encode(String query, List<Field> fields) throws UnsupportedEncodingException {
         StringBuilder postData = new StringBuilder();
 
         if (query != null && !query.isEmpty()) {
@@ -46,18 +96,14 @@ public class FormUrlEncodedDataWriter implements DataWriter {
             postData.append(URLEncoder.encode(String.valueOf(field.value), StandardCharsets.UTF_8.name()));
         }
 
-        postEndcoded = postData.toString().getBytes(StandardCharsets.UTF_8);
-
-        connection.setRequestProperty("charset", StandardCharsets.UTF_8.name());
-        connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-        connection.setRequestProperty("Content-Length", Integer.toString(postEndcoded.length));
+        return postData.toString().getBytes(StandardCharsets.UTF_8);
     }
 
     @Override
     public void write(LogManager logger) throws IOException {
         String logparams = new String(postEndcoded, StandardCharsets.UTF_8);
 
-        for (String key : HttpEasyDefaults.getSensitiveParameters()) {
+        for (String key : logger.getSensitiveParameters()) {
             logparams = logparams.replaceFirst("(?i)(?<=\\?|&|^)" + key + "=.*?(?=$|&)", key + "=*****");
         }
 
@@ -69,7 +115,11 @@ public class FormUrlEncodedDataWriter implements DataWriter {
         logger.getBuffer().writeIndentedLine(logparams);
 
         try (DataOutputStream wr = new DataOutputStream(connection.getOutputStream())) {
-            wr.write(postEndcoded);
+            wr.write(compressed != null ? compressed : postEndcoded);
+        }
+
+        if (compressed != null) {
+            RequestCompression.log(logger, postEndcoded.length, compressed.length);
         }
     }
 
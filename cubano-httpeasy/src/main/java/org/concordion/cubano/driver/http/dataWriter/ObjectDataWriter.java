@@ -0,0 +1,207 @@
+package org.concordion.cubano.driver.http.dataWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import org.concordion.cubano.driver.http.io.ChannelTransfer;
+import org.concordion.cubano.driver.http.logging.LogManager;
+import org.concordion.cubano.driver.http.transport.HttpConnection;
+
+import com.google.common.net.MediaType;
+
+/**
+ * Serialise an object, eg to JSON or XML, straight onto an http request rather than converting it to a String first.
+ * <p>
+ * With {@link Streaming#CHUNKED} the body is never held in memory, with {@link Streaming#FIXED_LENGTH} it is serialised to
+ * bytes once so that its length can be sent up front for servers that do not accept chunked requests. Only the start of the
+ * body is written to the log.
+ * </p>
+ */
+public class ObjectDataWriter implements DataWriter {
+    /** Most bytes of the body written to the log. */
+    static final int PREVIEW_LENGTH = 2048;
+
+    private final HttpConnection connection;
+    private final Serializer serializer;
+    private final String mediaType;
+    private final boolean compress;
+    private byte[] content = null;
+    private byte[] compressed = null;
+
+    /**
+     * Writes an object to a stream.
+     */
+    @FunctionalInterface
+    public interface Serializer {
+        /**
+         * @param out Stream to write the object to, must not be closed
+         * @throws IOException If unable to serialise the object
+         */
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * How the length of the body is sent.
+     */
+    public enum Streaming {
+        /** Serialise the body while it is being sent, its length is not known until it has been written. */
+        CHUNKED,
+
+        /** Serialise the body before sending it so that it can be sent with a Content-Length header. */
+        FIXED_LENGTH;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param connection           The connection
+     * @param serializer           Writes the body
+     * @param mediaType            Type of the body
+     * @param streaming            How the length of the body is sent
+     * @param compressionThreshold Gzip the body if it is at least this many bytes, -1 to never compress
+     * @throws IOException If unable to serialise a fixed length body
+     */
+    public ObjectDataWriter(HttpConnection connection, Serializer serializer, MediaType mediaType, Streaming streaming, int compressionThreshold) throws IOException {
+        this.connection = connection;
+        this.serializer = serializer;
+        this.mediaType = mediaType.toString();
+
+        connection.setRequestProperty("Content-Type", this.mediaType);
+
+        if (streaming == Streaming.FIXED_LENGTH) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(RequestCompression.CHUNK_SIZE);
+            serializer.write(out);
+
+            content = out.toByteArray();
+            compress = RequestCompression.shouldCompress(content.length, compressionThreshold);
+            compressed = compress ? RequestCompression.gzip(content) : content;
+
+            if (compress) {
+                RequestCompression.setContentEncoding(connection);
+            }
+
+            connection.setRequestProperty("Content-Length", Integer.toString(compressed.length));
+            connection.setFixedLengthStreamingMode(compressed.length);
+        } else {
+            // Length isn't known until it has been written
+            compress = RequestCompression.shouldCompress(-1, compressionThreshold);
+
+            if (compress) {
+                RequestCompression.setContentEncoding(connection);
+            }
+
+            connection.setChunkedStreamingMode(RequestCompression.CHUNK_SIZE);
+        }
+    }
+
+    @Override
+    public void write(LogManager logger) throws IOException {
+        if (logger.isLogRequestDetails()) {
+            logger.getBuffer().writeLine("Request Content (" + mediaType + "):");
+        } else {
+            logger.getBuffer().setIndentLevel(1).writeLine("With " + mediaType + " content:");
+        }
+
+        long started = System.nanoTime();
+        long length;
+        long sent;
+        PreviewOutputStream preview;
+
+        if (content != null) {
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(compressed);
+            }
+
+            preview = new PreviewOutputStream(null);
+            preview.write(content, 0, Math.min(content.length, PREVIEW_LENGTH));
+            length = content.length;
+            sent = compressed.length;
+        } else {
+            RequestCompression.CountingOutputStream counter = new RequestCompression.CountingOutputStream(connection.getOutputStream());
+
+            try (OutputStream out = compress ? new GZIPOutputStream(counter, RequestCompression.CHUNK_SIZE) : counter) {
+                preview = new PreviewOutputStream(out);
+                serializer.write(preview);
+            }
+
+            length = preview.getCount();
+            sent = counter.getCount();
+        }
+
+        logger.getBuffer().writeIndentedLines(preview.toString());
+
+        if (length > PREVIEW_LENGTH) {
+            logger.getBuffer().writeIndentedLine("... " + (length - PREVIEW_LENGTH) + " more bytes not logged");
+        }
+
+        logger.getBuffer().writeIndentedLine("Sent " + ChannelTransfer.describe(sent, System.nanoTime() - started));
+
+        if (compress) {
+            RequestCompression.log(logger, length, sent);
+        }
+    }
+
+    /**
+     * Passes the body on while keeping a copy of its start for the log.
+     */
+    private static class PreviewOutputStream extends FilterOutputStream {
+        private final ByteArrayOutputStream start = new ByteArrayOutputStream(256);
+        private long count = 0;
+
+        PreviewOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (out != null) {
+                out.write(b);
+            }
+
+            if (count < PREVIEW_LENGTH) {
+                start.write(b);
+            }
+
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (out != null) {
+                out.write(b, off, len);
+            }
+
+            if (count < PREVIEW_LENGTH) {
+                start.write(b, off, (int) Math.min(len, PREVIEW_LENGTH - count));
+            }
+
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (out != null) {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // The serializer must not close the connection's stream, it is closed once the body has been written
+            flush();
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return new String(start.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
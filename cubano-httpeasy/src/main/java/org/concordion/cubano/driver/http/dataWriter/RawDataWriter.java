@@ -6,10 +6,14 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
 import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
 
+import org.concordion.cubano.driver.http.io.ChannelTransfer;
 import org.concordion.cubano.driver.http.logging.LogManager;
+import org.concordion.cubano.driver.http.transport.HttpConnection;
 
 import com.google.common.net.MediaType;
 
@@ -19,12 +23,14 @@ import com.google.common.net.MediaType;
  * @author Andrew Sumner
  */
 public class RawDataWriter implements DataWriter {
-    private HttpURLConnection connection;
+    private HttpConnection connection;
     private String mediaType;
     private byte[] postEndcoded = null;
     private File uploadFile = null;
     private InputStream uploadStream = null;
     private String uploadFileName;
+    private boolean compress = false;
+    private byte[] compressed = null;
 
     /**
      * Constructor.
@@ -33,29 +39,90 @@ public class RawDataWriter implements DataWriter {
      * @param rawData          data (File or String)
      * @param rawDataMediaType Type of attachment
      * @param fileName         file name for InputStream
+     * @deprecated Use the constructor taking a {@link HttpConnection}, connections are now created by a transport
      */
+    @Deprecated
     public RawDataWriter(HttpURLConnection connection, Object rawData, MediaType rawDataMediaType, String fileName) {
+        this(HttpConnection.of(connection), rawData, rawDataMediaType, fileName);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param connection       The connection
+     * @param rawData          data (File or String)
+     * @param rawDataMediaType Type of attachment
+     * @param fileName         file name for InputStream
+     */
+    public RawDataWriter(HttpConnection connection, Object rawData, MediaType rawDataMediaType, String fileName) {
         this.connection = connection;
         this.mediaType = rawDataMediaType.toString();
 
+        try {
+            prepare(rawData, rawDataMediaType, fileName, RequestCompression.DISABLED);
+        } catch (IOException e) {
+            // Not possible without compression
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param connection           The connection
+     * @param rawData              data (File or String)
+     * @param rawDataMediaType     Type of attachment
+     * @param fileName             file name for InputStream
+     * @param compressionThreshold Gzip the data if it is at least this many bytes, -1 to never compress
+     * @throws IOException If unable to compress the data
+     */
+    public RawDataWriter(HttpConnection connection, Object rawData, MediaType rawDataMediaType, String fileName, int compressionThreshold) throws IOException {
+        this.connection = connection;
+        this.mediaType = rawDataMediaType.toString();
+
+        prepare(rawData, rawDataMediaType, fileName, compressionThreshold);
+    }
+
+    private void prepare(Object rawData, MediaType rawDataMediaType, String fileName, int compressionThreshold) throws IOException {
         if (rawData instanceof File) {
             uploadFile = (File) rawData;
+            compress = RequestCompression.shouldCompress(uploadFile.length(), compressionThreshold);
             connection.setRequestProperty("Content-Type", rawDataMediaType.toString());
-            connection.setRequestProperty("Content-Length", Long.toString(uploadFile.length()));
-            connection.setFixedLengthStreamingMode(uploadFile.length());
+
+            if (compress) {
+                // Compressed length isn't known until it has been written
+                RequestCompression.setContentEncoding(connection);
+                connection.setChunkedStreamingMode(RequestCompression.CHUNK_SIZE);
+            } else {
+                connection.setRequestProperty("Content-Length", Long.toString(uploadFile.length()));
+                connection.setFixedLengthStreamingMode(uploadFile.length());
+            }
 
         } else if (rawData instanceof InputStream) {
             uploadStream = (InputStream) rawData;
             uploadFileName = fileName;
+            compress = RequestCompression.shouldCompress(-1, compressionThreshold);
 
             connection.setRequestProperty("Content-Type", rawDataMediaType.toString());
+
+            if (compress) {
+                RequestCompression.setContentEncoding(connection);
+            }
         } else {
             // Assume data is encoded correctly
             this.postEndcoded = String.valueOf(rawData).getBytes(StandardCharsets.UTF_8);
+            compress = RequestCompression.shouldCompress(postEndcoded.length, compressionThreshold);
 
             connection.setRequestProperty("charset", StandardCharsets.UTF_8.name());
             connection.setRequestProperty("Content-Type", rawDataMediaType.toString());
-            connection.setRequestProperty("Content-Length", Integer.toString(postEndcoded.length));
+
+            if (compress) {
+                compressed = RequestCompression.gzip(postEndcoded);
+                RequestCompression.setContentEncoding(connection);
+                connection.setRequestProperty("Content-Length", Integer.toString(compressed.length));
+            } else {
+                connection.setRequestProperty("Content-Length", Integer.toString(postEndcoded.length));
+            }
         }
     }
 
@@ -70,38 +137,57 @@ public class RawDataWriter implements DataWriter {
         if (uploadFile != null) {
             logger.getBuffer().writeIndented("File: ").writeLine(uploadFile.getAbsolutePath());
 
-            try (FileInputStream inputStream = new FileInputStream(uploadFile)) {
-                write(inputStream);
+            if (compress) {
+                try (FileInputStream inputStream = new FileInputStream(uploadFile)) {
+                    write(inputStream, logger);
+                }
+            } else {
+                long started = System.nanoTime();
+                long length = ChannelTransfer.fromFile(uploadFile, connection.getOutputStream());
+
+                logger.getBuffer().writeIndentedLine("Sent " + ChannelTransfer.describe(length, System.nanoTime() - started));
             }
 
         } else if (uploadStream != null) {
             logger.getBuffer().writeIndented("File: ").writeLine(uploadFileName);
 
-            long length = write(uploadStream);
-            connection.setRequestProperty("Content-Length", Long.toString(length));
+            write(uploadStream, logger);
 
         } else {
             logger.getBuffer().writeIndentedLines(new String(postEndcoded, StandardCharsets.UTF_8));
 
             try (DataOutputStream wr = new DataOutputStream(connection.getOutputStream())) {
-                wr.write(postEndcoded);
+                wr.write(compress ? compressed : postEndcoded);
+            }
+
+            if (compress) {
+                RequestCompression.log(logger, postEndcoded.length, compressed.length);
             }
         }
     }
 
-    private long write(InputStream inputStream) throws IOException {
-        long length = 0;
-        byte[] buffer = new byte[4096];
-        int bytesRead = -1;
-
+    private long write(InputStream inputStream, LogManager logger) throws IOException {
+        long started = System.nanoTime();
+        RequestCompression.CountingOutputStream counter = null;
         OutputStream outputStream = connection.getOutputStream();
 
-        while ((bytesRead = inputStream.read(buffer)) != -1) {
-            outputStream.write(buffer, 0, bytesRead);
-            length += bytesRead;
+        if (compress) {
+            counter = new RequestCompression.CountingOutputStream(outputStream);
+            outputStream = new GZIPOutputStream(counter, RequestCompression.CHUNK_SIZE);
         }
 
-        outputStream.flush();
+        long length = ChannelTransfer.copy(inputStream, outputStream);
+
+        if (compress) {
+            ((GZIPOutputStream) outputStream).finish();
+            outputStream.flush();
+        }
+
+        logger.getBuffer().writeIndentedLine("Sent " + ChannelTransfer.describe(length, System.nanoTime() - started));
+
+        if (compress) {
+            RequestCompression.log(logger, length, counter.getCount());
+        }
 
         return length;
     }
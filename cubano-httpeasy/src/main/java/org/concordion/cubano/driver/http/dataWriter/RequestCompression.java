@@ -0,0 +1,92 @@
+package org.concordion.cubano.driver.http.dataWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.concordion.cubano.driver.http.logging.LogManager;
+import org.concordion.cubano.driver.http.transport.HttpConnection;
+
+/**
+ * Gzip compression of request bodies.
+ */
+final class RequestCompression {
+    static final int DISABLED = -1;
+    static final int CHUNK_SIZE = 8192;
+
+    private RequestCompression() {
+    }
+
+    /**
+     * @param length    Length of the body, or -1 if not known
+     * @param threshold Minimum body length to compress, or {@link #DISABLED}
+     * @return true if the body should be compressed
+     */
+    static boolean shouldCompress(long length, int threshold) {
+        return threshold != DISABLED && (length < 0 || length >= threshold);
+    }
+
+    /**
+     * Mark the request body as gzip encoded.
+     *
+     * @param connection The connection
+     */
+    static void setContentEncoding(HttpConnection connection) {
+        connection.setRequestProperty("Content-Encoding", "gzip");
+    }
+
+    /**
+     * @param data Data to compress
+     * @return The gzip compressed data
+     * @throws IOException If unable to compress the data
+     */
+    static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(data.length / 4, 32));
+
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Write the original and compressed size of the request body to the log.
+     *
+     * @param logger     Logger to write details to
+     * @param original   Uncompressed length
+     * @param compressed Compressed length
+     */
+    static void log(LogManager logger, long original, long compressed) {
+        logger.getBuffer().writeIndentedLine("Content-Encoding: gzip, " + original + " bytes compressed to " + compressed + " bytes");
+    }
+
+    /**
+     * Counts the bytes written to the connection.
+     */
+    static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.concordion.cubano.driver.http.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves request and response bodies to and from files using NIO channels, so that when both ends are files or sockets the
+ * operating system can copy the data without passing it through the JVM heap.
+ * <p>
+ * Where that is not possible, eg the response is being decompressed, a large per-thread buffer is reused instead of allocating
+ * a small one for every transfer.
+ * </p>
+ */
+public final class ChannelTransfer {
+    /** Size of the buffer used when data has to be copied through the heap. */
+    public static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final long CHUNK_SIZE = 8L * 1024 * 1024;
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    private ChannelTransfer() {
+    }
+
+    /**
+     * Write a stream to a file channel, starting at the given position.
+     *
+     * @param in       Stream to read until end of stream, not closed
+     * @param file     Channel to write to
+     * @param position Position in the file to start writing at
+     * @return Number of bytes written
+     * @throws IOException If unable to read or write
+     */
+    public static long toFile(InputStream in, FileChannel file, long position) throws IOException {
+        ReadableByteChannel source = in instanceof FileInputStream ? ((FileInputStream) in).getChannel() : Channels.newChannel(in);
+        long total = 0;
+        long transferred;
+
+        while ((transferred = file.transferFrom(source, position + total, CHUNK_SIZE)) > 0) {
+            total += transferred;
+        }
+
+        return total;
+    }
+
+    /**
+     * Write a stream to a new file, replacing any existing file.
+     *
+     * @param in   Stream to read until end of stream, not closed
+     * @param file File to write to
+     * @return Number of bytes written
+     * @throws IOException If unable to read or write
+     */
+    public static long toFile(InputStream in, File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return toFile(in, channel, 0);
+        }
+    }
+
+    /**
+     * Write a file to a stream.
+     *
+     * @param file File to read
+     * @param out  Stream to write to, flushed but not closed
+     * @return Number of bytes written
+     * @throws IOException If unable to read or write
+     */
+    public static long fromFile(File file, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long size = channel.size();
+            long position = 0;
+
+            while (position < size) {
+                long transferred = channel.transferTo(position, Math.min(CHUNK_SIZE, size - position), target);
+
+                if (transferred <= 0) {
+                    break;
+                }
+
+                position += transferred;
+            }
+
+            out.flush();
+
+            return position;
+        }
+    }
+
+    /**
+     * Copy a stream through a reused buffer, used when neither end is a channel.
+     *
+     * @param in  Stream to read until end of stream, not closed
+     * @param out Stream to write to, flushed but not closed
+     * @return Number of bytes copied
+     * @throws IOException If unable to read or write
+     */
+    public static long copy(InputStream in, OutputStream out) throws IOException {
+        if (in instanceof FileInputStream) {
+            return copy(((FileInputStream) in).getChannel(), out);
+        }
+
+        byte[] buffer = BUFFER.get();
+        long total = 0;
+        int read;
+
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            total += read;
+        }
+
+        out.flush();
+
+        return total;
+    }
+
+    private static long copy(FileChannel channel, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        long start = channel.position();
+        long position = start;
+        long transferred;
+
+        while ((transferred = channel.transferTo(position, CHUNK_SIZE, target)) > 0) {
+            position += transferred;
+        }
+
+        channel.position(position);
+        out.flush();
+
+        return position - start;
+    }
+
+    /**
+     * @param bytes        Number of bytes transferred
+     * @param elapsedNanos Time taken
+     * @return eg "1.5 MB in 120ms (12.5 MB/s)"
+     */
+    public static String describe(long bytes, long elapsedNanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        double perSecond = elapsedNanos <= 0 ? 0 : bytes * 1_000_000_000.0 / elapsedNanos;
+
+        return String.format(Locale.ROOT, "%s in %dms (%s/s)", size(bytes), millis, size((long) perSecond));
+    }
+
+    private static String size(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " bytes";
+        }
+
+        if (bytes < 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1f KB", bytes / 1024.0);
+        }
+
+        if (bytes < 1024L * 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024));
+        }
+
+        return String.format(Locale.ROOT, "%.1f GB", bytes / (1024.0 * 1024 * 1024));
+    }
+}
@@ -1,25 +1,98 @@
 package org.concordion.cubano.driver.http.logging;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.concordion.cubano.driver.http.HttpEasyDefaults;
 import org.concordion.cubano.driver.http.LogWriter;
 
 public class LogManager {
+    // Shared by every instance so that a deferred block is never interleaved with output written by another request
+    private static final Object WRITE_LOCK = new Object();
+
     private boolean logRequest;
     private boolean logRequestDetails;
 
     private LogWriter logWriter;
     private LogBuffer logBuffer = null;
+    private List<Runnable> deferred = null;
+    private final List<String> sensitiveParameters;
 
     public LogManager(LogWriter logWriter, boolean logRequestDetails) {
+        this(logWriter, HttpEasyDefaults.getLogRequest(), logRequestDetails, HttpEasyDefaults.getSensitiveParameters());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param logWriter           Where to write the log, null for no logging
+     * @param logRequest          Log a summary of each request
+     * @param logRequestDetails   Log the full request and response
+     * @param sensitiveParameters Names of parameters whose values must not be logged
+     */
+    public LogManager(LogWriter logWriter, boolean logRequest, boolean logRequestDetails, List<String> sensitiveParameters) {
         if (logWriter == null) {
             this.logRequest = false;
             this.logRequestDetails = false;
         } else {
-            this.logRequest = HttpEasyDefaults.getLogRequest() || logRequestDetails;
+            this.logRequest = logRequest || logRequestDetails;
             this.logRequestDetails = logRequestDetails;
         }
 
         this.logWriter = logWriter;
+        this.sensitiveParameters = sensitiveParameters;
+    }
+
+    /**
+     * @return Names of parameters whose values must be masked in the log
+     */
+    public List<String> getSensitiveParameters() {
+        return sensitiveParameters;
+    }
+
+    /**
+     * Hold back all output until {@link #writeDeferred()} is called so that requests running on other threads
+     * cannot interleave their log entries with this one.
+     */
+    public void deferOutput() {
+        if (deferred == null) {
+            deferred = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Write any output held back since {@link #deferOutput()} was called as a single block, later output is written immediately.
+     */
+    public synchronized void writeDeferred() {
+        List<Runnable> entries = deferred;
+        deferred = null;
+
+        if (entries == null || entries.isEmpty()) {
+            return;
+        }
+
+        synchronized (WRITE_LOCK) {
+            for (Runnable entry : entries) {
+                entry.run();
+            }
+        }
+    }
+
+    /**
+     * Drop any output held back since {@link #deferOutput()} was called, later output is written immediately.
+     */
+    public synchronized void discardDeferred() {
+        deferred = null;
+    }
+
+    private synchronized void output(Runnable entry) {
+        if (deferred != null) {
+            deferred.add(entry);
+        } else {
+            synchronized (WRITE_LOCK) {
+                entry.run();
+            }
+        }
     }
 
     public boolean isLogRequestDetails() {
@@ -31,7 +104,7 @@ public class LogManager {
             return;
 
         if (logRequest) {
-            logWriter.info(msg, args);
+            output(() -> logWriter.info(msg, args));
         }
     }
 
@@ -39,7 +112,7 @@ public class LogManager {
         if (logWriter == null)
             return;
 
-        logWriter.error(message, t);
+        output(() -> logWriter.error(message, t));
     }
 
     public void flushInfo() {
@@ -50,9 +123,11 @@ public class LogManager {
 
                     String[] lines = logBuffer.toString().split("\\r?\\n");
 
-                    for (String line : lines) {
-                        logWriter.info(line);
-                    }
+                    output(() -> {
+                        for (String line : lines) {
+                            logWriter.info(line);
+                        }
+                    });
                 }
             }
         }
@@ -65,7 +140,8 @@ public class LogManager {
             if (this.logRequestDetails && logBuffer != null) {
                 if (logBuffer.length() > 0) {
                     logBuffer.trimNewLine();
-                    logWriter.request(logBuffer.toString());
+                    String message = logBuffer.toString();
+                    output(() -> logWriter.request(message));
                 }
             }
         }
@@ -78,7 +154,8 @@ public class LogManager {
             if (this.logRequestDetails && logBuffer != null) {
                 if (logBuffer.length() > 0) {
                     logBuffer.trimNewLine();
-                    logWriter.response(logBuffer.toString());
+                    String message = logBuffer.toString();
+                    output(() -> logWriter.response(message));
                 }
             }
         }
@@ -0,0 +1,154 @@
+package org.concordion.cubano.driver.http.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations laid out in the same way as an HDR histogram, so that percentiles can be read back with a bounded
+ * error without keeping every value.
+ * <p>
+ * Durations are recorded in microseconds. Those under 128µs each have their own bucket, above that every power of two is split
+ * into 64 buckets so a percentile is never more than about 1.6% from the true value. Durations over 19 hours are counted in the
+ * last bucket. Recording is a handful of atomic increments, there are no locks so any number of threads can record at once.
+ * </p>
+ */
+public class LatencyHistogram {
+    private static final int LINEAR_BUCKETS = 128;
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_BITS = 36;
+    private static final int BUCKETS = LINEAR_BUCKETS + (MAX_BITS - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Record a duration.
+     *
+     * @param nanos Duration in nanoseconds, negative values are ignored
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+
+        counts.incrementAndGet(bucketFor(TimeUnit.NANOSECONDS.toMicros(nanos)));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    static int bucketFor(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+
+        int highestBit = 63 - Long.numberOfLeadingZeros(micros);
+
+        if (highestBit >= MAX_BITS) {
+            return BUCKETS - 1;
+        }
+
+        int shift = highestBit - SUB_BUCKET_BITS;
+
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) ((micros >> shift) - SUB_BUCKETS);
+    }
+
+    static long microsFor(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+
+        int shift = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+        long subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+
+        // Middle of the range the bucket covers
+        return (subBucket << shift) + (1L << (shift - 1));
+    }
+
+    /**
+     * @return Number of durations recorded
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return Mean duration in nanoseconds, 0 if nothing has been recorded
+     */
+    public long getMean() {
+        long recorded = count.get();
+
+        return recorded == 0 ? 0 : totalNanos.get() / recorded;
+    }
+
+    /**
+     * @return Longest duration recorded in nanoseconds
+     */
+    public long getMax() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Get the duration that the given percentage of recorded durations were at or under.
+     *
+     * @param percentile Between 0 and 100, eg 99.9
+     * @return Duration in nanoseconds, 0 if nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * total));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+
+            if (seen >= target) {
+                return Math.min(TimeUnit.MICROSECONDS.toNanos(microsFor(i)), getMax());
+            }
+        }
+
+        return getMax();
+    }
+
+    /**
+     * Forget all recorded durations.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, p50=%s, p90=%s, p99=%s, max=%s", getCount(),
+                millis(getValueAtPercentile(50)), millis(getValueAtPercentile(90)), millis(getValueAtPercentile(99)), millis(getMax()));
+    }
+
+    static String millis(long nanos) {
+        return String.format("%.1fms", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,37 @@
+package org.concordion.cubano.driver.http.metrics;
+
+/**
+ * The phases of a request that are timed.
+ */
+public enum Phase {
+    /** Finding the proxy to use for the URL. */
+    PROXY_LOOKUP("proxy lookup"),
+    /**
+     * Opening the connection, including the TLS handshake for https as the transports do not report it separately. Only recorded
+     * by transports that connect before the request is sent, such as {@link
+     * org.concordion.cubano.driver.http.transport.HttpTransports#urlConnection() urlConnection}, for the others the time is part
+     * of {@link #WRITE} or {@link #FIRST_BYTE}.
+     */
+    CONNECT("connect"),
+    /** Writing the request body. */
+    WRITE("write"),
+    /** From the request being sent to the response headers arriving. */
+    FIRST_BYTE("first byte"),
+    /** From the response headers arriving to the body being read to the end. */
+    READ("read"),
+    /** From starting the request to the response headers arriving. */
+    TOTAL("total");
+
+    private final String label;
+
+    Phase(String label) {
+        this.label = label;
+    }
+
+    /**
+     * @return Name of the phase for reports
+     */
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,176 @@
+package org.concordion.cubano.driver.http.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.concordion.cubano.driver.http.LogWriter;
+
+/**
+ * Collects the phase timings of every request sent with it into a histogram per endpoint, where an endpoint is the method, host
+ * and path template of the request, so that the cost of each call made by a suite can be reported when it finishes.
+ * <p>
+ * Using the path template, rather than the path, means that "customer/{id}" is reported once however many customers were
+ * requested.
+ * </p>
+ *
+ * <pre>
+ * RequestMetrics metrics = new RequestMetrics();
+ * HttpEasy.withDefaults().requestMetrics(metrics);
+ *
+ * // At the end of the suite
+ * metrics.writeTo(logWriter);
+ * </pre>
+ */
+public class RequestMetrics {
+    private static final String LINE_FORMAT = "    %-13s p50 %9.1f  p90 %9.1f  p99 %9.1f  max %9.1f  mean %9.1f";
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Create the name requests are grouped by.
+     *
+     * @param method       Request method
+     * @param host         Host and port
+     * @param pathTemplate Path before the URL parameters were replaced
+     * @return Endpoint name
+     */
+    public static String endpoint(String method, String host, String pathTemplate) {
+        return method + " " + host + pathTemplate;
+    }
+
+    /**
+     * Record how long a phase of a request took.
+     *
+     * @param endpoint Endpoint the request was sent to
+     * @param phase    Phase of the request
+     * @param nanos    Duration in nanoseconds
+     */
+    public void record(String endpoint, Phase phase, long nanos) {
+        endpoints.computeIfAbsent(endpoint, Endpoint::new).histogram(phase).record(nanos);
+    }
+
+    /**
+     * @return Names of the endpoints that requests have been sent to
+     */
+    public List<String> getEndpoints() {
+        List<String> names = new ArrayList<>(endpoints.keySet());
+
+        Collections.sort(names);
+
+        return names;
+    }
+
+    /**
+     * @param endpoint Endpoint requests were sent to
+     * @param phase    Phase of the requests
+     * @return Timings recorded for the phase, or null if none have been
+     */
+    public LatencyHistogram getHistogram(String endpoint, Phase phase) {
+        Endpoint timings = endpoints.get(endpoint);
+
+        return timings == null ? null : timings.histograms.get(phase.ordinal());
+    }
+
+    /**
+     * Forget all recorded timings.
+     */
+    public void reset() {
+        endpoints.clear();
+    }
+
+    /**
+     * @return The timings of each endpoint in milliseconds, slowest endpoint first
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+
+        for (String line : reportLines()) {
+            sb.append(line).append(System.lineSeparator());
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Write the report to a log writer, one line per message.
+     *
+     * @param logWriter Log writer
+     */
+    public void writeTo(LogWriter logWriter) {
+        for (String line : reportLines()) {
+            logWriter.info("{0}", line);
+        }
+    }
+
+    private List<String> reportLines() {
+        List<Endpoint> sorted = new ArrayList<>(endpoints.values());
+        List<String> lines = new ArrayList<>();
+
+        sorted.sort((e1, e2) -> Long.compare(e2.slowest(), e1.slowest()));
+
+        lines.add("Request timings (ms)");
+
+        for (Endpoint endpoint : sorted) {
+            LatencyHistogram total = endpoint.histograms.get(Phase.TOTAL.ordinal());
+
+            lines.add(String.format("%s - %d requests", endpoint.name, total == null ? 0 : total.getCount()));
+
+            for (Phase phase : Phase.values()) {
+                LatencyHistogram histogram = endpoint.histograms.get(phase.ordinal());
+
+                if (histogram == null || histogram.getCount() == 0) {
+                    continue;
+                }
+
+                lines.add(String.format(LINE_FORMAT, phase.getLabel(),
+                        toMillis(histogram.getValueAtPercentile(50)),
+                        toMillis(histogram.getValueAtPercentile(90)),
+                        toMillis(histogram.getValueAtPercentile(99)),
+                        toMillis(histogram.getMax()),
+                        toMillis(histogram.getMean())));
+            }
+        }
+
+        return lines;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return report();
+    }
+
+    private static final class Endpoint {
+        private final String name;
+        private final AtomicReferenceArray<LatencyHistogram> histograms = new AtomicReferenceArray<>(Phase.values().length);
+
+        Endpoint(String name) {
+            this.name = name;
+        }
+
+        LatencyHistogram histogram(Phase phase) {
+            LatencyHistogram histogram = histograms.get(phase.ordinal());
+
+            if (histogram == null) {
+                // Histograms are created as phases are seen so endpoints without a body don't hold an empty write histogram
+                histograms.compareAndSet(phase.ordinal(), null, new LatencyHistogram());
+                histogram = histograms.get(phase.ordinal());
+            }
+
+            return histogram;
+        }
+
+        long slowest() {
+            LatencyHistogram total = histograms.get(Phase.TOTAL.ordinal());
+
+            return total == null ? 0 : total.getValueAtPercentile(99);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.concordion.cubano.driver.http.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * How long each phase of a single request took, also passed on to the {@link RequestMetrics} the request was sent with.
+ * <p>
+ * Each phase is recorded at most once. A phase that did not happen, such as writing the body of a GET, or has not happened yet,
+ * such as reading a response that is still being streamed, is reported as -1.
+ * </p>
+ */
+public class RequestTimings {
+    private final RequestMetrics metrics;
+    private final String endpoint;
+    private final long startedAt = System.nanoTime();
+    private final AtomicLongArray nanos = new AtomicLongArray(Phase.values().length);
+    private volatile long sentAt = 0;
+    private volatile long receivedAt = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param metrics  Where to aggregate the timings, may be null
+     * @param endpoint Method, host and path template of the request, see {@link RequestMetrics#endpoint(String, String, String)}
+     */
+    public RequestTimings(RequestMetrics metrics, String endpoint) {
+        this.metrics = metrics;
+        this.endpoint = endpoint;
+
+        for (int i = 0; i < nanos.length(); i++) {
+            nanos.set(i, -1);
+        }
+    }
+
+    /**
+     * Record how long a phase took.
+     *
+     * @param phase Phase that has completed
+     * @param took  Duration in nanoseconds
+     */
+    public void record(Phase phase, long took) {
+        if (nanos.compareAndSet(phase.ordinal(), -1, took) && metrics != null) {
+            metrics.record(endpoint, phase, took);
+        }
+    }
+
+    /**
+     * The request has been written, the wait for the response starts now.
+     */
+    public void requestSent() {
+        sentAt = System.nanoTime();
+    }
+
+    /**
+     * The response headers have arrived.
+     */
+    public void responseReceived() {
+        if (receivedAt != 0) {
+            return;
+        }
+
+        long now = System.nanoTime();
+
+        receivedAt = now;
+        record(Phase.FIRST_BYTE, now - (sentAt == 0 ? startedAt : sentAt));
+        record(Phase.TOTAL, now - startedAt);
+    }
+
+    /**
+     * The response body has been read to the end.
+     */
+    public void responseRead() {
+        if (receivedAt != 0) {
+            record(Phase.READ, System.nanoTime() - receivedAt);
+        }
+    }
+
+    /**
+     * @return Method, host and path template of the request
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @param phase Phase of the request
+     * @return How long the phase took in nanoseconds, or -1 if it has not been recorded
+     */
+    public long getNanos(Phase phase) {
+        return nanos.get(phase.ordinal());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        for (Phase phase : Phase.values()) {
+            long took = getNanos(phase);
+
+            if (took < 0) {
+                continue;
+            }
+
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+
+            sb.append(phase.getLabel()).append(" ").append(LatencyHistogram.millis(took));
+        }
+
+        return sb.toString();
+    }
+}
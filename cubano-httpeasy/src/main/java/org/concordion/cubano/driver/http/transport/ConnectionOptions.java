@@ -0,0 +1,49 @@
+package org.concordion.cubano.driver.http.transport;
+
+import java.net.Proxy;
+
+import javax.net.ssl.SSLContext;
+
+/**
+ * Connection level settings resolved by HttpEasy for a single request.
+ */
+public class ConnectionOptions {
+    public final Proxy proxy;
+    public final boolean trustAllCertificates;
+    public final boolean trustAllHosts;
+    public final int connectTimeout;
+    public final int readTimeout;
+    public final SSLContext sslContext;
+
+    /**
+     * Constructor.
+     *
+     * @param proxy                Proxy to route the request through, {@link Proxy#NO_PROXY} for a direct connection
+     * @param trustAllCertificates Skip validation of SSL certificates
+     * @param trustAllHosts        Skip hostname verification
+     * @param connectTimeout       Connect timeout in milliseconds, zero is infinite
+     * @param readTimeout          Read timeout in milliseconds, zero is infinite
+     */
+    public ConnectionOptions(Proxy proxy, boolean trustAllCertificates, boolean trustAllHosts, int connectTimeout, int readTimeout) {
+        this(proxy, trustAllCertificates, trustAllHosts, connectTimeout, readTimeout, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param proxy                Proxy to route the request through, {@link Proxy#NO_PROXY} for a direct connection
+     * @param trustAllCertificates Skip validation of SSL certificates
+     * @param trustAllHosts        Skip hostname verification
+     * @param connectTimeout       Connect timeout in milliseconds, zero is infinite
+     * @param readTimeout          Read timeout in milliseconds, zero is infinite
+     * @param sslContext           SSL context for HTTPS connections, null for the JVM default
+     */
+    public ConnectionOptions(Proxy proxy, boolean trustAllCertificates, boolean trustAllHosts, int connectTimeout, int readTimeout, SSLContext sslContext) {
+        this.proxy = proxy;
+        this.trustAllCertificates = trustAllCertificates;
+        this.trustAllHosts = trustAllHosts;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.sslContext = sslContext;
+    }
+}
@@ -0,0 +1,101 @@
+package org.concordion.cubano.driver.http.transport;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per host counts of the requests sent by the {@link HttpTransports built in transports} and how each one's connection was
+ * finished with.
+ * <p>
+ * A connection is either released, leaving it open in the transport's pool where a later request to the same host may use it, or
+ * discarded and closed. Neither HttpURLConnection nor HttpClient reports whether a request was actually sent over a pooled
+ * connection, so reuse itself is not counted, but a high discarded count shows connections are being thrown away.
+ * </p>
+ */
+public final class ConnectionStatistics {
+    private static final ConcurrentMap<String, HostStatistics> HOSTS = new ConcurrentHashMap<>();
+
+    private ConnectionStatistics() {
+    }
+
+    static void connectionOpened(URL url) {
+        getHost(url).requests.incrementAndGet();
+    }
+
+    static void connectionReleased(URL url) {
+        getHost(url).released.incrementAndGet();
+    }
+
+    static void connectionDiscarded(URL url) {
+        getHost(url).discarded.incrementAndGet();
+    }
+
+    private static HostStatistics getHost(URL url) {
+        String key = url.getProtocol().toLowerCase() + "://" + url.getHost().toLowerCase() + ":" + (url.getPort() == -1 ? url.getDefaultPort() : url.getPort());
+
+        return HOSTS.computeIfAbsent(key, HostStatistics::new);
+    }
+
+    /**
+     * @return Statistics for each host requested, keyed by protocol, host and port
+     */
+    public static Map<String, HostStatistics> getStatistics() {
+        return Collections.unmodifiableMap(new TreeMap<>(HOSTS));
+    }
+
+    /**
+     * Clear all statistics.
+     */
+    public static void reset() {
+        HOSTS.clear();
+    }
+
+    /**
+     * Connection counts for a single host.
+     */
+    public static final class HostStatistics {
+        private final String host;
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong released = new AtomicLong();
+        private final AtomicLong discarded = new AtomicLong();
+
+        private HostStatistics(String host) {
+            this.host = host;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        /**
+         * @return Requests sent to the host
+         */
+        public long getRequests() {
+            return requests.get();
+        }
+
+        /**
+         * @return Responses that were fully read and closed, leaving their connection in the pool
+         */
+        public long getReleased() {
+            return released.get();
+        }
+
+        /**
+         * @return Responses whose connection was closed rather than left in the pool
+         */
+        public long getDiscarded() {
+            return discarded.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: requests=%d, released=%d, discarded=%d", host, getRequests(), getReleased(), getDiscarded());
+        }
+    }
+}
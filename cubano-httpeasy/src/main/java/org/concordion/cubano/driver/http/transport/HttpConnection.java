@@ -0,0 +1,178 @@
+package org.concordion.cubano.driver.http.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single request / response exchange created by a {@link HttpTransport}.
+ * <p>
+ * The methods mirror those of {@link HttpURLConnection} so that the request can be built up and the response read in the same way
+ * regardless of which transport is in use.
+ * </p>
+ */
+public abstract class HttpConnection {
+
+    /**
+     * @return The URL this connection is for
+     */
+    public abstract URL getURL();
+
+    /**
+     * @param method HTTP method, eg GET, POST
+     * @throws IOException if the method is not valid for this transport
+     */
+    public abstract void setRequestMethod(String method) throws IOException;
+
+    /**
+     * @return The HTTP method
+     */
+    public abstract String getRequestMethod();
+
+    /**
+     * Set a request header, replacing any existing value.
+     *
+     * @param key   Header name
+     * @param value Header value
+     */
+    public abstract void setRequestProperty(String key, String value);
+
+    /**
+     * @return The request headers, excluding any authorization headers
+     */
+    public abstract Map<String, List<String>> getRequestProperties();
+
+    /**
+     * Indicate that a request body will be written via {@link #getOutputStream()}.
+     *
+     * @param doOutput true if a body will be written
+     */
+    public abstract void setDoOutput(boolean doOutput);
+
+    /**
+     * Stream a request body of a known length without buffering it.
+     *
+     * @param contentLength Number of bytes that will be written
+     */
+    public abstract void setFixedLengthStreamingMode(long contentLength);
+
+    /**
+     * Stream a request body of unknown length without buffering it.
+     *
+     * @param chunkLength Number of bytes in each chunk, zero for the transport's default
+     */
+    public abstract void setChunkedStreamingMode(int chunkLength);
+
+    /**
+     * Open the connection, if not already done.
+     *
+     * @throws IOException for connection errors
+     */
+    public abstract void connect() throws IOException;
+
+    /**
+     * @return true if {@link #connect()} returned without opening a connection, which is then opened while the request body is
+     *         written or the response is read
+     */
+    public boolean isConnectDeferred() {
+        return false;
+    }
+
+    /**
+     * @return Stream to write the request body to
+     * @throws IOException for connection errors
+     */
+    public abstract OutputStream getOutputStream() throws IOException;
+
+    /**
+     * @return HTTP status code of the response
+     * @throws IOException for connection errors
+     */
+    public abstract int getResponseCode() throws IOException;
+
+    /**
+     * @return HTTP status message of the response, or null if not available
+     * @throws IOException for connection errors
+     */
+    public abstract String getResponseMessage() throws IOException;
+
+    /**
+     * @param name Header name
+     * @return Last value of the named response header, or null if not present
+     */
+    public abstract String getHeaderField(String name);
+
+    /**
+     * @return All response headers, the status line is returned against a null key
+     */
+    public abstract Map<String, List<String>> getHeaderFields();
+
+    /**
+     * @return Value of the Content-Type response header
+     */
+    public String getContentType() {
+        return getHeaderField("Content-Type");
+    }
+
+    /**
+     * @return Value of the Content-Length response header, or -1 if not known
+     */
+    public long getContentLengthLong() {
+        String value = getHeaderField("Content-Length");
+
+        if (value == null) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return Response body of a successful request
+     * @throws IOException for connection errors or if the server returned an error response
+     */
+    public abstract InputStream getInputStream() throws IOException;
+
+    /**
+     * @return Response body of a failed request, or null if the request did not fail
+     */
+    public abstract InputStream getErrorStream();
+
+    /**
+     * Release any resources held by this connection, closing the underlying socket if the transport permits.
+     */
+    public abstract void disconnect();
+
+    /**
+     * Finished with a response that has been fully read and closed, leaving the underlying connection open so that it can be
+     * reused by a later request to the same host.
+     */
+    public void release() {
+    }
+
+    /**
+     * Access to the underlying connection when the {@link HttpTransports#urlConnection() url connection} transport is in use.
+     *
+     * @return The underlying connection
+     * @throws UnsupportedOperationException if a different transport is in use
+     */
+    public HttpURLConnection getHttpURLConnection() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " is not backed by an HttpURLConnection");
+    }
+
+    /**
+     * @param connection Connection opened by the caller
+     * @return The connection exposed as an HttpConnection, for code written before transports were pluggable
+     */
+    public static HttpConnection of(HttpURLConnection connection) {
+        return new UrlConnectionAdapter(connection);
+    }
+}
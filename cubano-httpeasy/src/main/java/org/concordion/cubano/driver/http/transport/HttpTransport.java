@@ -0,0 +1,25 @@
+package org.concordion.cubano.driver.http.transport;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Opens the connections used by HttpEasy to send a request and read the response.
+ * <p>
+ * Implementations must be thread safe as a single transport is shared by all requests, see {@link HttpTransports} for the
+ * available implementations.
+ * </p>
+ */
+public interface HttpTransport {
+
+    /**
+     * Create a new, unconnected, connection to the supplied url.
+     *
+     * @param url     Fully resolved URL of the request
+     * @param options Proxy, certificate and timeout settings for this request
+     * @return A connection ready to have its request method and headers set
+     * @throws IOException If unable to create the connection
+     */
+    public HttpConnection openConnection(URL url, ConnectionOptions options) throws IOException;
+
+}
@@ -0,0 +1,59 @@
+package org.concordion.cubano.driver.http.transport;
+
+/**
+ * Factory for the transports shipped with HttpEasy.
+ *
+ * <pre>
+ * HttpEasy.withDefaults().transport(HttpTransports.httpClient());
+ * </pre>
+ */
+public final class HttpTransports {
+    private static final String HTTP_CLIENT_TRANSPORT = "org.concordion.cubano.driver.http.transport.HttpClientTransport";
+
+    private HttpTransports() {
+    }
+
+    /**
+     * @return A transport based on {@link java.net.HttpURLConnection}, this is the default
+     */
+    public static HttpTransport urlConnection() {
+        return new UrlConnectionTransport();
+    }
+
+    /**
+     * A transport based on java.net.http.HttpClient that negotiates HTTP/2 where the server supports it, multiplexing concurrent requests to
+     * the same host over a shared connection.
+     * <p>
+     * Connections are pooled per combination of proxy, trust settings and connect timeout, so the transport should be created once
+     * and reused.
+     * </p>
+     * <p>
+     * HttpClient has no read timeout, the read timeout is instead the time allowed for the response headers to arrive after the
+     * request is sent. Reading the response body is not timed out.
+     * </p>
+     *
+     * @return A new HttpClient transport
+     * @throws UnsupportedOperationException if not running on Java 11 or later
+     */
+    public static HttpTransport httpClient() {
+        try {
+            return (HttpTransport) Class.forName(HTTP_CLIENT_TRANSPORT).getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException | LinkageError e) {
+            throw new UnsupportedOperationException("The HttpClient transport requires Java 11 or later", e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create the HttpClient transport", e);
+        }
+    }
+
+    /**
+     * @return true if {@link #httpClient()} is supported on the running JVM
+     */
+    public static boolean isHttpClientAvailable() {
+        try {
+            Class.forName(HTTP_CLIENT_TRANSPORT);
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
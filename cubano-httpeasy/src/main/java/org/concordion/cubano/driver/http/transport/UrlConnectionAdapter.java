@@ -0,0 +1,128 @@
+package org.concordion.cubano.driver.http.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exposes an {@link HttpURLConnection} as a {@link HttpConnection}.
+ */
+class UrlConnectionAdapter extends HttpConnection {
+    private final HttpURLConnection connection;
+
+    UrlConnectionAdapter(HttpURLConnection connection) {
+        this.connection = connection;
+
+        ConnectionStatistics.connectionOpened(connection.getURL());
+    }
+
+    @Override
+    public URL getURL() {
+        return connection.getURL();
+    }
+
+    @Override
+    public void setRequestMethod(String method) throws IOException {
+        connection.setRequestMethod(method);
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return connection.getRequestMethod();
+    }
+
+    @Override
+    public void setRequestProperty(String key, String value) {
+        connection.setRequestProperty(key, value);
+    }
+
+    @Override
+    public Map<String, List<String>> getRequestProperties() {
+        return connection.getRequestProperties();
+    }
+
+    @Override
+    public void setDoOutput(boolean doOutput) {
+        connection.setDoOutput(doOutput);
+    }
+
+    @Override
+    public void setFixedLengthStreamingMode(long contentLength) {
+        connection.setFixedLengthStreamingMode(contentLength);
+    }
+
+    @Override
+    public void setChunkedStreamingMode(int chunkLength) {
+        connection.setChunkedStreamingMode(chunkLength);
+    }
+
+    @Override
+    public void connect() throws IOException {
+        connection.connect();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return connection.getOutputStream();
+    }
+
+    @Override
+    public int getResponseCode() throws IOException {
+        return connection.getResponseCode();
+    }
+
+    @Override
+    public String getResponseMessage() throws IOException {
+        return connection.getResponseMessage();
+    }
+
+    @Override
+    public String getHeaderField(String name) {
+        return connection.getHeaderField(name);
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaderFields() {
+        return connection.getHeaderFields();
+    }
+
+    @Override
+    public String getContentType() {
+        return connection.getContentType();
+    }
+
+    @Override
+    public long getContentLengthLong() {
+        return connection.getContentLengthLong();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return connection.getInputStream();
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        return connection.getErrorStream();
+    }
+
+    @Override
+    public void disconnect() {
+        ConnectionStatistics.connectionDiscarded(connection.getURL());
+        connection.disconnect();
+    }
+
+    @Override
+    public void release() {
+        ConnectionStatistics.connectionReleased(connection.getURL());
+    }
+
+    @Override
+    public HttpURLConnection getHttpURLConnection() {
+        return connection;
+    }
+}
@@ -0,0 +1,49 @@
+package org.concordion.cubano.driver.http.transport;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+
+import javax.net.ssl.HttpsURLConnection;
+
+import org.concordion.cubano.driver.http.SSLUtilities;
+
+/**
+ * The default transport, uses {@link HttpURLConnection} and so is limited to HTTP/1.1.
+ */
+public class UrlConnectionTransport implements HttpTransport {
+
+    @Override
+    public HttpConnection openConnection(URL url, ConnectionOptions options) throws IOException {
+        HttpURLConnection connection;
+
+        if (url.getProtocol().equalsIgnoreCase("https")) {
+            connection = (HttpsURLConnection) url.openConnection(options.proxy);
+
+            if (options.trustAllCertificates) {
+                try {
+                    ((HttpsURLConnection) connection).setSSLSocketFactory(SSLUtilities.getTrustAllCertificatesSocketFactory());
+                } catch (KeyManagementException | NoSuchAlgorithmException e) {
+                    throw new IOException("Unable to trust all certificates", e);
+                }
+            } else if (options.sslContext != null) {
+                ((HttpsURLConnection) connection).setSSLSocketFactory(options.sslContext.getSocketFactory());
+            }
+
+            if (options.trustAllHosts) {
+                ((HttpsURLConnection) connection).setHostnameVerifier(SSLUtilities.getTrustAllHostsVerifier());
+            }
+        } else {
+            connection = (HttpURLConnection) url.openConnection(options.proxy);
+        }
+
+        connection.setUseCaches(false);
+        connection.setConnectTimeout(options.connectTimeout);
+        connection.setReadTimeout(options.readTimeout);
+        connection.setInstanceFollowRedirects(false);
+
+        return new UrlConnectionAdapter(connection);
+    }
+}
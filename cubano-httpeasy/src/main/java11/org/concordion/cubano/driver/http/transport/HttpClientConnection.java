@@ -0,0 +1,522 @@
+package org.concordion.cubano.driver.http.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single exchange sent through {@link HttpClient}.
+ * <p>
+ * The request is sent when the body is first written to, or when the response is first asked for if there is no body. Any body
+ * written to {@link #getOutputStream()} is handed to the client through a small bounded queue rather than being buffered, if the
+ * exchange fails while the body is being written the writer is given the reason it failed.
+ * </p>
+ * <p>
+ * HttpClient has no read timeout, the nearest it offers is a deadline for the response headers to arrive. The read timeout is used
+ * for that, so it covers connecting, sending the request and waiting for the server to start responding, but reading the body
+ * once it has started to arrive is not timed.
+ * </p>
+ */
+class HttpClientConnection extends HttpConnection {
+    // Chunks of request body waiting to be sent, with the writer's 8K buffer this holds back at most 64K
+    private static final int PIPE_CHUNKS = 8;
+
+    // Headers HttpClient manages itself and will reject if set on the request
+    private static final Set<String> RESTRICTED_HEADERS = caseInsensitiveSet("Connection", "Content-Length", "Expect", "Host", "Upgrade");
+    private static final Set<String> HIDDEN_HEADERS = caseInsensitiveSet("Authorization", "Proxy-Authorization");
+
+    private final HttpClient client;
+    private final URL url;
+    private final int readTimeout;
+    private final Map<String, List<String>> requestProperties = new LinkedHashMap<>();
+    private String method = "GET";
+    private long contentLength = -1;
+    private boolean doOutput = false;
+
+    private BodyPipe body = null;
+    private CompletableFuture<HttpResponse<InputStream>> pending = null;
+    private HttpResponse<InputStream> response = null;
+    private Map<String, List<String>> headerFields = null;
+
+    HttpClientConnection(HttpClient client, URL url, int readTimeout) {
+        this.client = client;
+        this.url = url;
+        this.readTimeout = readTimeout;
+
+        ConnectionStatistics.connectionOpened(url);
+    }
+
+    private static Set<String> caseInsensitiveSet(String... values) {
+        Set<String> set = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        set.addAll(Arrays.asList(values));
+        return set;
+    }
+
+    @Override
+    public URL getURL() {
+        return url;
+    }
+
+    @Override
+    public void setRequestMethod(String method) throws IOException {
+        this.method = method;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+
+    @Override
+    public void setRequestProperty(String key, String value) {
+        if (pending != null) {
+            throw new IllegalStateException("Already connected");
+        }
+
+        if ("Content-Length".equalsIgnoreCase(key)) {
+            contentLength = Long.parseLong(value);
+        }
+
+        requestProperties.put(key, Collections.singletonList(value));
+    }
+
+    @Override
+    public Map<String, List<String>> getRequestProperties() {
+        Map<String, List<String>> visible = new LinkedHashMap<>();
+
+        for (Map.Entry<String, List<String>> entry : requestProperties.entrySet()) {
+            if (!HIDDEN_HEADERS.contains(entry.getKey())) {
+                visible.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        return Collections.unmodifiableMap(visible);
+    }
+
+    @Override
+    public void setDoOutput(boolean doOutput) {
+        this.doOutput = doOutput;
+    }
+
+    @Override
+    public void setFixedLengthStreamingMode(long contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    @Override
+    public void setChunkedStreamingMode(int chunkLength) {
+        this.contentLength = -1;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        // Request is sent once the body, or response, is asked for
+    }
+
+    @Override
+    public boolean isConnectDeferred() {
+        return true;
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        if (!doOutput) {
+            throw new IllegalStateException("setDoOutput(true) must be called before writing a request body");
+        }
+
+        if (body != null) {
+            return body;
+        }
+
+        if (pending != null) {
+            throw new IllegalStateException("Request has already been sent");
+        }
+
+        BodyPipe pipe = new BodyPipe(url);
+        BodyPublisher publisher = BodyPublishers.ofInputStream(pipe::getSource);
+
+        if (contentLength >= 0) {
+            publisher = BodyPublishers.fromPublisher(publisher, contentLength);
+        }
+
+        send(publisher);
+        body = pipe;
+
+        // Unblock the writer if the exchange ends, or fails, before the body has been consumed
+        pending.whenComplete((r, e) -> pipe.finished(e));
+
+        return body;
+    }
+
+    private void send(BodyPublisher publisher) throws IOException {
+        HttpRequest.Builder builder;
+
+        try {
+            builder = HttpRequest.newBuilder(url.toURI()).method(method, publisher);
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid URL " + url, e);
+        }
+
+        if (readTimeout > 0) {
+            builder.timeout(Duration.ofMillis(readTimeout));
+        }
+
+        for (Map.Entry<String, List<String>> header : requestProperties.entrySet()) {
+            if (RESTRICTED_HEADERS.contains(header.getKey())) {
+                continue;
+            }
+
+            for (String value : header.getValue()) {
+                builder.header(header.getKey(), value);
+            }
+        }
+
+        pending = client.sendAsync(builder.build(), BodyHandlers.ofInputStream());
+    }
+
+    private HttpResponse<InputStream> getResponse() throws IOException {
+        if (response != null) {
+            return response;
+        }
+
+        if (pending == null) {
+            send(BodyPublishers.noBody());
+        }
+
+        if (body != null) {
+            body.close();
+        }
+
+        try {
+            response = pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for response from " + url);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+
+            throw new IOException(e.getCause());
+        }
+
+        return response;
+    }
+
+    @Override
+    public int getResponseCode() throws IOException {
+        return getResponse().statusCode();
+    }
+
+    @Override
+    public String getResponseMessage() throws IOException {
+        // HTTP/2 has no reason phrase and HttpClient does not expose it for HTTP/1.1, so give the standard one for the status
+        return reasonPhrase(getResponse().statusCode());
+    }
+
+    private static String reasonPhrase(int statusCode) {
+        switch (statusCode) {
+        case 100: return "Continue";
+        case 101: return "Switching Protocols";
+        case 200: return "OK";
+        case 201: return "Created";
+        case 202: return "Accepted";
+        case 203: return "Non-Authoritative Information";
+        case 204: return "No Content";
+        case 205: return "Reset Content";
+        case 206: return "Partial Content";
+        case 300: return "Multiple Choices";
+        case 301: return "Moved Permanently";
+        case 302: return "Found";
+        case 303: return "See Other";
+        case 304: return "Not Modified";
+        case 305: return "Use Proxy";
+        case 307: return "Temporary Redirect";
+        case 308: return "Permanent Redirect";
+        case 400: return "Bad Request";
+        case 401: return "Unauthorized";
+        case 402: return "Payment Required";
+        case 403: return "Forbidden";
+        case 404: return "Not Found";
+        case 405: return "Method Not Allowed";
+        case 406: return "Not Acceptable";
+        case 407: return "Proxy Authentication Required";
+        case 408: return "Request Timeout";
+        case 409: return "Conflict";
+        case 410: return "Gone";
+        case 411: return "Length Required";
+        case 412: return "Precondition Failed";
+        case 413: return "Payload Too Large";
+        case 414: return "URI Too Long";
+        case 415: return "Unsupported Media Type";
+        case 416: return "Range Not Satisfiable";
+        case 417: return "Expectation Failed";
+        case 422: return "Unprocessable Entity";
+        case 426: return "Upgrade Required";
+        case 428: return "Precondition Required";
+        case 429: return "Too Many Requests";
+        case 431: return "Request Header Fields Too Large";
+        case 500: return "Internal Server Error";
+        case 501: return "Not Implemented";
+        case 502: return "Bad Gateway";
+        case 503: return "Service Unavailable";
+        case 504: return "Gateway Timeout";
+        case 505: return "HTTP Version Not Supported";
+        default: return null;
+        }
+    }
+
+    @Override
+    public String getHeaderField(String name) {
+        List<String> values = getHeaderFields().entrySet().stream()
+                .filter(e -> name.equalsIgnoreCase(e.getKey()))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(null);
+
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+
+        return values.get(values.size() - 1);
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaderFields() {
+        if (headerFields != null) {
+            return headerFields;
+        }
+
+        HttpResponse<InputStream> resp;
+
+        try {
+            resp = getResponse();
+        } catch (IOException e) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, List<String>> fields = new LinkedHashMap<>();
+        String version = resp.version() == HttpClient.Version.HTTP_2 ? "HTTP/2" : "HTTP/1.1";
+        String reason = reasonPhrase(resp.statusCode());
+        fields.put(null, Collections.singletonList(version + " " + resp.statusCode() + (reason == null ? "" : " " + reason)));
+        fields.putAll(resp.headers().map());
+
+        headerFields = Collections.unmodifiableMap(fields);
+
+        return headerFields;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        HttpResponse<InputStream> resp = getResponse();
+
+        if (resp.statusCode() >= 400) {
+            throw new IOException("Server returned HTTP response code: " + resp.statusCode() + " for URL: " + url);
+        }
+
+        return resp.body();
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        try {
+            HttpResponse<InputStream> resp = getResponse();
+
+            return resp.statusCode() >= 400 ? resp.body() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        ConnectionStatistics.connectionDiscarded(url);
+
+        if (response != null) {
+            closeQuietly(response.body());
+        } else if (pending != null) {
+            pending.cancel(true);
+        }
+
+        if (body != null) {
+            body.finished(new IOException("Request to " + url + " was disconnected"));
+        }
+    }
+
+    @Override
+    public void release() {
+        ConnectionStatistics.connectionReleased(url);
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            // Nothing more can be done
+        }
+    }
+
+    /**
+     * Carries the request body from the thread writing it to the client, holding at most a few chunks so that a large body is not
+     * buffered in memory. Once the exchange has finished the writer is told why rather than just that the stream is closed.
+     */
+    private static class BodyPipe extends OutputStream {
+        private static final byte[] END = new byte[0];
+        private static final long POLL_MILLIS = 100;
+
+        private final URL url;
+        private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(PIPE_CHUNKS);
+        private volatile IOException failure = null;
+        private volatile boolean done = false;
+        private boolean closed = false;
+
+        BodyPipe(URL url) {
+            this.url = url;
+        }
+
+        /**
+         * @param cause Why the exchange failed, or null if a response was received
+         */
+        void finished(Throwable cause) {
+            if (done) {
+                return;
+            }
+
+            if (cause instanceof ExecutionException || cause instanceof CompletionException) {
+                cause = cause.getCause() == null ? cause : cause.getCause();
+            }
+
+            failure = cause == null
+                    ? new IOException("Response from " + url + " was received before the request body was sent")
+                    : new IOException("Request to " + url + " failed: " + cause.getMessage(), cause);
+            done = true;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Request body has been closed");
+            }
+
+            if (len > 0) {
+                put(Arrays.copyOfRange(b, off, off + len));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+
+            // Once the exchange is over there is no one left to read the end of the body, the outcome is given by the response
+            try {
+                while (!done && !chunks.offer(END, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    // Wait for space
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted writing request body to " + url);
+            }
+        }
+
+        private void put(byte[] chunk) throws IOException {
+            try {
+                while (!chunks.offer(chunk, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    checkFailed();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted writing request body to " + url);
+            }
+
+            checkFailed();
+        }
+
+        private void checkFailed() throws IOException {
+            if (done && failure != null) {
+                throw failure;
+            }
+        }
+
+        InputStream getSource() {
+            return new InputStream() {
+                private byte[] current = null;
+                private int position = 0;
+
+                @Override
+                public int read() throws IOException {
+                    byte[] one = new byte[1];
+                    return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (current == END) {
+                        return -1;
+                    }
+
+                    if (current == null || position == current.length) {
+                        current = take();
+                        position = 0;
+
+                        if (current == END) {
+                            return -1;
+                        }
+                    }
+
+                    int count = Math.min(len, current.length - position);
+                    System.arraycopy(current, position, b, off, count);
+                    position += count;
+
+                    return count;
+                }
+
+                private byte[] take() throws IOException {
+                    try {
+                        byte[] chunk;
+
+                        while ((chunk = chunks.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                            checkFailed();
+                        }
+
+                        return chunk;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted reading request body for " + url);
+                    }
+                }
+            };
+        }
+    }
+}
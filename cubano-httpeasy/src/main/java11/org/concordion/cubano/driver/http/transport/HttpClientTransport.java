@@ -0,0 +1,163 @@
+package org.concordion.cubano.driver.http.transport;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.Socket;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedTrustManager;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ * Transport based on {@link HttpClient}, supports HTTP/2 and shares connections between requests.
+ * <p>
+ * A client is created for each distinct combination of proxy, trust settings, SSL context and connect timeout and then reused, it
+ * is the client that owns the connection pool.
+ * </p>
+ * <p>
+ * HttpClient always verifies the host name as part of certificate validation so trusting all certificates also trusts all hosts.
+ * </p>
+ */
+class HttpClientTransport implements HttpTransport {
+    private final Map<List<Object>, HttpClient> clients = new ConcurrentHashMap<>();
+
+    @Override
+    public HttpConnection openConnection(URL url, ConnectionOptions options) throws IOException {
+        List<Object> key = Arrays.asList(options.proxy, options.trustAllCertificates, options.trustAllHosts, options.connectTimeout, options.sslContext);
+
+        HttpClient client = clients.get(key);
+
+        if (client == null) {
+            client = clients.computeIfAbsent(key, k -> createClient(options));
+        }
+
+        return new HttpClientConnection(client, url, options.readTimeout);
+    }
+
+    private HttpClient createClient(ConnectionOptions options) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .proxy(getProxySelector(options.proxy));
+
+        if (options.connectTimeout > 0) {
+            builder.connectTimeout(Duration.ofMillis(options.connectTimeout));
+        }
+
+        if (options.trustAllCertificates) {
+            builder.sslContext(createSslContext(new TrustAllManager(null)));
+        } else if (options.trustAllHosts) {
+            builder.sslContext(createSslContext(new TrustAllManager(getDefaultTrustManager())));
+        } else if (options.sslContext != null) {
+            builder.sslContext(options.sslContext);
+        }
+
+        return builder.build();
+    }
+
+    private static ProxySelector getProxySelector(Proxy proxy) {
+        if (proxy == null || proxy.type() == Proxy.Type.DIRECT) {
+            return HttpClient.Builder.NO_PROXY;
+        }
+
+        if (proxy.type() != Proxy.Type.HTTP) {
+            throw new UnsupportedOperationException("The HttpClient transport does not support " + proxy.type() + " proxies");
+        }
+
+        return ProxySelector.of((InetSocketAddress) proxy.address());
+    }
+
+    private static SSLContext createSslContext(TrustManager trustManager) {
+        try {
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, new TrustManager[] {trustManager}, null);
+            return context;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to create SSL context", e);
+        }
+    }
+
+    private static X509TrustManager getDefaultTrustManager() {
+        try {
+            TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            factory.init((KeyStore) null);
+
+            for (TrustManager manager : factory.getTrustManagers()) {
+                if (manager instanceof X509TrustManager) {
+                    return (X509TrustManager) manager;
+                }
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to load the default trust manager", e);
+        }
+
+        throw new IllegalStateException("No default X509TrustManager found");
+    }
+
+    /**
+     * Extended trust manager so that JSSE does not add its own host name check, the certificate chain is validated against the
+     * delegate if one is supplied.
+     */
+    private static class TrustAllManager extends X509ExtendedTrustManager {
+        private final X509TrustManager delegate;
+
+        TrustAllManager(X509TrustManager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            if (delegate != null) {
+                delegate.checkClientTrusted(chain, authType);
+            }
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            if (delegate != null) {
+                delegate.checkServerTrusted(chain, authType);
+            }
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) throws CertificateException {
+            checkClientTrusted(chain, authType);
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) throws CertificateException {
+            checkServerTrusted(chain, authType);
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) throws CertificateException {
+            checkClientTrusted(chain, authType);
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) throws CertificateException {
+            checkServerTrusted(chain, authType);
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return delegate == null ? new X509Certificate[0] : delegate.getAcceptedIssuers();
+        }
+    }
+}
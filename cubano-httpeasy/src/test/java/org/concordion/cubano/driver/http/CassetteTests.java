@@ -0,0 +1,214 @@
+package org.concordion.cubano.driver.http;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.concordion.cubano.driver.http.cache.Cassette;
+import org.concordion.cubano.driver.http.cache.Cassette.Match;
+import org.concordion.cubano.driver.http.cache.Cassette.Mode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.net.MediaType;
+
+public class CassetteTests {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private TestServer server;
+
+    @Before
+    public void startServer() throws Exception {
+        server = new TestServer()
+                .handle("/echo", exchange -> {
+                    int count = requests.incrementAndGet();
+                    String accept = exchange.getRequestHeaders().getFirst("Accept");
+
+                    TestServer.respond(exchange, 200, "text/plain", exchange.getRequestMethod() + " " + exchange.getRequestURI()
+                            + " " + TestServer.readBody(exchange) + " " + accept + " #" + count);
+                })
+                .handle("/login", exchange -> {
+                    requests.incrementAndGet();
+                    exchange.getResponseHeaders().add("Set-Cookie", "session=private-session-id");
+                    TestServer.respond(exchange, 200, "text/plain", "welcome");
+                })
+                .handle("/missing", exchange -> {
+                    requests.incrementAndGet();
+                    TestServer.respond(exchange, 404, "text/plain", "not here");
+                });
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    private File cassetteFile() {
+        return new File(folder.getRoot(), "cassettes/" + getClass().getName() + ".cassette");
+    }
+
+    private Cassette cassette(Mode mode) throws IOException {
+        return Cassette.forSpecification(new File(folder.getRoot(), "cassettes"), getClass(), mode);
+    }
+
+    private HttpEasy request(Cassette cassette) {
+        return HttpEasyClient.builder().baseUrl(server.getBaseUrl()).cassette(cassette).build().request();
+    }
+
+    @Test
+    public void recordedResponsesAreReplayedWithoutTheServer() throws Exception {
+        String get;
+        String post;
+        String missing;
+
+        try (Cassette cassette = cassette(Mode.RECORD)) {
+            get = request(cassette).path("echo").queryParam("id", 1).get().asString();
+            post = request(cassette).path("echo").data("hello", MediaType.PLAIN_TEXT_UTF_8).post().asString();
+            missing = request(cassette).path("missing").doNotFailOn(404).get().asString();
+
+            assertThat(cassette.size(), is(3));
+        }
+
+        assertThat(cassetteFile().isFile(), is(true));
+        assertThat(requests.get(), is(3));
+
+        server.close();
+
+        Cassette replay = cassette(Mode.REPLAY);
+
+        assertThat(request(replay).path("echo").queryParam("id", 1).get().asString(), is(get));
+        assertThat(request(replay).path("echo").data("hello", MediaType.PLAIN_TEXT_UTF_8).post().asString(), is(post));
+
+        HttpEasyReader reader = request(replay).path("missing").doNotFailOn(404).get();
+
+        assertThat(reader.getResponseCode(), is(404));
+        assertThat(reader.asString(), is(missing));
+        assertThat(replay.getReplayCount(), is(3L));
+        assertThat(replay.getMissCount(), is(0L));
+    }
+
+    @Test
+    public void requestNotRecordedIsReportedAsMiss() throws Exception {
+        try (Cassette cassette = cassette(Mode.RECORD)) {
+            request(cassette).path("echo").data("hello", MediaType.PLAIN_TEXT_UTF_8).post().asString();
+        }
+
+        Cassette replay = cassette(Mode.REPLAY);
+
+        try {
+            request(replay).path("echo").data("goodbye", MediaType.PLAIN_TEXT_UTF_8).post().asString();
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertThat(e.getMessage().contains("has no recording for POST " + server.getBaseUrl() + "/echo"), is(true));
+        }
+
+        assertThat(replay.getMisses(), is(Arrays.asList("POST " + server.getBaseUrl() + "/echo")));
+        assertThat(requests.get(), is(1));
+    }
+
+    @Test
+    public void missingCassetteFailsReplay() throws Exception {
+        try {
+            cassette(Mode.REPLAY);
+            fail("Expected FileNotFoundException");
+        } catch (FileNotFoundException e) {
+            assertThat(e.getMessage().contains("has not been recorded"), is(true));
+        }
+    }
+
+    @Test
+    public void replayOrRecordOnlySendsNewRequests() throws Exception {
+        try (Cassette cassette = cassette(Mode.REPLAY_OR_RECORD)) {
+            request(cassette).path("echo").queryParam("id", 1).get().asString();
+        }
+
+        try (Cassette cassette = cassette(Mode.REPLAY_OR_RECORD)) {
+            request(cassette).path("echo").queryParam("id", 1).get().asString();
+            request(cassette).path("echo").queryParam("id", 2).get().asString();
+
+            assertThat(cassette.getReplayCount(), is(1L));
+            assertThat(cassette.getMissCount(), is(1L));
+        }
+
+        assertThat(requests.get(), is(2));
+        assertThat(cassette(Mode.REPLAY).size(), is(2));
+    }
+
+    @Test
+    public void repeatedRequestsAreReplayedInOrder() throws Exception {
+        try (Cassette cassette = cassette(Mode.RECORD)) {
+            request(cassette).path("echo").get().asString();
+            request(cassette).path("echo").get().asString();
+        }
+
+        Cassette replay = cassette(Mode.REPLAY);
+
+        assertThat(request(replay).path("echo").get().asString().endsWith("#1"), is(true));
+        assertThat(request(replay).path("echo").get().asString().endsWith("#2"), is(true));
+        assertThat(request(replay).path("echo").get().asString().endsWith("#2"), is(true));
+    }
+
+    @Test
+    public void matchStrictnessIsConfigurable() throws Exception {
+        try (Cassette cassette = cassette(Mode.RECORD).matchHeaders("Accept")) {
+            request(cassette).path("echo").queryParam("id", 1).header("Accept", "text/plain").get().asString();
+            request(cassette).path("echo").queryParam("id", 1).header("Accept", "text/html").get().asString();
+        }
+
+        Cassette replay = cassette(Mode.REPLAY).matchHeaders("Accept");
+
+        assertThat(request(replay).path("echo").queryParam("id", 1).header("Accept", "text/html").get().asString().endsWith("text/html #2"), is(true));
+
+        replay.matchOn(Match.METHOD, Match.PATH);
+
+        assertThat(request(replay).path("echo").queryParam("id", 99).header("Accept", "application/json").get().asString().endsWith("#1"), is(true));
+        assertThat(replay.getMissCount(), is(0L));
+    }
+
+    @Test
+    public void sensitiveValuesAreNotStored() throws Exception {
+        HttpEasyClient.Builder client = HttpEasyClient.builder().baseUrl(server.getBaseUrl()).sensitiveParameters("token");
+
+        try (Cassette cassette = cassette(Mode.RECORD)) {
+            HttpEasyReader response = client.cassette(cassette).build().request().path("login").queryParam("token", "private-token")
+                    .queryParam("id", 1).get();
+
+            assertThat(response.getResponseHeaderField("Set-Cookie"), is("session=private-session-id"));
+        }
+
+        String stored;
+
+        try (InputStream in = new GZIPInputStream(new FileInputStream(cassetteFile()))) {
+            stored = new String(TestServer.readBytes(in), StandardCharsets.ISO_8859_1);
+        }
+
+        assertThat(stored.contains("private-token"), is(false));
+        assertThat(stored.contains("private-session-id"), is(false));
+        assertThat(stored.contains("token=*****&id=1"), is(true));
+
+        Cassette replay = cassette(Mode.REPLAY);
+        HttpEasyReader replayed = client.cassette(replay).build().request().path("login").queryParam("token", "new-token")
+                .queryParam("id", 1).get();
+
+        assertThat(replayed.asString(), is("welcome"));
+        assertThat(replayed.getResponseHeaderField("Set-Cookie"), is(nullValue()));
+        assertThat(replay.getMissCount(), is(0L));
+        assertThat(requests.get(), is(1));
+    }
+}
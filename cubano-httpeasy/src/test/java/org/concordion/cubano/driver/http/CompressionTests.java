@@ -0,0 +1,140 @@
+package org.concordion.cubano.driver.http;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.net.MediaType;
+
+public class CompressionTests extends TransportTestCase {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public CompressionTests(String transportName) {
+        super(transportName);
+    }
+
+    @Override
+    protected TestServer addHandlers(TestServer testServer) throws Exception {
+        return testServer
+                .handle("/compressed", exchange -> {
+                    String encoding = exchange.getRequestURI().getQuery();
+                    String body = "Accept-Encoding: " + exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+                    try (OutputStream out = encoding.equals("gzip") ? new GZIPOutputStream(compressed)
+                            : new DeflaterOutputStream(compressed, new Deflater(Deflater.DEFAULT_COMPRESSION, encoding.equals("raw")))) {
+                        out.write(body.getBytes(StandardCharsets.UTF_8));
+                    }
+
+                    exchange.getResponseHeaders().add("Content-Encoding", encoding.equals("gzip") ? "gzip" : "deflate");
+                    exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"body." + encoding + "\"");
+                    TestServer.respond(exchange, 200, "text/plain", exchange.getRequestMethod().equals("HEAD") ? new byte[0] : compressed.toByteArray());
+                })
+                .handle("/decompress", exchange -> {
+                    String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+                    InputStream body = "gzip".equals(encoding) ? new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody();
+                    TestServer.respond(exchange, 200, "text/plain", encoding + ":" + new String(TestServer.readBytes(body), StandardCharsets.UTF_8));
+                });
+    }
+
+    @Test
+    public void compressedResponsesAreDecoded() throws Exception {
+        for (String encoding : new String[] {"gzip", "zlib", "raw"}) {
+            HttpEasyReader reader = HttpEasy.request()
+                    .transport(transport())
+                    .compressResponses(true)
+                    .baseUrl(server.getBaseUrl())
+                    .path("compressed")
+                    .query(encoding)
+                    .get();
+
+            assertThat(encoding, reader.asString(), is("Accept-Encoding: gzip, deflate"));
+        }
+    }
+
+    @Test
+    public void unrequestedEncodingIsNotDecoded() throws Exception {
+        File file = HttpEasy.request()
+                .transport(transport())
+                .baseUrl(server.getBaseUrl())
+                .path("compressed")
+                .query("gzip")
+                .get()
+                .downloadFile(folder.getRoot().getPath());
+
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(Files.readAllBytes(file.toPath())))) {
+            assertThat(new String(TestServer.readBytes(in), StandardCharsets.UTF_8), is("Accept-Encoding: null"));
+        }
+    }
+
+    @Test
+    public void compressedResponseWithoutBodyCanBeRead() throws Exception {
+        HttpEasyReader reader = HttpEasy.request()
+                .transport(transport())
+                .baseUrl(server.getBaseUrl())
+                .path("compressed")
+                .query("gzip")
+                .head();
+
+        assertThat(reader.asString(), is(""));
+    }
+
+    @Test
+    public void requestBodiesOverThresholdAreCompressed() throws Exception {
+        String large = String.join("", Collections.nCopies(100, "0123456789"));
+
+        String compressed = HttpEasy.request()
+                .transport(transport())
+                .compressRequests(500)
+                .baseUrl(server.getBaseUrl())
+                .path("decompress")
+                .data(large, MediaType.PLAIN_TEXT_UTF_8)
+                .post()
+                .asString();
+
+        String uncompressed = HttpEasy.request()
+                .transport(transport())
+                .compressRequests(500)
+                .baseUrl(server.getBaseUrl())
+                .path("decompress")
+                .field("value", "small")
+                .post()
+                .asString();
+
+        assertThat(compressed, is("gzip:" + large));
+        assertThat(uncompressed, is("null:value=small"));
+    }
+
+    @Test
+    public void streamedRequestBodyIsCompressed() throws Exception {
+        String body = "streamed content";
+
+        String response = HttpEasy.request()
+                .transport(transport())
+                .compressRequests(0)
+                .baseUrl(server.getBaseUrl())
+                .path("decompress")
+                .data(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), MediaType.PLAIN_TEXT_UTF_8, "body.txt")
+                .post()
+                .asString();
+
+        assertThat(response, is("gzip:" + body));
+    }
+}
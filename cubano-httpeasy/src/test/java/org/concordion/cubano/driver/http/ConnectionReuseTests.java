@@ -0,0 +1,77 @@
+package org.concordion.cubano.driver.http;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+import org.concordion.cubano.driver.http.transport.ConnectionStatistics;
+import org.concordion.cubano.driver.http.transport.ConnectionStatistics.HostStatistics;
+import org.junit.Test;
+
+public class ConnectionReuseTests extends TransportTestCase {
+    public ConnectionReuseTests(String transportName) {
+        super(transportName);
+    }
+
+    @Override
+    protected TestServer addHandlers(TestServer testServer) throws Exception {
+        return testServer
+                .handle("/echo", exchange -> {
+                    String body = exchange.getRequestMethod() + ":" + TestServer.readBody(exchange);
+                    TestServer.respond(exchange, 200, "text/plain", body);
+                })
+                .handle("/download", exchange -> {
+                    exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"data.bin\"");
+                    TestServer.respond(exchange, 200, "application/octet-stream", DOWNLOAD);
+                });
+    }
+
+    @Test
+    public void keptAliveConnectionsAreReleased() throws Exception {
+        ConnectionStatistics.reset();
+
+        for (int i = 0; i < 3; i++) {
+            HttpEasy.request()
+                    .transport(transport())
+                    .reuseConnection(true)
+                    .baseUrl(server.getBaseUrl())
+                    .path("echo")
+                    .get()
+                    .asString();
+        }
+
+        HostStatistics stats = connectionStatistics();
+
+        assertThat(stats.getRequests(), is(3L));
+        assertThat(stats.getReleased(), is(3L));
+        assertThat(stats.getDiscarded(), is(0L));
+        assertThat(stats.toString().endsWith("requests=3, released=3, discarded=0"), is(true));
+    }
+
+    @Test
+    public void partlyReadResponseIsDrainedBeforeRelease() throws Exception {
+        ConnectionStatistics.reset();
+
+        try (InputStream in = HttpEasy.request().transport(transport()).reuseConnection(true).baseUrl(server.getBaseUrl()).path("echo").get().asInputStream()) {
+            assertThat(in.read(), is((int) 'G'));
+        }
+
+        try (InputStream in = HttpEasy.request().transport(transport()).reuseConnection(true).baseUrl(server.getBaseUrl()).path("download").get().asInputStream()) {
+            assertThat(in.read(), is(DOWNLOAD[0] & 0xff));
+        }
+
+        HostStatistics stats = connectionStatistics();
+
+        assertThat(stats.getReleased(), is(1L));
+        assertThat(stats.getDiscarded(), is(1L));
+    }
+
+    private HostStatistics connectionStatistics() throws IOException {
+        URL url = new URL(server.getBaseUrl());
+
+        return HttpEasyDefaults.getConnectionStatistics().get("http://localhost:" + url.getPort());
+    }
+}
@@ -0,0 +1,71 @@
+package org.concordion.cubano.driver.http;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.net.MediaType;
+
+public class FileTransferTests extends TransportTestCase {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public FileTransferTests(String transportName) {
+        super(transportName);
+    }
+
+    @Override
+    protected TestServer addHandlers(TestServer testServer) throws Exception {
+        return testServer
+                .handle("/download", exchange -> {
+                    exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"data.bin\"");
+                    TestServer.respond(exchange, 200, "application/octet-stream", DOWNLOAD);
+                })
+                .handle("/checksum", exchange -> {
+                    byte[] body = TestServer.readBytes(exchange.getRequestBody());
+                    CRC32 crc = new CRC32();
+                    crc.update(body);
+                    TestServer.respond(exchange, 200, "text/plain", body.length + ":" + crc.getValue());
+                });
+    }
+
+    @Test
+    public void downloadFileWritesResponseBody() throws Exception {
+        File file = HttpEasy.request()
+                .transport(transport())
+                .baseUrl(server.getBaseUrl())
+                .path("download")
+                .get()
+                .downloadFile(folder.getRoot().getPath());
+
+        assertThat(file.getName(), is("data.bin"));
+        assertThat(Arrays.equals(Files.readAllBytes(file.toPath()), DOWNLOAD), is(true));
+    }
+
+    @Test
+    public void fileIsUploaded() throws Exception {
+        File file = folder.newFile("upload.bin");
+        Files.write(file.toPath(), DOWNLOAD);
+
+        CRC32 crc = new CRC32();
+        crc.update(DOWNLOAD);
+
+        String response = HttpEasy.request()
+                .transport(transport())
+                .baseUrl(server.getBaseUrl())
+                .path("checksum")
+                .data(file, MediaType.OCTET_STREAM)
+                .post()
+                .asString();
+
+        assertThat(response, is(DOWNLOAD.length + ":" + crc.getValue()));
+    }
+}
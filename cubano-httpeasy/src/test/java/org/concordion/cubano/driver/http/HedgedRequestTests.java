@@ -0,0 +1,134 @@
+package org.concordion.cubano.driver.http;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.concordion.cubano.driver.http.concurrent.HedgingPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HedgedRequestTests {
+    private final AtomicInteger requests = new AtomicInteger();
+    private TestServer server;
+
+    @Before
+    public void startServer() throws Exception {
+        server = new TestServer()
+                .handle("/slowFirst", exchange -> {
+                    int request = requests.incrementAndGet();
+
+                    if (request == 1) {
+                        try {
+                            Thread.sleep(3000);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+
+                    try {
+                        TestServer.respond(exchange, 200, "text/plain", "request " + request);
+                    } catch (Exception e) {
+                        // Client has gone away
+                    }
+                })
+                .handle("/fast", exchange -> TestServer.respond(exchange, 200, "text/plain", "request " + requests.incrementAndGet()))
+                .handle("/fail", exchange -> TestServer.respond(exchange, 500, "text/plain", "broken"));
+    }
+
+    @After
+    public void stopServer() {
+        HttpEasy.withDefaults().hedging(null);
+        server.close();
+    }
+
+    @Test
+    public void slowRequestIsHedged() throws Exception {
+        HedgingPolicy policy = new HedgingPolicy(95, 10, 100);
+        HttpEasy.withDefaults().hedging(policy);
+
+        long started = System.nanoTime();
+        HttpEasyReader reader = HttpEasy.request().baseUrl(server.getBaseUrl()).path("slowFirst").get();
+
+        assertThat(reader.asString(), is("request 2"));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), is(lessThan(2000L)));
+        assertThat(policy.getHedgedCount(), is(1L));
+        assertThat(policy.getHedgeWinCount(), is(1L));
+        assertThat(policy.getHedgeRate(), is(1.0));
+    }
+
+    @Test
+    public void latencyIncludesWaitBeforeHedging() throws Exception {
+        List<Long> recorded = new CopyOnWriteArrayList<>();
+        HedgingPolicy policy = new HedgingPolicy(95, 10, 200) {
+            @Override
+            public void recordLatency(String host, long elapsedNanos) {
+                recorded.add(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+                super.recordLatency(host, elapsedNanos);
+            }
+        };
+
+        assertThat(HttpEasy.request().baseUrl(server.getBaseUrl()).path("slowFirst").hedging(policy).get().asString(), is("request 2"));
+        assertThat(recorded.size(), is(1));
+        assertThat(recorded.get(0), is(greaterThanOrEqualTo(200L)));
+    }
+
+    @Test
+    public void fastRequestIsNotHedged() throws Exception {
+        HedgingPolicy policy = new HedgingPolicy(95, 10, 1000);
+
+        assertThat(HttpEasy.request().baseUrl(server.getBaseUrl()).path("fast").hedging(policy).head().getResponseCode(), is(200));
+        assertThat(HttpEasy.request().baseUrl(server.getBaseUrl()).path("fast").hedging(policy).get().asString(), is("request 2"));
+        assertThat(requests.get(), is(2));
+        assertThat(policy.getRequestCount(), is(2L));
+        assertThat(policy.getHedgedCount(), is(0L));
+    }
+
+    @Test
+    public void requestCanDisableHedging() throws Exception {
+        HedgingPolicy policy = new HedgingPolicy(95, 10, 100);
+        HttpEasy.withDefaults().hedging(policy);
+
+        HttpEasy.request().baseUrl(server.getBaseUrl()).path("fast").hedging(null).get().asString();
+
+        assertThat(policy.getRequestCount(), is(0L));
+    }
+
+    @Test
+    public void errorResponseIsThrown() throws Exception {
+        try {
+            HttpEasy.request().baseUrl(server.getBaseUrl()).path("fail").hedging(new HedgingPolicy(95, 10, 100)).get();
+            fail("Expected HttpResponseException");
+        } catch (HttpResponseException e) {
+            assertThat(e.getStatusCode(), is(500));
+        }
+    }
+
+    @Test
+    public void delayFollowsRecentResponseTimes() {
+        HedgingPolicy policy = new HedgingPolicy(90, 20, 500);
+
+        assertThat(policy.getDelayMillis("host:80"), is(500L));
+
+        for (int i = 1; i <= 10; i++) {
+            policy.recordLatency("host:80", TimeUnit.MILLISECONDS.toNanos(i * 10));
+        }
+
+        assertThat(policy.getDelayMillis("host:80"), is(90L));
+        assertThat(policy.getDelayMillis("other:80"), is(500L));
+
+        for (int i = 1; i <= 10; i++) {
+            policy.recordLatency("fast:80", TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        assertThat(policy.getDelayMillis("fast:80"), is(20L));
+    }
+}
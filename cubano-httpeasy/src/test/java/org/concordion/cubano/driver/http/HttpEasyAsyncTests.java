@@ -0,0 +1,107 @@
+package org.concordion.cubano.driver.http;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpEasyAsyncTests {
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private TestServer server;
+
+    @Before
+    public void startServer() throws Exception {
+        server = new TestServer()
+                .handle("/slow", exchange -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        running.decrementAndGet();
+                    }
+
+                    TestServer.respond(exchange, 200, "text/plain", exchange.getRequestURI().getQuery());
+                })
+                .handle("/fail", exchange -> TestServer.respond(exchange, 500, "text/plain", "broken"));
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+        HttpEasy.withDefaults().maxRequestsPerHost(6).asyncThreads(16);
+    }
+
+    @Test
+    public void concurrentRequestsPerHostAreLimited() throws Exception {
+        HttpEasy.withDefaults().asyncThreads(8).maxRequestsPerHost(2);
+
+        List<CompletableFuture<HttpEasyReader>> responses = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            responses.add(HttpEasy.request()
+                    .baseUrl(server.getBaseUrl())
+                    .path("slow")
+                    .queryParam("id", i)
+                    .getAsync());
+        }
+
+        for (int i = 0; i < responses.size(); i++) {
+            assertThat(responses.get(i).get().asString(), is("id=" + i));
+        }
+
+        assertThat(maxRunning.get(), is(lessThanOrEqualTo(2)));
+    }
+
+    @Test
+    public void queuedRequestsFinishWhenSettingsChange() throws Exception {
+        HttpEasy.withDefaults().asyncThreads(8).maxRequestsPerHost(1);
+
+        List<CompletableFuture<HttpEasyReader>> responses = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            responses.add(HttpEasy.request()
+                    .baseUrl(server.getBaseUrl())
+                    .path("slow")
+                    .queryParam("id", i)
+                    .getAsync());
+        }
+
+        HttpEasy.withDefaults().asyncThreads(4).maxRequestsPerHost(2);
+
+        for (int i = 0; i < responses.size(); i++) {
+            assertThat(responses.get(i).get(10, TimeUnit.SECONDS).asString(), is("id=" + i));
+        }
+    }
+
+    @Test
+    public void failedRequestCompletesExceptionally() throws Exception {
+        CompletableFuture<HttpEasyReader> response = HttpEasy.request()
+                .baseUrl(server.getBaseUrl())
+                .path("fail")
+                .getAsync();
+
+        try {
+            response.get();
+            fail("Expected HttpResponseException");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(instanceOf(HttpResponseException.class)));
+            assertThat(((HttpResponseException) e.getCause()).getStatusCode(), is(500));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.concordion.cubano.driver.http;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.net.MediaType;
+
+public class HttpEasyBatchTests {
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private TestServer server;
+
+    @Before
+    public void startServer() throws Exception {
+        server = new TestServer()
+                .handle("/slow", exchange -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        running.decrementAndGet();
+                    }
+
+                    String body = TestServer.readBody(exchange);
+                    TestServer.respond(exchange, 200, "text/plain", exchange.getRequestMethod() + ":" + body);
+                })
+                .handle("/fail", exchange -> TestServer.respond(exchange, 500, "text/plain", "broken"));
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    private HttpEasy slow(int i) {
+        return HttpEasy.request().baseUrl(server.getBaseUrl()).path("slow").data("item " + i, MediaType.PLAIN_TEXT_UTF_8);
+    }
+
+    @Test
+    public void resultsAreInSubmissionOrder() throws Exception {
+        List<HttpEasy> requests = new ArrayList<>();
+
+        for (int i = 0; i < 30; i++) {
+            requests.add(slow(i));
+        }
+
+        BatchResults<String> results = HttpEasyBatch.create()
+                .maxConcurrency(8)
+                .maxPerHost(3)
+                .post(requests)
+                .execute(HttpEasyReader::asString);
+
+        assertThat(results.isSuccess(), is(true));
+        assertThat(results.getSucceededCount(), is(30));
+
+        for (int i = 0; i < 30; i++) {
+            assertThat(results.getValues().get(i), is("POST:item " + i));
+            assertThat(results.getResults().get(i).getIndex(), is(i));
+        }
+
+        assertThat(maxRunning.get(), is(lessThanOrEqualTo(3)));
+        assertThat(results.getThroughput(), is(greaterThan(0.0)));
+        assertThat(results.getLatencyMillis(95) >= results.getLatencyMillis(50), is(true));
+        assertThat(results.getLatencyMillis(50), is(greaterThan(0.0)));
+    }
+
+    @Test
+    public void collectionsCanBeAddedForEachMethod() throws Exception {
+        List<HttpEasy> gets = Arrays.asList(HttpEasy.request().baseUrl(server.getBaseUrl()).path("slow"));
+        List<HttpEasy> puts = Arrays.asList(slow(1), slow(2));
+        List<HttpEasy> deletes = Arrays.asList(HttpEasy.request().baseUrl(server.getBaseUrl()).path("slow"));
+
+        BatchResults<String> results = HttpEasyBatch.create()
+                .get(gets)
+                .put(puts)
+                .delete(deletes)
+                .execute(HttpEasyReader::asString);
+
+        assertThat(results.getValues(), is(Arrays.asList("GET:", "PUT:item 1", "PUT:item 2", "DELETE:")));
+    }
+
+    @Test
+    public void failuresAreCollected() throws Exception {
+        BatchResults<String> results = HttpEasyBatch.create()
+                .get(HttpEasy.request().baseUrl(server.getBaseUrl()).path("slow"))
+                .get(HttpEasy.request().baseUrl(server.getBaseUrl()).path("fail"))
+                .get(HttpEasy.request().baseUrl(server.getBaseUrl()).path("slow"))
+                .execute(HttpEasyReader::asString);
+
+        assertThat(results.isSuccess(), is(false));
+        assertThat(results.isAborted(), is(false));
+        assertThat(results.getSucceededCount(), is(2));
+        assertThat(results.getFailedCount(), is(1));
+        assertThat(results.getFailures().get(0).getIndex(), is(1));
+        assertThat(results.getFailures().get(0).getFailure(), is(instanceOf(HttpResponseException.class)));
+        assertThat(results.getValues().get(1), is((String) null));
+    }
+
+    @Test
+    public void abortOnFailureSkipsRemainingRequests() throws Exception {
+        HttpEasyBatch batch = HttpEasyBatch.create()
+                .maxConcurrency(1)
+                .abortOnFailure(true)
+                .get(HttpEasy.request().baseUrl(server.getBaseUrl()).path("fail"));
+
+        for (int i = 0; i < 5; i++) {
+            batch.post(slow(i));
+        }
+
+        BatchResults<String> results = batch.execute(HttpEasyReader::asString);
+
+        assertThat(results.isAborted(), is(true));
+        assertThat(results.getFailedCount(), is(1));
+        assertThat(results.getSkippedCount(), is(5));
+        assertThat(results.getResults().get(5).isSkipped(), is(true));
+    }
+
+    @Test
+    public void emptyBatchCompletes() throws Exception {
+        BatchResults<HttpEasyReader> results = HttpEasyBatch.create().execute();
+
+        assertThat(results.getResults().size(), is(0));
+        assertThat(results.isSuccess(), is(true));
+    }
+}
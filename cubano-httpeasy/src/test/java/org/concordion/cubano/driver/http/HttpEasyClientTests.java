@@ -0,0 +1,163 @@
+package org.concordion.cubano.driver.http;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.concordion.cubano.driver.http.concurrent.RateLimiter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpEasyClientTests {
+    private final RateLimiter switched = new RateLimiter(1000, 10);
+    private TestServer server;
+
+    @Before
+    public void startServer() throws Exception {
+        server = new TestServer()
+                .handle("/tenant", exchange -> TestServer.respond(exchange, 200, "text/plain",
+                        exchange.getRequestURI().getPath() + " " + exchange.getRequestHeaders().getFirst("Authorization")))
+                .handle("/switch", exchange -> {
+                    // Defaults changed on another thread while the request is in flight
+                    HttpEasy.withDefaults().rateLimiter(switched);
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    TestServer.respond(exchange, 429, "text/plain", "slow down");
+                });
+    }
+
+    @After
+    public void stopServer() {
+        HttpEasy.withDefaults().baseUrl("").authorization(null, null).rateLimiter(null);
+        server.close();
+    }
+
+    @Test
+    public void clientsKeepTheirOwnSettings() throws Exception {
+        HttpEasyClient first = HttpEasyClient.builder().baseUrl(server.getBaseUrl() + "/tenant/a").authorization("a", "secret").build();
+        HttpEasyClient second = first.toBuilder().baseUrl(server.getBaseUrl() + "/tenant/b").authorization("b", "secret").build();
+
+        HttpEasy.withDefaults().baseUrl("http://localhost:1");
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<CompletableFuture<String>> responses = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < 20; i++) {
+                HttpEasyClient client = i % 2 == 0 ? first : second;
+
+                responses.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return client.request().get().asString();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }, executor));
+            }
+
+            for (int i = 0; i < responses.size(); i++) {
+                assertThat(responses.get(i).get(10, TimeUnit.SECONDS), is(i % 2 == 0 ? "/tenant/a Basic YTpzZWNyZXQ=" : "/tenant/b Basic YjpzZWNyZXQ="));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(first.getBaseUrl(), is(server.getBaseUrl() + "/tenant/a"));
+        assertThat(HttpEasyDefaults.getBaseUrl(), is("http://localhost:1"));
+    }
+
+    @Test
+    public void defaultsAreHeldInAClient() throws Exception {
+        HttpEasyClient before = HttpEasyDefaults.getClient();
+
+        HttpEasy.withDefaults().baseUrl(server.getBaseUrl() + "/tenant/defaults");
+
+        assertThat(HttpEasyDefaults.getClient(), is(not(sameInstance(before))));
+        assertThat(before.getBaseUrl(), is(not(HttpEasyDefaults.getBaseUrl())));
+        assertThat(HttpEasy.request().get().asString(), is("/tenant/defaults null"));
+    }
+
+    @Test
+    public void requestKeepsTheDefaultsItWasSentWith() throws Exception {
+        HttpEasy.request().baseUrl(server.getBaseUrl()).path("switch").doNotFailOn(429).get();
+
+        assertThat(HttpEasyDefaults.getRateLimiter(), is(sameInstance(switched)));
+        assertThat(switched.getRetryAfterCount(), is(0L));
+    }
+
+    @Test
+    public void replacingTheDefaultsDoesNotStartExecutors() {
+        HttpEasyClient previous = HttpEasyDefaults.getClient();
+        HttpEasyClient client = HttpEasyClient.builder().asyncThreads(2).build();
+        boolean previousStarted = previous.isAsyncExecutorStarted();
+
+        HttpEasy.withDefaults().client(client);
+
+        try {
+            assertThat(client.isAsyncExecutorStarted(), is(false));
+            assertThat(previous.isAsyncExecutorStarted(), is(previousStarted));
+        } finally {
+            HttpEasy.withDefaults().client(previous);
+        }
+    }
+
+    @Test
+    public void callersClientIsNotShutDownWhenDefaultsChange() throws Exception {
+        HttpEasyClient previous = HttpEasyDefaults.getClient();
+        HttpEasyClient client = HttpEasyClient.builder().baseUrl(server.getBaseUrl()).asyncThreads(2).build();
+        ExecutorService executor = (ExecutorService) client.getAsyncExecutor().getExecutor();
+
+        try {
+            HttpEasy.withDefaults().client(client);
+            HttpEasy.withDefaults().asyncThreads(3);
+            HttpEasy.withDefaults().client(previous);
+
+            assertThat(executor.isShutdown(), is(false));
+            assertThat(client.request().path("tenant/{id}").urlParameters("a").getAsync().get(10, TimeUnit.SECONDS).getResponseCode(), is(200));
+        } finally {
+            HttpEasy.withDefaults().client(previous);
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void proxySettingsAreScopedToTheClient() throws Exception {
+        Proxy proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress("proxy", 8080));
+        HttpEasyClient client = HttpEasyClient.builder().proxy(proxy).bypassProxy(true).nonProxyHosts("*.internal").proxyCacheTtl(60000).build();
+        HttpEasyClient unchanged = client.toBuilder().baseUrl("http://elsewhere").build();
+
+        assertThat(client.getProxy(new URL("http://service.internal/path")), is(Proxy.NO_PROXY));
+        assertThat(client.getProxy(new URL("http://example.com/path")), is(proxy));
+        assertThat(HttpEasyDefaults.getProxy(new URL("http://example.com/path")), is(Proxy.NO_PROXY));
+
+        assertThat(unchanged.getProxyCache(), is(sameInstance(client.getProxyCache())));
+        assertThat(client.toBuilder().nonProxyHosts("localhost").build().getProxyCache(), is(not(sameInstance(client.getProxyCache()))));
+    }
+
+    @Test
+    public void proxyDecisionsAreNotCachedByDefault() {
+        assertThat(HttpEasyClient.builder().build().getProxyCache(), is(nullValue()));
+    }
+
+    @Test
+    public void sensitiveParametersCannotBeChangedAfterBuilding() {
+        HttpEasyClient client = HttpEasyClient.builder().sensitiveParameters("password").build();
+        HttpEasyClient more = client.toBuilder().sensitiveParameters("token").build();
+
+        assertThat(client.getSensitiveParameters(), is(Collections.singletonList("password")));
+        assertThat(more.getSensitiveParameters().size(), is(2));
+    }
+}
@@ -10,7 +10,11 @@ import java.net.MalformedURLException;
 import java.net.Proxy;
 import java.net.Proxy.Type;
 import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.concordion.cubano.driver.http.cache.ProxyCache;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -21,7 +25,8 @@ public class HttpEasyDefaultsTests {
         new HttpEasyDefaults()
                 .proxy(Proxy.NO_PROXY)
                 .nonProxyHosts(HttpEasyDefaults.DEFAULT_PROXY_BYPASS_HOSTS)
-                .proxyConfiguration(ProxyConfiguration.MANUAL);
+                .proxyConfiguration(ProxyConfiguration.MANUAL)
+                .proxyCacheTtl(TimeUnit.MINUTES.toMillis(5));
     }
 
     private HttpEasyDefaults withProxy() {
@@ -85,6 +90,118 @@ public class HttpEasyDefaultsTests {
         assertThat(HttpEasyDefaults.getProxy(externalUrl), is(usingProxy()));
     }
 
+    @Test
+    public void proxyDecisionIsCachedPerHost() throws MalformedURLException {
+        withProxy().nonProxyHosts("localhost,*.company.com");
+
+        ProxyCache cache = HttpEasyDefaults.getProxyCache();
+        cache.resetStatistics();
+
+        assertThat(HttpEasyDefaults.getProxy(new URL("http://remotehost.company.com:8080/one")), is(bypassingProxy()));
+        assertThat(HttpEasyDefaults.getProxy(new URL("http://REMOTEHOST.company.com:8080/two")), is(bypassingProxy()));
+        assertThat(HttpEasyDefaults.getProxy(new URL("http://remotehost:8080/one")), is(usingProxy()));
+
+        assertThat(cache.getMissCount(), is(2L));
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat(cache.size(), is(2));
+
+        withProxy().nonProxyHosts("localhost,remotehost");
+
+        assertThat(HttpEasyDefaults.getProxyCache().size(), is(0));
+        assertThat(HttpEasyDefaults.getProxy(new URL("http://remotehost:8080/one")), is(bypassingProxy()));
+    }
+
+    @Test
+    public void proxyDecisionExpires() throws Exception {
+        AtomicInteger lookups = new AtomicInteger();
+        ProxyCache cache = new ProxyCache(50);
+        URL url = new URL("https://remotehost/one");
+
+        cache.get(url, u -> {
+            lookups.incrementAndGet();
+            return Proxy.NO_PROXY;
+        });
+        cache.get(new URL("https://remotehost:443/two"), u -> {
+            lookups.incrementAndGet();
+            return Proxy.NO_PROXY;
+        });
+
+        assertThat(lookups.get(), is(1));
+
+        Thread.sleep(100);
+
+        cache.get(url, u -> {
+            lookups.incrementAndGet();
+            return Proxy.NO_PROXY;
+        });
+
+        assertThat(lookups.get(), is(2));
+    }
+
+    @Test
+    public void proxyCacheForgetsLeastRecentlyUsedHosts() throws Exception {
+        AtomicInteger lookups = new AtomicInteger();
+        ProxyCache cache = new ProxyCache(60000, 2);
+
+        for (String host : new String[] { "one", "two", "three", "one" }) {
+            cache.get(new URL("http://" + host + "/path"), u -> {
+                lookups.incrementAndGet();
+                return Proxy.NO_PROXY;
+            });
+        }
+
+        assertThat(cache.size(), is(2));
+        assertThat(lookups.get(), is(4));
+    }
+
+    @Test
+    public void slowLookupDoesNotHoldUpOtherHosts() throws Exception {
+        ProxyCache cache = new ProxyCache(60000);
+        CountDownLatch looking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread slow = new Thread(() -> cache.get(newUrl("http://slow/path"), u -> {
+            looking.countDown();
+            await(release);
+            return Proxy.NO_PROXY;
+        }));
+        slow.start();
+
+        try {
+            assertThat(looking.await(5, TimeUnit.SECONDS), is(true));
+            assertThat(cache.get(new URL("http://fast/path"), u -> Proxy.NO_PROXY), is(Proxy.NO_PROXY));
+        } finally {
+            release.countDown();
+            slow.join();
+        }
+
+        assertThat(cache.getMissCount(), is(2L));
+    }
+
+    private static URL newUrl(String url) {
+        try {
+            return new URL(url);
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void proxyCacheCanBeDisabled() throws MalformedURLException {
+        withProxy().proxyCacheTtl(0);
+
+        assertThat(HttpEasyDefaults.getProxyCache(), is(nullValue()));
+        assertThat(HttpEasyDefaults.getProxy(new URL("http://localhost:8080/some.path")), is(bypassingProxy()));
+    }
+
     @Test
     public void setHttpEasyAuthorisationOnly() throws Exception {
         HttpEasy request = HttpEasy.request();
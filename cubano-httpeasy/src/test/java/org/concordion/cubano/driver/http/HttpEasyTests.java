@@ -12,6 +12,7 @@ import java.net.URL;
 
 import javax.net.ssl.HttpsURLConnection;
 
+import org.concordion.cubano.driver.http.transport.HttpConnection;
 import org.junit.After;
 import org.junit.Test;
 
@@ -138,6 +139,6 @@ public class HttpEasyTests {
         Method method = request.getClass().getDeclaredMethod("getConnection", URL.class);
         method.setAccessible(true);
 
-        return (HttpURLConnection) method.invoke(request, new URL(url));
+        return ((HttpConnection) method.invoke(request, new URL(url))).getHttpURLConnection();
     }
 }
@@ -0,0 +1,181 @@
+package org.concordion.cubano.driver.http;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.concordion.cubano.driver.http.cache.HttpResponseCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.net.MediaType;
+
+public class HttpResponseCacheTests {
+    private static final String ETAG = "\"v1\"";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private TestServer server;
+
+    @Before
+    public void startServer() throws Exception {
+        server = new TestServer()
+                .handle("/fresh", exchange -> {
+                    exchange.getResponseHeaders().set("Cache-Control", "max-age=60");
+                    exchange.getResponseHeaders().set("Set-Cookie", "session=private-session-id");
+                    TestServer.respond(exchange, 200, "text/plain", "fresh " + requests.incrementAndGet());
+                })
+                .handle("/etag", exchange -> {
+                    requests.incrementAndGet();
+                    exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+                    exchange.getResponseHeaders().set("ETag", ETAG);
+
+                    if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                        exchange.sendResponseHeaders(304, -1);
+                        exchange.close();
+                    } else {
+                        TestServer.respond(exchange, 200, "text/plain", "tagged");
+                    }
+                })
+                .handle("/nostore", exchange -> {
+                    exchange.getResponseHeaders().set("Cache-Control", "no-store");
+                    TestServer.respond(exchange, 200, "text/plain", "nostore " + requests.incrementAndGet());
+                })
+                .handle("/update", exchange -> {
+                    exchange.getResponseHeaders().set("Cache-Control", "max-age=60");
+                    TestServer.readBody(exchange);
+                    TestServer.respond(exchange, 200, "text/plain", exchange.getRequestMethod() + " " + requests.incrementAndGet());
+                });
+    }
+
+    @After
+    public void stopServer() {
+        HttpEasy.withDefaults().responseCache(null);
+        server.close();
+    }
+
+    private HttpEasyReader get(String path) throws Exception {
+        return HttpEasy.request().baseUrl(server.getBaseUrl()).path(path).get();
+    }
+
+    @Test
+    public void freshResponseIsServedFromCache() throws Exception {
+        HttpResponseCache cache = new HttpResponseCache(1024 * 1024);
+        HttpEasy.withDefaults().responseCache(cache);
+
+        assertThat(get("fresh").asString(), is("fresh 1"));
+
+        HttpEasyReader cached = get("fresh");
+
+        assertThat(cached.getResponseCode(), is(200));
+        assertThat(cached.getResponseHeaderField("X-Cache"), is("HIT"));
+        assertThat(cached.getResponseHeaderField("Content-Type"), is("text/plain"));
+        assertThat(cached.asString(), is("fresh 1"));
+        assertThat(requests.get(), is(1));
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat(cache.getMissCount(), is(1L));
+    }
+
+    @Test
+    public void requestCanBypassCache() throws Exception {
+        HttpEasy.withDefaults().responseCache(new HttpResponseCache(1024 * 1024));
+
+        get("fresh").asString();
+
+        assertThat(HttpEasy.request().baseUrl(server.getBaseUrl()).path("fresh").useCache(false).get().asString(), is("fresh 2"));
+        assertThat(HttpEasy.request().baseUrl(server.getBaseUrl()).path("fresh").header("Cache-Control", "no-cache").get().asString(), is("fresh 3"));
+    }
+
+    @Test
+    public void notModifiedResponseIsServedFromCache() throws Exception {
+        HttpResponseCache cache = new HttpResponseCache(1024 * 1024);
+        HttpEasy.withDefaults().responseCache(cache);
+
+        assertThat(get("etag").asString(), is("tagged"));
+
+        HttpEasyReader revalidated = get("etag");
+
+        assertThat(revalidated.getResponseCode(), is(200));
+        assertThat(revalidated.getResponseHeaderField("X-Cache"), is("REVALIDATED"));
+        assertThat(revalidated.asString(), is("tagged"));
+        assertThat(requests.get(), is(2));
+        assertThat(cache.getRevalidationCount(), is(1L));
+    }
+
+    @Test
+    public void noStoreResponseIsNotCached() throws Exception {
+        HttpResponseCache cache = new HttpResponseCache(1024 * 1024);
+        HttpEasy.withDefaults().responseCache(cache);
+
+        assertThat(get("nostore").asString(), is("nostore 1"));
+        assertThat(get("nostore").asString(), is("nostore 2"));
+        assertThat(cache.getMemorySize(), is(0L));
+    }
+
+    @Test
+    public void unsafeRequestInvalidatesCachedResponse() throws Exception {
+        HttpEasy.withDefaults().responseCache(new HttpResponseCache(1024 * 1024));
+
+        assertThat(get("update").asString(), is("GET 1"));
+        assertThat(get("update").asString(), is("GET 1"));
+
+        HttpEasy.request().baseUrl(server.getBaseUrl()).path("update").data("changed", MediaType.PLAIN_TEXT_UTF_8).post().asString();
+
+        assertThat(get("update").asString(), is("GET 3"));
+    }
+
+    @Test
+    public void diskTierSurvivesNewCache() throws Exception {
+        HttpEasy.withDefaults().responseCache(new HttpResponseCache(1024 * 1024, folder.getRoot(), 1024 * 1024));
+
+        assertThat(get("fresh").asString(), is("fresh 1"));
+
+        HttpResponseCache reopened = new HttpResponseCache(1024 * 1024, folder.getRoot(), 1024 * 1024);
+        HttpEasy.withDefaults().responseCache(reopened);
+
+        assertThat(get("fresh").asString(), is("fresh 1"));
+        assertThat(reopened.getHitCount(), is(1L));
+        assertThat(reopened.getDiskSize() > 0, is(true));
+    }
+
+    @Test
+    public void diskTierDoesNotStoreSecrets() throws Exception {
+        HttpEasyClient client = HttpEasyClient.builder().baseUrl(server.getBaseUrl()).sensitiveParameters("token")
+                .responseCache(new HttpResponseCache(1024 * 1024, folder.getRoot(), 1024 * 1024)).build();
+
+        assertThat(client.request().path("fresh").queryParam("token", "private-token").get().asString(), is("fresh 1"));
+
+        File[] files = folder.getRoot().listFiles();
+        assertThat(files.length, is(1));
+
+        String stored = new String(Files.readAllBytes(files[0].toPath()), StandardCharsets.ISO_8859_1);
+
+        assertThat(stored.contains("private-token"), is(false));
+        assertThat(stored.contains("private-session-id"), is(false));
+
+        HttpEasyClient reopened = client.toBuilder().responseCache(new HttpResponseCache(1024 * 1024, folder.getRoot(), 1024 * 1024)).build();
+        HttpEasyReader response = reopened.request().path("fresh").queryParam("token", "private-token").get();
+
+        assertThat(response.asString(), is("fresh 1"));
+        assertThat(response.getResponseHeaderField("Set-Cookie") == null, is(true));
+    }
+
+    @Test
+    public void responsesLargerThanCacheAreNotStored() throws Exception {
+        HttpResponseCache cache = new HttpResponseCache(16);
+        HttpEasy.withDefaults().responseCache(cache);
+
+        assertThat(get("fresh").asString(), is("fresh 1"));
+        assertThat(get("fresh").asString(), is("fresh 2"));
+        assertThat(cache.getMemorySize(), is(0L));
+    }
+}
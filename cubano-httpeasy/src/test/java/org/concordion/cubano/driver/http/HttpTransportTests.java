@@ -0,0 +1,138 @@
+package org.concordion.cubano.driver.http;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.Proxy;
+import java.net.ServerSocket;
+import java.net.URL;
+
+import org.concordion.cubano.driver.http.transport.ConnectionOptions;
+import org.concordion.cubano.driver.http.transport.HttpConnection;
+import org.junit.Test;
+
+import com.google.common.net.MediaType;
+
+public class HttpTransportTests extends TransportTestCase {
+    private static final ConnectionOptions OPTIONS = new ConnectionOptions(Proxy.NO_PROXY, false, false, 5000, 5000);
+
+    public HttpTransportTests(String transportName) {
+        super(transportName);
+    }
+
+    @Override
+    protected TestServer addHandlers(TestServer testServer) throws Exception {
+        return testServer
+                .handle("/echo", exchange -> {
+                    String body = exchange.getRequestMethod() + ":" + TestServer.readBody(exchange);
+                    TestServer.respond(exchange, 200, "text/plain", body);
+                })
+                .handle("/missing", exchange -> TestServer.respond(exchange, 404, "text/plain", "not here"));
+    }
+
+    @Test
+    public void getReturnsResponseBody() throws Exception {
+        HttpEasyReader reader = HttpEasy.request()
+                .transport(transport())
+                .baseUrl(server.getBaseUrl())
+                .path("echo")
+                .get();
+
+        assertThat(reader.getResponseCode(), is(200));
+        assertThat(reader.getResponseHeaderField("content-type"), is("text/plain"));
+        assertThat(reader.asString(), is("GET:"));
+    }
+
+    @Test
+    public void postWritesRequestBody() throws Exception {
+        HttpEasyReader reader = HttpEasy.request()
+                .transport(transport())
+                .baseUrl(server.getBaseUrl())
+                .path("echo")
+                .data("{\"name\":\"fred\"}", MediaType.JSON_UTF_8)
+                .post();
+
+        assertThat(reader.asString(), is("POST:{\"name\":\"fred\"}"));
+    }
+
+    @Test
+    public void errorResponseIsReadFromErrorStream() throws Exception {
+        HttpEasyReader reader = HttpEasy.request()
+                .transport(transport())
+                .baseUrl(server.getBaseUrl())
+                .path("missing")
+                .doNotFailOn(Family.CLIENT_ERROR)
+                .get();
+
+        assertThat(reader.getResponseCode(), is(404));
+        assertThat(reader.asString(), is("not here"));
+    }
+
+    @Test
+    public void responseMessageIsTheReasonPhrase() throws Exception {
+        HttpConnection found = transport().openConnection(new URL(server.getBaseUrl() + "/echo"), OPTIONS);
+        HttpConnection missing = transport().openConnection(new URL(server.getBaseUrl() + "/missing"), OPTIONS);
+
+        assertThat(found.getResponseMessage(), is("OK"));
+        assertThat(missing.getResponseMessage(), is("Not Found"));
+
+        found.disconnect();
+        missing.disconnect();
+    }
+
+    @Test
+    public void failureWhileWritingBodyGivesTheCause() throws Exception {
+        int port;
+
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        HttpConnection connection = transport().openConnection(new URL("http://localhost:" + port + "/upload"), OPTIONS);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+
+        try {
+            connection.connect();
+            OutputStream out = connection.getOutputStream();
+
+            for (int i = 0; i < 100; i++) {
+                out.write(DOWNLOAD, 0, 8192);
+            }
+
+            fail("Expected the body to be refused");
+        } catch (IOException e) {
+            Throwable cause = e;
+
+            while (cause != null && !(cause instanceof ConnectException)) {
+                cause = cause.getCause();
+            }
+
+            assertThat(e.toString(), cause instanceof ConnectException, is(true));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void urlConnectionIsStillAvailableToExistingCallers() throws Exception {
+        HttpEasyReader reader = HttpEasy.request()
+                .transport(transport())
+                .baseUrl(server.getBaseUrl())
+                .path("echo")
+                .get();
+
+        assertThat(reader.getHttpConnection().getResponseCode(), is(200));
+
+        if (transportName.equals("urlConnection")) {
+            assertThat(reader.getConnection() == reader.getHttpConnection().getHttpURLConnection(), is(true));
+        }
+
+        reader.asString();
+    }
+}
@@ -0,0 +1,131 @@
+package org.concordion.cubano.driver.http;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.StringReader;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+
+public class JsonReaderTests {
+    private static final String JSON = "{"
+            + "\"total_rows\": 2,"
+            + "\"rows\": ["
+            + "  {\"id\": \"a\", \"doc\": {\"_id\": \"id-a\", \"tags\": [\"x\", \"y\"]}},"
+            + "  {\"id\": \"b\", \"doc\": {\"_id\": \"id-b\", \"tags\": []}}"
+            + "],"
+            + "\"dotted.name\": \"dot\","
+            + "\"empty\": null"
+            + "}";
+
+    @Test
+    public void selectMatchesSameElementsAsJsonPath() throws Exception {
+        JsonReader reader = new JsonReader(JSON);
+        String[] paths = {"total_rows", "rows[1].doc._id", "rows[0].doc.tags", "dotted\\.name", "rows[0].doc"};
+
+        Map<String, JsonElement> selected = JsonReader.select(new StringReader(JSON), paths);
+
+        for (String path : paths) {
+            assertThat(path, selected.get(path), is(reader.jsonPath(path)));
+        }
+    }
+
+    @Test
+    public void selectSupportsIndexOnLastElement() throws Exception {
+        Map<String, JsonElement> selected = JsonReader.select(new StringReader(JSON), "rows[0].doc.tags[1]");
+
+        assertThat(selected.get("rows[0].doc.tags[1]").getAsString(), is("y"));
+    }
+
+    @Test
+    public void selectReturnsNullForMissingElements() throws Exception {
+        Map<String, JsonElement> selected = JsonReader.select(new StringReader(JSON), "rows[5].id", "nothing", "rows[0].doc.missing");
+
+        assertThat(selected.get("rows[5].id"), is(nullValue()));
+        assertThat(selected.get("nothing"), is(nullValue()));
+        assertThat(selected.get("rows[0].doc.missing"), is(nullValue()));
+    }
+
+    @Test
+    public void selectStopsReadingOnceAllPathsFound() throws Exception {
+        String truncated = "{\"first\": {\"value\": 1}, \"second\": [1, 2, ";
+
+        Map<String, JsonElement> selected = JsonReader.select(new StringReader(truncated), "first.value");
+
+        assertThat(selected.get("first.value").getAsInt(), is(1));
+    }
+
+    @Test
+    public void jsonPathSupportsWildcards() throws Exception {
+        JsonReader reader = new JsonReader(JSON);
+
+        assertThat(reader.getAsJsonArray("rows[*].doc._id").toString(), is("[\"id-a\",\"id-b\"]"));
+        assertThat(reader.getAsJsonArray("rows[0].doc.*").size(), is(2));
+    }
+
+    @Test
+    public void jsonPathSupportsRecursiveDescent() throws Exception {
+        JsonReader reader = new JsonReader(JSON);
+
+        assertThat(reader.getAsJsonArray("$..tags").toString(), is("[[\"x\",\"y\"],[]]"));
+    }
+
+    @Test
+    public void jsonPathSupportsPredicates() throws Exception {
+        JsonReader reader = new JsonReader(JSON);
+
+        assertThat(reader.getAsString("rows[?(@.doc._id == 'id-b')].id"), is("b"));
+        assertThat(reader.getAsJsonArray("rows[?(@.doc.tags[0])].id").toString(), is("[\"a\"]"));
+        assertThat(reader.getAsJsonArray("$[?(@.total_rows > 1)].total_rows").toString(), is("[2]"));
+    }
+
+    @Test
+    public void jsonPathSupportsIndexOnLastElement() throws Exception {
+        JsonReader reader = new JsonReader(JSON);
+
+        assertThat(reader.getAsString("rows[0].doc.tags[1]"), is("y"));
+        assertThat(reader.getAsString("rows[0].doc.tags[-1]"), is("y"));
+        assertThat(reader.getAsString("rows[0]['doc']['_id']"), is("id-a"));
+        assertThat(reader.jsonPath("rows[9].id"), is(nullValue()));
+    }
+
+    @Test
+    public void compiledPathsAreCached() {
+        assertThat(JsonPath.compile("rows[*].doc._id") == JsonPath.compile("rows[*].doc._id"), is(true));
+        assertThat(JsonPath.compile("rows[*].doc._id").isDefinite(), is(false));
+        assertThat(JsonPath.compile("rows[0].doc._id").isDefinite(), is(true));
+    }
+
+    @Test
+    public void memberNamesCanStartWithRootMarkers() throws Exception {
+        JsonReader reader = new JsonReader("{\"$type\":\"Customer\",\"@id\":\"c-1\",\"$id\":\"1\",\"items\":[{\"@id\":\"i-1\"}]}");
+
+        assertThat(reader.getAsString("$type"), is("Customer"));
+        assertThat(reader.getAsString("@id"), is("c-1"));
+        assertThat(reader.getAsString("$id"), is("1"));
+        assertThat(reader.getAsString("$.$type"), is("Customer"));
+        assertThat(reader.getAsString("items[0].@id"), is("i-1"));
+        assertThat(reader.getAsString("$['@id']"), is("c-1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPathIsRejected() {
+        JsonPath.compile("rows[abc");
+    }
+
+    @Test
+    public void selectMatchesJsonPathForIndefinitePaths() throws Exception {
+        JsonReader reader = new JsonReader(JSON);
+        String[] paths = {"rows[*].doc._id", "$..tags", "rows[?(@.id == 'a')].doc.tags[-1]", "rows[1].doc._id"};
+
+        Map<String, JsonElement> selected = JsonReader.select(new StringReader(JSON), paths);
+
+        for (String path : paths) {
+            assertThat(path, selected.get(path), is(reader.jsonPath(path)));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.concordion.cubano.driver.http;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.net.MediaType;
+
+public class MultipartUploadTests extends TransportTestCase {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public MultipartUploadTests(String transportName) {
+        super(transportName);
+    }
+
+    @Override
+    protected TestServer addHandlers(TestServer testServer) throws Exception {
+        return testServer
+                .handle("/echo", exchange -> {
+                    String body = exchange.getRequestMethod() + ":" + TestServer.readBody(exchange);
+                    TestServer.respond(exchange, 200, "text/plain", body);
+                })
+                .handle("/framing", exchange -> {
+                    byte[] body = TestServer.readBytes(exchange.getRequestBody());
+                    TestServer.respond(exchange, 200, "text/plain", "Content-Length: " + exchange.getRequestHeaders().getFirst("Content-Length")
+                            + ", Transfer-Encoding: " + exchange.getRequestHeaders().getFirst("Transfer-Encoding") + ", received: " + body.length);
+                });
+    }
+
+    @Test
+    public void fileIsUploadedAsFormField() throws Exception {
+        File file = folder.newFile("upload.txt");
+        Files.write(file.toPath(), "file content".getBytes(StandardCharsets.UTF_8));
+
+        String response = HttpEasy.request()
+                .transport(transport())
+                .baseUrl(server.getBaseUrl())
+                .path("echo")
+                .field("upload", file, MediaType.PLAIN_TEXT_UTF_8)
+                .post()
+                .asString();
+
+        assertThat(response.contains("filename=\"upload.txt\""), is(true));
+        assertThat(response.contains("\nfile content\n"), is(true));
+    }
+
+    @Test
+    public void multipartFormIsStreamedWithContentLength() throws Exception {
+        File file = folder.newFile("upload.bin");
+        Files.write(file.toPath(), DOWNLOAD);
+
+        String response = HttpEasy.request()
+                .transport(transport())
+                .baseUrl(server.getBaseUrl())
+                .path("framing")
+                .field("name", "caf\u00e9")
+                .field("upload", file, MediaType.OCTET_STREAM)
+                .post()
+                .asString();
+
+        String length = response.substring("Content-Length: ".length(), response.indexOf(','));
+
+        assertThat(response, is("Content-Length: " + length + ", Transfer-Encoding: null, received: " + length));
+        assertThat(Long.parseLong(length) > DOWNLOAD.length, is(true));
+    }
+
+    @Test
+    public void multipartFormWithStreamIsChunked() throws Exception {
+        String response = HttpEasy.request()
+                .transport(transport())
+                .baseUrl(server.getBaseUrl())
+                .path("framing")
+                .field("upload", new ByteArrayInputStream(DOWNLOAD), MediaType.OCTET_STREAM, "upload.bin")
+                .post()
+                .asString();
+
+        assertThat(response.startsWith("Content-Length: null, Transfer-Encoding: chunked, received: "), is(true));
+    }
+}
@@ -0,0 +1,64 @@
+package org.concordion.cubano.driver.http;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.gson.reflect.TypeToken;
+
+public class ObjectBindingTests extends TransportTestCase {
+    public ObjectBindingTests(String transportName) {
+        super(transportName);
+    }
+
+    @Override
+    protected TestServer addHandlers(TestServer testServer) throws Exception {
+        return testServer
+                .handle("/customers", exchange -> TestServer.respond(exchange, 200, "application/json",
+                        "[{\"id\":1,\"name\":\"Fred\"},{\"id\":2,\"name\":\"Caf\u00e9\"}]"))
+                .handle("/latin", exchange -> TestServer.respond(exchange, 200, "text/plain; charset=ISO-8859-1",
+                        "first\nsecond\ncaf\u00e9".getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    @Test
+    public void responseCanBeBoundToObjects() throws Exception {
+        HttpEasyReader reader = HttpEasy.request()
+                .transport(transport())
+                .baseUrl(server.getBaseUrl())
+                .path("customers")
+                .get();
+
+        List<Customer> customers = reader.as(new TypeToken<List<Customer>>() { }.getType());
+
+        assertThat(customers.size(), is(2));
+        assertThat(customers.get(1).id, is(2));
+        assertThat(customers.get(1).name, is("Caf\u00e9"));
+    }
+
+    @Test
+    public void invalidResponseCannotBeBound() throws Exception {
+        HttpEasyReader reader = HttpEasy.request()
+                .transport(transport())
+                .baseUrl(server.getBaseUrl())
+                .path("latin")
+                .get();
+
+        try {
+            reader.as(Customer.class);
+            fail("Expected the response to be rejected");
+        } catch (IOException e) {
+            assertThat(e.getMessage().startsWith("Unable to bind the response to " + Customer.class.getName()), is(true));
+        }
+    }
+
+    private static class Customer {
+        private int id;
+        private String name;
+    }
+}
@@ -0,0 +1,160 @@
+package org.concordion.cubano.driver.http;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.concordion.cubano.driver.http.dataWriter.ObjectDataWriter.Streaming;
+import org.junit.Test;
+
+public class ObjectBodyTests extends TransportTestCase {
+    public ObjectBodyTests(String transportName) {
+        super(transportName);
+    }
+
+    @Override
+    protected TestServer addHandlers(TestServer testServer) throws Exception {
+        return testServer
+                .handle("/echo", exchange -> {
+                    String body = exchange.getRequestMethod() + ":" + TestServer.readBody(exchange);
+                    TestServer.respond(exchange, 200, "text/plain", body);
+                })
+                .handle("/framing", exchange -> {
+                    byte[] body = TestServer.readBytes(exchange.getRequestBody());
+                    TestServer.respond(exchange, 200, "text/plain", "Content-Length: " + exchange.getRequestHeaders().getFirst("Content-Length")
+                            + ", Transfer-Encoding: " + exchange.getRequestHeaders().getFirst("Transfer-Encoding") + ", received: " + body.length);
+                })
+                .handle("/checksum", exchange -> {
+                    byte[] body = TestServer.readBytes(exchange.getRequestBody());
+                    CRC32 crc = new CRC32();
+                    crc.update(body);
+                    TestServer.respond(exchange, 200, "text/plain", body.length + ":" + crc.getValue());
+                });
+    }
+
+    @Test
+    public void jsonBodyIsStreamedInChunks() throws Exception {
+        String echo = HttpEasy.request()
+                .transport(transport())
+                .baseUrl(server.getBaseUrl())
+                .path("echo")
+                .json(new Customer(1, "Fred"))
+                .post()
+                .asString();
+
+        String framing = HttpEasy.request()
+                .transport(transport())
+                .baseUrl(server.getBaseUrl())
+                .path("framing")
+                .json(new Customer(1, "Fred"))
+                .post()
+                .asString();
+
+        assertThat(echo, is("POST:{\"id\":1,\"name\":\"Fred\"}"));
+        assertThat(framing, is("Content-Length: null, Transfer-Encoding: chunked, received: 22"));
+    }
+
+    @Test
+    public void jsonBodyCanBeSentWithItsLength() throws Exception {
+        String framing = HttpEasy.request()
+                .transport(transport())
+                .baseUrl(server.getBaseUrl())
+                .path("framing")
+                .json(new Customer(1, "Fred"), Streaming.FIXED_LENGTH)
+                .post()
+                .asString();
+
+        assertThat(framing, is("Content-Length: 22, Transfer-Encoding: null, received: 22"));
+    }
+
+    @Test
+    public void xmlBodyIsMarshalled() throws Exception {
+        String echo = HttpEasy.request()
+                .transport(transport())
+                .baseUrl(server.getBaseUrl())
+                .path("echo")
+                .xml(new Order(7, "Fred"))
+                .post()
+                .asString();
+
+        assertThat(echo.startsWith("POST:<?xml"), is(true));
+        assertThat(echo.endsWith("<order id=\"7\"><customer>Fred</customer></order>"), is(true));
+    }
+
+    @Test
+    public void onlyStartOfLargeBodyIsLogged() throws Exception {
+        StringBuilder name = new StringBuilder();
+        List<String> requests = new ArrayList<>();
+
+        for (int i = 0; i < 10000; i++) {
+            name.append('x');
+        }
+
+        String response = HttpEasy.request()
+                .transport(transport())
+                .logRequestDetails()
+                .withLogWriter(new LogWriter() {
+                    @Override
+                    public void info(String msg, Object... args) {
+                    }
+
+                    @Override
+                    public void request(String msg, Object... args) {
+                        requests.add(msg);
+                    }
+
+                    @Override
+                    public void response(String msg, Object... args) {
+                    }
+
+                    @Override
+                    public void error(String message, Throwable t) {
+                    }
+                })
+                .baseUrl(server.getBaseUrl())
+                .path("checksum")
+                .json(new Customer(1, name.toString()))
+                .post()
+                .asString();
+
+        String log = String.join("\n", requests);
+
+        assertThat(response.startsWith("10018:"), is(true));
+        assertThat(log.contains("... 7970 more bytes not logged"), is(true));
+        assertThat(log.length() < 4000, is(true));
+    }
+
+    private static class Customer {
+        private int id;
+        private String name;
+
+        Customer(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    @XmlRootElement
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class Order {
+        @XmlAttribute
+        private int id;
+        private String customer;
+
+        public Order() {
+        }
+
+        Order(int id, String customer) {
+            this.id = id;
+            this.customer = customer;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package org.concordion.cubano.driver.http;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+
+public class RangedDownloadTests {
+    private static final byte[] DOWNLOAD = new byte[1024 * 1024 + 123];
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int CHUNKS = (DOWNLOAD.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+    private static final byte[] GZIPPED;
+
+    static {
+        new Random(7).nextBytes(DOWNLOAD);
+
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+
+        try (OutputStream out = new GZIPOutputStream(gzipped)) {
+            // Repeat part of the download so that the encoded file is more than one chunk but smaller than the original
+            for (int i = 0; i < 8; i++) {
+                out.write(DOWNLOAD, 0, CHUNK_SIZE);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        GZIPPED = gzipped.toByteArray();
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+    private final AtomicInteger wholeRequests = new AtomicInteger();
+    private final AtomicLong dropAt = new AtomicLong(-1);
+    private final AtomicLong failAt = new AtomicLong(-1);
+    private TestServer server;
+
+    @Before
+    public void startServer() throws Exception {
+        server = new TestServer()
+                .handle("/files/", exchange -> serve(exchange, true))
+                .handle("/plain/", exchange -> serve(exchange, false))
+                .handle("/gzipped/", exchange -> {
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                    serve(exchange, true, GZIPPED);
+                });
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    private void serve(HttpExchange exchange, boolean acceptRanges) throws IOException {
+        serve(exchange, acceptRanges, DOWNLOAD);
+    }
+
+    private void serve(HttpExchange exchange, boolean acceptRanges, byte[] content) throws IOException {
+        if (acceptRanges) {
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            exchange.getResponseHeaders().set("ETag", "\"v1\"");
+        }
+
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(content.length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+
+        String range = exchange.getRequestHeaders().getFirst("Range");
+
+        if (!acceptRanges || range == null) {
+            wholeRequests.incrementAndGet();
+            TestServer.respond(exchange, 200, "application/octet-stream", content);
+            return;
+        }
+
+        rangeRequests.incrementAndGet();
+
+        String[] bounds = range.substring("bytes=".length()).split("-");
+        int start = Integer.parseInt(bounds[0]);
+        int end = Integer.parseInt(bounds[1]);
+
+        if (start == failAt.get()) {
+            TestServer.respond(exchange, 503, "text/plain", "unavailable");
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+        exchange.sendResponseHeaders(206, end - start + 1);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (dropAt.compareAndSet(start, -1)) {
+                // Send half the range then drop the connection
+                out.write(content, start, (end - start + 1) / 2);
+                out.flush();
+            } else {
+                out.write(content, start, end - start + 1);
+            }
+        }
+    }
+
+    private HttpEasy request(String path) {
+        return HttpEasy.request().baseUrl(server.getBaseUrl()).path(path);
+    }
+
+    @Test
+    public void fileIsDownloadedInRanges() throws Exception {
+        File file = request("files/artefact.bin")
+                .downloadFile(folder.getRoot().getPath(), RangedDownload.create().ranges(4).chunkSize(CHUNK_SIZE));
+
+        assertThat(file.getName(), is("artefact.bin"));
+        assertThat(Arrays.equals(Files.readAllBytes(file.toPath()), DOWNLOAD), is(true));
+        assertThat(rangeRequests.get(), is(CHUNKS));
+        assertThat(wholeRequests.get(), is(0));
+        assertThat(new File(folder.getRoot(), "artefact.bin.part").exists(), is(false));
+        assertThat(new File(folder.getRoot(), "artefact.bin.progress").exists(), is(false));
+    }
+
+    @Test
+    public void encodedFileIsSavedAsSent() throws Exception {
+        File file = request("gzipped/artefact.bin.gz")
+                .downloadFile(folder.getRoot().getPath(), RangedDownload.create().ranges(4).chunkSize(CHUNK_SIZE));
+
+        assertThat(Arrays.equals(Files.readAllBytes(file.toPath()), GZIPPED), is(true));
+        assertThat(rangeRequests.get(), is((GZIPPED.length + CHUNK_SIZE - 1) / CHUNK_SIZE));
+    }
+
+    @Test
+    public void droppedRangeIsResumed() throws Exception {
+        dropAt.set(3 * CHUNK_SIZE);
+
+        File file = request("files/artefact.bin")
+                .downloadFile(folder.getRoot().getPath(), RangedDownload.create().ranges(3).chunkSize(CHUNK_SIZE));
+
+        assertThat(Arrays.equals(Files.readAllBytes(file.toPath()), DOWNLOAD), is(true));
+        assertThat(rangeRequests.get(), is(CHUNKS + 1));
+    }
+
+    @Test
+    public void failedDownloadCarriesOnWhereItLeftOff() throws Exception {
+        failAt.set(5 * CHUNK_SIZE);
+
+        try {
+            request("files/artefact.bin").downloadFile(folder.getRoot().getPath(), RangedDownload.create().ranges(2).chunkSize(CHUNK_SIZE));
+            fail("Expected HttpResponseException");
+        } catch (HttpResponseException e) {
+            assertThat(e.getStatusCode(), is(503));
+        }
+
+        File progress = new File(folder.getRoot(), "artefact.bin.progress");
+        int completed = Files.readAllLines(progress.toPath(), StandardCharsets.UTF_8).size() - 1;
+
+        assertThat(completed > 0, is(true));
+
+        failAt.set(-1);
+        rangeRequests.set(0);
+
+        File file = request("files/artefact.bin")
+                .downloadFile(folder.getRoot().getPath(), RangedDownload.create().ranges(2).chunkSize(CHUNK_SIZE));
+
+        assertThat(Arrays.equals(Files.readAllBytes(file.toPath()), DOWNLOAD), is(true));
+        assertThat(rangeRequests.get(), is(CHUNKS - completed));
+        assertThat(progress.exists(), is(false));
+    }
+
+    @Test
+    public void checksumIsVerified() throws Exception {
+        String sha = sha256(DOWNLOAD);
+
+        File file = request("files/artefact.bin")
+                .downloadFile(folder.getRoot().getPath(), RangedDownload.create().chunkSize(CHUNK_SIZE).checksum("SHA-256", sha.toUpperCase()));
+
+        assertThat(file.exists(), is(true));
+
+        try {
+            request("files/other.bin").downloadFile(folder.getRoot().getPath(), RangedDownload.create().chunkSize(CHUNK_SIZE).checksum("SHA-256", "00"));
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertThat(e.getMessage().contains("checksum of other.bin was " + sha), is(true));
+        }
+
+        assertThat(new File(folder.getRoot(), "other.bin").exists(), is(false));
+        assertThat(new File(folder.getRoot(), "other.bin.part").exists(), is(false));
+    }
+
+    @Test
+    public void serverWithoutRangesIsDownloadedWhole() throws Exception {
+        File file = request("plain/whole.bin")
+                .downloadFile(folder.getRoot().getPath(), RangedDownload.create().chunkSize(CHUNK_SIZE).checksum("SHA-256", sha256(DOWNLOAD)));
+
+        assertThat(Arrays.equals(Files.readAllBytes(file.toPath()), DOWNLOAD), is(true));
+        assertThat(wholeRequests.get(), is(1));
+        assertThat(rangeRequests.get(), is(0));
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        StringBuilder hex = new StringBuilder();
+
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+            hex.append(String.format("%02x", b));
+        }
+
+        return hex.toString();
+    }
+}
@@ -0,0 +1,109 @@
+package org.concordion.cubano.driver.http;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.concordion.cubano.driver.http.cache.HttpResponseCache;
+import org.concordion.cubano.driver.http.concurrent.RateLimiter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RateLimiterTests {
+    private TestServer server;
+
+    @Before
+    public void startServer() throws Exception {
+        server = new TestServer()
+                .handle("/ok", exchange -> TestServer.respond(exchange, 200, "text/plain", "ok"))
+                .handle("/cacheable", exchange -> {
+                    exchange.getResponseHeaders().set("Cache-Control", "max-age=60");
+                    TestServer.respond(exchange, 200, "text/plain", "ok");
+                })
+                .handle("/busy", exchange -> {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    TestServer.respond(exchange, 429, "text/plain", "slow down");
+                });
+    }
+
+    @After
+    public void stopServer() {
+        HttpEasy.withDefaults().rateLimiter(null).responseCache(null);
+        server.close();
+    }
+
+    @Test
+    public void burstIsSentImmediately() throws Exception {
+        RateLimiter limiter = new RateLimiter(1, 3);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.acquire("host:80"), is(0L));
+        }
+
+        assertThat(limiter.getThrottledCount(), is(0L));
+    }
+
+    @Test
+    public void hostsHaveSeparateBuckets() throws Exception {
+        RateLimiter limiter = new RateLimiter(1, 1).forHost("fast:80", 1000, 10);
+
+        assertThat(limiter.acquire("one:80"), is(0L));
+        assertThat(limiter.acquire("two:80"), is(0L));
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.acquire("fast:80"), is(0L));
+        }
+    }
+
+    @Test
+    public void hostKeyIncludesDefaultPort() throws Exception {
+        assertThat(HttpEasy.request().baseUrl("https://slow-service").path("api").getHostKey(), is("slow-service:443"));
+        assertThat(HttpEasy.request().baseUrl("http://slow-service").path("api").getHostKey(), is("slow-service:80"));
+        assertThat(HttpEasy.request().baseUrl("http://slow-service:8080").path("api").getHostKey(), is("slow-service:8080"));
+    }
+
+    @Test
+    public void requestsAreLimited() throws Exception {
+        HttpEasy.withDefaults().rateLimit(1, 1);
+
+        for (int i = 0; i < 2; i++) {
+            HttpEasy.request().baseUrl(server.getBaseUrl()).path("ok").get().asString();
+        }
+
+        // The exact waits are checked against a controlled clock in TokenBucketTests
+        assertThat(HttpEasyDefaults.getRateLimiter().getPermitCount(), is(2L));
+        assertThat(HttpEasyDefaults.getRateLimiter().getThrottledCount(), is(greaterThanOrEqualTo(1L)));
+    }
+
+    @Test
+    public void cachedResponsesDoNotUsePermits() throws Exception {
+        HttpEasy.withDefaults().rateLimit(1000, 10).responseCache(new HttpResponseCache(1024 * 1024));
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(HttpEasy.request().baseUrl(server.getBaseUrl()).path("cacheable").get().asString(), is("ok"));
+        }
+
+        assertThat(HttpEasyDefaults.getRateLimiter().getPermitCount(), is(1L));
+    }
+
+    @Test
+    public void retryAfterPausesHost() throws Exception {
+        RateLimiter limiter = new RateLimiter(1000, 10);
+        HttpEasy.withDefaults().rateLimiter(limiter);
+
+        HttpEasyReader reader = HttpEasy.request().baseUrl(server.getBaseUrl()).path("busy").doNotFailOn(429).get();
+
+        assertThat(reader.getResponseCode(), is(429));
+        assertThat(limiter.getRetryAfterCount(), is(1L));
+
+        long started = System.nanoTime();
+        HttpEasy.request().baseUrl(server.getBaseUrl()).path("ok").get().asString();
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), is(greaterThanOrEqualTo(900L)));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), is(lessThan(3000L)));
+    }
+}
@@ -0,0 +1,133 @@
+package org.concordion.cubano.driver.http;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.concordion.cubano.driver.http.metrics.LatencyHistogram;
+import org.concordion.cubano.driver.http.metrics.Phase;
+import org.concordion.cubano.driver.http.metrics.RequestMetrics;
+import org.concordion.cubano.driver.http.metrics.RequestTimings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.net.MediaType;
+
+public class RequestMetricsTests {
+    private TestServer server;
+    private RequestMetrics metrics = new RequestMetrics();
+
+    @Before
+    public void startServer() throws Exception {
+        server = new TestServer()
+                .handle("/customer/", exchange -> TestServer.respond(exchange, 200, "text/plain", "customer " + TestServer.readBody(exchange)));
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    private HttpEasy request() {
+        return HttpEasyClient.builder().baseUrl(server.getBaseUrl()).requestMetrics(metrics).build().request();
+    }
+
+    @Test
+    public void histogramPercentilesAreWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        assertThat(histogram.getCount(), is(1000L));
+        assertThat(withinTwoPercent(histogram.getValueAtPercentile(50), 500), is(true));
+        assertThat(withinTwoPercent(histogram.getValueAtPercentile(99), 990), is(true));
+        assertThat(histogram.getValueAtPercentile(100), is(TimeUnit.MILLISECONDS.toNanos(1000)));
+        assertThat(histogram.getMax(), is(TimeUnit.MILLISECONDS.toNanos(1000)));
+        assertThat(histogram.getMean(), is(TimeUnit.MICROSECONDS.toNanos(500500)));
+
+        histogram.reset();
+
+        assertThat(histogram.getCount(), is(0L));
+        assertThat(histogram.getValueAtPercentile(50), is(0L));
+    }
+
+    private static boolean withinTwoPercent(long nanos, long expectedMillis) {
+        double millis = nanos / 1_000_000.0;
+
+        return Math.abs(millis - expectedMillis) <= expectedMillis * 0.02;
+    }
+
+    @Test
+    public void requestsAreGroupedByPathTemplate() throws Exception {
+        List<RequestTimings> timings = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            HttpEasyReader reader = request().path("customer/{id}").urlParameters(i).get();
+
+            assertThat(reader.asString(), is("customer"));
+            timings.add(reader.getTimings());
+        }
+
+        request().path("customer/{id}").urlParameters(9).data("x", MediaType.PLAIN_TEXT_UTF_8).post().asString();
+
+        String get = RequestMetrics.endpoint("GET", server.getBaseUrl().replace("http://", ""), "/customer/{id}");
+        String post = RequestMetrics.endpoint("POST", server.getBaseUrl().replace("http://", ""), "/customer/{id}");
+
+        assertThat(metrics.getEndpoints().size(), is(2));
+        assertThat(metrics.getHistogram(get, Phase.TOTAL).getCount(), is(3L));
+        assertThat(metrics.getHistogram(get, Phase.READ).getCount(), is(3L));
+        assertThat(metrics.getHistogram(get, Phase.WRITE) == null, is(true));
+        assertThat(metrics.getHistogram(post, Phase.WRITE).getCount(), is(1L));
+
+        RequestTimings first = timings.get(0);
+
+        assertThat(first.getEndpoint(), is(get));
+
+        for (Phase phase : new Phase[] { Phase.PROXY_LOOKUP, Phase.CONNECT, Phase.FIRST_BYTE, Phase.READ, Phase.TOTAL }) {
+            assertThat(phase + " recorded", first.getNanos(phase) >= 0, is(true));
+        }
+
+        assertThat(first.getNanos(Phase.WRITE), is(-1L));
+        assertThat(first.getNanos(Phase.TOTAL) >= first.getNanos(Phase.FIRST_BYTE), is(true));
+    }
+
+    @Test
+    public void reportIsWrittenToLogWriter() throws Exception {
+        request().path("customer/{id}").urlParameters(1).get().asString();
+
+        List<String> lines = new ArrayList<>();
+
+        metrics.writeTo(new LogWriter() {
+            @Override
+            public void info(String msg, Object... args) {
+                lines.add(getFormattedMessage(msg, args));
+            }
+
+            @Override
+            public void request(String msg, Object... args) {
+            }
+
+            @Override
+            public void response(String msg, Object... args) {
+            }
+
+            @Override
+            public void error(String message, Throwable t) {
+            }
+        });
+
+        assertThat(lines.get(0), is("Request timings (ms)"));
+        assertThat(lines.get(1).endsWith("/customer/{id} - 1 requests"), is(true));
+        assertThat(lines.stream().anyMatch(line -> line.trim().startsWith("first byte")), is(true));
+
+        metrics.reset();
+
+        assertThat(metrics.getEndpoints().isEmpty(), is(true));
+    }
+}
@@ -0,0 +1,127 @@
+package org.concordion.cubano.driver.http;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RequestTemplateTests {
+    private TestServer server;
+    private HttpEasyClient client;
+
+    @Before
+    public void startServer() throws Exception {
+        server = new TestServer()
+                .handle("/customer", exchange -> {
+                    String accept = exchange.getRequestHeaders().getFirst("Accept");
+                    String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+
+                    TestServer.respond(exchange, 200, "text/plain", exchange.getRequestURI() + " " + accept + " " + authorization);
+                });
+
+        client = HttpEasyClient.builder().baseUrl(server.getBaseUrl()).build();
+    }
+
+    @After
+    public void stopServer() {
+        HttpEasy.withDefaults().baseUrl("");
+        server.close();
+    }
+
+    @Test
+    public void boundUrlMatchesRequestBuiltEachTime() throws Exception {
+        RequestTemplate template = client.template("customer/{id}/orders/{order}");
+
+        assertThat(template.getParameterCount(), is(2));
+
+        String expected = client.request().path("customer/{id}/orders/{order}").urlParameters(12, "A1").queryParam("full", true)
+                .get().asString();
+        String actual = template.bind(12, "A1").queryParam("full", true).get().asString();
+
+        assertThat(actual, is(expected));
+        assertThat(actual.startsWith("/customer/12/orders/A1?full=true "), is(true));
+    }
+
+    @Test
+    public void headersAreSentAndTemplateIsUnchanged() throws Exception {
+        RequestTemplate plain = client.template("customer/{id}");
+        RequestTemplate json = plain.header("Accept", "application/json");
+
+        assertThat(plain.getHeaders().isEmpty(), is(true));
+        assertThat(json.bind(1).get().asString(), is("/customer/1 application/json null"));
+        assertThat(plain.bind(1).get().asString().startsWith("/customer/1 "), is(true));
+        assertThat(json.bind(2).header("Accept", "text/plain").get().asString(), is("/customer/2 text/plain null"));
+    }
+
+    @Test
+    public void defaultBaseUrlIsTakenWhenRequestIsSent() throws Exception {
+        RequestTemplate template = HttpEasy.template("customer/{id}");
+
+        HttpEasy.withDefaults().baseUrl(server.getBaseUrl() + "/");
+
+        assertThat(template.bind(5).get().asString().startsWith("/customer/5 "), is(true));
+
+        HttpEasy.withDefaults().baseUrl(server.getBaseUrl().replace("//", "//user:secret@"));
+
+        assertThat(template.bind(6).get().asString().endsWith(" Basic dXNlcjpzZWNyZXQ="), is(true));
+    }
+
+    @Test
+    public void userInfoIsSentAsAuthorization() throws Exception {
+        RequestTemplate template = HttpEasy.template(server.getBaseUrl().replace("//", "//user:secret@") + "/customer/[id]")
+                .parameterTokens("[", "]");
+
+        assertThat(template.toString().contains("secret"), is(true));
+        assertThat(template.bind(3).get().asString().endsWith(" Basic dXNlcjpzZWNyZXQ="), is(true));
+    }
+
+    @Test
+    public void urlOfBoundRequestCannotBeChanged() {
+        try {
+            client.template("customer/{id}").bind(1).path("other");
+            fail("Expected the path to be rejected");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage().contains("cannot be changed"), is(true));
+        }
+    }
+
+    @Test
+    public void unclosedParameterIsRejected() {
+        try {
+            client.template("customer/{id");
+            fail("Expected the template to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage().contains("missing }"), is(true));
+        }
+    }
+
+    @Test
+    public void templateCanBeSharedBetweenThreads() throws Exception {
+        RequestTemplate template = client.template("customer/{id}").header("Accept", "text/plain");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<String>> responses = new ArrayList<>();
+
+            for (int i = 0; i < 20; i++) {
+                int id = i;
+                responses.add(executor.submit(() -> template.bind(id).get().asString()));
+            }
+
+            for (int i = 0; i < responses.size(); i++) {
+                assertThat(responses.get(i).get(), is("/customer/" + i + " text/plain null"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.concordion.cubano.driver.http;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.concordion.cubano.driver.http.metrics.Phase;
+import org.concordion.cubano.driver.http.metrics.RequestTimings;
+import org.junit.Test;
+
+public class RequestTimingsTests extends TransportTestCase {
+    public RequestTimingsTests(String transportName) {
+        super(transportName);
+    }
+
+    @Override
+    protected TestServer addHandlers(TestServer testServer) throws Exception {
+        return testServer
+                .handle("/echo", exchange -> {
+                    String body = exchange.getRequestMethod() + ":" + TestServer.readBody(exchange);
+                    TestServer.respond(exchange, 200, "text/plain", body);
+                });
+    }
+
+    @Test
+    public void connectIsOnlyTimedWhenTransportConnectsUpFront() throws Exception {
+        RequestTimings timings = HttpEasy.request()
+                .transport(transport())
+                .baseUrl(server.getBaseUrl())
+                .path("echo")
+                .get()
+                .getTimings();
+
+        assertThat(timings.getNanos(Phase.CONNECT) >= 0, is(transportName.equals("urlConnection")));
+        assertThat(timings.getNanos(Phase.FIRST_BYTE) >= 0, is(true));
+    }
+}
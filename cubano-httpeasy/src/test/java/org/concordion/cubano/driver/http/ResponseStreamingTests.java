@@ -0,0 +1,78 @@
+package org.concordion.cubano.driver.http;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+public class ResponseStreamingTests extends TransportTestCase {
+    public ResponseStreamingTests(String transportName) {
+        super(transportName);
+    }
+
+    @Override
+    protected TestServer addHandlers(TestServer testServer) throws Exception {
+        return testServer
+                .handle("/latin", exchange -> TestServer.respond(exchange, 200, "text/plain; charset=ISO-8859-1",
+                        "first\nsecond\ncaf\u00e9".getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    @Test
+    public void responseCanBeStreamedAsLines() throws Exception {
+        HttpEasyReader reader = HttpEasy.request()
+                .transport(transport())
+                .baseUrl(server.getBaseUrl())
+                .path("latin")
+                .get();
+
+        try (Stream<String> lines = reader.lines()) {
+            List<String> values = lines.collect(Collectors.toList());
+
+            assertThat(values, is(Arrays.asList("first", "second", "caf\u00e9")));
+        }
+    }
+
+    @Test
+    public void loggedResponseIsStreamedAsSent() throws Exception {
+        HttpEasyReader reader = HttpEasy.request()
+                .transport(transport())
+                .logRequestDetails()
+                .baseUrl(server.getBaseUrl())
+                .path("latin")
+                .get();
+
+        try (InputStream in = reader.asInputStream()) {
+            assertThat(TestServer.readBytes(in), is("first\nsecond\ncaf\u00e9".getBytes(StandardCharsets.ISO_8859_1)));
+        }
+
+        try (Stream<String> lines = reader.lines()) {
+            assertThat(lines.collect(Collectors.toList()), is(Arrays.asList("first", "second", "caf\u00e9")));
+        }
+    }
+
+    @Test
+    public void responseCanBeConsumedInBlocks() throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        HttpEasy.request()
+                .transport(transport())
+                .baseUrl(server.getBaseUrl())
+                .path("latin")
+                .get()
+                .consume(block -> {
+                    byte[] bytes = new byte[block.remaining()];
+                    block.get(bytes);
+                    body.write(bytes, 0, bytes.length);
+                });
+
+        assertThat(new String(body.toByteArray(), StandardCharsets.ISO_8859_1), is("first\nsecond\ncaf\u00e9"));
+    }
+}
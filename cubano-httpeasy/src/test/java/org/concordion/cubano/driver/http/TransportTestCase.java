@@ -0,0 +1,65 @@
+package org.concordion.cubano.driver.http;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import org.concordion.cubano.driver.http.transport.HttpTransport;
+import org.concordion.cubano.driver.http.transport.HttpTransports;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Runs each test once with every transport against a test server, subclasses add the handlers their tests need.
+ */
+@RunWith(Parameterized.class)
+public abstract class TransportTestCase {
+    protected static final byte[] DOWNLOAD = new byte[3 * 1024 * 1024 + 17];
+
+    static {
+        new Random(42).nextBytes(DOWNLOAD);
+    }
+
+    protected final String transportName;
+    protected TestServer server;
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> transports() {
+        return Arrays.asList(new Object[][] {{"urlConnection"}, {"httpClient"}});
+    }
+
+    protected TransportTestCase(String transportName) {
+        this.transportName = transportName;
+    }
+
+    protected HttpTransport transport() {
+        if (transportName.equals("httpClient")) {
+            assumeTrue(HttpTransports.isHttpClientAvailable());
+            return HttpTransports.httpClient();
+        }
+
+        return HttpTransports.urlConnection();
+    }
+
+    /**
+     * @param testServer Server to add handlers to
+     * @return The server
+     * @throws Exception if unable to add the handlers
+     */
+    protected abstract TestServer addHandlers(TestServer testServer) throws Exception;
+
+    @Before
+    public void startServer() throws Exception {
+        server = addHandlers(new TestServer());
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+}
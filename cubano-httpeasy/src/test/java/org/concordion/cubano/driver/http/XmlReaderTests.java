@@ -0,0 +1,171 @@
+package org.concordion.cubano.driver.http;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.xpath.XPathConstants;
+
+import org.junit.Test;
+
+public class XmlReaderTests {
+    private static final String XML = "<serviceResponse returnLength=\"1\"><output name=\"documentId\">doc-1</output></serviceResponse>";
+
+    @Test
+    public void compiledExpressionIsReused() throws Exception {
+        XmlFactories factories = XmlFactories.get();
+
+        assertThat(factories.xPath("//output", null) == factories.xPath("//output", null), is(true));
+        assertThat(new XmlReader(XML).textContent("//*/output[@name='documentId']"), is("doc-1"));
+        assertThat(new XmlReader(XML).textContent("//*/output[@name='documentId']"), is("doc-1"));
+    }
+
+    @Test
+    public void compiledExpressionsAreKeyedByNamespaceContext() throws Exception {
+        NamespaceContext context = new NamespaceContext() {
+            @Override
+            public String getNamespaceURI(String prefix) {
+                return "t".equals(prefix) ? "urn:test" : null;
+            }
+
+            @Override
+            public String getPrefix(String namespaceURI) {
+                return null;
+            }
+
+            @Override
+            public Iterator<String> getPrefixes(String namespaceURI) {
+                return Collections.emptyIterator();
+            }
+        };
+
+        XmlFactories factories = XmlFactories.get();
+        XmlReader reader = new XmlReader(XML);
+
+        assertThat(factories.xPath("//output", context) == factories.xPath("//output", null), is(false));
+        assertThat(reader.evaluate("string(//output)", context, XPathConstants.STRING), is("doc-1"));
+    }
+
+    @Test
+    public void prettyFormatIndents() throws Exception {
+        String pretty = new XmlReader(XML).asPrettyString();
+
+        assertThat(pretty, containsString("\n  <output name=\"documentId\">doc-1</output>"));
+        assertThat(XmlReader.prettyFormat("not xml", 2), is("not xml"));
+    }
+
+    @Test
+    public void readersCanBeUsedFromManyThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<String>> results = new ArrayList<>();
+
+            for (int i = 0; i < 50; i++) {
+                String xml = XML.replace("doc-1", "doc-" + i);
+                results.add(executor.submit(() -> new XmlReader(xml).textContent("//*/output[@name='documentId']")));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                assertThat(results.get(i).get(), is("doc-" + i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void fromUnmarshalsSoapBodyContent() throws Exception {
+        String soap = "<?xml version=\"1.0\"?>"
+                + "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">\n"
+                + "  <soap:Header><item>ignored</item></soap:Header>\n"
+                + "  <soap:Body>\n"
+                + "    <item xmlns=\"urn:test\"><name>widget</name></item>\n"
+                + "  </soap:Body>\n"
+                + "</soap:Envelope>";
+
+        XmlReader reader = new XmlReader(soap);
+
+        assertThat(reader.from(Item.class).name, is("widget"));
+        assertThat(reader.from(Item.class).name, is("widget"));
+    }
+
+    @Test
+    public void fromUnmarshalsDocument() throws Exception {
+        XmlReader reader = new XmlReader("<item xmlns=\"urn:test\"><name>gadget</name></item>");
+
+        assertThat(reader.from(Item.class).name, is("gadget"));
+        assertThat(JaxbCache.context(Item.class) == JaxbCache.context(Item.class), is(true));
+    }
+
+    @Test
+    public void streamUnmarshalsEachMatchingElement() throws Exception {
+        String soap = "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>"
+                + "<list xmlns=\"urn:test\"><item><name>one</name></item><other/><item><name>two</name></item></list>"
+                + "<item xmlns=\"urn:test\"><name>not in list</name></item>"
+                + "</soap:Body></soap:Envelope>";
+
+        try (Stream<Item> items = XmlReader.stream(toStream(soap), "Envelope/Body/list/item", Item.class)) {
+            assertThat(items.map(item -> item.name).collect(Collectors.toList()), is(Arrays.asList("one", "two")));
+        }
+
+        try (Stream<Item> items = XmlReader.stream(toStream(soap), "//item", Item.class)) {
+            assertThat(items.count(), is(3L));
+        }
+    }
+
+    @Test
+    public void streamXmlReadsFromResponse() throws Exception {
+        StringBuilder xml = new StringBuilder("<list xmlns=\"urn:test\">");
+
+        for (int i = 0; i < 1000; i++) {
+            xml.append("<item><name>").append(i).append("</name></item>");
+        }
+
+        String body = xml.append("</list>").toString();
+
+        try (TestServer server = new TestServer().handle("/list", exchange -> TestServer.respond(exchange, 200, "text/xml", body))) {
+            HttpEasyReader response = HttpEasy.request().baseUrl(server.getBaseUrl()).path("list").get();
+
+            try (XmlElementIterator<Item> items = response.iterateXml("list/item", Item.class)) {
+                int count = 0;
+
+                while (items.hasNext()) {
+                    assertThat(items.next().name, is(String.valueOf(count++)));
+                }
+
+                assertThat(count, is(1000));
+            }
+        }
+    }
+
+    private static InputStream toStream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @XmlRootElement(name = "item", namespace = "urn:test")
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class Item {
+        @XmlElement(namespace = "urn:test")
+        private String name;
+    }
+}
@@ -0,0 +1,99 @@
+package org.concordion.cubano.driver.http.concurrent;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class HostLimitedExecutorTests {
+    private final ExecutorService service = Executors.newFixedThreadPool(2);
+
+    @After
+    public void shutdown() {
+        service.shutdownNow();
+    }
+
+    @Test
+    public void queuedTasksRunBeforeIdleAction() throws Exception {
+        HostLimitedExecutor executor = new HostLimitedExecutor(service, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> finished = new ArrayList<>();
+        CompletableFuture<List<Integer>> idle = new CompletableFuture<>();
+
+        for (int i = 0; i < 3; i++) {
+            int task = i;
+
+            executor.execute("host:80", () -> {
+                await(release);
+
+                synchronized (finished) {
+                    finished.add(task);
+                }
+            });
+        }
+
+        executor.whenIdle(() -> {
+            synchronized (finished) {
+                idle.complete(new ArrayList<>(finished));
+            }
+        });
+
+        assertThat(idle.isDone(), is(false));
+
+        release.countDown();
+
+        assertThat(idle.get(10, TimeUnit.SECONDS).size(), is(3));
+    }
+
+    @Test
+    public void queuedTasksAreFailedWhenExecutorIsShutDown() throws Exception {
+        HostLimitedExecutor executor = new HostLimitedExecutor(service, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+
+            executor.execute("host:80", () -> {
+                await(release);
+                result.complete(null);
+            }, result::completeExceptionally);
+
+            results.add(result);
+        }
+
+        service.shutdown();
+        release.countDown();
+
+        results.get(0).get(10, TimeUnit.SECONDS);
+
+        for (CompletableFuture<Void> result : results.subList(1, results.size())) {
+            try {
+                result.get(10, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                assertThat(e.getCause() instanceof RejectedExecutionException, is(true));
+            }
+
+            assertThat(result.isCompletedExceptionally(), is(true));
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.concordion.cubano.driver.http.concurrent;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Checks the reservations made by {@link RateLimiter} against a clock the test controls, so that results don't depend on how
+ * quickly the test runs.
+ */
+public class TokenBucketTests {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private long now = 0;
+    private final List<Long> sleeps = new ArrayList<>();
+
+    private RateLimiter limiter(double permitsPerSecond, int burst) {
+        return new RateLimiter(permitsPerSecond, burst, () -> now, sleeps::add);
+    }
+
+    @Test
+    public void requestsOverTheBurstWaitForTheirToken() throws Exception {
+        RateLimiter limiter = limiter(10, 2);
+
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire("host:80");
+        }
+
+        assertThat(sleeps, is(Arrays.asList(100 * MILLIS, 200 * MILLIS)));
+        assertThat(limiter.getPermitCount(), is(4L));
+        assertThat(limiter.getThrottledCount(), is(2L));
+        assertThat(limiter.getTotalWaitMillis(), is(300L));
+        assertThat(limiter.getMaxWaitMillis(), is(200L));
+    }
+
+    @Test
+    public void bucketRefillsOverTime() throws Exception {
+        RateLimiter limiter = limiter(10, 2);
+
+        limiter.acquire("host:80");
+        limiter.acquire("host:80");
+
+        now += 150 * MILLIS;
+        assertThat(limiter.acquire("host:80"), is(0L));
+        assertThat(limiter.acquire("host:80"), is(50 * MILLIS));
+
+        now += 10_000 * MILLIS;
+        assertThat(limiter.acquire("host:80"), is(0L));
+        assertThat(limiter.acquire("host:80"), is(0L));
+        assertThat(limiter.getThrottledCount(), is(1L));
+    }
+
+    @Test
+    public void retryAfterPausesOnlyThatHost() throws Exception {
+        RateLimiter limiter = limiter(1000, 10);
+
+        limiter.retryAfter("busy:80", "2");
+
+        assertThat(limiter.acquire("busy:80"), is(2000 * MILLIS));
+        assertThat(limiter.acquire("idle:80"), is(0L));
+        assertThat(limiter.getRetryAfterCount(), is(1L));
+    }
+}
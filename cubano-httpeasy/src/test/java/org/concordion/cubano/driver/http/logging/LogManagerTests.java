@@ -0,0 +1,91 @@
+package org.concordion.cubano.driver.http.logging;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.concordion.cubano.driver.http.LogWriter;
+import org.junit.Test;
+
+public class LogManagerTests {
+
+    @Test
+    public void deferredBlockIsNotInterleavedWithOtherRequests() throws Exception {
+        List<String> lines = new CopyOnWriteArrayList<>();
+        CountDownLatch writing = new CountDownLatch(1);
+
+        LogWriter writer = new RecordingLogWriter(lines) {
+            @Override
+            public void info(String msg, Object... args) {
+                super.info(msg, args);
+
+                if (msg.equals("deferred 1")) {
+                    writing.countDown();
+
+                    try {
+                        // Give the other request every chance to write in the middle of the block
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+
+        LogManager deferred = new LogManager(writer, true, false, Collections.emptyList());
+        deferred.deferOutput();
+        deferred.info("deferred 1");
+        deferred.info("deferred 2");
+
+        LogManager direct = new LogManager(writer, true, false, Collections.emptyList());
+        Thread other = new Thread(() -> {
+            try {
+                writing.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            direct.info("direct");
+        });
+        other.start();
+
+        deferred.writeDeferred();
+        other.join();
+
+        assertThat(lines, is(Arrays.asList("deferred 1", "deferred 2", "direct")));
+    }
+
+    private static class RecordingLogWriter extends LogWriter {
+        private final List<String> lines;
+
+        RecordingLogWriter(List<String> lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public void info(String msg, Object... args) {
+            lines.add(msg);
+        }
+
+        @Override
+        public void request(String msg, Object... args) {
+            lines.add(msg);
+        }
+
+        @Override
+        public void response(String msg, Object... args) {
+            lines.add(msg);
+        }
+
+        @Override
+        public void error(String message, Throwable t) {
+            lines.add(message);
+        }
+    }
+}